@@ -11,6 +11,7 @@ import static com.yahoo.container.protect.Error.INVALID_QUERY_PARAMETER;
 import static com.yahoo.container.protect.Error.NOT_FOUND;
 import static com.yahoo.container.protect.Error.NO_BACKENDS_IN_SERVICE;
 import static com.yahoo.container.protect.Error.TIMEOUT;
+import static com.yahoo.container.protect.Error.TOO_MANY_PENDING;
 import static com.yahoo.container.protect.Error.UNAUTHORIZED;
 
 import java.net.URLDecoder;
@@ -235,6 +236,8 @@ public final class VespaHeaders {
             return new Tuple2<>(true, Response.Status.GATEWAY_TIMEOUT);
         if (error.getCode() == BACKEND_COMMUNICATION_ERROR.code)
             return new Tuple2<>(true, Response.Status.SERVICE_UNAVAILABLE);
+        if (error.getCode() == TOO_MANY_PENDING.code)
+            return new Tuple2<>(true, Response.Status.SERVICE_UNAVAILABLE);
         if (error.getCode() == ILLEGAL_QUERY.code)
             return new Tuple2<>(true, Response.Status.BAD_REQUEST);
         if (error.getCode() == INVALID_QUERY_PARAMETER.code)
@@ -8,6 +8,7 @@ import net.jpountz.lz4.LZ4Compressor;
 import net.jpountz.lz4.LZ4Factory;
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Optional;
 import java.util.logging.Logger;
 
@@ -22,9 +23,24 @@ public abstract class BasicPacket {
 
     private static Logger log = Logger.getLogger(QueryResultPacket.class.getName());
     private static int DEFAULT_WRITE_BUFFER_SIZE = (10 * 1024);
+    private static int MAX_RETAINED_WRITE_BUFFER_SIZE = (256 * 1024);
     public static final int CODE_MASK = 0x00ff_ffff;  // Reserve upper byte for flags.
 
+    /**
+     * The buffer each thread encodes packets into before they are copied to an exactly sized buffer.
+     * It keeps the size needed by the largest packet encoded by the thread, so that packets are
+     * normally encoded only once.
+     */
+    private static final ThreadLocal<ByteBuffer> writeBuffer =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocate(DEFAULT_WRITE_BUFFER_SIZE));
+
+    /** The array holding the uncompressed encoded body of this, at encodedBodyOffset, or null if not encoded */
     protected byte[] encodedBody;
+    protected int encodedBodyOffset;
+    protected int encodedBodyLength;
+
+    /** Whether the encoded body should be left in the encoding buffer instead of being copied to encodedBody */
+    private boolean leaveEncodedBodyInBuffer = false;
 
     protected ByteBuffer encodingBuffer;
 
@@ -157,11 +173,13 @@ public abstract class BasicPacket {
 
     protected void encodeAndCompressBody(ByteBuffer buffer, int startPosition) {
         int startOfBody = buffer.position();
+        encodedBody = null;
         encodeBody(buffer);
-        setEncodedBody(buffer, startOfBody, buffer.position() - startOfBody);
+        int bodyLength = buffer.position() - startOfBody;
         length = buffer.position() - startPosition;
 
         if (compressionLimit != 0 && length-4 > compressionLimit) {
+            setEncodedBody(buffer, startOfBody, bodyLength);
             byte[] compressedBody;
             compressionType = CompressionType.LZ4;
             LZ4Factory factory = LZ4Factory.fastestInstance();
@@ -179,6 +197,12 @@ public abstract class BasicPacket {
                 buffer.limit(buffer.position());
                 return;
             }
+        } else if (leaveEncodedBodyInBuffer) {
+            // allocateAndEncode points encodedBody into the exactly sized copy of the packet
+            encodedBodyOffset = startOfBody - startPosition;
+            encodedBodyLength = bodyLength;
+        } else {
+            setEncodedBody(buffer, startOfBody, bodyLength);
         }
         buffer.putInt(startPosition, length - 4); // Encoded length 4 less than actual length
         buffer.limit(buffer.position());
@@ -202,8 +226,12 @@ public abstract class BasicPacket {
 
     protected void setEncodedBody(ByteBuffer b, int start, int length) {
         encodedBody = new byte[length];
+        encodedBodyOffset = 0;
+        encodedBodyLength = length;
+        int position = b.position();
         b.position(start);
         b.get(encodedBody);
+        b.position(position);
     }
 
     public boolean isEncoded() {
@@ -227,30 +255,48 @@ public abstract class BasicPacket {
         allocateAndEncode(channelId, DEFAULT_WRITE_BUFFER_SIZE);
     }
 
+    /**
+     * Encodes this packet into the write buffer of the calling thread, which is grown and retained
+     * if it is too small, and then copies the encoded packet to an exactly sized buffer.
+     * The initial size is the least capacity of the write buffer to encode into.
+     */
     private final void allocateAndEncode(int channelId, int initialSize) {
         if (encodingBuffer != null) {
             patchChannelId(encodingBuffer, channelId);
             return;
         }
 
-        int size = initialSize;
-        ByteBuffer buffer = ByteBuffer.allocate(size);
-        while (true) {
-            try {
-                if (hasChannelId()) {
-                    encode(buffer, channelId);
-                } else {
-                    encode(buffer);
+        ByteBuffer buffer = writeBuffer.get();
+        if (buffer.capacity() < initialSize) {
+            buffer = ByteBuffer.allocate(initialSize);
+        }
+        leaveEncodedBodyInBuffer = true;
+        try {
+            while (true) {
+                buffer.clear();
+                try {
+                    if (hasChannelId()) {
+                        encode(buffer, channelId);
+                    } else {
+                        encode(buffer);
+                    }
+                    break;
+                }
+                catch (BufferTooSmallException e) {
+                    buffer = ByteBuffer.allocate(buffer.capacity() * 2);
                 }
-                buffer.flip();
-                encodingBuffer = buffer;
-                break;
-            }
-            catch (BufferTooSmallException e) {
-                size *= 2;
-                buffer = ByteBuffer.allocate(size);
             }
+        } finally {
+            leaveEncodedBodyInBuffer = false;
+        }
+        if (buffer.capacity() <= MAX_RETAINED_WRITE_BUFFER_SIZE) {
+            writeBuffer.set(buffer);
+        }
+        byte[] packet = Arrays.copyOfRange(buffer.array(), buffer.arrayOffset(), buffer.arrayOffset() + buffer.limit());
+        if (encodedBody == null) {
+            encodedBody = packet;
         }
+        encodingBuffer = ByteBuffer.wrap(packet);
     }
 
     // No channel ID for BasicPacket instances, so it's a NOP
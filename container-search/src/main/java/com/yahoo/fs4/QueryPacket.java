@@ -89,14 +89,14 @@ public class QueryPacket extends Packet {
         int skipOffset     = 4;  // offset of offset/hits/timestamp fields
         int skipLength     = 12; // length of offset/hits/timestamp fields
         byte[] utf8Summary = getSummaryClassAsUtf8();
-        byte[] stripped    = new byte[encodedBody.length - skipLength + utf8Summary.length + 1];
+        byte[] stripped    = new byte[encodedBodyLength - skipLength + utf8Summary.length + 1];
 
-        System.arraycopy(encodedBody, 0, stripped, 0, skipOffset);
+        System.arraycopy(encodedBody, encodedBodyOffset, stripped, 0, skipOffset);
         System.arraycopy(utf8Summary, 0, stripped, skipOffset, utf8Summary.length);
         stripped[skipOffset + utf8Summary.length] = 0;
-        System.arraycopy(encodedBody, skipOffset + skipLength,
+        System.arraycopy(encodedBody, encodedBodyOffset + skipOffset + skipLength,
                          stripped, skipOffset + utf8Summary.length + 1,
-                         encodedBody.length - (skipOffset + skipLength));
+                         encodedBodyLength - (skipOffset + skipLength));
         return stripped;
     }
 
@@ -141,9 +141,8 @@ public class QueryPacket extends Packet {
                 g.serialize(gbuf);
             }
             gbuf.getBuf().flip();
-            byte[] blob = new byte [gbuf.getBuf().limit()];
-            gbuf.getBuf().get(blob);
-            buffer.putInt(blob.length);
+            ByteBuffer blob = gbuf.getBuf().getByteBuffer();
+            buffer.putInt(blob.remaining());
             buffer.put(blob);
         }
 
@@ -37,7 +37,6 @@ public class FS4Connection implements Connection
 
     private static int idCounter = 1;
     private int idNumber;
-    private int maxInitialSize = 1024;
 
     // outbound data
     private ByteBuffer writeBuffer;
@@ -70,7 +69,7 @@ public class FS4Connection implements Connection
      * Packet sending interface.
      */
     public void sendPacket (BasicPacket packet, Integer channelId) throws IOException {
-        ByteBuffer buffer = packet.grantEncodingBuffer(channelId.intValue(), maxInitialSize);
+        ByteBuffer buffer = packet.grantEncodingBuffer(channelId.intValue());
         ByteBuffer viewForPacketListener = buffer.slice();
         synchronized (this) {
             if (!(valid && channel.isOpen())) {
@@ -80,9 +79,6 @@ public class FS4Connection implements Connection
                         ", isOpen = " + channel.isOpen());
             }
 
-            if (buffer.capacity() > maxInitialSize) {
-                maxInitialSize = buffer.limit();
-            }
             if (writeBuffer == null) {
                 writeBuffer = buffer;
             } else {
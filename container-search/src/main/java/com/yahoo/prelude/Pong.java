@@ -61,6 +61,12 @@ public class Pong {
         return pongPacket.get().getActiveDocuments();
     }
 
+    /** Returns the docstamp of the content of the backend responding in this Pong, if available */
+    public Optional<Integer> docstamp() {
+        if ( ! pongPacket.isPresent()) return Optional.empty();
+        return Optional.of(pongPacket.get().getDocstamp());
+    }
+
     /** Returns the number of nodes which responded to this Pong, if available */
     public Optional<Integer> activeNodes() {
         if ( ! pongPacket.isPresent()) return Optional.empty();
@@ -1,10 +1,6 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.prelude.cache;
 
-import java.util.Iterator;
-import java.util.LinkedHashMap;
-import java.util.Map;
-
 import com.yahoo.cache.SizeCalculator;
 import com.yahoo.search.Result;
 import com.yahoo.statistics.Statistics;
@@ -14,6 +10,8 @@ import com.yahoo.statistics.Value;
  * <p>A generic cache which keeps the total memory consumed by its content
  * below a configured maximum.</p>
  *
+ * <p>This adds query cache statistics to the concurrent, segmented LRU cache in {@link com.yahoo.cache.Cache}.</p>
+ *
  * <p>Thread safe.</p>
  *
  * @author vegardh
@@ -22,14 +20,8 @@ public class Cache<K, V> {
     private Value elems = null;
     private Value entrySizes = null;
 
-    private Map<CacheKey<K>,CacheValue<K, V>> content=new LinkedHashMap<>(12500, 1.0f, true);
+    private final com.yahoo.cache.Cache<K, V> content;
     private SizeCalculator calc = new SizeCalculator();
-    private long maxSizeBytes;
-
-    private long currentSizeBytes=0;
-
-    /** The time an element is allowed to live, negative for indefinite lifespan */
-    private long timeToLiveMillis=-1;
 
     /** The max allowed size of an entry */
     private long maxEntrySizeBytes=10000;
@@ -43,8 +35,7 @@ public class Cache<K, V> {
      * @param manager the current Statistics manager acquired by injection
      */
     public Cache(long maxSizeBytes,long timeToLiveMillis, long maxEntrySizeBytes, Statistics manager) {
-        this.maxSizeBytes=maxSizeBytes;
-        this.timeToLiveMillis=timeToLiveMillis;
+        this.content = new com.yahoo.cache.Cache<>(maxSizeBytes, timeToLiveMillis, maxEntrySizeBytes);
         this.maxEntrySizeBytes=maxEntrySizeBytes;
         initStats(manager);
     }
@@ -57,26 +48,6 @@ public class Cache<K, V> {
                         .setNameExtension(true).setLogMax(true));
     }
 
-    private synchronized CacheValue<K, V> synchGet(CacheKey<K> k) {
-        return content.get(k);
-    }
-
-    private synchronized boolean synchPut(K key,V value, long keySizeBytes, long valueSizeBytes) {
-        // log.info("Put "+key.toString()+ " key size:"+keySizeBytes+" val size:"+valueSizeBytes);
-        makeRoomForBytes(valueSizeBytes+keySizeBytes);
-        CacheKey<K> cacheKey = new CacheKey<>(keySizeBytes, key);
-        CacheValue<K, V> cacheValue;
-        if (timeToLiveMillis<0) {
-            cacheValue=new CacheValue<>(valueSizeBytes,value, cacheKey);
-        } else {
-            cacheValue=new AgingCacheValue<>(valueSizeBytes,value, cacheKey);
-        }
-        currentSizeBytes+=(valueSizeBytes+keySizeBytes);
-        elems.put(content.size());
-        content.put(cacheKey, cacheValue);
-        return true;
-    }
-
     /**
      * Attempts to add a value to the cache
      *
@@ -85,81 +56,31 @@ public class Cache<K, V> {
      * @return true if the value was added, false if it could not be added
      */
     public boolean put(K key,V value) {
+        long totalSizeBytes;
         if (value instanceof Result) { // Optimized for CachingSearcher. Assuming the key is the Query.
-            long totalSizeBytes = calc.sizeOf(value); // Result has a Query field
-            if (tooBigToCache(totalSizeBytes)) {
-                return false;
-            }
-            entrySizes.put(totalSizeBytes);
-            return synchPut(key, value, 0, totalSizeBytes);
-        }
-        long keySizeBytes=calc.sizeOf(key);
-        long valueSizeBytes=calc.sizeOf(value);
-        if (tooBigToCache(keySizeBytes+valueSizeBytes)) {
-            return false;
-        }
-        entrySizes.put(keySizeBytes+valueSizeBytes);
-        return synchPut(key, value, keySizeBytes, valueSizeBytes);
-    }
-
-    /**
-     * Don't cache elems that are too big, even if there's space
-     */
-    private boolean tooBigToCache(long totalSize) {
-        if (totalSize > maxEntrySizeBytes) {
-            return true;
+            totalSizeBytes = calc.sizeOf(value); // Result has a Query field
         }
-        if (totalSize > maxSizeBytes) {
-            return true;
+        else {
+            totalSizeBytes = calc.sizeOf(key) + calc.sizeOf(value);
         }
-        return false;
-    }
-
-    private void makeRoomForBytes(long bytes) {
-        if ((maxSizeBytes-currentSizeBytes) > bytes) {
-                return;
-        }
-        if (content.isEmpty()) {
-            return;
+        if (totalSizeBytes > maxEntrySizeBytes) { // also when negative
+            return false;
         }
-        for (Iterator<Map.Entry<CacheKey<K>, CacheValue<K, V>>> i = content.entrySet().iterator() ; i.hasNext() ; ) {
-                Map.Entry<CacheKey<K>, CacheValue<K, V>> entry = i.next();
-            CacheKey<K> key = entry.getKey();
-            CacheValue<K, V> value = entry.getValue();
-            // Can't call this.removeField(), breaks iterator.
-            i.remove();  // Access order: first ones are LRU.
-            currentSizeBytes-=key.sizeBytes();
-            currentSizeBytes-=value.sizeBytes();
-            if ((maxSizeBytes-currentSizeBytes) > bytes) {
-                break;
-            }
+        if ( ! content.put(key, value, totalSizeBytes)) {
+            return false;
         }
+        entrySizes.put(totalSizeBytes);
+        elems.put(content.size());
+        return true;
     }
 
     public boolean containsKey(K k) {
-        return content.containsKey(new CacheKey<>(-1, k));
+        return content.containsKey(k);
     }
 
     /** Returns a value, if it is present in the cache */
     public V get(K key) {
-        // Currently it works to make a new CacheKey object without size
-        // because we have changed hashCode() there.
-        CacheKey<K> cacheKey = new CacheKey<>(-1, key);
-        CacheValue<K, V> value=synchGet(cacheKey);
-        if (value==null) {
-            return null;
-        }
-        if (timeToLiveMillis<0) {
-            return value.value();
-        }
-
-        if (value.expired(timeToLiveMillis)) {
-            //  There was a value, which has now expired
-            remove(key);
-            return null;
-        } else {
-            return value.value();
-        }
+        return content.get(key);
     }
 
     /**
@@ -167,13 +88,10 @@ public class Cache<K, V> {
      *
      * @return true if the value was removed, false if it was not present
      */
-    public synchronized boolean remove(K key) {
-        CacheValue<K, V> value=content.remove(key);
-        if (value==null) {
+    public boolean remove(K key) {
+        if ( ! content.remove(key)) {
             return false;
         }
-        currentSizeBytes-=value.sizeBytes();
-        currentSizeBytes-=value.getKey().sizeBytes();
         elems.put(content.size());
         return true;
     }
@@ -182,93 +100,4 @@ public class Cache<K, V> {
         return content.size();
     }
 
-    private static class CacheKey<K> {
-        private long sizeBytes;
-        private K key;
-        public CacheKey(long sizeBytes,K key) {
-                this.sizeBytes=sizeBytes;
-            this.key=key;
-        }
-
-        public long sizeBytes() {
-            return sizeBytes;
-        }
-
-        public K getKey() {
-            return key;
-        }
-
-        public int hashCode() {
-                return key.hashCode();
-        }
-
-        @SuppressWarnings("rawtypes")
-        public boolean equals(Object k) {
-                if (key==null) {
-                return false;
-            }
-            if (k==null) {
-                return false;
-            }
-            if (k instanceof CacheKey) {
-                return key.equals(((CacheKey)k).getKey());
-            }
-            return false;
-        }
-
-        public String toString() {
-            return key.toString();
-        }
-
-    }
-
-    private static class CacheValue<K, V> {
-        private long sizeBytes;
-        private V value;
-        private CacheKey<K> key;
-        public CacheValue(long sizeBytes, V value, CacheKey<K> key) {
-            this.sizeBytes=sizeBytes;
-            this.value=value;
-            this.key = key;
-        }
-
-        public boolean expired(long ttl) {
-            return false;
-        }
-
-        public V value() {
-            return value;
-        }
-
-        public long sizeBytes() {
-            return sizeBytes;
-        }
-
-        public CacheKey<K> getKey() {
-            return key;
-        }
-
-        public String toString() {
-            return value.toString();
-        }
-
-    }
-
-    private static class AgingCacheValue<K, V> extends CacheValue<K, V> {
-        private long birthTimeMillis;
-
-        public AgingCacheValue(long sizeBytes,V value, CacheKey<K> key) {
-            super(sizeBytes,value, key);
-            this.birthTimeMillis=System.currentTimeMillis();
-        }
-
-        public long ageMillis() {
-            return System.currentTimeMillis()-birthTimeMillis;
-        }
-
-        public boolean expired(long ttl) {
-            return (ageMillis() >= ttl);
-        }
-    }
-
 }
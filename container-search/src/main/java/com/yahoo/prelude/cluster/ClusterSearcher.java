@@ -13,6 +13,7 @@ import com.yahoo.container.handler.VipStatus;
 import com.yahoo.container.protect.Error;
 import com.yahoo.fs4.PacketDumper;
 import com.yahoo.fs4.mplex.Backend;
+import com.yahoo.jdisc.Metric;
 import com.yahoo.container.search.LegacyEmulationConfig;
 import com.yahoo.net.HostName;
 import com.yahoo.search.dispatch.Dispatcher;
@@ -30,6 +31,7 @@ import com.yahoo.prelude.fastsearch.VespaBackEndSearcher;
 import com.yahoo.search.Query;
 import com.yahoo.search.Result;
 import com.yahoo.search.Searcher;
+import com.yahoo.search.cache.ContentGeneration;
 import com.yahoo.search.config.ClusterConfig;
 import com.yahoo.search.query.ParameterParser;
 import com.yahoo.search.result.ErrorMessage;
@@ -43,8 +45,11 @@ import java.io.IOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -72,6 +77,12 @@ public class ClusterSearcher extends Searcher {
 
     private final String clusterModelName;
 
+    /** The generation of the content of this cluster, advanced when a backend reports a new docstamp */
+    private final ContentGeneration contentGeneration;
+
+    /** The docstamp last reported by each backend */
+    private final Map<VespaBackEndSearcher, Integer> docstamps = new ConcurrentHashMap<>();
+
     private final List<Backend> backends = new ArrayList<>();
 
     // The set of document types contained in this search cluster
@@ -90,6 +101,11 @@ public class ClusterSearcher extends Searcher {
     private final long maxQueryCacheTimeout; // in milliseconds
     private final static long DEFAULT_MAX_QUERY_CACHE_TIMEOUT = 10000L;
 
+    private final static long CACHE_METRICS_INTERVAL_MS = 10000L;
+
+    /** The task reporting packet cache metrics, or null if none */
+    private final ScheduledFuture<?> cacheMetricsReporter;
+
     /**
      * Creates a new ClusterSearcher.
      */
@@ -103,12 +119,15 @@ public class ClusterSearcher extends Searcher {
                            ClusterInfoConfig clusterInfoConfig,
                            Statistics manager,
                            FS4ResourcePool fs4ResourcePool,
-                           VipStatus vipStatus) {
+                           VipStatus vipStatus,
+                           Metric metric) {
         super(id);
         this.hasher = new Hasher();
         this.fs4ResourcePool = fs4ResourcePool;
 
-        Dispatcher dispatcher = new Dispatcher(dispatchConfig, fs4ResourcePool, clusterInfoConfig.nodeCount(), vipStatus);
+        contentGeneration = ContentGeneration.of(clusterConfig.clusterName());
+        Dispatcher dispatcher = new Dispatcher(dispatchConfig, fs4ResourcePool, clusterInfoConfig.nodeCount(), vipStatus,
+                                               contentGeneration);
 
         if (dispatcher.searchCluster().directDispatchTarget().isPresent()) // dispatcher should decide vip status instead
             monitor = new ClusterMonitor(this, monitorConfig, Optional.empty());
@@ -129,7 +148,8 @@ public class ClusterSearcher extends Searcher {
         maxQueryCacheTimeout = ParameterParser.asMilliSeconds(clusterConfig.maxQueryCacheTimeout(),
                                                               DEFAULT_MAX_QUERY_CACHE_TIMEOUT);
 
-        CacheParams cacheParams = new CacheParams(createCache(clusterConfig, clusterModelName));
+        CacheControl cacheControl = createCache(clusterConfig, clusterModelName);
+        CacheParams cacheParams = new CacheParams(cacheControl);
         SummaryParameters docSumParams = new SummaryParameters(qrsConfig
                 .com().yahoo().prelude().fastsearch().FastSearcher().docsum()
                 .defaultclass());
@@ -174,6 +194,11 @@ public class ClusterSearcher extends Searcher {
         hasher.running = true;
         monitor.freeze();
         monitor.startPingThread();
+
+        Metric.Context cacheMetricContext = metric.createContext(Collections.singletonMap("cluster", clusterModelName));
+        cacheMetricsReporter = getScheduledExecutor().scheduleAtFixedRate(() -> cacheControl.reportMetrics(metric, cacheMetricContext),
+                                                                         CACHE_METRICS_INTERVAL_MS, CACHE_METRICS_INTERVAL_MS,
+                                                                         TimeUnit.MILLISECONDS);
     }
 
     private static QrSearchersConfig.Searchcluster getSearchClusterConfigFromClusterName(QrSearchersConfig config, String name) {
@@ -249,9 +274,11 @@ public class ClusterSearcher extends Searcher {
         cacheHitRatio = new Value("com.yahoo.prelude.cluster.ClusterSearcher.ClusterSearcher().dummy",
                                   Statistics.nullImplementation, new Value.Parameters());
         clusterModelName = "testScenario";
+        contentGeneration = ContentGeneration.of(clusterModelName);
         fs4ResourcePool = null;
         maxQueryTimeout = DEFAULT_MAX_QUERY_TIMEOUT;
         maxQueryCacheTimeout = DEFAULT_MAX_QUERY_CACHE_TIMEOUT;
+        cacheMetricsReporter = null;
     }
 
     public Map<String, Backend.BackendStatistics> getBackendStatistics() {
@@ -574,10 +601,18 @@ public class ClusterSearcher extends Searcher {
         } else if (pong.badResponse()) {
             monitor.failed(node, pong.getError(0));
         } else {
+            updateDocstamp(node, pong);
             monitor.responded(node, backendCanServeDocuments(pong));
         }
     }
 
+    private void updateDocstamp(VespaBackEndSearcher node, Pong pong) {
+        if ( ! pong.docstamp().isPresent()) return;
+        Integer previous = docstamps.put(node, pong.docstamp().get());
+        if (previous != null && ! previous.equals(pong.docstamp().get()))
+            contentGeneration.advance();
+    }
+
     private boolean backendCanServeDocuments(Pong pong) {
         if ( ! pong.activeNodes().isPresent()) return true; // no information; assume true
         return pong.activeNodes().get() > 0;
@@ -591,6 +626,9 @@ public class ClusterSearcher extends Searcher {
 
     @Override
     public void deconstruct() {
+        if (cacheMetricsReporter != null) {
+            cacheMetricsReporter.cancel(false);
+        }
         try {
             monitor.shutdown();
         } catch (final InterruptedException e) {
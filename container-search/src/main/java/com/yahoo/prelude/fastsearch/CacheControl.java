@@ -3,14 +3,23 @@ package com.yahoo.prelude.fastsearch;
 
 
 import com.yahoo.fs4.Packet;
-import com.yahoo.fs4.QueryPacket;
 import com.yahoo.fs4.QueryResultPacket;
+import com.yahoo.jdisc.Metric;
 import com.yahoo.search.Query;
 import com.yahoo.processing.request.CompoundName;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
 
 /**
- * The cache control logic for FastSearcher
+ * The cache control logic for FastSearcher.
+ * <p>
+ * Concurrent misses on the same key may be coalesced such that only one of them is fetched
+ * from the backend while the others wait for it to be cached, see {@link #startFetch}.
  *
  * @author  <a href="mailto:steinar@yahoo-inc.com">Steinar Knutsen</a>
  */
@@ -18,12 +27,27 @@ public class CacheControl {
 
     private static final CompoundName nocachewrite=new CompoundName("nocachewrite");
 
+    private static final String HITS_METRIC = "packet_cache_hits";
+    private static final String MISSES_METRIC = "packet_cache_misses";
+    private static final String COALESCED_MISSES_METRIC = "packet_cache_coalesced_misses";
+    private static final String EVICTIONS_METRIC = "packet_cache_evictions";
+    private static final String BYTES_METRIC = "packet_cache_bytes";
+
     /** Whether this CacheControl actually should cache hits at all. */
     private final boolean activeCache;
 
-    /** Direct unsychronized cache access */
     private final PacketCache packetCache;
 
+    /** The fetches from the backend in progress which other lookups of the same key may wait for */
+    private final Map<CacheKey, CountDownLatch> fetchesInProgress = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong coalescedMisses = new AtomicLong();
+
+    /** The counter values at the last metric report, guarded by this */
+    private long reportedHits = 0, reportedMisses = 0, reportedCoalescedMisses = 0, reportedEvictions = 0;
+
     public CacheControl(int sizeMegaBytes, double cacheTimeOutSeconds) {
         activeCache = sizeMegaBytes > 0 && cacheTimeOutSeconds > 0.0d;
         if (activeCache) {
@@ -42,22 +66,68 @@ public class CacheControl {
         return (activeCache && !query.getNoCache());
     }
 
+    /** Returns the cached packets of the given key, or null if none, and counts this as a cache hit or miss */
     public final PacketWrapper lookup(CacheKey key, Query query) {
+        PacketWrapper wrapper = peek(key, query);
+        if ((key != null) && useCache(query)) {
+            (wrapper != null ? hits : misses).incrementAndGet();
+        }
+        return wrapper;
+    }
+
+    /** Returns the cached packets of the given key, or null if none, without counting this as a cache hit or miss */
+    final PacketWrapper peek(CacheKey key, Query query) {
         if ((key != null) && useCache(query)) {
-            long now = System.currentTimeMillis();
-            synchronized (packetCache) {
-                return packetCache.get(key, now);
-            }
+            return packetCache.get(key, System.currentTimeMillis());
         }
         return null;
     }
 
+    /**
+     * Registers that the caller is about to fetch the given key from the backend after a cache miss,
+     * unless another fetch of the same key is already in progress.
+     * If this returns null, the caller must call {@link #endFetch} when the fetch is complete.
+     * Otherwise the caller should wait for the fetch in progress by calling {@link #awaitFetch}
+     * with the returned latch, and then look up the key again.
+     *
+     * @return null if the caller should fetch, or the latch of the fetch already in progress
+     */
+    CountDownLatch startFetch(CacheKey key) {
+        CountDownLatch fetch = new CountDownLatch(1);
+        CountDownLatch fetchInProgress = fetchesInProgress.putIfAbsent(key, fetch);
+        if (fetchInProgress != null)
+            coalescedMisses.incrementAndGet();
+        return fetchInProgress;
+    }
+
+    /** Marks a fetch started by {@link #startFetch} as completed, whether it succeeded or not */
+    void endFetch(CacheKey key) {
+        CountDownLatch fetch = fetchesInProgress.remove(key);
+        if (fetch != null)
+            fetch.countDown();
+    }
+
+    /**
+     * Waits for a fetch in progress to complete
+     *
+     * @return true if the fetch completed, false if it did not complete within the given time or we were interrupted
+     */
+    boolean awaitFetch(CountDownLatch fetch, long timeoutMillis) {
+        try {
+            return fetch.await(timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
     // updates first phase in multi phase search
     void updateCacheEntry(CacheKey key, Query query, QueryResultPacket resultPacket) {
         long oldTimestamp;
         if (!activeCache) return;
 
-        PacketWrapper wrapper = lookup(key, query);
+        PacketWrapper wrapper = peek(key, query);
         if (wrapper == null) return;
 
         // The timestamp is owned by the QueryResultPacket, this is why this
@@ -65,23 +135,19 @@ public class CacheControl {
         oldTimestamp = wrapper.getTimestamp();
         wrapper = (PacketWrapper) wrapper.clone();
         wrapper.addResultPacket(resultPacket);
-        synchronized (packetCache) {
-            packetCache.put(key, wrapper, oldTimestamp);
-        }
+        packetCache.put(key, wrapper, oldTimestamp);
     }
 
     // updates phases after first phase phase in multi phase search
     void updateCacheEntry(CacheKey key, Query query, DocsumPacketKey[] packetKeys, Packet[] packets) {
         if (!activeCache) return;
 
-        PacketWrapper wrapper = lookup(key, query);
+        PacketWrapper wrapper = peek(key, query);
         if (wrapper== null) return;
 
         wrapper = (PacketWrapper) wrapper.clone();
         wrapper.addDocsums(packetKeys, packets);
-        synchronized (packetCache) {
-            packetCache.put(key, wrapper, wrapper.getTimestamp());
-        }
+        packetCache.put(key, wrapper, wrapper.getTimestamp());
     }
 
     void cache(CacheKey key, Query query, DocsumPacketKey[] packetKeys, Packet[] packets) {
@@ -90,23 +156,38 @@ public class CacheControl {
         if (query.getNoCache()) return;
         if (query.properties().getBoolean(nocachewrite)) return;
 
-        PacketWrapper wrapper = lookup(key, query);
+        PacketWrapper wrapper = peek(key, query);
         if (wrapper == null) {
             wrapper = new PacketWrapper(key, packetKeys,packets);
-            long now = System.currentTimeMillis();
-            synchronized (packetCache) {
-                packetCache.put(key, wrapper, now);
-            }
+            packetCache.put(key, wrapper, System.currentTimeMillis());
         } else {
             wrapper = (PacketWrapper) wrapper.clone();
             wrapper.addResultPacket((QueryResultPacket) packets[0]);
             wrapper.addDocsums(packetKeys, packets, 1);
-            synchronized (packetCache) {
-                packetCache.put(key, wrapper, wrapper.getTimestamp());
-            }
+            packetCache.put(key, wrapper, wrapper.getTimestamp());
         }
     }
 
+    /**
+     * Reports the hits, misses, coalesced misses and evictions of the packet cache since the last call to this,
+     * and the number of bytes currently used by it
+     */
+    public synchronized void reportMetrics(Metric metric, Metric.Context context) {
+        if (packetCache == null) return;
+
+        long currentHits = hits.get(), currentMisses = misses.get();
+        long currentCoalescedMisses = coalescedMisses.get(), currentEvictions = packetCache.getEvictionCount();
+        metric.add(HITS_METRIC, currentHits - reportedHits, context);
+        metric.add(MISSES_METRIC, currentMisses - reportedMisses, context);
+        metric.add(COALESCED_MISSES_METRIC, currentCoalescedMisses - reportedCoalescedMisses, context);
+        metric.add(EVICTIONS_METRIC, currentEvictions - reportedEvictions, context);
+        metric.set(BYTES_METRIC, packetCache.totalPacketSize(), context);
+        reportedHits = currentHits;
+        reportedMisses = currentMisses;
+        reportedCoalescedMisses = currentCoalescedMisses;
+        reportedEvictions = currentEvictions;
+    }
+
     /** Test method. */
     public void clear() {
         if (packetCache != null) {
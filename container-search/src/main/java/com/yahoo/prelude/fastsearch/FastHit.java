@@ -51,6 +51,9 @@ public class FastHit extends Hit {
     /** Whether to use the row number in the index uri, see FastSearcher for details */
     private boolean useRowInIndexUri = true;
 
+    /** Whether some string fields may still be stored as UTF-8 from the docsum */
+    private boolean hasLazyStrings = false;
+
     private transient QueryPacketData queryPacketData = null;
     private transient CacheKey cacheKey = null;
 
@@ -238,6 +241,19 @@ public class FastHit extends Hit {
         }
     }
 
+    /** Decodes the string fields which are kept as UTF-8, such that users of the field map only see Strings */
+    @Override
+    protected void resolveFieldValues() {
+        if ( ! hasLazyStrings) return;
+        for (String key : fieldKeys()) {
+            Object value = super.getField(key);
+            if (value instanceof LazyString) {
+                getAndCacheLazyValue(key, (LazyString) value);
+            }
+        }
+        hasLazyStrings = false;
+    }
+
     private Object getAndCacheLazyValue(String key, LazyValue value) {
         Object forcedValue = value.getValue(key);
         setField(key, forcedValue);
@@ -281,10 +297,13 @@ public class FastHit extends Hit {
             String fieldName = field.getName();
             if (value.type() == Type.STRING &&
                 (field instanceof LongstringField || field instanceof StringField || field instanceof XMLField)) {
-                setDocsumFieldIfNotPresent(fieldName, new LazyString(field, value));
+                setLazyStringFieldIfNotPresent(fieldName, new LazyString(field, value));
             } else {
                 Inspector f = value.field(fieldName);
-                if (field.getEmulConfig().forceFillEmptyFields() || f.valid()) {
+                if (f.type() == Type.STRING && (field instanceof LongstringField || field instanceof StringField)) {
+                    // keep the UTF-8 from the docsum, to be rendered without going through a Java String
+                    setLazyStringFieldIfNotPresent(fieldName, new LazyString(field, f));
+                } else if (field.getEmulConfig().forceFillEmptyFields() || f.valid()) {
                     setDocsumFieldIfNotPresent(fieldName, field.convert(f));
                 }
             }
@@ -297,6 +316,13 @@ public class FastHit extends Hit {
         }
     }
 
+    private void setLazyStringFieldIfNotPresent(String fieldName, LazyString value) {
+        if (super.getField(fieldName) == null) {
+            setField(fieldName, value);
+            hasLazyStrings = true;
+        }
+    }
+
     /**
      * Set a field to behave like a string type summary field, not decoding raw
      * data till actually used. Added to make testing lazy docsum functionality
@@ -311,6 +337,7 @@ public class FastHit extends Hit {
     @Beta
     public void setLazyStringField(String fieldName, byte[] value) {
         setField(fieldName, new LazyString(new StringField(fieldName), new StringValue(value)));
+        hasLazyStrings = true;
     }
 
     /**
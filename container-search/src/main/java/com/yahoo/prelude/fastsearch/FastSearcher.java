@@ -56,6 +56,15 @@ public class FastSearcher extends VespaBackEndSearcher {
     /** If this is turned on this will make search queries directly to the local search node when possible */
     private final static CompoundName dispatchDirect = new CompoundName("dispatch.direct");
 
+    /**
+     * If this is turned on this will make search queries directly to the search node expected to respond fastest,
+     * when every search node has the entire corpus
+     */
+    private final static CompoundName dispatchBalanced = new CompoundName("dispatch.balanced");
+
+    /** The search node a query was dispatched to directly, if any, such that its summaries are fetched from the same node */
+    private final static CompoundName searchedNode = new CompoundName("dispatch.searchedNode");
+
     /** The compression method which will be used with rpc dispatch. "lz4" (default) and "none" is supported. */
     private final static CompoundName dispatchCompression = new CompoundName("dispatch.compression");
 
@@ -166,15 +175,24 @@ public class FastSearcher extends VespaBackEndSearcher {
         QueryRewrite.rewriteSddocname(query);
     }
 
+    @Override
+    protected boolean cachesSearchResults() { return true; }
+
     @Override
     public Result doSearch2(Query query, QueryPacket queryPacket, CacheKey cacheKey, Execution execution) {
         FS4Channel channel = null;
+        Optional<SearchCluster.Node> node = Optional.empty();
+        long startTime = 0;
         try {
             if (dispatcher.searchCluster().groupSize() == 1)
                 forceSinglePassGrouping(query);
-            channel = chooseBackend(query).openChannel();
+            node = chooseNode(query);
+            query.properties().set(searchedNode, node);
+            channel = toBackend(node).openChannel();
             channel.setQuery(query);
 
+            startTime = System.currentTimeMillis();
+            node.ifPresent(SearchCluster.Node::startRequest);
             Result result = searchTwoPhase(channel, query, queryPacket, cacheKey);
 
             if (query.properties().getBoolean(Ranking.RANKFEATURES, false)) {
@@ -198,6 +216,10 @@ public class FastSearcher extends VespaBackEndSearcher {
         } finally {
             if (channel != null)
                 channel.close();
+            if (node.isPresent() && startTime != 0) {
+                long now = System.currentTimeMillis();
+                node.get().endRequest(now - startTime, now);
+            }
         }
     }
     
@@ -214,26 +236,45 @@ public class FastSearcher extends VespaBackEndSearcher {
     }
 
     /**
-     * Returns the backend object to issue a search request over.
-     * Normally this is the backend field of this instance, which connects to the dispatch node this talk to
-     * (which is why this instance was chosen by the cluster controller). However, when certain conditions obtain
-     * (see below), we will instead return a backend instance which connects directly to the local search node
-     * for efficiency.
+     * Returns the search node to issue a search request to directly, or empty to use the dispatch node
+     * this talks to (which is why this instance was chosen by the cluster controller).
+     * When certain conditions obtain (see below), we will dispatch directly to a search node for efficiency:
+     * Either to the local search node, or to the search node which is currently expected to respond fastest.
      */
-    private Backend chooseBackend(Query query) {
+    private Optional<SearchCluster.Node> chooseNode(Query query) {
+        if (query.properties().getBoolean(dispatchBalanced, false) && dispatcher.searchCluster().groupSize() == 1) {
+            Optional<SearchCluster.Group> group = dispatcher.searchCluster().selectGroup();
+            if (group.isPresent()) {
+                query.trace(false, 2, "Dispatching to ", group.get().nodes().get(0));
+                return Optional.of(group.get().nodes().get(0));
+            }
+        }
+
         // TODO 2016-08-16: Turn this on by default (by changing the 'false' below to 'true')
-        if ( ! query.properties().getBoolean(dispatchDirect, false)) return dispatchBackend;
+        if ( ! query.properties().getBoolean(dispatchDirect, false)) return Optional.empty();
 
         // Don't use direct dispatch if the upstream ClusterSearcher did not chose the local dispatch
         // as that probably means that we are in a failover situation
-        if ( ! dispatchBackend.getHost().equals(selfHostname)) return dispatchBackend;
+        if ( ! dispatchBackend.getHost().equals(selfHostname)) return Optional.empty();
 
         Optional<SearchCluster.Node> directDispatchRecipient = dispatcher.searchCluster().directDispatchTarget();
-        if ( ! directDispatchRecipient.isPresent()) return dispatchBackend;
+        if ( ! directDispatchRecipient.isPresent()) return Optional.empty();
 
         query.trace(false, 2, "Dispatching directly to ", directDispatchRecipient.get());
-        return fs4ResourcePool.getBackend(directDispatchRecipient.get().hostname(), 
-                                          directDispatchRecipient.get().fs4port());
+        return directDispatchRecipient;
+    }
+
+    /** Returns the search node the given query was searched on, or chooses one if it was not searched by this */
+    private Optional<SearchCluster.Node> searchedNode(Query query) {
+        Object node = query.properties().get(searchedNode);
+        if ( ! (node instanceof Optional)) return chooseNode(query);
+        return ((Optional<?>)node).filter(SearchCluster.Node.class::isInstance).map(SearchCluster.Node.class::cast);
+    }
+
+    /** Returns the backend object to issue a request to the given search node over, or to the dispatch node if empty */
+    private Backend toBackend(Optional<SearchCluster.Node> node) {
+        if ( ! node.isPresent()) return dispatchBackend;
+        return fs4ResourcePool.getBackend(node.get().hostname(), node.get().fs4port());
     }
 
     /**
@@ -281,9 +322,12 @@ public class FastSearcher extends VespaBackEndSearcher {
             packetWrapper = cacheLookupTwoPhase(cacheKey, result,summaryClass);
         }
 
-        FS4Channel channel = chooseBackend(query).openChannel();
+        Optional<SearchCluster.Node> node = searchedNode(query);
+        FS4Channel channel = toBackend(node).openChannel();
         channel.setQuery(query);
         Packet[] receivedPackets;
+        long startTime = System.currentTimeMillis();
+        node.ifPresent(SearchCluster.Node::startRequest);
         try {
             DocsumPacketKey[] packetKeys;
 
@@ -350,6 +394,10 @@ public class FastSearcher extends VespaBackEndSearcher {
             }
         } finally {
             channel.close();
+            if (node.isPresent()) {
+                long now = System.currentTimeMillis();
+                node.get().endRequest(now - startTime, now);
+            }
         }
     }
 
@@ -420,7 +468,7 @@ public class FastSearcher extends VespaBackEndSearcher {
 
         addUnfilledHits(result, resultPacket.getDocuments(), false, queryPacket.getQueryPacketData(), cacheKey);
         Packet[] packets;
-        PacketWrapper packetWrapper = cacheControl.lookup(cacheKey, query);
+        PacketWrapper packetWrapper = cacheControl.peek(cacheKey, query);
 
         if (packetWrapper != null) {
             cacheControl.updateCacheEntry(cacheKey, query, resultPacket);
@@ -4,50 +4,52 @@ package com.yahoo.prelude.fastsearch;
 
 import java.util.Iterator;
 import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
 import com.yahoo.log.LogLevel;
 
 
 /**
- * An LRU cache using number of hits cached inside the results as
+ * An LRU cache using number of bytes of the packets cached as
  * size limiting factor. Directly modelled after com.yahoo.collections.Cache.
+ * <p>
+ * The content is split into shards by key hash, each with its own lock, access order and
+ * an equal part of the byte capacity, such that concurrent lookups of different keys
+ * mostly do not contend. Small caches use a single shard, which makes this an exact LRU cache.
+ * <p>
+ * Thread safe.
  *
  * @author  <a href="mailto:steinar@yahoo-inc.com">Steinar Knutsen</a>
  * @author  bratseth
  */
-public class PacketCache extends LinkedHashMap<CacheKey, PacketWrapper> {
+public class PacketCache {
 
-    private static final long serialVersionUID = -7403077211906108356L;
+    /** The max number of shards to split a cache into */
+    private static final int maxShards = 16;
+
+    /** The min number of bytes of each shard of a cache split into multiple shards */
+    private static final int minShardCapacity = 1 << 20;
+
+    private final Shard[] shards;
 
     /** The <i>current</i> number of bytes of packets in this cache */
-    private int totalSize;
+    private final AtomicLong totalSize = new AtomicLong();
+
+    /** The number of entries removed to make room for others since this was created */
+    private final AtomicLong evictions = new AtomicLong();
 
     /** The maximum number of bytes of packets in this cache */
     private final int capacity;
 
     /** The max size of a cached item compared to the total size */
-    private int maxCacheItemPercentage = 1;
+    private volatile int maxCacheItemPercentage = 1;
 
     /** The max age for a valid cache entry, 0 mean infinite */
     private final long maxAge;
 
     private static final Logger log = Logger.getLogger(PacketCache.class.getName());
 
-    public void clear() {
-        super.clear();
-        totalSize = 0;
-    }
-
-    /**
-     * Sets the max size of a cached item compared to the total size
-     * Cache requests for larger objects will be ignored
-     */
-    public void setMaxCacheItemPercentage(int maxCapacityPercentage) {
-        maxCacheItemPercentage = maxCapacityPercentage;
-    }
-
     /**
      * Creates a cache with a size given by
      * cachesizemegabytes*2^20+cachesizebytes
@@ -57,9 +59,6 @@ public class PacketCache extends LinkedHashMap<CacheKey, PacketWrapper> {
      * @param maxAge seconds a cache entry is valid, 0 or less are illegal arguments
      */
     public PacketCache(int capacityMegaBytes,int capacityBytes,double maxAge) {
-        // hardcoded inital entry capacity, won't matter much anyway
-        // after a while
-        super(12500, 1.0f, true);
         if (maxAge <= 0.0d) {
             throw new IllegalArgumentException("maxAge <= 0 not legal on 5.1, use some very large number for no timeout.");
         }
@@ -73,32 +72,23 @@ public class PacketCache extends LinkedHashMap<CacheKey, PacketWrapper> {
             throw new IllegalArgumentException("Total cache size set to 0 or less bytes. If no caching is desired, avoid creating this object instead.");
         }
         this.maxAge = (long) (maxAge * 1000.0d);
+
+        int shardCount = 1;
+        while (shardCount < maxShards && capacity / (shardCount * 2) >= minShardCapacity)
+            shardCount *= 2;
+        shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++)
+            // hardcoded inital entry capacity, won't matter much anyway
+            // after a while
+            shards[i] = new Shard(capacity / shardCount + (i == 0 ? capacity % shardCount : 0), 12500 / shardCount);
     }
 
     /**
-     * Overrides LinkedHashMap.removeEldestEntry as suggested to implement LRU cache.
+     * Sets the max size of a cached item compared to the total size.
+     * Cache requests for larger objects, or objects larger than the shard of the cache they belong in, will be ignored
      */
-    protected boolean removeEldestEntry(Map.Entry<CacheKey, PacketWrapper> eldest)
-    {
-        if (totalSize > capacity) {
-            totalSize -= eldest.getValue().getPacketsSize();
-            return true;
-        }
-        return false;
-    }
-
-    private void removeOverflow() {
-        if (totalSize < capacity) return;
-
-        for (Iterator<PacketWrapper> i = values().iterator(); i.hasNext();) {
-            PacketWrapper eldestEntry = i.next();
-            totalSize -= eldestEntry.getPacketsSize();
-
-            i.remove();
-            if (totalSize < capacity) {
-                break;
-            }
-        }
+    public void setMaxCacheItemPercentage(int maxCapacityPercentage) {
+        maxCacheItemPercentage = maxCapacityPercentage;
     }
 
     public int getCapacity() {
@@ -111,7 +101,7 @@ public class PacketCache extends LinkedHashMap<CacheKey, PacketWrapper> {
 
     /**
      * Adds a PacketWrapper object to this cache,
-     * unless the size is more than maxCacheItemPercentage of the total size
+     * unless the size is more than maxCacheItemPercentage of the total size, or larger than its shard
      */
     public PacketWrapper put(CacheKey key, PacketWrapper value) {
         return put(key, value, System.currentTimeMillis());
@@ -119,7 +109,7 @@ public class PacketCache extends LinkedHashMap<CacheKey, PacketWrapper> {
 
     /**
      * Adds a BasicPacket array to this cache,
-     * unless the size is more than maxCacheItemPercentage of the total size
+     * unless the size is more than maxCacheItemPercentage of the total size, or larger than its shard
      *
      * @param timestamp the timestamp for the first packet in the array,
      * unit milliseconds
@@ -131,22 +121,17 @@ public class PacketCache extends LinkedHashMap<CacheKey, PacketWrapper> {
             result.setTimestamp(timestamp);
         }
 
-        // don't insert if it is too big
-        if (size * 100 > capacity * maxCacheItemPercentage) {
+        Shard shard = shardOf(key);
+
+        // don't insert if it is too big, or does not fit in the shard it belongs in
+        if ((long)size * 100 > (long)capacity * maxCacheItemPercentage || size > shard.capacity) {
             // removeField the old one since that is now stale.
             return remove(key);
         }
 
-        totalSize += size;
-        PacketWrapper previous = super.put(key, result);
-        if (previous != null) {
-            totalSize -= previous.getPacketsSize();
-        }
-        if (totalSize > (capacity * 1.1)) {
-            removeOverflow();
+        synchronized (shard) {
+            return shard.put(key, result, size);
         }
-
-        return previous;
     }
 
     public PacketWrapper get(CacheKey key) {
@@ -154,33 +139,122 @@ public class PacketCache extends LinkedHashMap<CacheKey, PacketWrapper> {
     }
 
     public PacketWrapper get(CacheKey key, long now) {
-        PacketWrapper result = super.get(key);
+        Shard shard = shardOf(key);
+        synchronized (shard) {
+            PacketWrapper result = shard.get(key);
 
-        if (result == null) {
-            return result;
-        }
+            if (result == null) {
+                return result;
+            }
 
-        long timestamp = result.getTimestamp();
+            long timestamp = result.getTimestamp();
 
-        if ((now - timestamp) > maxAge) {
-            remove(key);
-            return null;
-        } else {
-            return result;
+            if ((now - timestamp) > maxAge) {
+                shard.remove(key);
+                return null;
+            } else {
+                return result;
+            }
         }
     }
 
     public PacketWrapper remove(CacheKey key) {
-        PacketWrapper removed = super.remove(key);
+        Shard shard = shardOf(key);
+        synchronized (shard) {
+            return shard.remove(key);
+        }
+    }
 
-        if (removed != null) {
-            totalSize -= removed.getPacketsSize();
+    public void clear() {
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                shard.clear();
+            }
+        }
+    }
+
+    /** Returns the number of entries in this cache */
+    public int size() {
+        int size = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                size += shard.size();
+            }
         }
-        return removed;
+        return size;
     }
 
     public int totalPacketSize() {
-        return totalSize;
+        return (int) totalSize.get();
+    }
+
+    /** Returns the number of entries removed to make room for others since this was created */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    private Shard shardOf(CacheKey key) {
+        int hash = key.hashCode();
+        return shards[(hash ^ (hash >>> 16)) & (shards.length - 1)];
+    }
+
+    /** An access ordered part of the cache. All access must be synchronized on the shard. */
+    private class Shard extends LinkedHashMap<CacheKey, PacketWrapper> {
+
+        private static final long serialVersionUID = -7403077211906108356L;
+
+        /** The maximum number of bytes of packets in this shard */
+        private final int capacity;
+
+        /** The <i>current</i> number of bytes of packets in this shard */
+        private int bytes = 0;
+
+        Shard(int capacity, int initialEntryCapacity) {
+            super(initialEntryCapacity, 1.0f, true);
+            this.capacity = capacity;
+        }
+
+        PacketWrapper put(CacheKey key, PacketWrapper value, int valueSize) {
+            addSize(valueSize);
+            PacketWrapper previous = super.put(key, value);
+            if (previous != null) {
+                addSize(-previous.getPacketsSize());
+            }
+            removeOverflow();
+            return previous;
+        }
+
+        /** Removes the least recently used entries until the packets of this fits in its capacity */
+        private void removeOverflow() {
+            for (Iterator<PacketWrapper> i = values().iterator(); bytes > capacity && i.hasNext();) {
+                PacketWrapper eldestEntry = i.next();
+                addSize(-eldestEntry.getPacketsSize());
+                i.remove();
+                evictions.incrementAndGet();
+            }
+        }
+
+        @Override
+        public PacketWrapper remove(Object key) {
+            PacketWrapper removed = super.remove(key);
+
+            if (removed != null) {
+                addSize(-removed.getPacketsSize());
+            }
+            return removed;
+        }
+
+        @Override
+        public void clear() {
+            super.clear();
+            addSize(-bytes);
+        }
+
+        private void addSize(int delta) {
+            bytes += delta;
+            totalSize.addAndGet(delta);
+        }
+
     }
 
 }
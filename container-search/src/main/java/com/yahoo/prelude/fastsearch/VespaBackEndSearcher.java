@@ -42,6 +42,7 @@ import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 import java.util.logging.Level;
 
 
@@ -112,6 +113,13 @@ public abstract class VespaBackEndSearcher extends PingableSearcher {
 
     protected abstract void doPartialFill(Result result, String summaryClass);
 
+    /**
+     * Returns whether {@link #doSearch2} adds the results it receives to the packet cache,
+     * such that concurrent searches which miss the cache for the same key may wait for the first one instead
+     * of also searching the backend. This default implementation returns false.
+     */
+    protected boolean cachesSearchResults() { return false; }
+
     protected static boolean wantsRPCSummaryFill(Query query) {
         return query.properties().getBoolean(dispatchSummaries);
     }
@@ -257,7 +265,8 @@ public abstract class VespaBackEndSearcher extends PingableSearcher {
         }
 
         if (result == null) {
-            result = doSearch2(query, queryPacket, cacheKey, execution);
+            result = cacheKey != null && cachesSearchResults() ? fetchCoalesced(query, queryPacket, cacheKey, execution)
+                                                               : doSearch2(query, queryPacket, cacheKey, execution);
             if (isLoggingFine())
                 getLogger().fine("Result NOT retrieved from cache");
 
@@ -268,6 +277,32 @@ public abstract class VespaBackEndSearcher extends PingableSearcher {
         return result;
     }
 
+    /**
+     * Searches the backend after a cache miss. If a search for the same cache key is already in progress,
+     * this waits for it to complete and returns the result it cached instead, such that concurrent
+     * identical queries only reach the backend once. If it does not complete within the time left of the query,
+     * this returns a timeout error rather than searching the backend with no time left.
+     */
+    private Result fetchCoalesced(Query query, QueryPacket queryPacket, CacheKey cacheKey, Execution execution) {
+        CountDownLatch fetchInProgress = cacheControl.startFetch(cacheKey);
+        if (fetchInProgress == null) {
+            try {
+                return doSearch2(query, queryPacket, cacheKey, execution);
+            }
+            finally {
+                cacheControl.endFetch(cacheKey);
+            }
+        }
+
+        if ( ! cacheControl.awaitFetch(fetchInProgress, query.getTimeLeft()))
+            return new Result(query, ErrorMessage.createTimeout("Timeout while waiting for an identical query to " + getName()));
+
+        Result result = getCached(cacheKey, queryPacket.getQueryPacketData(), query);
+        if (result != null) return result;
+        // The other search failed or was not cacheable: Search ourselves
+        return doSearch2(query, queryPacket, cacheKey, execution);
+    }
+
     /**
      * Returns a cached result, or null if no result was cached for this key
      *
@@ -277,6 +277,8 @@ public class StatisticsSearcher extends Searcher {
                 metric.add("error.result_with_errors", 1, c);
             } else if (code == UNSPECIFIED.code) {
                 metric.add("error.unspecified", 1, c);
+            } else if (code == TOO_MANY_PENDING.code) {
+                metric.add("error.too_many_pending", 1, c);
             }
         }
     }
@@ -0,0 +1,50 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.cache;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The generation of the content of a content cluster, as seen by this container. This is advanced whenever
+ * a search node of the cluster reports in a pong that its content has changed, which makes the results
+ * from that cluster cached before that stale.
+ * This class is multithread safe.
+ */
+public final class ContentGeneration {
+
+    /** The generations of the clusters known to this container, by cluster name */
+    private static final Map<String, ContentGeneration> generations = new ConcurrentSkipListMap<>();
+
+    private final String clusterName;
+    private final AtomicLong generation = new AtomicLong(0);
+
+    private ContentGeneration(String clusterName) {
+        this.clusterName = clusterName;
+    }
+
+    /** Returns the content generation of the cluster with the given name */
+    public static ContentGeneration of(String clusterName) {
+        return generations.computeIfAbsent(clusterName, ContentGeneration::new);
+    }
+
+    /** Returns the content generations of all clusters known to this container, ordered by cluster name */
+    public static Collection<ContentGeneration> all() {
+        return Collections.unmodifiableCollection(generations.values());
+    }
+
+    /** Returns the name of the cluster having this generation */
+    public String clusterName() { return clusterName; }
+
+    /** Returns the current content generation of this cluster */
+    public long current() { return generation.get(); }
+
+    /** Advances the content generation of this cluster, invalidating the results cached at earlier generations */
+    public void advance() { generation.incrementAndGet(); }
+
+    @Override
+    public String toString() { return clusterName + ":" + generation.get(); }
+
+}
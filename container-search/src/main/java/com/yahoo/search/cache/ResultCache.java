@@ -0,0 +1,79 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.cache;
+
+import com.yahoo.search.Result;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded LRU cache of results, where each entry expires at a given time.
+ * This class is multithread safe.
+ */
+final class ResultCache {
+
+    private final EntryMap entries;
+
+    private long hits = 0;
+    private long misses = 0;
+
+    ResultCache(int maxEntries) {
+        this.entries = new EntryMap(maxEntries);
+    }
+
+    /** Returns the result cached for the given key, or null if there is no such result, or it has expired */
+    synchronized Result get(String key, long nowMillis) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.expiresAtMillis <= nowMillis) {
+            entries.remove(key);
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.result;
+    }
+
+    /** Caches a result until the given time */
+    synchronized void put(String key, Result result, long expiresAtMillis) {
+        entries.put(key, new Entry(result, expiresAtMillis));
+    }
+
+    synchronized int size() { return entries.size(); }
+
+    synchronized long getHits() { return hits; }
+
+    synchronized long getMisses() { return misses; }
+
+    private static final class Entry {
+
+        final Result result;
+        final long expiresAtMillis;
+
+        Entry(Result result, long expiresAtMillis) {
+            this.result = result;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+    }
+
+    @SuppressWarnings("serial")
+    private static final class EntryMap extends LinkedHashMap<String, Entry> {
+
+        private final int maxEntries;
+
+        EntryMap(int maxEntries) {
+            super(16, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > maxEntries;
+        }
+
+    }
+
+}
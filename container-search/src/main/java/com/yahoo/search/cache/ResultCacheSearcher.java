@@ -0,0 +1,206 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.cache;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.MapMaker;
+import com.google.inject.Inject;
+import com.yahoo.component.chain.dependencies.After;
+import com.yahoo.component.chain.dependencies.Before;
+import com.yahoo.jdisc.Metric;
+import com.yahoo.processing.request.CompoundName;
+import com.yahoo.search.Query;
+import com.yahoo.search.Result;
+import com.yahoo.search.Searcher;
+import com.yahoo.search.grouping.GroupingRequest;
+import com.yahoo.search.query.Model;
+import com.yahoo.search.query.Presentation;
+import com.yahoo.search.query.Ranking;
+import com.yahoo.search.query.ranking.MatchPhase;
+import com.yahoo.search.result.Coverage;
+import com.yahoo.search.searchchain.Execution;
+import com.yahoo.search.searchchain.PhaseNames;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Caches filled results of transformed queries, and returns a copy of the cached result to later queries
+ * having the same canonical form. The canonical form consists of the query tree, the model, ranking
+ * and presentation settings, offset and hits, grouping requests, the configured key properties and
+ * the content generations of the configured clusters.
+ * <p>
+ * Results are cached when they are filled with the summary class requested by the query, so this does not
+ * fill any results which would not otherwise be filled.
+ * Cached results expire after the configured time to live, and when a search node of one of the configured
+ * clusters reports new content, see {@link ContentGeneration}. Results containing errors or having less than
+ * full coverage are not cached, and queries with nocache set are passed through.
+ * <p>
+ * This class is multithread safe.
+ */
+@After(PhaseNames.TRANSFORMED_QUERY)
+@Before(PhaseNames.BLENDED_RESULT)
+public class ResultCacheSearcher extends Searcher {
+
+    private static final String HITS_METRIC = "result_cache_hits";
+    private static final String MISSES_METRIC = "result_cache_misses";
+
+    private final ResultCache cache;
+    /**
+     * The keys under which the results of queries are to be cached when they are filled, by query identity.
+     * This is not stored in the query properties, as those may be restricted by a strict query profile type.
+     */
+    private final Map<Query, String> pendingKeys = new MapMaker().weakKeys().makeMap();
+    private final long timeToLiveMillis;
+    private final List<CompoundName> keyProperties;
+    /** The generations of the clusters whose content the cached results depend on, or empty to use all */
+    private final List<ContentGeneration> contentGenerations;
+    private final Metric metric;
+    private final Clock clock;
+
+    @Inject
+    public ResultCacheSearcher(ResultCacheConfig config, Metric metric) {
+        this(config, metric, Clock.systemUTC());
+    }
+
+    /** For testing - allows injection of a timer to avoid depending on the system clock */
+    public ResultCacheSearcher(ResultCacheConfig config, Metric metric, Clock clock) {
+        this.cache = new ResultCache(config.maxEntries());
+        this.timeToLiveMillis = (long)(config.timeToLiveSeconds() * 1000);
+        ImmutableList.Builder<CompoundName> keyProperties = new ImmutableList.Builder<>();
+        for (String keyProperty : config.keyProperty())
+            keyProperties.add(new CompoundName(keyProperty));
+        this.keyProperties = keyProperties.build();
+        ImmutableList.Builder<ContentGeneration> contentGenerations = new ImmutableList.Builder<>();
+        for (String cluster : config.cluster())
+            contentGenerations.add(ContentGeneration.of(cluster));
+        this.contentGenerations = contentGenerations.build();
+        this.metric = metric;
+        this.clock = clock;
+    }
+
+    @Override
+    public Result search(Query query, Execution execution) {
+        if (query.getNoCache()) return execution.search(query);
+
+        String key = cacheKey(query); // before searching, to not cache results of an older content generation
+        if (key == null) return execution.search(query);
+
+        Result cached = cache.get(key, clock.millis());
+        if (cached != null) {
+            metric.add(HITS_METRIC, 1, null);
+            query.trace("Returning cached result", false, 3);
+            Result result = cached.clone();
+            result.hits().replaceQueryOfAll(query);
+            return result;
+        }
+
+        metric.add(MISSES_METRIC, 1, null);
+        pendingKeys.put(query, key);
+        return execution.search(query);
+    }
+
+    @Override
+    public void fill(Result result, String summaryClass, Execution execution) {
+        execution.fill(result, summaryClass);
+
+        Query query = result.getQuery();
+        if ( ! Objects.equals(summaryClass, query.getPresentation().getSummary())) return;
+        if ( ! isCacheable(result, summaryClass)) return;
+        String key = pendingKeys.remove(query);
+        if (key == null) return;
+        cache.put(key, result.clone(), clock.millis() + timeToLiveMillis);
+    }
+
+    private boolean isCacheable(Result result, String summaryClass) {
+        if (result.hits().getError() != null) return false;
+        Coverage coverage = result.getCoverage(false);
+        if (coverage != null && ! coverage.getFull()) return false;
+        return result.isFilled(summaryClass);
+    }
+
+    /** Returns the canonical form of the given query, or null if it cannot be cached */
+    String cacheKey(Query query) {
+        Model model = query.getModel();
+        if (model.getQueryTree().isEmpty()) return null;
+        String queryTree = encode(query);
+        if (queryTree == null) return null;
+
+        StringBuilder key = new StringBuilder(queryTree);
+        key.append('\u0000').append(query.getOffset()).append(',').append(query.getHits());
+        key.append('\u0000').append(model.getSources()).append(model.getRestrict())
+           .append(model.getSearchPath()).append(',').append(model.getDocumentDb());
+
+        Ranking ranking = query.getRanking();
+        key.append('\u0000').append(ranking.getProfile()).append(',').append(ranking.getSorting())
+           .append(',').append(ranking.getLocation()).append(',').append(ranking.getFreshness())
+           .append(',').append(ranking.getListFeatures())
+           .append(',').append(ranking.getFeatures()).append(',').append(ranking.getProperties());
+        MatchPhase matchPhase = ranking.getMatchPhase();
+        key.append(',').append(matchPhase.getAttribute()).append(',').append(matchPhase.getAscending())
+           .append(',').append(matchPhase.getMaxHits()).append(',').append(matchPhase.getMaxFilterCoverage())
+           .append(',').append(matchPhase.getDiversity().getAttribute())
+           .append(',').append(matchPhase.getDiversity().getMinGroups())
+           .append(',').append(matchPhase.getDiversity().getCutoffFactor())
+           .append(',').append(matchPhase.getDiversity().getCutoffStrategy());
+        key.append(',').append(ranking.getMatching().getTermwiseLimit())
+           .append(',').append(ranking.getMatching().getNumThreadsPerSearch())
+           .append(',').append(ranking.getMatching().getNumSearchPartitions())
+           .append(',').append(ranking.getMatching().getMinHitsPerThread());
+        key.append(',').append(ranking.getSoftTimeout().getEnable())
+           .append(',').append(ranking.getSoftTimeout().getFactor())
+           .append(',').append(ranking.getSoftTimeout().getTailcost());
+
+        Presentation presentation = query.getPresentation();
+        key.append('\u0000').append(presentation.getSummary()).append(',').append(presentation.getBolding())
+           .append(',').append(presentation.getSummaryFields());
+
+        for (GroupingRequest request : GroupingRequest.getRequests(query)) {
+            key.append('\u0000').append(request.getRootOperation()).append(',').append(request.continuations())
+               .append(',').append(request.getTimeZone() == null ? null : request.getTimeZone().getID());
+        }
+
+        for (CompoundName keyProperty : keyProperties)
+            key.append('\u0000').append(query.properties().get(keyProperty));
+
+        Collection<ContentGeneration> generations = contentGenerations.isEmpty() ? ContentGeneration.all()
+                                                                                 : contentGenerations;
+        for (ContentGeneration generation : generations)
+            key.append('\u0000').append(generation.clusterName()).append(':').append(generation.current());
+        return key.toString();
+    }
+
+    /** Returns the query tree in the binary form sent to search nodes, or null if it cannot be encoded */
+    private static String encode(Query query) {
+        try {
+            for (int size = 1024; ; size *= 2) {
+                ByteBuffer buffer = ByteBuffer.allocate(size);
+                try {
+                    query.encode(buffer);
+                    return new String(buffer.array(), 0, buffer.position(), StandardCharsets.ISO_8859_1);
+                }
+                catch (BufferOverflowException e) {
+                    // try a larger buffer
+                }
+            }
+        }
+        catch (RuntimeException e) { // the query tree contains items which cannot be sent to a search node
+            return null;
+        }
+    }
+
+    /** Returns the number of results currently cached */
+    public int size() { return cache.size(); }
+
+    /** Returns the number of lookups which returned a cached result */
+    public long getCacheHits() { return cache.getHits(); }
+
+    /** Returns the number of lookups which did not find a valid cached result */
+    public long getCacheMisses() { return cache.getMisses(); }
+
+}
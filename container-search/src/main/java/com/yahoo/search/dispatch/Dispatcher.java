@@ -7,13 +7,14 @@ import com.yahoo.collections.ListMap;
 import com.yahoo.component.AbstractComponent;
 import com.yahoo.compress.CompressionType;
 import com.yahoo.compress.Compressor;
+import com.yahoo.concurrent.ThreadFactoryFactory;
 import com.yahoo.container.handler.VipStatus;
 import com.yahoo.data.access.slime.SlimeAdapter;
 import com.yahoo.prelude.fastsearch.FS4ResourcePool;
 import com.yahoo.prelude.fastsearch.FastHit;
-import com.yahoo.prelude.fastsearch.TimeoutException;
 import com.yahoo.search.Query;
 import com.yahoo.search.Result;
+import com.yahoo.search.cache.ContentGeneration;
 import com.yahoo.search.query.SessionId;
 import com.yahoo.search.result.ErrorMessage;
 import com.yahoo.search.result.Hit;
@@ -26,9 +27,16 @@ import com.yahoo.vespa.config.search.DispatchConfig;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -52,10 +60,16 @@ public class Dispatcher extends AbstractComponent {
 
     private final Compressor compressor = new Compressor();
 
+    /** The executor decoding docsum responses into results, or null if they are decoded by the client thread */
+    private final ExecutorService docsumDecoder;
+
     public Dispatcher(DispatchConfig dispatchConfig, FS4ResourcePool fs4ResourcePool,
-                      int containerClusterSize, VipStatus vipStatus) {
+                      int containerClusterSize, VipStatus vipStatus, ContentGeneration contentGeneration) {
         this.client = new RpcClient();
-        this.searchCluster = new SearchCluster(dispatchConfig, fs4ResourcePool, containerClusterSize, vipStatus);
+        this.docsumDecoder = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors() / 4),
+                                                          ThreadFactoryFactory.getDaemonThreadFactory("dispatcher.docsumdecoder"));
+        this.searchCluster = new SearchCluster(dispatchConfig, fs4ResourcePool, containerClusterSize, vipStatus,
+                                               contentGeneration);
 
         // Create node rpc connections, indexed by the legacy "partid", which allows us to bridge
         // between fs4 calls (for search) and rpc calls (for summary fetch)
@@ -71,25 +85,60 @@ public class Dispatcher extends AbstractComponent {
         this.searchCluster = null;
         this.nodeConnections = ImmutableMap.copyOf(nodeConnections);
         this.client = client;
+        this.docsumDecoder = null;
     }
     
     /** Returns the search cluster this dispatches to */
     public SearchCluster searchCluster() { return searchCluster; }
 
-    /** Fills the given summary class by sending RPC requests to the right search nodes */
+    /**
+     * Fills the given summary class by sending RPC requests to the right search nodes.
+     * This is the blocking form of {@link #fillAsync}: It returns when all hits are filled or the query times out.
+     * In the latter case, responses arriving later are not filled into the result.
+     */
     public void fill(Result result, String summaryClass, CompressionType compression) {
+        GetDocsumsResponseReceiver responseReceiver = sendGetDocsumsRequests(result, summaryClass, compression);
         try {
-            ListMap<Integer, FastHit> hitsByNode = hitsByNode(result);
-
-            GetDocsumsResponseReceiver responseReceiver = new GetDocsumsResponseReceiver(hitsByNode.size(), compressor, result);
-            for (Map.Entry<Integer, List<FastHit>> nodeHits : hitsByNode.entrySet()) {
-                sendGetDocsumsRequest(nodeHits.getKey(), nodeHits.getValue(), summaryClass, compression, result, responseReceiver);
-            }
-            responseReceiver.processResponses(result.getQuery());
+            long timeLeftMs = result.getQuery().getTimeLeft();
+            if (timeLeftMs <= 0)
+                throw new TimeoutException();
+            responseReceiver.completion().get(timeLeftMs, TimeUnit.MILLISECONDS);
         }
         catch (TimeoutException e) {
-            result.hits().addError(ErrorMessage.createTimeout("Summary data is incomplete: " + e.getMessage()));
+            int outstandingResponses = responseReceiver.close();
+            result.hits().addError(ErrorMessage.createTimeout("Summary data is incomplete: Timed out waiting for summary data. " +
+                                                              outstandingResponses + " responses outstanding."));
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            responseReceiver.close();
+            result.hits().addError(ErrorMessage.createEmptyDocsums("Interrupted while waiting for summary data"));
         }
+        catch (ExecutionException e) {
+            throw new IllegalStateException("Unexpected failure filling " + result, e.getCause());
+        }
+    }
+
+    /**
+     * Fills the given summary class by sending RPC requests to the right search nodes, without blocking.
+     * The response from each node is filled into the hits of the result as soon as it arrives.
+     * The returned future completes with the given result when all responses are filled in,
+     * or with errors added for the nodes which failed or did not respond within the timeout of the query.
+     * The result must not be accessed by the caller until the returned future completes.
+     */
+    public CompletableFuture<Result> fillAsync(Result result, String summaryClass, CompressionType compression) {
+        return sendGetDocsumsRequests(result, summaryClass, compression).completion();
+    }
+
+    private GetDocsumsResponseReceiver sendGetDocsumsRequests(Result result, String summaryClass, CompressionType compression) {
+        ListMap<Integer, FastHit> hitsByNode = hitsByNode(result);
+
+        Executor decoder = docsumDecoder != null ? docsumDecoder : Runnable::run;
+        GetDocsumsResponseReceiver responseReceiver = new GetDocsumsResponseReceiver(hitsByNode.size(), compressor, result, decoder);
+        for (Map.Entry<Integer, List<FastHit>> nodeHits : hitsByNode.entrySet()) {
+            sendGetDocsumsRequest(nodeHits.getKey(), nodeHits.getValue(), summaryClass, compression, result, responseReceiver);
+        }
+        return responseReceiver;
     }
 
     /** Return a map of hits by their search node (partition) id */
@@ -111,7 +160,7 @@ public class Dispatcher extends AbstractComponent {
                                        Result result, GetDocsumsResponseReceiver responseReceiver) {
         Client.NodeConnection node = nodeConnections.get(nodeId);
         if (node == null) {
-            result.hits().addError(ErrorMessage.createEmptyDocsums("Could not fill hits from unknown node " + nodeId));
+            responseReceiver.receiveError(ErrorMessage.createEmptyDocsums("Could not fill hits from unknown node " + nodeId));
             log.warning("Got hits with partid " + nodeId + ", which is not included in the current dispatch config");
             return;
         }
@@ -152,66 +201,103 @@ public class Dispatcher extends AbstractComponent {
     public void deconstruct() {
         for (Client.NodeConnection nodeConnection : nodeConnections.values())
             nodeConnection.close();
+        if (docsumDecoder != null)
+            docsumDecoder.shutdown();
     }
 
-    /** Receiver of the responses to a set of getDocsums requests */
+    /**
+     * Receiver of the responses to a set of getDocsums requests.
+     * Responses are filled into the result as they arrive, by the given decoder,
+     * and the completion of this is signalled when all of them are processed.
+     */
     public static class GetDocsumsResponseReceiver {
 
-        private final BlockingQueue<Client.GetDocsumsResponseOrError> responses;
         private final Compressor compressor;
         private final Result result;
+        private final Executor decoder;
+        private final CompletableFuture<Result> completion = new CompletableFuture<>();
+
+        /**
+         * Held shared while a response is filled into the result,
+         * and exclusively to stop filling when the result is given up on
+         */
+        private final ReadWriteLock fillLock = new ReentrantReadWriteLock();
+
+        /** Whether the result is no longer to be filled, guarded by the fill lock */
+        private boolean closed = false;
 
-        /** Whether we have already logged/notified about an error - to avoid spamming */
+        /** Whether we have already logged/notified about an error - to avoid spamming. Guarded by this. */
         private boolean hasReportedError = false;
 
         /** The number of responses we should receive (and process) before this is complete */
-        private int outstandingResponses;
+        private final AtomicInteger outstandingResponses;
 
-        public GetDocsumsResponseReceiver(int requestCount, Compressor compressor, Result result) {
+        public GetDocsumsResponseReceiver(int requestCount, Compressor compressor, Result result, Executor decoder) {
             this.compressor = compressor;
-            responses = new LinkedBlockingQueue<>(requestCount);
-            outstandingResponses = requestCount;
             this.result = result;
+            this.decoder = decoder;
+            outstandingResponses = new AtomicInteger(requestCount);
+            if (requestCount == 0)
+                completion.complete(result);
         }
 
         /** Called by a thread belonging to the client when a valid response becomes available */
         public void receive(Client.GetDocsumsResponseOrError response) {
-            responses.add(response);
+            decoder.execute(() -> process(response));
         }
 
-        private void throwTimeout() throws TimeoutException {
-            throw new TimeoutException("Timed out waiting for summary data. " + outstandingResponses + " responses outstanding.");
+        /** Called when a request could not be sent */
+        void receiveError(ErrorMessage error) {
+            addError(error);
+            responseProcessed();
         }
 
+        /** Returns a future which completes with the result when all responses are filled into it */
+        public CompletableFuture<Result> completion() { return completion; }
+
         /**
-         * Call this from the dispatcher thread to initiate and complete processing of responses.
-         * This will block until all responses are available and processed, or to timeout.
+         * Stops filling responses into the result, after waiting for any responses currently being filled.
+         * The result may be accessed by the calling thread after this returns.
+         *
+         * @return the number of responses which were not filled into the result
          */
-        public void processResponses(Query query) throws TimeoutException {
+        int close() {
+            fillLock.writeLock().lock();
             try {
-                while (outstandingResponses > 0) {
-                    long timeLeftMs = query.getTimeLeft();
-                    if (timeLeftMs <= 0) {
-                        throwTimeout();
-                    }
-                    Client.GetDocsumsResponseOrError response = responses.poll(timeLeftMs, TimeUnit.MILLISECONDS);
-                    if (response == null)
-                        throwTimeout();
-                    processResponse(response);
-                    outstandingResponses--;
-                }
+                closed = true;
+                return outstandingResponses.get();
             }
-            catch (InterruptedException e) {
-                // TODO: Add error
+            finally {
+                fillLock.writeLock().unlock();
             }
         }
 
+        private void process(Client.GetDocsumsResponseOrError response) {
+            fillLock.readLock().lock();
+            try {
+                if (closed) return;
+                processResponse(response);
+            }
+            catch (RuntimeException e) {
+                addError(ErrorMessage.createBackendCommunicationError("Could not decode summary data: " + e.getMessage()));
+                log.log(Level.WARNING, "Could not decode summary data", e);
+            }
+            finally {
+                fillLock.readLock().unlock();
+            }
+            responseProcessed();
+        }
+
+        private void responseProcessed() {
+            if (outstandingResponses.decrementAndGet() == 0)
+                completion.complete(result);
+        }
+
         private void processResponse(Client.GetDocsumsResponseOrError responseOrError) {
             if (responseOrError.error().isPresent()) {
-                if (hasReportedError) return;
                 String error = responseOrError.error().get();
-                result.hits().addError(ErrorMessage.createBackendCommunicationError(error));
-                log.log(Level.WARNING, "Error fetching summary data: "+ error);
+                if (addError(ErrorMessage.createBackendCommunicationError(error)))
+                    log.log(Level.WARNING, "Error fetching summary data: "+ error);
             }
             else {
                 Client.GetDocsumsResponse response = responseOrError.response().get();
@@ -221,6 +307,14 @@ public class Dispatcher extends AbstractComponent {
             }
         }
 
+        /** Adds an error to the result unless one is added already. Returns whether it was added. */
+        private synchronized boolean addError(ErrorMessage error) {
+            if (hasReportedError) return false;
+            result.hits().addError(error);
+            hasReportedError = true;
+            return true;
+        }
+
         private void fill(List<FastHit> hits, byte[] slimeBytes) {
             Inspector summaries = new SlimeAdapter(BinaryFormat.decode(slimeBytes).get().field("docsums"));
             if ( ! summaries.valid())
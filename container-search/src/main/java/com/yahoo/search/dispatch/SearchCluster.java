@@ -8,6 +8,7 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMultimap;
 import com.yahoo.container.handler.VipStatus;
 import com.yahoo.net.HostName;
+import com.yahoo.search.cache.ContentGeneration;
 import com.yahoo.search.cluster.ClusterMonitor;
 import com.yahoo.search.cluster.NodeManager;
 import com.yahoo.search.result.ErrorMessage;
@@ -20,17 +21,22 @@ import com.yahoo.yolean.Exceptions;
 import com.yahoo.prelude.Pong;
 import com.yahoo.prelude.fastsearch.FS4ResourcePool;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Random;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -67,18 +73,22 @@ public class SearchCluster implements NodeManager<SearchCluster.Node> {
     // Only needed until query requests are moved to rpc
     private final FS4ResourcePool fs4ResourcePool;
 
+    /** The generation of the content of this cluster, advanced when a node reports a new docstamp */
+    private final ContentGeneration contentGeneration;
+
     public SearchCluster(DispatchConfig dispatchConfig, FS4ResourcePool fs4ResourcePool,
-                         int containerClusterSize, VipStatus vipStatus) {
+                         int containerClusterSize, VipStatus vipStatus, ContentGeneration contentGeneration) {
         this(dispatchConfig.minActivedocsPercentage(), toNodes(dispatchConfig), fs4ResourcePool,
-             containerClusterSize, vipStatus);
+             containerClusterSize, vipStatus, contentGeneration);
     }
 
     public SearchCluster(double minActivedocsCoverage, List<Node> nodes, FS4ResourcePool fs4ResourcePool,
-                         int containerClusterSize, VipStatus vipStatus) {
+                         int containerClusterSize, VipStatus vipStatus, ContentGeneration contentGeneration) {
         this.minActivedocsCoveragePercentage = minActivedocsCoverage;
         this.size = nodes.size();
         this.fs4ResourcePool = fs4ResourcePool;
         this.vipStatus = vipStatus;
+        this.contentGeneration = contentGeneration;
 
         // Create groups
         ImmutableMap.Builder<Integer, Group> groupsBuilder = new ImmutableMap.Builder<>();
@@ -177,6 +187,32 @@ public class SearchCluster implements NodeManager<SearchCluster.Node> {
         return directDispatchTarget;
     }
 
+    /**
+     * Returns the group we should dispatch a query to when dispatching directly to groups,
+     * or empty if no group has sufficient coverage and all its nodes up.
+     * This picks the less costly of two random groups (see {@link Group#cost}), which avoids slow and busy groups
+     * without sending all queries to the group which happened to be fastest recently.
+     */
+    public Optional<Group> selectGroup() {
+        return selectGroup(groups.values(), System.currentTimeMillis(), ThreadLocalRandom.current());
+    }
+
+    static Optional<Group> selectGroup(Collection<Group> groups, long nowMillis, Random random) {
+        List<Group> candidates = new ArrayList<>(groups.size());
+        for (Group group : groups)
+            if (group.hasSufficientCoverage() && group.isWorking())
+                candidates.add(group);
+        if (candidates.isEmpty()) return Optional.empty();
+        if (candidates.size() == 1) return Optional.of(candidates.get(0));
+
+        int first = random.nextInt(candidates.size());
+        int second = random.nextInt(candidates.size() - 1);
+        if (second >= first) second++;
+        Group firstGroup = candidates.get(first);
+        Group secondGroup = candidates.get(second);
+        return Optional.of(firstGroup.cost(nowMillis) <= secondGroup.cost(nowMillis) ? firstGroup : secondGroup);
+    }
+
     /** Used by the cluster monitor to manage node status */
     @Override
     public void working(Node node) {
@@ -289,6 +325,8 @@ public class SearchCluster implements NodeManager<SearchCluster.Node> {
                                               fs4ResourcePool.getBackend(node.hostname(), node.fs4port()), node.toString());
                 if (pong.activeDocuments().isPresent())
                     node.setActiveDocuments(pong.activeDocuments().get());
+                if (pong.docstamp().isPresent() && node.setDocstamp(pong.docstamp().get()))
+                    contentGeneration.advance();
                 return pong;
             } catch (RuntimeException e) {
                 return new Pong(ErrorMessage.createBackendCommunicationError("Exception when pinging " + node + ": "
@@ -330,6 +368,24 @@ public class SearchCluster implements NodeManager<SearchCluster.Node> {
             hasSufficientCoverage.lazySet(sufficientCoverage);
         }
 
+        /** Returns whether all the nodes of this group are currently responding to requests */
+        public boolean isWorking() {
+            for (Node node : nodes)
+                if ( ! node.isWorking()) return false;
+            return true;
+        }
+
+        /**
+         * Returns the expected cost of sending a request to this group at the given time.
+         * This is the cost of its most costly node, as a group responds when all its nodes have responded.
+         */
+        double cost(long nowMillis) {
+            double cost = 0;
+            for (Node node : nodes)
+                cost = Math.max(cost, node.cost(nowMillis));
+            return cost;
+        }
+
         void aggregateActiveDocuments() {
             long activeDocumentsInGroup = 0;
             for (Node node : nodes)
@@ -361,6 +417,12 @@ public class SearchCluster implements NodeManager<SearchCluster.Node> {
     /** A node in a search cluster. This class is multithread safe. */
     public static class Node {
 
+        /** The weight of the last response time in the moving average of response times */
+        private static final double latencyWeight = 0.1;
+
+        /** The time in which the average response time of a node we do not hear from decays to 1/e */
+        private static final double latencyDecayMillis = 10000;
+
         private final String hostname;
         private final int fs4port;
         private final int group;
@@ -368,6 +430,19 @@ public class SearchCluster implements NodeManager<SearchCluster.Node> {
         private final AtomicBoolean working = new AtomicBoolean(true);
         private final AtomicLong activeDocuments = new AtomicLong(0);
 
+        private static final long unknownDocstamp = Long.MIN_VALUE;
+
+        /** The docstamp last reported by this node, or unknownDocstamp */
+        private final AtomicLong docstamp = new AtomicLong(unknownDocstamp);
+
+        private final AtomicInteger pendingRequests = new AtomicInteger(0);
+
+        /** The exponentially weighted moving average of the response times of this node, or -1 if none. Guarded by this */
+        private double averageLatencyMillis = -1;
+
+        /** The time of the last response from this node. Guarded by this */
+        private long lastResponseMillis = 0;
+
         public Node(String hostname, int fs4port, int group) {
             this.hostname = hostname;
             this.fs4port = fs4port;
@@ -398,6 +473,56 @@ public class SearchCluster implements NodeManager<SearchCluster.Node> {
             return this.activeDocuments.get();
         }
 
+        /**
+         * Updates the docstamp of the content on this node
+         *
+         * @return whether this changed a docstamp previously reported by this node
+         */
+        boolean setDocstamp(int docstamp) {
+            long previous = this.docstamp.getAndSet(docstamp);
+            return previous != unknownDocstamp && previous != docstamp;
+        }
+
+        /** Registers that a request is sent to this node. Each call must be followed by a call to endRequest */
+        public void startRequest() {
+            pendingRequests.incrementAndGet();
+        }
+
+        /** Registers that a request to this node completed or failed after the given number of milliseconds */
+        public void endRequest(long latencyMillis, long nowMillis) {
+            pendingRequests.decrementAndGet();
+            synchronized (this) {
+                if (averageLatencyMillis < 0)
+                    averageLatencyMillis = latencyMillis;
+                else
+                    averageLatencyMillis += latencyWeight * (latencyMillis - averageLatencyMillis);
+                lastResponseMillis = Math.max(lastResponseMillis, nowMillis);
+            }
+        }
+
+        /** Returns the number of requests sent to this node which are not yet completed */
+        public int getPendingRequests() { return pendingRequests.get(); }
+
+        /** Returns the moving average of the response times of this node in milliseconds, or -1 if unknown */
+        public synchronized double getAverageLatencyMillis() { return averageLatencyMillis; }
+
+        /**
+         * Returns the expected cost of sending a request to this node at the given time:
+         * The average response time, multiplied by the requests the node must handle including this one.
+         * The average response time decays when we are not hearing from the node, such that nodes which
+         * were slow are tried again eventually.
+         */
+        double cost(long nowMillis) {
+            double latency;
+            synchronized (this) {
+                if (averageLatencyMillis < 0)
+                    latency = 0;
+                else
+                    latency = averageLatencyMillis * Math.exp(- Math.max(0, nowMillis - lastResponseMillis) / latencyDecayMillis);
+            }
+            return (latency + 1) * (pendingRequests.get() + 1);
+        }
+
         @Override
         public int hashCode() { return Objects.hash(hostname, fs4port); }
 
@@ -47,6 +47,7 @@ import com.yahoo.search.query.profile.config.QueryProfilesConfig;
 import com.yahoo.search.query.properties.DefaultProperties;
 import com.yahoo.search.rendering.RendererRegistry;
 import com.yahoo.search.result.ErrorMessage;
+import com.yahoo.search.searchchain.AsyncExecution;
 import com.yahoo.search.searchchain.Execution;
 import com.yahoo.search.searchchain.SearchChainRegistry;
 import com.yahoo.search.statistics.ElapsedTime;
@@ -155,6 +156,8 @@ public class SearchHandler extends LoggingRequestHandler {
 
         this.linguistics = linguistics;
         this.maxThreads = examineExecutor(executor);
+        AsyncExecution.configure(clusters.com().yahoo().search().searchchain().AsyncExecution().maxthreads(),
+                                 clusters.com().yahoo().search().searchchain().AsyncExecution().maxpendingperchain());
 
         searchConnections = new Value(SEARCH_CONNECTIONS, statistics,
                                       new Value.Parameters().setLogRaw(true).setLogMax(true)
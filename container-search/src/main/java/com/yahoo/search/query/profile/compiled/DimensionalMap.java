@@ -1,34 +1,110 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.search.query.profile.compiled;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.yahoo.search.query.profile.DimensionBinding;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * A map which may return different values depending on the values given in a context
  * supplied with the key on all operations.
  * <p>
+ * Each key is assigned a slot, and the values of all keys are resolved together for each recently used
+ * combination of dimension values, such that lookups are a hash lookup of the slot and an array lookup.
+ * <p>
  * Dimensional maps are immutable and created through a DimensionalMap.Builder
  *
  * @author bratseth
  */
 public class DimensionalMap<KEY, VALUE> {
 
+    /** The max number of dimension value combinations to keep resolved values for, a power of two */
+    private static final int maxResolvedVariants = 128;
+
     private final Map<KEY, DimensionalValue<VALUE>> values;
 
-    private DimensionalMap(Map<KEY, DimensionalValue<VALUE>> values) {
+    /** The slot of each key in this */
+    private final Map<KEY, Integer> slots;
+
+    /** The values of each key, indexed by slot */
+    private final List<DimensionalValue<VALUE>> valuesBySlot;
+
+    /** The dimensions which have values in some binding in this */
+    private final String[] dimensions;
+
+    /**
+     * The values of all keys resolved for recently used combinations of values of the dimensions of this.
+     * Each combination has one place in this, given by the hash of its values, and replaces
+     * any other combination resolved there before.
+     */
+    private final AtomicReferenceArray<ResolvedVariant> resolvedVariants = new AtomicReferenceArray<>(maxResolvedVariants);
+
+    /** The values resolved in the empty context, used when there are no dimensions */
+    private final Object[] resolvedDefault;
+
+    private DimensionalMap(Map<KEY, DimensionalValue<VALUE>> values, Set<String> dimensions) {
         this.values = ImmutableMap.copyOf(values);
+        ImmutableMap.Builder<KEY, Integer> slots = new ImmutableMap.Builder<>();
+        ImmutableList.Builder<DimensionalValue<VALUE>> valuesBySlot = new ImmutableList.Builder<>();
+        int slot = 0;
+        for (Map.Entry<KEY, DimensionalValue<VALUE>> entry : this.values.entrySet()) {
+            slots.put(entry.getKey(), slot++);
+            valuesBySlot.add(entry.getValue());
+        }
+        this.slots = slots.build();
+        this.valuesBySlot = valuesBySlot.build();
+        this.dimensions = dimensions.toArray(new String[dimensions.size()]);
+        this.resolvedDefault = this.dimensions.length == 0 ? resolve(Collections.emptyMap()) : null;
     }
 
     /** Returns the value for this key matching a context, or null if none */
+    @SuppressWarnings("unchecked")
     public VALUE get(KEY key, Map<String, String> context) {
-        DimensionalValue<VALUE> variants = values.get(key);
-        if (variants == null) return null;
-        return variants.get(context);
+        Integer slot = slots.get(key);
+        if (slot == null) return null;
+        if (resolvedDefault != null) return (VALUE)resolvedDefault[slot];
+
+        if (context == null)
+            context = Collections.emptyMap();
+        int index = variantIndex(context);
+        ResolvedVariant variant = resolvedVariants.get(index);
+        if (variant == null || ! variant.matches(dimensions, context)) {
+            variant = new ResolvedVariant(dimensionValues(context), resolve(context));
+            resolvedVariants.set(index, variant);
+        }
+        return (VALUE)variant.values[slot];
+    }
+
+    /** Returns the place in resolvedVariants of the combination of dimension values in the given context */
+    private int variantIndex(Map<String, String> context) {
+        int hash = 0;
+        for (String dimension : dimensions)
+            hash = 31 * hash + Objects.hashCode(context.get(dimension));
+        return (hash ^ (hash >>> 16)) & (maxResolvedVariants - 1);
+    }
+
+    private String[] dimensionValues(Map<String, String> context) {
+        String[] dimensionValues = new String[dimensions.length];
+        for (int i = 0; i < dimensions.length; i++)
+            dimensionValues[i] = context.get(dimensions[i]);
+        return dimensionValues;
+    }
+
+    /** Returns the values of all keys in this matching the given context, indexed by slot */
+    private Object[] resolve(Map<String, String> context) {
+        Object[] resolved = new Object[valuesBySlot.size()];
+        for (int slot = 0; slot < resolved.length; slot++)
+            resolved[slot] = valuesBySlot.get(slot).get(context);
+        return resolved;
     }
 
     /** Returns the set of dimensional entries across all contexts. */
@@ -41,10 +117,32 @@ public class DimensionalMap<KEY, VALUE> {
         return values.isEmpty();
     }
 
+    /** The values of all keys, indexed by slot, resolved for one combination of dimension values */
+    private static class ResolvedVariant {
+
+        private final String[] dimensionValues;
+        private final Object[] values;
+
+        ResolvedVariant(String[] dimensionValues, Object[] values) {
+            this.dimensionValues = dimensionValues;
+            this.values = values;
+        }
+
+        /** Returns whether the given context has the dimension values this is resolved for */
+        boolean matches(String[] dimensions, Map<String, String> context) {
+            for (int i = 0; i < dimensions.length; i++)
+                if ( ! Objects.equals(dimensionValues[i], context.get(dimensions[i]))) return false;
+            return true;
+        }
+
+    }
+
     public static class Builder<KEY, VALUE> {
 
         private Map<KEY, DimensionalValue.Builder<VALUE>> entries = new HashMap<>();
 
+        private Set<String> dimensions = new LinkedHashSet<>();
+
         // TODO: DimensionBinding -> Binding?
         public void put(KEY key, DimensionBinding binding, VALUE value) {
             DimensionalValue.Builder<VALUE> entry = entries.get(key);
@@ -53,6 +151,10 @@ public class DimensionalMap<KEY, VALUE> {
                 entries.put(key, entry);
             }
             entry.add(value, binding);
+            if (binding.getDimensions() == null) return;
+            for (int i = 0; i < binding.getDimensions().size(); i++)
+                if (binding.getValues().get(i) != null)
+                    dimensions.add(binding.getDimensions().get(i));
         }
 
         public DimensionalMap<KEY, VALUE> build() {
@@ -60,7 +162,7 @@ public class DimensionalMap<KEY, VALUE> {
             for (Map.Entry<KEY, DimensionalValue.Builder<VALUE>> entry : entries.entrySet()) {
                 map.put(entry.getKey(), entry.getValue().build());
             }
-            return new DimensionalMap<>(map);
+            return new DimensionalMap<>(map, dimensions);
         }
 
     }
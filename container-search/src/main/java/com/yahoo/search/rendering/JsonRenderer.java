@@ -9,7 +9,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Preconditions;
 import com.yahoo.data.JsonProducer;
 import com.yahoo.data.access.Inspectable;
-import com.yahoo.data.access.simple.JsonRender;
+import com.yahoo.data.access.Inspector;
 import com.yahoo.document.datatypes.FieldValue;
 import com.yahoo.document.datatypes.StringFieldValue;
 import com.yahoo.document.datatypes.TensorFieldValue;
@@ -40,6 +40,7 @@ import com.yahoo.search.result.Hit;
 import com.yahoo.search.result.HitGroup;
 import com.yahoo.search.result.NanNumber;
 import com.yahoo.tensor.Tensor;
+import com.yahoo.text.DoubleFormatter;
 import com.yahoo.yolean.trace.TraceNode;
 import com.yahoo.yolean.trace.TraceVisitor;
 import org.json.JSONArray;
@@ -129,6 +130,8 @@ public class JsonRenderer extends AsynchronousSectionedRenderer<Result> {
     private static final String GROUPING_VALUE = "value";
     private static final String VESPA_HIDDEN_FIELD_PREFIX = "$";
 
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
     private final JsonFactory generatorFactory;
 
     private JsonGenerator generator;
@@ -647,12 +650,10 @@ public class JsonRenderer extends AsynchronousSectionedRenderer<Result> {
             generator.writeTree((TreeNode) field);
         } else if (field instanceof Tensor) {
             renderTensor(Optional.of((Tensor)field));
+        } else if (field instanceof Inspectable) {
+            renderInspector(((Inspectable) field).inspect());
         } else if (field instanceof JsonProducer) {
             generator.writeRawValue(((JsonProducer) field).toJson());
-        } else if (field instanceof Inspectable) {
-            StringBuilder intermediate = new StringBuilder();
-            JsonRender.render((Inspectable) field, intermediate, true);
-            generator.writeRawValue(intermediate.toString());
         } else if (field instanceof StringFieldValue) {
             // This needs special casing as JsonWriter hides empty strings now
             generator.writeString(((StringFieldValue)field).getString());
@@ -675,6 +676,68 @@ public class JsonRenderer extends AsynchronousSectionedRenderer<Result> {
         }
     }
 
+    /**
+     * Writes structured data, e.g from a docsum, directly to the generator.
+     * Strings are written as the UTF-8 they are stored as, without creating Java strings or an intermediate JSON text.
+     */
+    private void renderInspector(Inspector value) throws IOException {
+        switch (value.type()) {
+            case EMPTY:
+                generator.writeNull();
+                break;
+            case BOOL:
+                generator.writeBoolean(value.asBool());
+                break;
+            case LONG:
+                generator.writeNumber(value.asLong());
+                break;
+            case DOUBLE:
+                renderInspectorDouble(value.asDouble());
+                break;
+            case STRING:
+                byte[] utf8 = value.asUtf8();
+                generator.writeUTF8String(utf8, 0, utf8.length);
+                break;
+            case DATA:
+                renderInspectorData(value.asData());
+                break;
+            case ARRAY:
+                generator.writeStartArray();
+                for (Inspector entry : value.entries())
+                    renderInspector(entry);
+                generator.writeEndArray();
+                break;
+            case OBJECT:
+                generator.writeStartObject();
+                for (Map.Entry<String, Inspector> field : value.fields()) {
+                    generator.writeFieldName(field.getKey());
+                    renderInspector(field.getValue());
+                }
+                generator.writeEndObject();
+                break;
+        }
+    }
+
+    /** Writes a double the way JsonRender does, as there is no JSON representation of NaN and infinity */
+    private void renderInspectorDouble(double value) throws IOException {
+        if (Double.isNaN(value) || Double.isInfinite(value))
+            generator.writeNull();
+        else
+            generator.writeNumber(DoubleFormatter.stringValue(value));
+    }
+
+    /** Writes raw data as a hex string, the way JsonRender does */
+    private void renderInspectorData(byte[] data) throws IOException {
+        char[] hex = new char[2 + data.length * 2];
+        hex[0] = '0';
+        hex[1] = 'x';
+        for (int i = 0; i < data.length; i++) {
+            hex[2 + i * 2] = HEX_DIGITS[(data[i] >> 4) & 0xf];
+            hex[3 + i * 2] = HEX_DIGITS[data[i] & 0xf];
+        }
+        generator.writeString(hex, 0, hex.length);
+    }
+
     private void renderNumberField(Number field) throws IOException {
         if (field instanceof Integer) {
             generator.writeNumber(field.intValue());
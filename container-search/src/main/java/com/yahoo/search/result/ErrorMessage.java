@@ -163,6 +163,11 @@ public class ErrorMessage extends com.yahoo.processing.request.ErrorMessage {
         return new ErrorMessage(INTERNAL_SERVER_ERROR.code, "Internal server error.", detailedMessage);
     }
 
+    /** Creates an error indicating that a request was rejected because too much work is already pending. */
+    public static ErrorMessage createTooManyPending(String detailedMessage) {
+        return new ErrorMessage(TOO_MANY_PENDING.code, "Too many pending requests. Try later", detailedMessage);
+    }
+
     /** Sets the source producing this error */
     public void setSource(String source) { this.source = source; }
 
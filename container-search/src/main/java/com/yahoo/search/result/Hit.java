@@ -41,7 +41,7 @@ public class Hit extends ListenableFreezableClass implements Data, Comparable<Hi
     private static final String DOCUMENT_ID = "documentid";
 
     /** A collection of string keyed object properties. */
-    private Map<String,Object> fields = null;
+    private HitFieldMap fields = null;
     private Map<String,Object> unmodifiableFieldMap = null;
 
     /** Meta data describing how a given searcher should treat this hit. */
@@ -401,7 +401,10 @@ public class Hit extends ListenableFreezableClass implements Data, Comparable<Hi
      * @return An readonly map of the fields
      **/
     //TODO Should it be deprecated ?
-    public final Map<String,Object> fields() { return getUnmodifiableFieldMap(); }
+    public final Map<String,Object> fields() {
+        resolveFieldValues();
+        return getUnmodifiableFieldMap();
+    }
 
     /**
      * Will preallocate in order to avoid resizing.
@@ -416,7 +419,10 @@ public class Hit extends ListenableFreezableClass implements Data, Comparable<Hi
      * 
      * @return an iterator for traversing the fields of this hit
      */
-    public final Iterator<Map.Entry<String,Object>> fieldIterator() { return getFieldMap().entrySet().iterator(); }
+    public final Iterator<Map.Entry<String,Object>> fieldIterator() {
+        resolveFieldValues();
+        return getFieldMap().entrySet().iterator();
+    }
 
     /** Returns a field value */
     public Object getField(String value) { return fields != null ? fields.get(value) : null; }
@@ -622,7 +628,7 @@ public class Hit extends ListenableFreezableClass implements Data, Comparable<Hi
     public Hit clone() {
         Hit hit = (Hit) super.clone();
 
-        hit.fields = fields != null ? new LinkedHashMap<>(fields) : null;
+        hit.fields = fields != null ? new HitFieldMap(fields) : null;
         hit.unmodifiableFieldMap = null;
         hit.types = new LinkedHashSet<>(types);
         if (filled != null) {
@@ -650,6 +656,11 @@ public class Hit extends ListenableFreezableClass implements Data, Comparable<Hi
         }
     }
 
+    /** Sets the query of this also if it already has one */
+    void replaceQuery(Query query) {
+        this.query = query;
+    }
+
     // TODO: Deprecate
     /**
      * Returns a field of this hit XML escaped and without token
@@ -752,13 +763,19 @@ public class Hit extends ListenableFreezableClass implements Data, Comparable<Hi
         return filled;
     }
 
+    /**
+     * For vespa internal use only.
+     * Called before the field values of this are exposed through {@link #fields()} or {@link #fieldIterator()},
+     * to let subclasses replace values they store in an internal form by the values {@link #getField} returns.
+     */
+    protected void resolveFieldValues() { }
+
     private Map<String,Object> getFieldMap() {
         return getFieldMap(16);
     }
     private Map<String,Object> getFieldMap(int minSize) {
         if (fields == null) {
-            // Compensate for loadfactor and then some, rounded up....
-            fields = new LinkedHashMap<>(2*minSize);
+            fields = new HitFieldMap(minSize);
         }
         return fields;
     }
@@ -0,0 +1,366 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.result;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The fields of a hit, with the same iteration order as a LinkedHashMap.
+ * <p>
+ * The values are kept in an array, in insertion order, and the field names and their indexes
+ * are kept in a {@link Layout} which is shared by all hits which got the same fields in the same order.
+ * Hits filled from the same summary class therefore share a single field name index, and adding
+ * a field only stores the value, instead of allocating a map entry. If fields are re-added after removal,
+ * or a hit gets more fields than a layout may hold, the map switches to a LinkedHashMap for the rest of its life.
+ * Layouts are looked up without locking. The number of layouts kept for reuse is bounded: When the bound is
+ * reached they are all discarded, and hits using them switch to a LinkedHashMap if they get more fields.
+ * This is not thread-safe, just like the LinkedHashMap it replaces.
+ */
+final class HitFieldMap extends AbstractMap<String, Object> {
+
+    /** The max number of fields in a layout */
+    private static final int MAX_LAYOUT_SIZE = 128;
+
+    /** The max number of layouts kept for reuse, to bound the memory used by hits with arbitrary field names */
+    static final int MAX_LAYOUTS = 4096;
+
+    /** Marks the value of a removed field */
+    private static final Object REMOVED = new Object();
+
+    /** The names and indexes of the values in this, or null if this has switched to the fallback map */
+    private Layout layout = Layout.empty();
+    private Object[] values;
+    private int size = 0;
+    /** The number of times fields have been added or removed, to detect modification during iteration */
+    private int modCount = 0;
+
+    private LinkedHashMap<String, Object> fallback = null;
+
+    private Set<Map.Entry<String, Object>> entrySet = null;
+
+    HitFieldMap(int expectedSize) {
+        values = new Object[Math.max(expectedSize, 1)];
+    }
+
+    HitFieldMap(HitFieldMap other) {
+        if (other.fallback != null) {
+            layout = null;
+            fallback = new LinkedHashMap<>(other.fallback);
+        } else {
+            layout = other.layout;
+            values = Arrays.copyOf(other.values, Math.max(other.layout.size(), 1));
+            size = other.size;
+        }
+    }
+
+    @Override
+    public int size() {
+        return fallback != null ? fallback.size() : size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (fallback != null) return fallback.containsKey(key);
+        int index = layout.indexOf(key);
+        return index >= 0 && values[index] != REMOVED;
+    }
+
+    @Override
+    public Object get(Object key) {
+        if (fallback != null) return fallback.get(key);
+        int index = layout.indexOf(key);
+        if (index < 0) return null;
+        Object value = values[index];
+        return value == REMOVED ? null : value;
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        if (fallback != null) return fallback.put(key, value);
+        if (key == null) {
+            switchToFallback();
+            return fallback.put(key, value);
+        }
+        int index = layout.indexOf(key);
+        if (index >= 0) {
+            Object previous = values[index];
+            if (previous == REMOVED) { // the field must be moved last
+                switchToFallback();
+                return fallback.put(key, value);
+            }
+            values[index] = value;
+            return previous;
+        }
+
+        modCount++;
+        Layout next = layout.append(key);
+        if (next == null) {
+            switchToFallback();
+            return fallback.put(key, value);
+        }
+        index = layout.size();
+        if (index == values.length) {
+            values = Arrays.copyOf(values, values.length * 2);
+        }
+        values[index] = value;
+        layout = next;
+        size++;
+        return null;
+    }
+
+    @Override
+    public Object remove(Object key) {
+        if (fallback != null) return fallback.remove(key);
+        int index = layout.indexOf(key);
+        if (index < 0) return null;
+        Object previous = values[index];
+        if (previous == REMOVED) return null;
+        values[index] = REMOVED;
+        size--;
+        modCount++;
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        modCount++;
+        if (fallback != null) {
+            fallback.clear();
+            fallback = null;
+            values = new Object[values == null ? 16 : values.length];
+        } else {
+            Arrays.fill(values, null);
+        }
+        layout = Layout.empty();
+        size = 0;
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new EntrySet();
+        }
+        return entrySet;
+    }
+
+    private void switchToFallback() {
+        modCount++;
+        LinkedHashMap<String, Object> map = new LinkedHashMap<>(2 * Math.max(size, 8));
+        for (int i = 0; i < layout.size(); i++) {
+            if (values[i] != REMOVED) {
+                map.put(layout.key(i), values[i]);
+            }
+        }
+        fallback = map;
+        layout = null;
+        values = null;
+        size = 0;
+    }
+
+    private final class EntrySet extends AbstractSet<Map.Entry<String, Object>> {
+
+        @Override
+        public int size() {
+            return HitFieldMap.this.size();
+        }
+
+        @Override
+        public void clear() {
+            HitFieldMap.this.clear();
+        }
+
+        @Override
+        public Iterator<Map.Entry<String, Object>> iterator() {
+            if (fallback != null) return fallback.entrySet().iterator();
+            return new EntryIterator();
+        }
+
+    }
+
+    private final class EntryIterator implements Iterator<Map.Entry<String, Object>> {
+
+        private final Layout iteratedLayout = layout;
+        private int expectedModCount = modCount;
+        private int next = skipRemoved(0);
+        private int current = -1;
+
+        @Override
+        public boolean hasNext() {
+            return next < iteratedLayout.size();
+        }
+
+        @Override
+        public Map.Entry<String, Object> next() {
+            checkForModification();
+            if ( ! hasNext()) throw new NoSuchElementException();
+            current = next;
+            next = skipRemoved(next + 1);
+            return new Entry(current, iteratedLayout.key(current));
+        }
+
+        @Override
+        public void remove() {
+            checkForModification();
+            if (current < 0 || values[current] == REMOVED) throw new IllegalStateException();
+            values[current] = REMOVED;
+            size--;
+            expectedModCount = ++modCount;
+        }
+
+        private int skipRemoved(int index) {
+            int limit = iteratedLayout.size();
+            while (index < limit && values[index] == REMOVED) {
+                index++;
+            }
+            return index;
+        }
+
+        private void checkForModification() {
+            if (modCount != expectedModCount) throw new ConcurrentModificationException();
+        }
+
+    }
+
+    private final class Entry implements Map.Entry<String, Object> {
+
+        private final int index;
+        private final String key;
+
+        Entry(int index, String key) {
+            this.index = index;
+            this.key = key;
+        }
+
+        @Override
+        public String getKey() { return key; }
+
+        @Override
+        public Object getValue() {
+            if (fallback != null) return fallback.get(key);
+            Object value = values[index];
+            return value == REMOVED ? null : value;
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            if (fallback != null) {
+                if ( ! fallback.containsKey(key)) throw removed();
+                return fallback.put(key, value);
+            }
+            Object previous = values[index];
+            if (previous == REMOVED) throw removed();
+            values[index] = value;
+            return previous;
+        }
+
+        private IllegalStateException removed() {
+            return new IllegalStateException("Field '" + key + "' has been removed from this hit");
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if ( ! (o instanceof Map.Entry)) return false;
+            Map.Entry<?, ?> other = (Map.Entry<?, ?>) o;
+            Object value = getValue();
+            return key.equals(other.getKey()) && (value == null ? other.getValue() == null : value.equals(other.getValue()));
+        }
+
+        @Override
+        public int hashCode() {
+            Object value = getValue();
+            return key.hashCode() ^ (value == null ? 0 : value.hashCode());
+        }
+
+        @Override
+        public String toString() { return key + "=" + getValue(); }
+
+    }
+
+    /**
+     * An ordered list of field names and their indexes. Layouts are immutable, and
+     * shared between all hits which have got the same field names in the same order.
+     */
+    private static final class Layout {
+
+        /** The layout without fields, from which all the layouts kept for reuse are reached */
+        private static volatile Layout empty = new Layout(new String[0], null);
+
+        /** The number of layouts reachable from the current empty layout */
+        private static int layoutCount = 0; // guarded by Layout.class
+
+        private final String[] keys;
+        private final Map<String, Integer> indexes;
+        /** The empty layout this was reached from */
+        private final Layout root;
+        /** The layouts reached by appending a field name to this */
+        private final Map<String, Layout> successors = new ConcurrentHashMap<>();
+
+        private Layout(String[] keys, Layout root) {
+            this.keys = keys;
+            this.root = root == null ? this : root;
+            this.indexes = new HashMap<>(2 * keys.length);
+            for (int i = 0; i < keys.length; i++) {
+                indexes.put(keys[i], i);
+            }
+        }
+
+        static Layout empty() { return empty; }
+
+        int size() { return keys.length; }
+
+        String key(int index) { return keys[index]; }
+
+        int indexOf(Object key) {
+            Integer index = indexes.get(key);
+            return index == null ? -1 : index;
+        }
+
+        /**
+         * Returns the layout of the fields in this followed by the given one, or null if this is already as large
+         * as a layout may be, or no more layouts may be kept for reuse. When that bound is reached, all the layouts
+         * kept are discarded and reuse starts over from a new empty layout. Discarded layouts remain valid for the
+         * hits using them, but are no longer shared or extended.
+         */
+        Layout append(String key) {
+            Layout next = successors.get(key);
+            if (next != null) return next;
+            if (keys.length >= MAX_LAYOUT_SIZE) return null;
+            if (keys.length == 0 && this != empty) return empty.append(key); // from a map created before a reset
+
+            synchronized (Layout.class) {
+                next = successors.get(key);
+                if (next != null) return next;
+                if (root != empty) return null;
+                if (layoutCount >= MAX_LAYOUTS) {
+                    empty = new Layout(new String[0], null);
+                    layoutCount = 0;
+                    return null;
+                }
+                String[] appended = Arrays.copyOf(keys, keys.length + 1);
+                appended[keys.length] = key;
+                next = new Layout(appended, root);
+                successors.put(key, next);
+                layoutCount++;
+                return next;
+            }
+        }
+
+    }
+
+    /** Returns the number of field layouts currently kept for reuse by all hits */
+    static int cachedLayoutCount() {
+        synchronized (Layout.class) {
+            return Layout.layoutCount;
+        }
+    }
+
+}
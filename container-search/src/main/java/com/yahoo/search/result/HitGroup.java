@@ -10,6 +10,7 @@ import com.yahoo.processing.response.ArrayDataList;
 import com.yahoo.processing.response.DataList;
 import com.yahoo.processing.response.DefaultIncomingData;
 import com.yahoo.processing.response.IncomingData;
+import com.yahoo.search.Query;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -812,6 +813,21 @@ public class HitGroup extends Hit implements DataList<Hit>, Cloneable, Iterable<
         }
     }
 
+    /**
+     * For vespa internal use only.
+     * Sets the query of this and of all the hits it contains, recursively, also of those which already have one.
+     * This is used when copies of hits produced by one query are returned to another.
+     */
+    public void replaceQueryOfAll(Query query) {
+        replaceQuery(query);
+        for (Hit hit : hits) {
+            if (hit instanceof HitGroup)
+                ((HitGroup) hit).replaceQueryOfAll(query);
+            else
+                hit.replaceQuery(query);
+        }
+    }
+
     public HitGroup clone() {
         HitGroup hitGroupClone = (HitGroup) super.clone();
         hitGroupClone.hits = new ListenableArrayList<>(this.hits.size());
@@ -1,16 +1,20 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.search.searchchain;
 
+import com.yahoo.component.ComponentId;
 import com.yahoo.component.chain.Chain;
 import com.yahoo.concurrent.ThreadFactoryFactory;
 import com.yahoo.search.Query;
 import com.yahoo.search.Result;
 import com.yahoo.search.Searcher;
+import com.yahoo.search.result.ErrorMessage;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Provides asynchronous execution of searchchains.
@@ -39,17 +43,34 @@ import java.util.concurrent.*;
  * created for each AsyncExecution instance.
  * </p>
  *
+ * <p>
+ * The executions run in a bounded thread pool, and each chain may have a bounded number of executions
+ * pending at any time. These limits are set in the qr-searchers config, see {@link #configure}.
+ * Executions which are rejected because these limits are reached complete at once, with an error result,
+ * and executions whose query has timed out before they are started complete with a timeout.
+ * </p>
+ *
  * @see com.yahoo.search.searchchain.Execution
  * @author Arne Bergene Fossaa
  */
 public class AsyncExecution {
 
+    private static final int coreThreads = 100;
+
     private static final ThreadFactory threadFactory = ThreadFactoryFactory.getThreadFactory("search");
 
-    private static final Executor executorMain = createExecutor();
+    /** The limits in use, which are the qr-searchers config defaults until configured */
+    private static volatile int maxThreads = 1000;
+    private static volatile int maxPendingPerChain = 500;
+
+    private static volatile ThreadPoolExecutor executorMain = createExecutor(maxThreads);
+
+    /** The number of executions submitted and not yet completed, per chain */
+    private static final Map<ComponentId, AtomicInteger> pendingPerChain = new ConcurrentHashMap<>();
 
-    private static Executor createExecutor() {
-        ThreadPoolExecutor executor = new ThreadPoolExecutor(100, Integer.MAX_VALUE, 1L, TimeUnit.SECONDS,
+    private static ThreadPoolExecutor createExecutor(int maxThreads) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(Math.min(coreThreads, maxThreads), maxThreads,
+                                                            1L, TimeUnit.SECONDS,
                                                             new SynchronousQueue<>(false), threadFactory);
         // Prestart needed, if not all threads will be created by the fist N tasks and hence they might also
         // get the dreaded thread locals initialized even if they will never run.
@@ -58,6 +79,29 @@ public class AsyncExecution {
         return executor;
     }
 
+    /**
+     * Sets the limits of all async executions from the
+     * <code>com.yahoo.search.searchchain.AsyncExecution</code> values of the qr-searchers config.
+     * If the max number of threads changes, executions are submitted to a new thread pool from now on,
+     * while those already running in the old one complete.
+     * This is for internal use, and is called when a search handler is configured.
+     *
+     * @param maxThreads the max number of threads running executions, at most 100 of which are kept when idle
+     * @param maxPendingPerChain the max number of executions of a single chain which may be pending at once
+     */
+    public static synchronized void configure(int maxThreads, int maxPendingPerChain) {
+        if (maxThreads < 1 || maxPendingPerChain < 1)
+            throw new IllegalArgumentException("Async execution limits must be positive, got " + maxThreads +
+                                               " threads and " + maxPendingPerChain + " pending executions per chain");
+        AsyncExecution.maxPendingPerChain = maxPendingPerChain;
+        if (maxThreads == AsyncExecution.maxThreads) return;
+
+        ThreadPoolExecutor previous = executorMain;
+        executorMain = createExecutor(maxThreads);
+        AsyncExecution.maxThreads = maxThreads;
+        previous.shutdown();
+    }
+
     /** The execution this executes */
     private final Execution execution;
 
@@ -129,8 +173,16 @@ public class AsyncExecution {
         }, query);
     }
 
-    private static Executor getExecutor() {
-        return executorMain;
+    /** Executes the given task, in the current thread pool also if the pool is replaced while submitting it */
+    private static void execute(Runnable task) {
+        ThreadPoolExecutor executor = executorMain;
+        try {
+            executor.execute(task);
+        }
+        catch (RejectedExecutionException e) {
+            if ( ! executor.isShutdown()) throw e;
+            executorMain.execute(task);
+        }
     }
 
     /**
@@ -146,29 +198,42 @@ public class AsyncExecution {
 
     }
 
-    private static <T> Future<T> getFuture(Callable<T> callable) {
-        final FutureTask<T> future = new FutureTask<>(callable);
-        getExecutor().execute(future);
-        return future;
-    }
+    private FutureResult getFutureResult(Callable<Result> callable, Query query) {
+        AtomicInteger pending = pendingPerChain.computeIfAbsent(execution.chain().getId(), id -> new AtomicInteger());
+        if (pending.incrementAndGet() > maxPendingPerChain) {
+            pending.decrementAndGet();
+            return rejected(query, "too many pending executions of " + execution.chain().getId());
+        }
 
-    private static Future<Void> runTask(Runnable runnable) {
-        return getFuture(() -> {
-            runnable.run();
-            return null;
-        });
+        FutureResult future = new FutureResult(() -> {
+            if (query.getTimeLeft() <= 0)
+                throw new com.yahoo.search.federation.TimeoutException("Timed out before executing " + execution.chain().getId());
+            return callable.call();
+        }, execution, query);
+        try {
+            execute(future);
+        }
+        catch (RejectedExecutionException e) {
+            pending.decrementAndGet();
+            return rejected(query, "all " + maxThreads + " search threads are busy");
+        }
+        // Also when the future is cancelled before it runs
+        future.whenDone(pending::decrementAndGet);
+        return future;
     }
 
-    private FutureResult getFutureResult(Callable<Result> callable, Query query) {
-        FutureResult future = new FutureResult(callable, execution, query);
-        getExecutor().execute(future);
+    /** Returns an already completed future result containing an error saying why this could not be executed */
+    private FutureResult rejected(Query query, String reason) {
+        ErrorMessage error = ErrorMessage.createTooManyPending("Could not execute '" + execution + "': " + reason);
+        FutureResult future = new FutureResult(() -> new Result(query, error), execution, query);
+        future.run();
         return future;
     }
 
     /*
      * Waits for all futures until the given timeout. If a FutureResult isn't
-     * done when the timeout expires, it will be cancelled, and it will return a
-     * result. All unfinished Futures will be cancelled.
+     * done when the timeout expires, a result containing a timeout error is returned for it.
+     * This waits for the tasks to signal completion, and does not use any other thread than the calling one.
      *
      * @return the list of results in the same order as returned from the task
      * collection
@@ -176,12 +241,12 @@ public class AsyncExecution {
     public static List<Result> waitForAll(Collection<FutureResult> tasks, long timeoutMs) {
         // Copy the list in case it is modified while we are waiting
         List<FutureResult> workingTasks = new ArrayList<>(tasks);
+        CountDownLatch remaining = new CountDownLatch(workingTasks.size());
+        for (FutureResult task : workingTasks)
+            task.whenDone(remaining::countDown);
         try {
-            runTask(() -> {
-                for (FutureResult task : workingTasks)
-                    task.get();
-            }).get(timeoutMs, TimeUnit.MILLISECONDS);
-        }catch (TimeoutException | InterruptedException | ExecutionException e) {
+            remaining.await(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
             // Handle timeouts below
         }
 
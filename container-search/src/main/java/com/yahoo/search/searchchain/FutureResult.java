@@ -6,6 +6,8 @@ import com.yahoo.search.Result;
 import com.yahoo.search.result.ErrorMessage;
 import com.yahoo.yolean.Exceptions;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
@@ -27,6 +29,9 @@ public class FutureResult extends FutureTask<Result> {
     /** Only used for generating messages */
     private final Execution execution;
 
+    /** The actions to run when this completes, or null when it has completed */
+    private List<Runnable> completionListeners = new ArrayList<>();
+
     private final static Logger log = Logger.getLogger(FutureResult.class.getName());
 
     public FutureResult(Callable<Result> callable, Execution execution, Query query) {
@@ -48,6 +53,8 @@ public class FutureResult extends FutureTask<Result> {
             return new Result(getQuery(), createInterruptedError(e));
         }
         catch (ExecutionException e) {
+            if (e.getCause() instanceof com.yahoo.search.federation.TimeoutException)
+                return new Result(getQuery(), createTimeoutError());
             return new Result(getQuery(), createExecutionError(e));
         }
     }
@@ -85,6 +92,31 @@ public class FutureResult extends FutureTask<Result> {
         }
     }
 
+    /**
+     * Runs the given action when this completes, or immediately in this thread if it has already completed.
+     * The action is run in the thread completing this, so it must be quick and not block.
+     */
+    public void whenDone(Runnable action) {
+        synchronized (this) {
+            if (completionListeners != null) {
+                completionListeners.add(action);
+                return;
+            }
+        }
+        action.run();
+    }
+
+    @Override
+    protected void done() {
+        List<Runnable> listeners;
+        synchronized (this) {
+            listeners = completionListeners;
+            completionListeners = null;
+        }
+        for (Runnable listener : listeners)
+            listener.run();
+    }
+
     /** Returns the query used in this execution, never null */
     public Query getQuery() {
         return query;
@@ -2,6 +2,8 @@
 package com.yahoo.search.yql;
 
 import com.google.common.annotations.Beta;
+import com.google.inject.Inject;
+import com.yahoo.jdisc.Metric;
 import com.yahoo.search.Query;
 import com.yahoo.search.Result;
 import com.yahoo.search.Searcher;
@@ -36,7 +38,23 @@ public class MinimalQueryInserter extends Searcher {
     private static final CompoundName MAX_HITS = new CompoundName("maxHits");
     private static final CompoundName MAX_OFFSET = new CompoundName("maxOffset");
 
+    /** Set to true, e.g. in a query profile, to bind queries of already seen YQL shapes from the program cache */
+    public static final CompoundName YQL_CACHE = new CompoundName("yqlCache");
+
+    private static final int PROGRAM_CACHE_SIZE = 1024;
+    private static final String PROGRAM_CACHE_HITS_METRIC = "yql_program_cache_hits";
+    private static final String PROGRAM_CACHE_MISSES_METRIC = "yql_program_cache_misses";
+
+    private final YqlProgramCache programCache = new YqlProgramCache(PROGRAM_CACHE_SIZE);
+    private final Metric metric;
+
     public MinimalQueryInserter() {
+        this(null);
+    }
+
+    @Inject
+    public MinimalQueryInserter(Metric metric) {
+        this.metric = metric;
     }
 
     @Override
@@ -48,6 +66,10 @@ public class MinimalQueryInserter extends Searcher {
         YqlParser parser = (YqlParser) ParserFactory.newInstance(Query.Type.YQL, env);
         parser.setQueryParser(false);
         parser.setUserQuery(query);
+        boolean useProgramCache = query.properties().getBoolean(YQL_CACHE, false);
+        if (useProgramCache) {
+            parser.setProgramCache(programCache);
+        }
         QueryTree newTree;
         try {
             newTree = parser.parse(Parsable.fromQueryModel(query.getModel())
@@ -56,6 +78,9 @@ public class MinimalQueryInserter extends Searcher {
             return new Result(query, ErrorMessage.createInvalidQueryParameter(
                               "Could not instantiate query from YQL", e));
         }
+        if (useProgramCache && metric != null) {
+            metric.add(parser.isProgramCacheHit() ? PROGRAM_CACHE_HITS_METRIC : PROGRAM_CACHE_MISSES_METRIC, 1, null);
+        }
         if (parser.getOffset() != null) {
             int maxHits = query.properties().getInteger(MAX_HITS);
             int maxOffset = query.properties().getInteger(MAX_OFFSET);
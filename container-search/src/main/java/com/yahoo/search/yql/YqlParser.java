@@ -198,6 +198,8 @@ public class YqlParser implements Parser {
     private Version segmenterVersion;
     private boolean queryParser = true;
     private boolean resegment = false;
+    private YqlProgramCache programCache = null;
+    private boolean programCacheHit = false;
     private final Deque<OperatorNode<?>> annotationStack = new ArrayDeque<>();
     private final ParserEnvironment environment;
 
@@ -258,6 +260,8 @@ public class YqlParser implements Parser {
         segmenterVersion = null;
         // queryParser set prior to calling this
         resegment = false;
+        // programCache set prior to calling this
+        programCacheHit = false;
         return buildTree(parseYqlProgram());
     }
 
@@ -728,7 +732,7 @@ public class YqlParser implements Parser {
     private OperatorNode<?> parseYqlProgram() {
         OperatorNode<?> ast;
         try {
-            ast = new ProgramParser().parse("query", currentlyParsing.getQuery());
+            ast = parseProgram(currentlyParsing.getQuery());
         } catch (Exception e) {
             throw new IllegalArgumentException(e);
         }
@@ -750,6 +754,15 @@ public class YqlParser implements Parser {
         return ast;
     }
 
+    private OperatorNode<?> parseProgram(String yql) throws Exception {
+        if (programCache == null) {
+            return new ProgramParser().parse("query", yql);
+        }
+        OperatorNode<?> ast = programCache.get(yql);
+        programCacheHit = ast != null;
+        return programCacheHit ? ast : programCache.parse(yql);
+    }
+
     @SuppressWarnings("unchecked")
     private OperatorNode<?> fetchPipe(OperatorNode<?> toScan) {
         OperatorNode<?> ast = toScan;
@@ -1465,6 +1478,12 @@ public class YqlParser implements Parser {
     @Beta
     public void setUserQuery(@NonNull Query userQuery) { this.userQuery = userQuery; }
 
+    /** Sets the cache of parsed programs to use, or null (the default) to parse each program from scratch */
+    void setProgramCache(YqlProgramCache programCache) { this.programCache = programCache; }
+
+    /** Returns whether the program of the latest parsed query was bound from the program cache */
+    boolean isProgramCacheHit() { return programCacheHit; }
+
     @Beta
     public Set<String> getYqlSummaryFields() { return yqlSummaryFields; }
 
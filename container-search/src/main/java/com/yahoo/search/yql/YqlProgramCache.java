@@ -0,0 +1,420 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.yql;
+
+import org.antlr.v4.runtime.RecognitionException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded cache of parsed YQL programs, keyed on the YQL text with its string and integer literals
+ * replaced by placeholders. Queries which differ only in their literal values share a cached program,
+ * and the literals of the query are bound into a copy of it instead of running the ANTLR parser.
+ * <p>
+ * A program is only cached if each placeholder ends up as a whole value in the parsed program, so a
+ * program from the cache is always identical to what parsing the original YQL would produce.
+ * Literals which are not simple values, like those inside grouping expressions, make a YQL shape uncacheable,
+ * and such queries are parsed as usual. This class is thread-safe.
+ */
+final class YqlProgramCache {
+
+    /** The max number of literals replaced by placeholders in a single query */
+    static final int MAX_LITERALS = 64;
+
+    private static final char STRING_PLACEHOLDER = '\uE000';
+    private static final char STRING_PLACEHOLDER_INDEX = '\uE100';
+    private static final int INTEGER_PLACEHOLDER = 1999000000;
+    private static final Entry UNCACHEABLE = new Entry(null);
+
+    private final ProgramMap programs;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param maxSize the max number of distinct YQL shapes to keep
+     */
+    YqlProgramCache(int maxSize) {
+        programs = new ProgramMap(maxSize);
+    }
+
+    /**
+     * Returns the program of the given YQL from the cache, or null if its shape is not cached.
+     * A null return should be followed by a call to {@link #parse}.
+     */
+    OperatorNode<?> get(String yql) {
+        Template template = Template.of(yql);
+        Entry entry = template == null ? null : programs.getSynchronized(template.text);
+        if (entry == null || entry.program == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return bind(entry.program, template.values);
+    }
+
+    /** Parses the given YQL, adding its shape to the cache if possible */
+    OperatorNode<?> parse(String yql) throws IOException, RecognitionException {
+        Template template = Template.of(yql);
+        if (template == null) {
+            return parseProgram(yql);
+        }
+        Entry entry = programs.getSynchronized(template.text);
+        if (entry == null) {
+            entry = compile(template);
+            programs.putSynchronized(template.text, entry);
+        }
+        if (entry.program == null) {
+            return parseProgram(yql);
+        }
+        return bind(entry.program, template.values);
+    }
+
+    /** Returns the number of lookups which found the shape of the query in this */
+    long getHits() {
+        return hits.get();
+    }
+
+    /** Returns the number of lookups which did not find the shape of the query in this */
+    long getMisses() {
+        return misses.get();
+    }
+
+    /** Returns the number of YQL shapes in this, including those which could not be cached */
+    int size() {
+        synchronized (programs) {
+            return programs.size();
+        }
+    }
+
+    private static OperatorNode<?> parseProgram(String yql) throws IOException, RecognitionException {
+        return new ProgramParser().parse("query", yql);
+    }
+
+    private static Entry compile(Template template) {
+        OperatorNode<?> program;
+        try {
+            program = parseProgram(template.text);
+        } catch (Exception e) {
+            return UNCACHEABLE; // report the error from parsing the original YQL instead
+        }
+        int[] counts = new int[template.values.size()];
+        if ( ! countPlaceholders(program, counts)) {
+            return UNCACHEABLE;
+        }
+        for (int count : counts) {
+            if (count != 1) {
+                return UNCACHEABLE;
+            }
+        }
+        return new Entry(program);
+    }
+
+    /** Counts the occurrences of each placeholder, returning false if one is found which is not a whole value */
+    private static boolean countPlaceholders(Object value, int[] counts) {
+        if (value instanceof OperatorNode) {
+            OperatorNode<?> node = (OperatorNode<?>) value;
+            for (Object argument : node.getArguments()) {
+                if ( ! countPlaceholders(argument, counts)) return false;
+            }
+            return countPlaceholders(node.getAnnotations(), counts);
+        } else if (value instanceof List) {
+            for (Object element : (List<?>) value) {
+                if ( ! countPlaceholders(element, counts)) return false;
+            }
+        } else if (value instanceof Map) {
+            for (Object element : ((Map<?, ?>) value).values()) {
+                if ( ! countPlaceholders(element, counts)) return false;
+            }
+        } else if (value instanceof String) {
+            String s = (String) value;
+            if (s.indexOf(STRING_PLACEHOLDER) >= 0) {
+                int slot = stringSlot(s);
+                if (slot < 0 || slot >= counts.length) return false;
+                counts[slot]++;
+            }
+        } else if (value instanceof Number) {
+            int slot = integerSlot(value);
+            if (slot >= 0) {
+                if (slot >= counts.length || ! (value instanceof Integer)) return false;
+                counts[slot]++;
+            }
+        }
+        return true;
+    }
+
+    /** Returns a copy of the given value with the placeholders replaced by the given values */
+    private static Object bindValue(Object value, List<Object> values) {
+        if (value instanceof OperatorNode) {
+            return bind((OperatorNode<?>) value, values);
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            List<Object> bound = new ArrayList<>(list.size());
+            for (Object element : list) {
+                bound.add(bindValue(element, values));
+            }
+            return bound;
+        } else if (value instanceof Map) {
+            return bindMap((Map<?, ?>) value, values);
+        } else if (value instanceof String) {
+            int slot = stringSlot((String) value);
+            return slot < 0 ? value : values.get(slot);
+        } else if (value instanceof Integer) {
+            int slot = integerSlot(value);
+            return slot < 0 ? value : values.get(slot);
+        }
+        return value;
+    }
+
+    private static OperatorNode<?> bind(OperatorNode<?> node, List<Object> values) {
+        if (values.isEmpty()) {
+            return node;
+        }
+        Object[] arguments = node.getArguments();
+        for (int i = 0; i < arguments.length; ++i) {
+            arguments[i] = bindValue(arguments[i], values);
+        }
+        return OperatorNode.create(node.getLocation(), bindMap(node.getAnnotations(), values),
+                                   node.getOperator(), arguments);
+    }
+
+    private static Map<String, Object> bindMap(Map<?, ?> map, List<Object> values) {
+        Map<String, Object> bound = new LinkedHashMap<>();
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            bound.put((String) entry.getKey(), bindValue(entry.getValue(), values));
+        }
+        return bound;
+    }
+
+    private static String stringPlaceholder(int slot) {
+        return new String(new char[] { STRING_PLACEHOLDER, (char) (STRING_PLACEHOLDER_INDEX + slot) });
+    }
+
+    private static int stringSlot(String value) {
+        if (value.length() != 2 || value.charAt(0) != STRING_PLACEHOLDER) return -1;
+        int slot = value.charAt(1) - STRING_PLACEHOLDER_INDEX;
+        return slot >= 0 && slot < MAX_LITERALS ? slot : -1;
+    }
+
+    private static int integerSlot(Object value) {
+        long slot = ((Number) value).longValue() - INTEGER_PLACEHOLDER;
+        return slot >= 0 && slot < MAX_LITERALS ? (int) slot : -1;
+    }
+
+    /** A cached program, or null if the YQL shape cannot be cached */
+    private static final class Entry {
+
+        final OperatorNode<?> program;
+
+        Entry(OperatorNode<?> program) {
+            this.program = program;
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static final class ProgramMap extends LinkedHashMap<String, Entry> {
+
+        private final int maxSize;
+
+        ProgramMap(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        synchronized Entry getSynchronized(String key) {
+            return get(key);
+        }
+
+        synchronized void putSynchronized(String key, Entry entry) {
+            put(key, entry);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> entry) {
+            return size() > maxSize;
+        }
+    }
+
+    /** YQL text with its literals replaced by placeholders, and the values of those literals */
+    static final class Template {
+
+        final String text;
+        final List<Object> values;
+
+        private Template(String text, List<Object> values) {
+            this.text = text;
+            this.values = values;
+        }
+
+        /** Returns the template of the given YQL, or null if it has too many literals or is malformed */
+        static Template of(String yql) {
+            StringBuilder text = new StringBuilder(yql.length());
+            List<Object> values = new ArrayList<>();
+            int length = yql.length();
+            int i = 0;
+            while (i < length) {
+                char c = yql.charAt(i);
+                int end;
+                if (c == '"' || c == '\'') {
+                    end = endOfString(yql, i);
+                    if (end < 0) return null;
+                    if (isFollowedByColon(yql, end)) { // a map key, which is not a value
+                        text.append(yql, i, end);
+                    } else {
+                        if (values.size() == MAX_LITERALS) return null;
+                        text.append('"').append(stringPlaceholder(values.size())).append('"');
+                        values.add(StringUnescaper.unquote(yql.substring(i, end)));
+                    }
+                } else if (c == '/' && i + 1 < length && (yql.charAt(i + 1) == '/' || yql.charAt(i + 1) == '*')) {
+                    end = endOfComment(yql, i);
+                    text.append(yql, i, end);
+                } else if (isIdentifierStart(c)) {
+                    end = i + 1;
+                    while (end < length && isIdentifierPart(yql.charAt(end))) {
+                        ++end;
+                    }
+                    if (isKeyword(yql, i, end, "all") || isKeyword(yql, i, end, "each")) {
+                        end = endOfGrouping(yql, end);
+                    }
+                    text.append(yql, i, end);
+                } else if (isDigit(c)) {
+                    end = i + 1;
+                    while (end < length && isDigit(yql.charAt(end))) {
+                        ++end;
+                    }
+                    Integer value = isPlainInteger(yql, i, end) ? parseInteger(yql.substring(i, end)) : null;
+                    if (value == null) { // leave it to the parser
+                        text.append(yql, i, end);
+                    } else {
+                        if (values.size() == MAX_LITERALS) return null;
+                        text.append(INTEGER_PLACEHOLDER + values.size());
+                        values.add(value);
+                    }
+                } else {
+                    end = i + 1;
+                    text.append(c);
+                }
+                i = end;
+            }
+            return new Template(text.toString(), values);
+        }
+
+        private static int endOfString(String yql, int start) {
+            char quote = yql.charAt(start);
+            for (int i = start + 1; i < yql.length(); ++i) {
+                char c = yql.charAt(i);
+                if (c == '\\') {
+                    ++i;
+                } else if (c == quote) {
+                    return i + 1;
+                }
+            }
+            return -1;
+        }
+
+        private static int endOfComment(String yql, int start) {
+            if (yql.charAt(start + 1) == '/') {
+                int end = yql.indexOf('\n', start);
+                return end < 0 ? yql.length() : end + 1;
+            }
+            int end = yql.indexOf("*/", start + 2);
+            return end < 0 ? yql.length() : end + 2;
+        }
+
+        /** Returns the end of the grouping arguments following "all" or "each", which are kept as they are */
+        private static int endOfGrouping(String yql, int start) {
+            int end = endOfGroupingArgument(yql, skipWhitespace(yql, start));
+            if (end < 0) return start;
+            while (true) {
+                int keyword = skipWhitespace(yql, end);
+                int keywordEnd = keyword;
+                while (keywordEnd < yql.length() && isIdentifierPart(yql.charAt(keywordEnd))) {
+                    ++keywordEnd;
+                }
+                if ( ! isKeyword(yql, keyword, keywordEnd, "as") && ! isKeyword(yql, keyword, keywordEnd, "where")) {
+                    return end;
+                }
+                int argumentEnd = endOfGroupingArgument(yql, skipWhitespace(yql, keywordEnd));
+                if (argumentEnd < 0) {
+                    return end;
+                }
+                end = argumentEnd;
+            }
+        }
+
+        private static int endOfGroupingArgument(String yql, int start) {
+            if (start >= yql.length() || "([<".indexOf(yql.charAt(start)) < 0) return -1;
+            int depth = 0;
+            for (int i = start; i < yql.length(); ++i) {
+                char c = yql.charAt(i);
+                if (c == '(' || c == '[' || c == '<') {
+                    ++depth;
+                } else if (c == ')' || c == ']' || c == '>') {
+                    if (--depth == 0) {
+                        return i + 1;
+                    }
+                }
+            }
+            return -1;
+        }
+
+        private static boolean isPlainInteger(String yql, int start, int end) {
+            if (start > 0) {
+                char previous = yql.charAt(start - 1);
+                if (previous == '-' || previous == '.') return false;
+            }
+            if (end < yql.length()) {
+                char next = yql.charAt(end);
+                if (next == '.' || isIdentifierPart(next)) return false;
+            }
+            return true;
+        }
+
+        private static Integer parseInteger(String digits) {
+            try {
+                return Integer.valueOf(digits);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        private static boolean isFollowedByColon(String yql, int start) {
+            int i = skipWhitespace(yql, start);
+            return i < yql.length() && yql.charAt(i) == ':';
+        }
+
+        private static int skipWhitespace(String yql, int start) {
+            int i = start;
+            while (i < yql.length() && isWhitespace(yql.charAt(i))) {
+                ++i;
+            }
+            return i;
+        }
+
+        private static boolean isKeyword(String yql, int start, int end, String keyword) {
+            return end - start == keyword.length() && yql.regionMatches(true, start, keyword, 0, keyword.length());
+        }
+
+        private static boolean isWhitespace(char c) {
+            return c == ' ' || c == '\t' || c == '\r' || c == '\n';
+        }
+
+        private static boolean isDigit(char c) {
+            return c >= '0' && c <= '9';
+        }
+
+        private static boolean isIdentifierStart(char c) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+        }
+
+        private static boolean isIdentifierPart(char c) {
+            return isIdentifierStart(c) || isDigit(c) || c == ':';
+        }
+    }
+
+}
@@ -37,9 +37,13 @@ import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 
@@ -49,6 +53,9 @@ import java.util.logging.Logger;
  * descending on rank), summaries (sorted on document id), and
  * groupings. The resulting data can be fetched when the query has
  * completed.
+ * <p>
+ * Replies are handled as they arrive, by any number of threads. Only the best offset+hits hits are kept,
+ * and the summaries of hits which are pushed out of those are dropped.
  *
  * @author Ulf Carlin
  */
@@ -67,7 +74,15 @@ class VdsVisitor extends VisitorDataHandler implements Visitor {
 
     private static final Logger log = Logger.getLogger(VdsVisitor.class.getName());
     private final VisitorParameters params = new VisitorParameters("");
-    private List<SearchResult.Hit> hits = new ArrayList<>();
+
+    /** The best hits received so far, with the worst of them at the head. Guarded by this */
+    private final PriorityQueue<RankedHit> hits;
+    /** The max number of hits to keep */
+    private final int maxHits;
+    /** The number of hits received so far. Guarded by this */
+    private long hitSequence = 0;
+    /** The best hits in order, or null if this is not computed since hits changed. Guarded by this */
+    private List<SearchResult.Hit> sortedHits = null;
     private int totalHitCount = 0;
 
     private final Map<String, DocumentSummary.Summary> summaryMap = new HashMap<>();
@@ -106,14 +121,14 @@ class VdsVisitor extends VisitorDataHandler implements Visitor {
     }
 
     public VdsVisitor(Query query, String searchCluster, Route route) {
-        this.query = query;
-        visitorSessionFactory = new MessageBusVisitorSessionFactory();
-        setVisitorParameters(searchCluster, route);
+        this(query, searchCluster, route, new MessageBusVisitorSessionFactory());
     }
 
     public VdsVisitor(Query query, String searchCluster, Route route, VisitorSessionFactory visitorSessionFactory) {
         this.query = query;
         this.visitorSessionFactory = visitorSessionFactory;
+        this.maxHits = query.getOffset() + query.getHits();
+        this.hits = new PriorityQueue<>(Math.max(1, Math.min(maxHits, 1000)), Collections.reverseOrder());
         setVisitorParameters(searchCluster, route);
     }
 
@@ -346,8 +361,8 @@ class VdsVisitor extends VisitorDataHandler implements Visitor {
     }
 
     public void onQueryResult(SearchResult sr, DocumentSummary summary) {
-        handleSearchResult(sr);
-        handleSummary(summary);
+        Set<String> droppedDocIds = handleSearchResult(sr);
+        handleSummary(summary, droppedDocIds);
     }
 
     public void onSearchResult(SearchResult sr) {
@@ -357,25 +372,45 @@ class VdsVisitor extends VisitorDataHandler implements Visitor {
         handleSearchResult(sr);
     }
 
-    private void handleSearchResult(SearchResult sr) {
+    /** Merges the hits and groupings of a search result into this and returns the ids of the hits dropped by it */
+    private Set<String> handleSearchResult(SearchResult sr) {
         final int hitCountTotal = sr.getTotalHitCount();
         final int hitCount = sr.getHitCount();
         if (log.isLoggable(LogLevel.DEBUG)) {
             log.log(LogLevel.DEBUG, "Got SearchResult with " + hitCountTotal + " in total and " + hitCount + " hits in real for query with selection " + params.getDocumentSelection());
         }
 
-        List<SearchResult.Hit> newHits = new ArrayList<>(hitCount);
-        for (int i = 0; i < hitCount; i++) {
-            SearchResult.Hit hit = sr.getHit(i);
-            newHits.add(hit);
-        }
+        Set<String> droppedDocIds = new HashSet<>();
         synchronized (this) {
             totalHitCount += hitCountTotal;
-            hits = ListMerger.mergeIntoArrayList(hits, newHits, query.getOffset() + query.getHits());
+            for (int i = 0; i < hitCount; i++) {
+                RankedHit dropped = addHit(new RankedHit(sr.getHit(i), hitSequence++));
+                if (dropped != null)
+                    droppedDocIds.add(dropped.hit.getDocId());
+            }
+        }
+        if ( ! droppedDocIds.isEmpty()) {
+            synchronized (summaryMap) {
+                summaryMap.keySet().removeAll(droppedDocIds);
+            }
         }
 
         Map<Integer, byte []> newGroupingMap = sr.getGroupingList();
         mergeGroupingMaps(newGroupingMap);
+        return droppedDocIds;
+    }
+
+    /** Adds a hit to the best hits if it is among them, and returns the hit this drops, or null if none */
+    private RankedHit addHit(RankedHit hit) {
+        if (hits.size() >= maxHits) {
+            if (hits.isEmpty() || hit.compareTo(hits.peek()) >= 0) return hit;
+            hits.add(hit);
+            sortedHits = null;
+            return hits.poll();
+        }
+        hits.add(hit);
+        sortedHits = null;
+        return null;
     }
 
     private void mergeGroupingMaps(Map<Integer, byte []> newGroupingMap) {
@@ -410,10 +445,11 @@ class VdsVisitor extends VisitorDataHandler implements Visitor {
         if (log.isLoggable(LogLevel.SPAM)) {
             log.log(LogLevel.SPAM, "Got DocumentSummary for query with selection " + params.getDocumentSelection());
         }
-        handleSummary(ds);
+        handleSummary(ds, Collections.emptySet());
     }
 
-    private void handleSummary(DocumentSummary ds) {
+    /** Adds the summaries in the given document summary to this, except those of the given dropped hits */
+    private void handleSummary(DocumentSummary ds, Set<String> droppedDocIds) {
         int summaryCount = ds.getSummaryCount();
         if (log.isLoggable(LogLevel.DEBUG)) {
             log.log(LogLevel.DEBUG, "Got DocumentSummary with " + summaryCount + " summaries for query with selection " + params.getDocumentSelection());
@@ -421,16 +457,24 @@ class VdsVisitor extends VisitorDataHandler implements Visitor {
         synchronized (summaryMap) {
             for (int i = 0; i < summaryCount; i++) {
                 DocumentSummary.Summary summary = ds.getSummary(i);
+                if (droppedDocIds.contains(summary.getDocId())) continue;
                 summaryMap.put(summary.getDocId(), summary);
             }
         }
     }
 
     @Override
-    final public List<SearchResult.Hit> getHits() {
-        int fromIndex = Math.min(hits.size(), query.getOffset());
-        int toIndex = Math.min(hits.size(), query.getOffset() + query.getHits());
-        return hits.subList(fromIndex, toIndex);
+    final public synchronized List<SearchResult.Hit> getHits() {
+        if (sortedHits == null) {
+            List<RankedHit> rankedHits = new ArrayList<>(hits);
+            Collections.sort(rankedHits);
+            sortedHits = new ArrayList<>(rankedHits.size());
+            for (RankedHit rankedHit : rankedHits)
+                sortedHits.add(rankedHit.hit);
+        }
+        int fromIndex = Math.min(sortedHits.size(), query.getOffset());
+        int toIndex = Math.min(sortedHits.size(), query.getOffset() + query.getHits());
+        return sortedHits.subList(fromIndex, toIndex);
     }
 
     @Override
@@ -449,4 +493,24 @@ class VdsVisitor extends VisitorDataHandler implements Visitor {
         return Arrays.asList(array);
     }
 
+    /** A hit and the order it was received in, which breaks ties in favor of the hit received first */
+    private static final class RankedHit implements Comparable<RankedHit> {
+
+        private final SearchResult.Hit hit;
+        private final long sequence;
+
+        RankedHit(SearchResult.Hit hit, long sequence) {
+            this.hit = hit;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(RankedHit other) {
+            int order = hit.compareTo(other.hit);
+            if (order != 0) return order;
+            return Long.compare(sequence, other.sequence);
+        }
+
+    }
+
 }
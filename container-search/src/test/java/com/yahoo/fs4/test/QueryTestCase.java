@@ -266,6 +266,31 @@ public class QueryTestCase extends junit.framework.TestCase {
         assertEqualArrays(correctBuffer,encoded);
     }
 
+    public void testEncodeLargePacketIntoExactlySizedBuffer() throws BufferTooSmallException {
+        Query query = new Query("/?timeout=0");
+        WeightedSetItem tokens = new WeightedSetItem("tokens");
+        for (int i = 0; i < 10000; i++) {
+            tokens.addToken("token" + i, i);
+        }
+        query.getModel().getQueryTree().setRoot(tokens);
+
+        QueryPacket packet = QueryPacket.create(query);
+        ByteBuffer buffer = packet.grantEncodingBuffer(0x07070707);
+        assertEquals(buffer.capacity(), buffer.limit());
+        byte[] encoded = new byte[buffer.limit()];
+        buffer.get(encoded);
+
+        QueryPacket reference = QueryPacket.create(query);
+        ByteBuffer referenceBuffer = ByteBuffer.allocate(1024 * 1024);
+        reference.encode(referenceBuffer, 0x07070707);
+        byte[] referenceEncoded = new byte[referenceBuffer.position()];
+        referenceBuffer.rewind();
+        referenceBuffer.get(referenceEncoded);
+
+        assertEqualArrays(referenceEncoded, encoded);
+        assertEqualArrays(reference.getOpaqueCacheKey(), packet.getOpaqueCacheKey());
+    }
+
     public static byte[] packetToBytes(Packet packet) {
         try {
             ByteBuffer buffer=ByteBuffer.allocate(500);
@@ -15,6 +15,7 @@ import com.yahoo.search.result.Hit;
 import com.yahoo.search.searchchain.Execution;
 import com.yahoo.container.handler.VipStatus;
 import com.yahoo.container.protect.Error;
+import com.yahoo.jdisc.Metric;
 import com.yahoo.statistics.Statistics;
 import com.yahoo.vespa.config.search.DispatchConfig;
 
@@ -22,6 +23,8 @@ import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.util.*;
 
+import static org.mockito.Mockito.mock;
+
 /**
  * Tests cluster monitoring
  *
@@ -516,7 +519,7 @@ public class ClusterSearcherTestCase extends junit.framework.TestCase {
         ClusterSearcher searcher = new ClusterSearcher(id, qrsCfg, clusterCfg, documentDbCfg, emulationCfg, monitorCfg, 
                                                        new DispatchConfig(new DispatchConfig.Builder()), 
                                                        createClusterInfoConfig(),
-                                                       statistics, fs4ResourcePool, new VipStatus());
+                                                       statistics, fs4ResourcePool, new VipStatus(), mock(Metric.class));
         return searcher;
     }
 
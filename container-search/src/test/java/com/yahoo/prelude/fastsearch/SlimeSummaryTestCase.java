@@ -21,7 +21,9 @@ import org.junit.Test;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.CoreMatchers.*;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 
 public class SlimeSummaryTestCase {
@@ -108,6 +110,13 @@ public class SlimeSummaryTestCase {
         byte[] docsum = makeDocsum(tensor1, tensor2);
         FastHit hit = new FastHit();
         set.lazyDecode("default", docsum, hit);
+        assertTrue(hit.fieldIsNotDecoded("string_field"));
+        assertTrue(hit.fieldIsNotDecoded("longstring_field"));
+        assertThat(new String(hit.fetchFieldAsUtf8("string_field").getUtf8(), StandardCharsets.UTF_8), equalTo("string_value"));
+        assertThat(hit.fields().get("string_field"), equalTo((Object)"string_value"));
+        assertThat(hit.fields().get("longstring_field"), equalTo((Object)"longstring_value"));
+        assertFalse(hit.fieldIsNotDecoded("string_field"));
+        assertFalse(hit.fieldIsNotDecoded("longstring_field"));
         assertThat(hit.getField("integer_field"), equalTo(4));
         assertThat(hit.getField("short_field"),   equalTo((short)2));
         assertThat(hit.getField("byte_field"),    equalTo((byte)1));
@@ -39,6 +39,8 @@ import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -253,6 +255,88 @@ public class FastSearcherTestCase {
         }
     }
 
+    @Test
+    public void testConcurrentIdenticalQueriesAreSentToTheBackendOnce() throws InterruptedException {
+        BlockingChannel channel = new BlockingChannel();
+        FastSearcher fastSearcher = createFastSearcher(channel);
+
+        AtomicReference<Result> first = new AtomicReference<>();
+        Thread firstSearch = searchInThread(fastSearcher, new Query("?query=ignored"), first);
+        channel.awaitQueriesSent(1);
+        AtomicReference<Result> second = new AtomicReference<>();
+        Thread secondSearch = searchInThread(fastSearcher, new Query("?query=ignored"), second);
+        awaitTimedWaiting(secondSearch); // for the result of the first search
+        channel.replyAllowed.countDown();
+        firstSearch.join();
+        secondSearch.join();
+
+        assertEquals("The second query got the result of the first", 1, channel.queriesSent.get());
+        assertEquals(2, first.get().getHitCount());
+        assertEquals(2, second.get().getHitCount());
+        assertTrue(second.get().hits().get(0).isCached());
+    }
+
+    @Test
+    public void testWaitingForAnIdenticalQueryTimesOut() throws InterruptedException {
+        BlockingChannel channel = new BlockingChannel();
+        FastSearcher fastSearcher = createFastSearcher(channel);
+
+        AtomicReference<Result> first = new AtomicReference<>();
+        Thread firstSearch = searchInThread(fastSearcher, new Query("?query=ignored"), first);
+        channel.awaitQueriesSent(1);
+        Query query = new Query("?query=ignored");
+        query.setTimeout(100);
+        Result second = doSearch(fastSearcher, query, 0, 10);
+        channel.replyAllowed.countDown();
+        firstSearch.join();
+
+        assertEquals("The second query did not search the backend with no time left", 1, channel.queriesSent.get());
+        assertEquals(Error.TIMEOUT.code, second.hits().getError().getCode());
+        assertEquals(2, first.get().getHitCount());
+    }
+
+    private Thread searchInThread(Searcher searcher, Query query, AtomicReference<Result> result) {
+        Thread thread = new Thread(() -> result.set(doSearch(searcher, query, 0, 10)));
+        thread.start();
+        return thread;
+    }
+
+    private static void awaitTimedWaiting(Thread thread) throws InterruptedException {
+        while (thread.getState() != Thread.State.TIMED_WAITING)
+            Thread.sleep(1);
+    }
+
+    /** A channel which counts the queries sent to it, and holds back all replies until allowed */
+    private static class BlockingChannel extends MockFSChannel {
+
+        final AtomicInteger queriesSent = new AtomicInteger(0);
+        final CountDownLatch replyAllowed = new CountDownLatch(1);
+
+        @Override
+        public synchronized boolean sendPacket(BasicPacket packet) {
+            if (packet instanceof QueryPacket)
+                queriesSent.incrementAndGet();
+            return super.sendPacket(packet);
+        }
+
+        @Override
+        public BasicPacket[] receivePackets(long timeout, int packetCount) {
+            try {
+                replyAllowed.await();
+            }
+            catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return super.receivePackets(timeout, packetCount);
+        }
+
+        void awaitQueriesSent(int count) throws InterruptedException {
+            while (queriesSent.get() < count)
+                Thread.sleep(1);
+        }
+
+    }
+
     private Chain<Searcher> chainedAsSearchChain(Searcher topOfChain) {
         List<Searcher> searchers = new ArrayList<>();
         searchers.add(topOfChain);
@@ -323,7 +407,11 @@ public class FastSearcherTestCase {
     }
 
     private FastSearcher createFastSearcher() {
-        mockBackend = new MockBackend();
+        return createFastSearcher(new MockFSChannel());
+    }
+
+    private FastSearcher createFastSearcher(MockFSChannel channel) {
+        mockBackend = new MockBackend("", () -> channel);
         ConfigGetter<DocumentdbInfoConfig> getter = new ConfigGetter<>(DocumentdbInfoConfig.class);
         DocumentdbInfoConfig config = getter.getConfig("file:src/test/java/com/yahoo/prelude/fastsearch/test/documentdb-info.cfg");
 
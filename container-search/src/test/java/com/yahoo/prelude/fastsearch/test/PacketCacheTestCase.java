@@ -12,6 +12,7 @@ import com.yahoo.prelude.fastsearch.PacketCache;
 import com.yahoo.prelude.fastsearch.PacketWrapper;
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 
 /**
@@ -116,6 +117,41 @@ public class PacketCacheTestCase extends junit.framework.TestCase {
         assertEquals(0, cache.totalPacketSize());
     }
 
+    public void testTooLargeItemInShardedCache() throws BufferTooSmallException {
+        PacketCache cache = new PacketCache(4, 0, 1e64); // 4 shards of 1 Mb
+
+        cache.setMaxCacheItemPercentage(1);
+
+        // An entry of about 12 kb, which is less than 1% of the total size, but not of the size of a shard
+        BasicPacket[] packets = new BasicPacket[130];
+        Arrays.fill(packets, createCacheEntry().getFirstResultPacket());
+        cache.put(key1, new PacketWrapper(key1, packets));
+        assertNotNull(cache.get(key1));
+
+        // An entry of about 48 kb, which is more than 1% of the total size
+        packets = new BasicPacket[500];
+        Arrays.fill(packets, createCacheEntry().getFirstResultPacket());
+        cache.put(key1, new PacketWrapper(key1, packets));
+        assertNull(cache.get(key1));
+        assertEquals(0, cache.totalPacketSize());
+    }
+
+    public void testItemLargerThanItsShard() throws BufferTooSmallException {
+        PacketCache cache = new PacketCache(4, 0, 1e64); // 4 shards of 1 Mb
+
+        cache.setMaxCacheItemPercentage(50);
+
+        // An entry of about 1.4 Mb, which is less than 50% of the total size, but does not fit in a shard
+        BasicPacket[] packets = new BasicPacket[15000];
+        Arrays.fill(packets, createCacheEntry().getFirstResultPacket());
+        cache.put(key1, new PacketWrapper(key1, packets));
+        assertNull(cache.get(key1));
+        assertEquals(0, cache.totalPacketSize());
+
+        cache.put(key1, createCacheEntry(key1));
+        assertNotNull(cache.get(key1));
+    }
+
     public void testClearing() throws BufferTooSmallException {
         PacketCache cache = new PacketCache(0, 140, 1e64); // 140 bytes cache
 
@@ -156,6 +192,49 @@ public class PacketCacheTestCase extends junit.framework.TestCase {
         assertNotNull(cache.get(key2));
     }
 
+    public void testEvictionsAreCounted() throws BufferTooSmallException {
+        PacketCache cache = new PacketCache(0, length * 2, 1e64); // room for two entries
+        cache.setMaxCacheItemPercentage(50);
+
+        cache.put(key1, createCacheEntry());
+        cache.put(key2, createCacheEntry());
+        assertEquals(0, cache.getEvictionCount());
+        cache.put(key3, createCacheEntry());
+        cache.put(key4, createCacheEntry());
+        assertEquals(2, cache.getEvictionCount());
+        cache.remove(key4);
+        assertEquals(2, cache.getEvictionCount());
+        assertEquals(length, cache.totalPacketSize());
+    }
+
+    public void testConcurrentAccessStaysWithinCapacity() throws Exception {
+        PacketCache cache = new PacketCache(16, 0, 1e64);
+        cache.setMaxCacheItemPercentage(50);
+        PacketWrapper entry = createCacheEntry();
+
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            CacheKey[] keys = new CacheKey[1000];
+            for (int i = 0; i < keys.length; i++)
+                keys[i] = new CacheKey(QueryPacket.create(new Query("/?query=" + t + "_" + i)));
+            threads[t] = new Thread(() -> {
+                for (int round = 0; round < 100; round++) {
+                    for (CacheKey key : keys) {
+                        if (cache.get(key) == null)
+                            cache.put(key, entry);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+
+        assertEquals(4000, cache.size());
+        assertEquals(4000 * length, cache.totalPacketSize());
+        assertEquals(0, cache.getEvictionCount());
+    }
+
     private PacketWrapper createCacheEntry() throws BufferTooSmallException {
         return createCacheEntry(null);
     }
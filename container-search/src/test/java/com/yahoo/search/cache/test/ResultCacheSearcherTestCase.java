@@ -0,0 +1,201 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.cache.test;
+
+import com.yahoo.component.ComponentId;
+import com.yahoo.component.chain.Chain;
+import com.yahoo.container.jdisc.HttpRequest;
+import com.yahoo.jdisc.Metric;
+import com.yahoo.jdisc.http.HttpRequest.Method;
+import com.yahoo.search.Query;
+import com.yahoo.search.Result;
+import com.yahoo.search.Searcher;
+import com.yahoo.search.cache.ContentGeneration;
+import com.yahoo.search.cache.ResultCacheConfig;
+import com.yahoo.search.cache.ResultCacheSearcher;
+import com.yahoo.search.query.profile.QueryProfile;
+import com.yahoo.search.query.profile.QueryProfileRegistry;
+import com.yahoo.search.query.profile.compiled.CompiledQueryProfile;
+import com.yahoo.search.query.profile.types.QueryProfileType;
+import com.yahoo.search.result.ErrorMessage;
+import com.yahoo.search.result.Hit;
+import com.yahoo.search.searchchain.Execution;
+import com.yahoo.test.ManualClock;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests caching of results in the result cache searcher
+ */
+public class ResultCacheSearcherTestCase {
+
+    private final ManualClock clock = new ManualClock();
+    private final CountingMetric metric = new CountingMetric();
+    private final CountingSearcher backend = new CountingSearcher();
+    private final ResultCacheSearcher cache =
+            new ResultCacheSearcher(new ResultCacheConfig(new ResultCacheConfig.Builder().timeToLiveSeconds(10)
+                                                                                           .keyProperty("myProfileValue")
+                                                                                           .cluster("music")),
+                                    metric, clock);
+    private final Chain<Searcher> chain = new Chain<>(cache, backend);
+
+    @Test
+    public void requireThatRepeatedQueriesAreServedFromCache() {
+        Result first = searchAndFill("?query=madonna&hits=5");
+        Result second = searchAndFill("?query=madonna&hits=5");
+        assertEquals(1, backend.searches);
+        assertEquals("madonna:1", second.hits().get(0).getField("value"));
+        assertNotSame(first.hits().get(0), second.hits().get(0));
+        assertEquals(1, cache.getCacheHits());
+        assertEquals(1, metric.values.get("result_cache_hits").intValue());
+        assertEquals(1, metric.values.get("result_cache_misses").intValue());
+
+        searchAndFill("?query=madonna&hits=6");
+        searchAndFill("?query=madonna&hits=5&ranking=other");
+        searchAndFill("?query=madonna&hits=5&myProfileValue=3");
+        searchAndFill("?query=madonna&hits=5&nocache=true");
+        assertEquals(5, backend.searches);
+    }
+
+    @Test
+    public void requireThatCachedHitsBelongToTheNewQuery() {
+        searchAndFill("?query=madonna");
+        Query query = new Query("?query=madonna");
+        Result result = searchAndFill(query);
+        assertEquals(1, backend.searches);
+        assertSame(query, result.getQuery());
+        assertSame(query, result.hits().get(0).getQuery());
+    }
+
+    @Test
+    public void requireThatResultsAreOnlyCachedWhenFilled() {
+        search(new Query("?query=madonna"));
+        assertEquals(0, backend.fills);
+        assertEquals(0, cache.size());
+        searchAndFill("?query=madonna");
+        assertEquals(1, backend.fills);
+        assertEquals(1, cache.size());
+        searchAndFill("?query=madonna");
+        assertEquals(2, backend.searches);
+    }
+
+    @Test
+    public void requireThatEntriesExpire() {
+        searchAndFill("?query=madonna");
+        clock.advance(Duration.ofSeconds(9));
+        searchAndFill("?query=madonna");
+        assertEquals(1, backend.searches);
+        clock.advance(Duration.ofSeconds(2));
+        assertEquals("madonna:2", searchAndFill("?query=madonna").hits().get(0).getField("value"));
+        assertEquals(2, backend.searches);
+    }
+
+    @Test
+    public void requireThatEntriesAreInvalidatedByNewContentInTheirCluster() {
+        searchAndFill("?query=madonna");
+        ContentGeneration.of("books").advance();
+        searchAndFill("?query=madonna");
+        assertEquals(1, backend.searches);
+        ContentGeneration.of("music").advance();
+        searchAndFill("?query=madonna");
+        searchAndFill("?query=madonna");
+        assertEquals(2, backend.searches);
+    }
+
+    @Test
+    public void requireThatQueriesWithAStrictQueryProfileTypeAreCached() {
+        QueryProfileRegistry registry = new QueryProfileRegistry();
+        QueryProfileType strictType = new QueryProfileType(new ComponentId("strict"));
+        strictType.setStrict(true);
+        strictType.inherited().add(registry.getTypeRegistry().getComponent(new ComponentId("native")));
+        registry.getTypeRegistry().register(strictType);
+        QueryProfile profile = new QueryProfile("profile");
+        profile.setType(strictType);
+        registry.register(profile);
+        CompiledQueryProfile compiledProfile = registry.compile().getComponent("profile");
+
+        searchAndFill(new Query(HttpRequest.createTestRequest("?query=madonna", Method.GET), compiledProfile));
+        Result result = searchAndFill(new Query(HttpRequest.createTestRequest("?query=madonna", Method.GET), compiledProfile));
+        assertEquals(1, backend.searches);
+        assertEquals(1, cache.size());
+        assertEquals("madonna:1", result.hits().get(0).getField("value"));
+    }
+
+    @Test
+    public void requireThatErrorsAreNotCached() {
+        searchAndFill("?query=error");
+        searchAndFill("?query=error");
+        assertEquals(2, backend.searches);
+        assertEquals(0, cache.size());
+    }
+
+    private Result searchAndFill(String request) {
+        return searchAndFill(new Query(request));
+    }
+
+    private Result searchAndFill(Query query) {
+        Execution execution = new Execution(chain, Execution.Context.createContextStub());
+        Result result = execution.search(query);
+        execution.fill(result, query.getPresentation().getSummary());
+        return result;
+    }
+
+    private Result search(Query query) {
+        return new Execution(chain, Execution.Context.createContextStub()).search(query);
+    }
+
+    private static class CountingSearcher extends Searcher {
+
+        int searches = 0;
+        int fills = 0;
+
+        @Override
+        public Result search(Query query, Execution execution) {
+            searches++;
+            Result result = new Result(query);
+            String term = query.getModel().getQueryTree().toString();
+            if (term.equals("error")) {
+                result.hits().addError(ErrorMessage.createBackendCommunicationError("Failed"));
+            } else {
+                Hit hit = new Hit("hit");
+                hit.setField("value", term + ":" + searches);
+                result.hits().add(hit);
+            }
+            return result;
+        }
+
+        @Override
+        public void fill(Result result, String summaryClass, Execution execution) {
+            fills++;
+        }
+
+    }
+
+    private static class CountingMetric implements Metric {
+
+        final Map<String, Number> values = new HashMap<>();
+
+        @Override
+        public void set(String key, Number value, Context context) {
+            values.put(key, value);
+        }
+
+        @Override
+        public void add(String key, Number value, Context context) {
+            values.merge(key, value, (a, b) -> a.longValue() + b.longValue());
+        }
+
+        @Override
+        public Context createContext(Map<String, ?> dimensions) {
+            return null;
+        }
+
+    }
+
+}
@@ -7,9 +7,13 @@ import com.yahoo.search.Query;
 import com.yahoo.search.Result;
 import org.junit.Test;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 
 /**
@@ -73,6 +77,47 @@ public class FillTestCase {
         assertEquals("Malfunctioning", result.hits().getError().getDetailedMessage());
     }
 
+    @Test
+    public void testAsyncFilling() {
+        Map<Integer, Client.NodeConnection> nodes = new HashMap<>();
+        nodes.put(0, client.createConnection("host0", 123));
+        nodes.put(1, client.createConnection("host1", 123));
+        Dispatcher dispatcher = new Dispatcher(nodes, client);
+
+        Query query = new Query();
+        Result result = new Result(query);
+        result.hits().add(createHit(0, 0));
+        result.hits().add(createHit(1, 1));
+
+        client.setDocsumReponse("host0", 0, "summaryClass1", map("field1", "s.0.0", "field2", 0));
+        client.setDocsumReponse("host1", 1, "summaryClass1", map("field1", "s.1.1", "field2", 1));
+        CompletableFuture<Result> filled = dispatcher.fillAsync(result, "summaryClass1", CompressionType.valueOf("LZ4"));
+
+        assertSame(result, filled.join());
+        assertEquals("s.0.0", result.hits().get("hit:0").getField("field1").toString());
+        assertEquals("s.1.1", result.hits().get("hit:1").getField("field1").toString());
+        assertNull(result.hits().getError());
+    }
+
+    @Test
+    public void testFillingFromUnknownNode() {
+        Map<Integer, Client.NodeConnection> nodes = new HashMap<>();
+        nodes.put(0, client.createConnection("host0", 123));
+        Dispatcher dispatcher = new Dispatcher(nodes, client);
+
+        Query query = new Query();
+        Result result = new Result(query);
+        result.hits().add(createHit(0, 0));
+        result.hits().add(createHit(1, 1));
+
+        client.setDocsumReponse("host0", 0, "summaryClass1", map("field1", "s.0.0", "field2", 0));
+        CompletableFuture<Result> filled = dispatcher.fillAsync(result, "summaryClass1", CompressionType.valueOf("LZ4"));
+
+        assertTrue(filled.isDone());
+        assertEquals("s.0.0", result.hits().get("hit:0").getField("field1").toString());
+        assertEquals("Could not fill hits from unknown node 1", result.hits().getError().getDetailedMessage());
+    }
+
     private FastHit createHit(int sourceNodeId, int hitId) {
         FastHit hit = new FastHit("hit:" + hitId, 1.0);
         hit.setPartId(sourceNodeId, 0);
@@ -0,0 +1,81 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Tests selecting the group to dispatch queries to by response times and pending requests
+ */
+public class SearchClusterTestCase {
+
+    private final SearchCluster.Node node0 = new SearchCluster.Node("host0", 123, 0);
+    private final SearchCluster.Node node1 = new SearchCluster.Node("host1", 123, 1);
+    private final SearchCluster.Group group0 = new SearchCluster.Group(0, ImmutableList.of(node0));
+    private final SearchCluster.Group group1 = new SearchCluster.Group(1, ImmutableList.of(node1));
+    private final List<SearchCluster.Group> groups = ImmutableList.of(group0, group1);
+
+    @Test
+    public void requireThatTheFasterGroupIsSelected() {
+        respond(node0, 100, 1000);
+        respond(node1, 10, 1000);
+        assertSelected(group1, 1000);
+        assertEquals(100, node0.getAverageLatencyMillis(), 0.001);
+
+        for (int i = 0; i < 30; i++)
+            respond(node1, 500, 1000);
+        assertSelected(group0, 1000);
+    }
+
+    @Test
+    public void requireThatTheLessBusyGroupIsSelected() {
+        respond(node0, 10, 1000);
+        respond(node1, 10, 1000);
+        node0.startRequest();
+        node0.startRequest();
+        assertEquals(2, node0.getPendingRequests());
+        assertSelected(group1, 1000);
+
+        node1.startRequest();
+        node1.startRequest();
+        node1.startRequest();
+        assertSelected(group0, 1000);
+    }
+
+    @Test
+    public void requireThatSlowGroupsAreRetriedWhenIdle() {
+        respond(node0, 1000, 1000);
+        respond(node1, 10, 60000);
+        assertSelected(group1, 1000);
+        assertSelected(group0, 60000);
+    }
+
+    @Test
+    public void requireThatOnlyWorkingGroupsWithCoverageAreSelected() {
+        respond(node0, 10, 1000);
+        respond(node1, 100, 1000);
+        node0.setWorking(false);
+        assertSelected(group1, 1000);
+        group1.setHasSufficientCoverage(false);
+        assertFalse(SearchCluster.selectGroup(groups, 1000, new Random(0)).isPresent());
+    }
+
+    private void respond(SearchCluster.Node node, long latencyMillis, long nowMillis) {
+        node.startRequest();
+        node.endRequest(latencyMillis, nowMillis);
+    }
+
+    private void assertSelected(SearchCluster.Group expected, long nowMillis) {
+        Random random = new Random(0);
+        for (int i = 0; i < 10; i++)
+            assertEquals(Optional.of(expected), SearchCluster.selectGroup(groups, nowMillis, random));
+    }
+
+}
@@ -77,6 +77,25 @@ public class QueryProfileVariantsTestCase extends junit.framework.TestCase {
         assertEquals("a.b.x2",cprofile.get("a.b", toMap("x=x2")));
     }
 
+    public void testManyVariantCombinations() {
+        QueryProfile profile=new QueryProfile("test");
+        profile.setDimensions(new String[] {"x","y"});
+        profile.set("a","a.deflt", (QueryProfileRegistry)null);
+        profile.set("a","a.x1",new String[] {"x1"}, null);
+        profile.set("a","a.x1.y7",new String[] {"x1","y7"}, null);
+        profile.set("b","b.deflt", (QueryProfileRegistry)null);
+
+        CompiledQueryProfile cprofile = profile.compile(null);
+
+        for (int i = 0; i < 500; i++) { // more combinations than resolved values are kept for
+            String y = "y=y" + (i % 250);
+            assertEquals(i % 250 == 7 ? "a.x1.y7" : "a.x1", cprofile.get("a", toMap("x=x1", y)));
+            assertEquals("a.deflt", cprofile.get("a", toMap("x=z" + i, y)));
+            assertEquals("b.deflt", cprofile.get("b", toMap("x=x1", y)));
+            assertNull(cprofile.get("c", toMap("x=x1", y)));
+        }
+    }
+
     public void testVariantsOfExplicitCompound() {
         QueryProfile a1=new QueryProfile("a1");
         a1.set("b","a.b", (QueryProfileRegistry)null);
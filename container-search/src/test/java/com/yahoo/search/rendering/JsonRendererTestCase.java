@@ -957,6 +957,56 @@ public class JsonRendererTestCase {
         assertEqualJson(expected, summary);
     }
 
+    @Test
+    public void testStructuredDataIsRenderedDirectly() throws InterruptedException, ExecutionException, IOException {
+        String expected = "{\n"
+                + "    \"root\": {\n"
+                + "        \"children\": [\n"
+                + "            {\n"
+                + "                \"fields\": {\n"
+                + "                    \"structured\": {\n"
+                + "                        \"string\": \"bl\u00e5b\u00e6r\\\"\",\n"
+                + "                        \"long\": 7809531904,\n"
+                + "                        \"double\": 0.5,\n"
+                + "                        \"nan\": null,\n"
+                + "                        \"bool\": true,\n"
+                + "                        \"data\": \"0x01AB\",\n"
+                + "                        \"array\": [ \"a\", 1 ],\n"
+                + "                        \"empty\": {}\n"
+                + "                    }\n"
+                + "                },\n"
+                + "                \"id\": \"structured\",\n"
+                + "                \"relevance\": 1.0\n"
+                + "            }\n"
+                + "        ],\n"
+                + "        \"fields\": {\n"
+                + "            \"totalCount\": 0\n"
+                + "        },\n"
+                + "        \"id\": \"toplevel\",\n"
+                + "        \"relevance\": 1.0\n"
+                + "    }\n"
+                + "}\n";
+        Result r = newEmptyResult();
+        Hit h = new Hit("structured");
+        Slime slime = new Slime();
+        Cursor c = slime.setObject();
+        c.setString("string", "bl\u00e5b\u00e6r\"");
+        c.setLong("long", 7809531904L);
+        c.setDouble("double", 0.5);
+        c.setDouble("nan", Double.NaN);
+        c.setBool("bool", true);
+        c.setData("data", new byte[] { 0x01, (byte) 0xab });
+        Cursor array = c.setArray("array");
+        array.addString("a");
+        array.addLong(1);
+        c.setObject("empty");
+        h.setField("structured", new StructuredData(new SlimeAdapter(slime.get())));
+        r.hits().add(h);
+        String summary = render(r);
+        assertEqualJson(expected, summary);
+        assertTrue("Non-ASCII strings are written as UTF-8, not escaped", summary.contains("bl\u00e5b\u00e6r"));
+    }
+
     @Test
     public final void testFieldValueInHit() throws IOException, InterruptedException, ExecutionException, JSONException {
         String expected = "{\n"
@@ -0,0 +1,158 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.result;
+
+import org.junit.Test;
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests that the hit field map behaves like a LinkedHashMap.
+ */
+public class HitFieldMapTestCase {
+
+    @Test
+    public void requireThatInsertionOrderIsKept() {
+        Map<String, Object> fields = new HitFieldMap(2);
+        Map<String, Object> expected = new LinkedHashMap<>();
+        for (String key : new String[] { "title", "body", "price", "title", "url" }) {
+            assertEquals(expected.put(key, key.length()), fields.put(key, key.length()));
+        }
+        fields.put("nothing", null);
+        expected.put("nothing", null);
+        assertEquals(expected, fields);
+        assertEquals(expected.toString(), fields.toString());
+        assertTrue(fields.containsKey("nothing"));
+        assertFalse(fields.containsKey("missing"));
+        assertNull(fields.get("missing"));
+    }
+
+    @Test
+    public void requireThatRemovedFieldsAreReaddedLast() {
+        Map<String, Object> fields = new HitFieldMap(4);
+        Map<String, Object> expected = new LinkedHashMap<>();
+        removeAndReadd(fields);
+        removeAndReadd(expected);
+        assertEquals(expected.toString(), fields.toString());
+    }
+
+    private static void removeAndReadd(Map<String, Object> map) {
+        map.put("a", 1);
+        map.put("b", 2);
+        map.put("c", 3);
+        map.remove("b");
+        map.remove("d");
+        assertEquals(2, map.size());
+        map.put("d", 4);
+        map.put("b", 5);
+        map.put("c", 6);
+    }
+
+    @Test
+    public void requireThatIteratorsCanRemoveAndSetValues() {
+        Map<String, Object> fields = new HitFieldMap(4);
+        fields.put("a", 1);
+        fields.put("b", 2);
+        fields.put("c", 3);
+        for (Iterator<Map.Entry<String, Object>> i = fields.entrySet().iterator(); i.hasNext(); ) {
+            Map.Entry<String, Object> entry = i.next();
+            if (entry.getKey().equals("b"))
+                i.remove();
+            else
+                entry.setValue(entry.getKey());
+        }
+        assertEquals("{a=a, c=c}", fields.toString());
+        fields.keySet().remove("a");
+        assertEquals("{c=c}", fields.toString());
+        fields.clear();
+        assertTrue(fields.isEmpty());
+        fields.put("b", 1);
+        assertEquals("{b=1}", fields.toString());
+    }
+
+    @Test
+    public void requireThatCopiesAreIndependent() {
+        HitFieldMap fields = new HitFieldMap(4);
+        fields.put("a", 1);
+        HitFieldMap copy = new HitFieldMap(fields);
+        copy.put("a", 2);
+        copy.put("b", 3);
+        fields.put("c", 4);
+        assertEquals("{a=1, c=4}", fields.toString());
+        assertEquals("{a=2, b=3}", copy.toString());
+    }
+
+    @Test
+    public void requireThatManyFieldsAreSupported() {
+        Map<String, Object> fields = new HitFieldMap(16);
+        for (int i = 0; i < 1000; i++) {
+            fields.put("field" + i, i);
+        }
+        assertEquals(1000, fields.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, fields.get("field" + i));
+        }
+        assertEquals("field0", fields.keySet().iterator().next());
+    }
+
+    @Test
+    public void requireThatRemovedEntriesAreNotRestoredBySetValue() {
+        Map<String, Object> fields = new HitFieldMap(4);
+        fields.put("a", 1);
+        fields.put("b", 2);
+        Map.Entry<String, Object> entry = fields.entrySet().iterator().next();
+        fields.remove("a");
+        try {
+            entry.setValue(3);
+            fail("Expected an exception");
+        } catch (IllegalStateException expected) {
+        }
+        assertEquals(1, fields.size());
+        assertEquals("{b=2}", fields.toString());
+    }
+
+    @Test
+    public void requireThatAddingFieldsDuringIterationFails() {
+        Map<String, Object> fields = new HitFieldMap(4);
+        fields.put("a", 1);
+        fields.put("b", 2);
+        Iterator<Map.Entry<String, Object>> i = fields.entrySet().iterator();
+        i.next();
+        fields.put("a", 3); // not a structural modification
+        i.next();
+        fields.put("c", 4);
+        try {
+            i.next();
+            fail("Expected an exception");
+        } catch (ConcurrentModificationException expected) {
+        }
+    }
+
+    @Test
+    public void requireThatTheNumberOfLayoutsIsBounded() {
+        Map<String, Object> early = new HitFieldMap(2);
+        early.put("first", 0);
+        for (int i = 0; i < HitFieldMap.MAX_LAYOUTS + 100; i++) {
+            Map<String, Object> fields = new HitFieldMap(2);
+            fields.put("unique" + i, i);
+            fields.put("common", i);
+            assertEquals("{unique" + i + "=" + i + ", common=" + i + "}", fields.toString());
+        }
+        assertTrue(HitFieldMap.cachedLayoutCount() <= HitFieldMap.MAX_LAYOUTS);
+        early.put("second", 1);
+        assertEquals("{first=0, second=1}", early.toString());
+        Map<String, Object> late = new HitFieldMap(2);
+        late.put("first", 0);
+        late.put("second", 1);
+        assertEquals(early, late);
+    }
+
+}
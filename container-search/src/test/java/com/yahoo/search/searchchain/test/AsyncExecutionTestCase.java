@@ -3,9 +3,13 @@ package com.yahoo.search.searchchain.test;
 
 import com.yahoo.component.ComponentId;
 import com.yahoo.component.chain.Chain;
+import com.yahoo.container.jdisc.VespaHeaders;
+import com.yahoo.container.protect.Error;
+import com.yahoo.jdisc.Response;
 import com.yahoo.search.Query;
 import com.yahoo.search.Result;
 import com.yahoo.search.Searcher;
+import com.yahoo.search.result.ErrorMessage;
 import com.yahoo.search.result.Hit;
 import com.yahoo.search.searchchain.AsyncExecution;
 import com.yahoo.search.searchchain.Execution;
@@ -14,6 +18,7 @@ import com.yahoo.search.searchchain.FutureResult;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -89,6 +94,17 @@ public class AsyncExecutionTestCase extends junit.framework.TestCase {
         assertNull(results.get(1).hits().getErrorHit());
     }
 
+    public void testTimedOutQueryIsNotExecuted() throws InterruptedException {
+        ResultProducingSearcher searcher = new ResultProducingSearcher();
+        Query query = new Query("?query=test&timeout=1ms");
+        Thread.sleep(10);
+        FutureResult future = new AsyncExecution(new Execution(searcher, Execution.Context.createContextStub())).search(query);
+
+        Result result = AsyncExecution.waitForAll(Arrays.asList(future), 1000).get(0);
+        assertEquals(ErrorMessage.createTimeout("").getCode(), result.hits().getError().getCode());
+        assertFalse(future.getIfAvailable(0, TimeUnit.MILLISECONDS).isPresent());
+    }
+
     public void testSync() {
         Query query=new Query("?query=test");
         Searcher searcher=new ResultProducingSearcher();
@@ -121,6 +137,80 @@ public class AsyncExecutionTestCase extends junit.framework.TestCase {
         assertEquals("hello",result.hits().get(0).getField("test"));
     }
 
+    public void testTooManyPendingExecutionsOfAChainAreRejected() {
+        AsyncExecution.configure(1000, 1);
+        BlockingSearcher searcher = new BlockingSearcher();
+        try {
+            Chain<Searcher> chain = new Chain<>(new ComponentId("blocking"), searcher);
+            FutureResult first = new AsyncExecution(chain, Execution.Context.createContextStub()).search(new Query("?hits=0"));
+            FutureResult second = new AsyncExecution(chain, Execution.Context.createContextStub()).search(new Query("?hits=0"));
+
+            assertTrue("Rejected at once", second.isDone());
+            assertRejected(second.get(), "too many pending executions of blocking");
+
+            searcher.release.countDown();
+            assertNull(AsyncExecution.waitForAll(Arrays.asList(first), 10000).get(0).hits().getError());
+            FutureResult third = new AsyncExecution(chain, Execution.Context.createContextStub()).search(new Query("?hits=0"));
+            assertNull("Accepted when the first is done", third.get().hits().getError());
+        }
+        finally {
+            searcher.release.countDown();
+            AsyncExecution.configure(1000, 500);
+        }
+    }
+
+    public void testExecutionsAreRejectedWhenAllThreadsAreBusy() {
+        AsyncExecution.configure(2, 500);
+        BlockingSearcher searcher = new BlockingSearcher();
+        try {
+            Chain<Searcher> chain = new Chain<>(new ComponentId("blocking"), searcher);
+            List<FutureResult> futures = new ArrayList<>();
+            for (int i = 0; i < 3; i++)
+                futures.add(new AsyncExecution(chain, Execution.Context.createContextStub()).search(new Query("?hits=0")));
+
+            List<FutureResult> accepted = new ArrayList<>();
+            for (FutureResult future : futures) {
+                if (future.isDone())
+                    assertRejected(future.get(), "all 2 search threads are busy");
+                else
+                    accepted.add(future);
+            }
+            assertTrue("At most one execution per thread is accepted", accepted.size() <= 2);
+
+            searcher.release.countDown();
+            for (Result result : AsyncExecution.waitForAll(accepted, 10000))
+                assertNull(result.hits().getError());
+        }
+        finally {
+            searcher.release.countDown();
+            AsyncExecution.configure(1000, 500);
+        }
+    }
+
+    private void assertRejected(Result result, String reason) {
+        ErrorMessage error = result.hits().getError();
+        assertEquals(Error.TOO_MANY_PENDING.code, error.getCode());
+        assertTrue(error.getDetailedMessage().endsWith(reason));
+        assertEquals(Response.Status.SERVICE_UNAVAILABLE, VespaHeaders.getStatus(false, error, null));
+    }
+
+    /** Blocks every search until released */
+    private static class BlockingSearcher extends Searcher {
+
+        final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public Result search(Query query, Execution execution) {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                // return at once
+            }
+            return new Result(query);
+        }
+
+    }
+
     private static class ResultProducingSearcher extends Searcher {
 
         @Override
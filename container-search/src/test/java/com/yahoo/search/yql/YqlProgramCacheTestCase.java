@@ -0,0 +1,83 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.yql;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests that programs bound from the YQL program cache are identical to those parsed from scratch.
+ */
+public class YqlProgramCacheTestCase {
+
+    private final YqlProgramCache cache = new YqlProgramCache(10);
+
+    @Test
+    public void requireThatQueriesDifferingOnlyInLiteralsShareAProgram() throws Exception {
+        assertCached("select * from sources * where title contains \"madonna\" and year > 1990 limit 10 offset 5;");
+        assertBound("select * from sources * where title contains 'elvis' and year > 1950 limit 20 offset 0;");
+        assertBound("select * from sources * where title contains \"the \\\"king\\\"\" and year > 1 limit 1 offset 400;");
+        assertEquals(1, cache.size());
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void requireThatAnnotationsAreBound() throws Exception {
+        assertCached("select * from sources * where [{\"targetNumHits\": 10, \"label\": \"a\"}]weakAnd(title contains \"x\");");
+        assertBound("select * from sources * where [{\"targetNumHits\": 99, \"label\": \"b\"}]weakAnd(title contains \"y\");");
+        assertBound("select * from sources * where title contains ([{\"distance\": 3}]near(\"a\", \"b\"));",
+                    "select * from sources * where title contains ([{\"distance\": 5}]near(\"c\", \"d\"));");
+    }
+
+    @Test
+    public void requireThatLiteralsWhichAreNotPlainIntegersAreLeftToTheParser() throws Exception {
+        assertCached("select * from sources * where a > 1.5 and b > 10L and c > -3 and d > 1e5;");
+        assertNull(cache.get("select * from sources * where a > 2.5 and b > 10L and c > -3 and d > 1e5;"));
+        assertBound("select * from sources * where a > 1.5 and b > 10L and c > -3 and d > 1e5 and e contains \"f\";",
+                    "select * from sources * where a > 1.5 and b > 10L and c > -3 and d > 1e5 and e contains \"g\";");
+    }
+
+    @Test
+    public void requireThatGroupingIsKeptAsIs() throws Exception {
+        assertCached("select * from sources * where title contains \"a\" | all(group(a) max(10) each(output(count())));");
+        assertBound("select * from sources * where title contains \"b\" | all(group(a) max(10) each(output(count())));");
+        assertCached("select * from sources * where title contains \"b\" | all(group(a) max(20) each(output(count())));");
+    }
+
+    @Test(expected = ProgramCompileException.class)
+    public void requireThatInvalidQueriesAreReportedAsUsual() throws Exception {
+        cache.parse("select * from sources * where title contains \"a\" and;");
+    }
+
+    @Test
+    public void requireThatTheCacheIsBounded() throws Exception {
+        for (int i = 0; i < 20; ++i) {
+            cache.parse("select * from sources * where f" + i + " contains \"a\";");
+        }
+        assertEquals(10, cache.size());
+    }
+
+    private void assertCached(String yql) throws Exception {
+        assertNull(cache.get(yql));
+        assertEquals(parse(yql), cache.parse(yql));
+    }
+
+    private void assertBound(String yql) throws Exception {
+        OperatorNode<?> bound = cache.get(yql);
+        assertNotNull(bound);
+        assertEquals(parse(yql), bound);
+    }
+
+    private void assertBound(String first, String second) throws Exception {
+        assertCached(first);
+        assertBound(second);
+    }
+
+    private static OperatorNode<?> parse(String yql) throws Exception {
+        return new ProgramParser().parse("query", yql);
+    }
+
+}
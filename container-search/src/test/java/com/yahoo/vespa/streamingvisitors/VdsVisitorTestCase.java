@@ -25,6 +25,8 @@ import org.junit.Test;
 
 import java.net.URLEncoder;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 
 import static org.junit.Assert.*;
@@ -406,6 +408,28 @@ public class VdsVisitorTestCase {
         verifyVisitorFails(factory, qa, route, searchCluster);
     }
 
+    @Test
+    public void testOnlySummariesOfTheBestHitsAreKept() throws Exception {
+        QueryArguments qa = new QueryArguments();
+        qa.hits = 2;
+        VdsVisitor visitor = new VdsVisitor(buildQuery(qa), "searchClusterConfigId", Route.parse("storageClusterRouteSpec"),
+                                            new MockVisitorSessionFactory(loadTypeSet));
+        visitor.doSearch();
+
+        AckToken ackToken = null;
+        visitor.onMessage(createQRM("doc:0", 0.3), ackToken);
+        visitor.onMessage(createQRM("doc:1", 1.0), ackToken);
+        visitor.onMessage(createQRM("doc:2", 0.1), ackToken);
+        visitor.onMessage(createQRM("doc:3", 0.5), ackToken);
+        visitor.onMessage(createQRM("doc:4", 0.5), ackToken);
+
+        assertEquals(2, visitor.getHits().size());
+        assertEquals("doc:1", visitor.getHits().get(0).getDocId());
+        assertEquals("doc:3", visitor.getHits().get(1).getDocId());
+        assertEquals(new HashSet<>(Arrays.asList("doc:1", "doc:3")), visitor.getSummaryMap().keySet());
+        assertEquals(10, visitor.getTotalHitCount());
+    }
+
     private void verifyVisitorOk(MockVisitorSessionFactory factory, QueryArguments qa, Route route, String searchCluster) throws Exception {
         VdsVisitor visitor = new VdsVisitor(buildQuery(qa), searchCluster, route, factory);
         visitor.doSearch();
@@ -444,7 +468,7 @@ public class VdsVisitorTestCase {
     private void verifyResults(QueryArguments qa, VdsVisitor visitor) {
         assertEquals(6, visitor.getTotalHitCount());
         assertEquals(Math.min(3 - qa.offset, qa.hits), visitor.getHits().size());
-        assertEquals(3, visitor.getSummaryMap().size());
+        assertEquals(Math.min(3, qa.offset + qa.hits), visitor.getSummaryMap().size());
         assertEquals(0, visitor.getGroupings().size());
         assertNull(visitor.getStatistics());
 
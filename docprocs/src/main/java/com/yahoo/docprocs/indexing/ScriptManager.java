@@ -102,6 +102,7 @@ public class ScriptManager {
                         script = new ScriptExpression(statement);
                         log.log(Level.FINE, "Setting script for field '" + fieldName + "' = " + statement);
                     }
+                    script.resolveTypes();
                     DocumentScript documentScript = new DocumentScript(ilscript.doctype(), inputFieldNameExtractor.getInputFieldNames(), script);
                     fieldScripts.put(fieldName, documentScript);
                 } else {
@@ -111,6 +112,7 @@ public class ScriptManager {
 
             ScriptExpression script = new ScriptExpression(expressions);
             script.select(fieldPathOptimizer, fieldPathOptimizer);
+            script.resolveTypes();
             fieldScripts.put(FULL, new DocumentScript(ilscript.doctype(), ilscript.docfield(),script));
             documentFieldScripts.put(ilscript.doctype(), Collections.unmodifiableMap(fieldScripts));
         }
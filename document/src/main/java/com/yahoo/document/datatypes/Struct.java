@@ -5,6 +5,7 @@ import com.yahoo.collections.Hashlet;
 import com.yahoo.document.*;
 import com.yahoo.document.serialization.FieldReader;
 import com.yahoo.document.serialization.FieldWriter;
+import com.yahoo.document.serialization.SerializedFields;
 import com.yahoo.document.serialization.XmlSerializationHelper;
 import com.yahoo.document.serialization.XmlStream;
 import com.yahoo.vespa.objects.Ids;
@@ -22,19 +23,84 @@ public class Struct extends StructuredFieldValue {
     private Hashlet<Integer, FieldValue> values = new Hashlet<>();
     private int [] order = null;
 
+    /**
+     * The fields of this which are not yet deserialized, or null if none.
+     * Once this is set, values are only changed while holding the lock on this, until this becomes null.
+     */
+    private volatile SerializedFields serializedFields = null;
+
     private int version;
 
     private int [] getInOrder() {
         if (order == null) {
-            order = new int[values.size()];
+            SerializedFields serialized = serializedFields;
+            int serializedCount = serialized == null ? 0 : serialized.size();
+            order = new int[values.size() + serializedCount];
             for (int i = 0; i < values.size(); i++) {
                 order[i] = values.key(i);
             }
+            for (int i = 0; i < serializedCount; i++) {
+                order[values.size() + i] = serialized.field(i).getId();
+            }
             Arrays.sort(order);
         }
         return order;
     }
 
+    /** Returns the value of the field with the given id, deserializing it if necessary */
+    private FieldValue getValue(int id) {
+        if (serializedFields == null) return values.get(id);
+        synchronized (this) {
+            deserialize(getDataType().getField(id));
+            return values.get(id);
+        }
+    }
+
+    /** Deserializes the given field if it is not deserialized already. Must be called while holding the lock on this */
+    private void deserialize(Field field) {
+        if (serializedFields == null || field == null) return;
+        FieldValue value = serializedFields.remove(field);
+        if (value != null)
+            values.put(field.getId(), value);
+        if (serializedFields.size() == 0)
+            serializedFields = null;
+    }
+
+    /** Deserializes all the fields of this which are not deserialized already */
+    private void deserializeAll() {
+        if (serializedFields == null) return;
+        synchronized (this) {
+            while (serializedFields != null)
+                deserialize(serializedFields.field(0));
+        }
+    }
+
+    /** Removes the given field from the fields which are not yet deserialized, without deserializing it */
+    private void discardSerialized(Field field) {
+        if (serializedFields == null) return;
+        synchronized (this) {
+            if (serializedFields == null) return;
+            serializedFields.discard(field);
+            if (serializedFields.size() == 0)
+                serializedFields = null;
+        }
+    }
+
+    /**
+     * Sets the fields of this which are deserialized when they are accessed, replacing any fields previously set.
+     * This is used by deserializers.
+     */
+    public void setSerializedFields(SerializedFields fields) {
+        clear();
+        this.serializedFields = fields.size() == 0 ? null : fields;
+    }
+
+    /**
+     * Returns the fields of this which are not yet deserialized, or null if none.
+     * This is used by serializers to write unaccessed fields as-is.
+     */
+    public SerializedFields getSerializedFields() { return serializedFields; }
+
     private void invalidateOrder() {
         order = null;
     }
@@ -81,10 +147,13 @@ public class Struct extends StructuredFieldValue {
     @Override
     public Struct clone() {
         Struct struct = (Struct) super.clone();
-        struct.values = new Hashlet<>();
-        struct.values.reserve(values.size());
-        for (int i = 0; i < values.size(); i++) {
-            struct.values.put(values.key(i), values.value(i).clone());
+        synchronized (this) {
+            struct.values = new Hashlet<>();
+            struct.values.reserve(values.size());
+            for (int i = 0; i < values.size(); i++) {
+                struct.values.put(values.key(i), values.value(i).clone());
+            }
+            struct.serializedFields = serializedFields == null ? null : serializedFields.clone();
         }
         return struct;
     }
@@ -92,6 +161,7 @@ public class Struct extends StructuredFieldValue {
     @Override
     public void clear() {
         values = new Hashlet<>();
+        serializedFields = null;
         invalidateOrder();
     }
 
@@ -119,7 +189,7 @@ public class Struct extends StructuredFieldValue {
 
     @Override
     public FieldValue getFieldValue(Field field) {
-        return values.get(field.getId());
+        return getValue(field.getId());
     }
 
 
@@ -130,7 +200,8 @@ public class Struct extends StructuredFieldValue {
 
     @Override
     public int getFieldCount() {
-        return values.size();
+        SerializedFields serialized = serializedFields;
+        return values.size() + (serialized == null ? 0 : serialized.size());
     }
 
     @Override
@@ -156,6 +227,7 @@ public class Struct extends StructuredFieldValue {
                     "Inconsistent field: " + field);
         }
 
+        discardSerialized(myField);
         int index = values.getIndexOfKey(field.getId());
         if (index == -1) {
             values.put(field.getId(), value);
@@ -167,7 +239,7 @@ public class Struct extends StructuredFieldValue {
 
     @Override
     public FieldValue removeFieldValue(Field field) {
-        FieldValue found = values.get(field.getId());
+        FieldValue found = getValue(field.getId());
         if (found != null) {
             Hashlet<Integer, FieldValue> copy = new Hashlet<>();
             copy.reserve(values.size() - 1);
@@ -215,12 +287,15 @@ public class Struct extends StructuredFieldValue {
         if (!super.equals(o)) return false;
 
         Struct struct = (Struct) o;
+        deserializeAll();
+        struct.deserializeAll();
         return values.equals(struct.values);
     }
 
     @Override
     public int hashCode() {
         int result = super.hashCode();
+        deserializeAll();
         result = 31 * result + values.hashCode();
         return result;
     }
@@ -232,7 +307,7 @@ public class Struct extends StructuredFieldValue {
         int [] increasing = getInOrder();
         for (int i = 0; i < increasing.length; i++) {
             int id = increasing[i];
-            retVal.append(getDataType().getField(id)).append("=").append(values.get(id)).append(", ");
+            retVal.append(getDataType().getField(id)).append("=").append(getValue(id)).append(", ");
         }
         return retVal.toString();
     }
@@ -249,7 +324,7 @@ public class Struct extends StructuredFieldValue {
             return cmp;
         }
         Struct rhs = (Struct)obj;
-        cmp = values.size() - rhs.values.size();
+        cmp = getFieldCount() - rhs.getFieldCount();
         if (cmp != 0) {
             return cmp;
         }
@@ -290,7 +365,7 @@ public class Struct extends StructuredFieldValue {
         }
 
         public FieldValue getValue() {
-            return values.get(id);
+            return Struct.this.getValue(id);
         }
 
         public FieldValue setValue(FieldValue value) {
@@ -298,13 +373,12 @@ public class Struct extends StructuredFieldValue {
                 throw new NullPointerException("Null values in Struct not supported, use removeFieldValue() to remove value instead.");
             }
 
+            FieldValue retVal = Struct.this.getValue(id);
             int index = values.getIndexOfKey(id);
-            FieldValue retVal = null;
             if (index == -1) {
                 values.put(id, value);
                 invalidateOrder();
             } else {
-                retVal = values.value(index);
                 values.setValue(index, value);
             }
 
@@ -327,7 +401,7 @@ public class Struct extends StructuredFieldValue {
     private class FieldSet extends AbstractSet<Map.Entry<Field, FieldValue>> {
         @Override
         public int size() {
-            return values.size();
+            return getFieldCount();
         }
 
         @Override
@@ -65,13 +65,12 @@ public class JsonReader {
         DocumentId docId = new DocumentId(docIdString);
         final DocumentParseInfo documentParseInfo;
         try {
-            DocumentParser documentParser = new DocumentParser(parser);
-            documentParseInfo = documentParser.parse(Optional.of(docId)).get();
+            DocumentParser documentParser = new DocumentParser(parser, typeManager);
+            documentParseInfo = documentParser.parse(docId, operationType);
         } catch (IOException e) {
             state = END_OF_FEED;
             throw new RuntimeException(e);
         }
-        documentParseInfo.operationType = operationType;
         VespaJsonDocumentReader vespaJsonDocumentReader = new VespaJsonDocumentReader();
         DocumentOperation operation = vespaJsonDocumentReader.createDocumentOperation(
                 getDocumentTypeFromString(documentParseInfo.documentId.getDocType(), typeManager), documentParseInfo);
@@ -93,7 +92,7 @@ public class JsonReader {
         }
         Optional<DocumentParseInfo> documentParseInfo;
         try {
-            documentParseInfo = parseDocument();
+            documentParseInfo = new DocumentParser(parser, typeManager).parse(Optional.empty());
         } catch (IOException r) {
             // Jackson is not able to recover from structural parse errors
             state = END_OF_FEED;
@@ -0,0 +1,92 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.document.json;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+
+/**
+ * A token source which reads tokens from the parser as they are consumed instead of buffering them,
+ * such that a JSON structure can be read into field values in a single pass.
+ * <p>
+ * This is created positioned at the start of the structure to read, and will not advance past its end.
+ */
+public class StreamingTokenSource implements TokenSource {
+
+    private final JsonParser parser;
+    private int nesting;
+
+    public StreamingTokenSource(JsonParser parser) {
+        this.parser = parser;
+        this.nesting = TokenBuffer.nestingOffset(parser.getCurrentToken());
+    }
+
+    @Override
+    public JsonToken next() {
+        if (nesting == 0) return null; // at the end of the structure we were created to read
+
+        try {
+            JsonToken t = parser.nextValue();
+            if (t != null)
+                nesting += TokenBuffer.nestingOffset(t);
+            return t;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public JsonToken currentToken() {
+        return parser.getCurrentToken();
+    }
+
+    @Override
+    public String currentName() {
+        try {
+            return parser.getCurrentName();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public String currentText() {
+        try {
+            return parser.getText();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public int currentInt() {
+        try {
+            if (parser.getCurrentToken() == JsonToken.VALUE_NUMBER_INT && parser.getNumberType() == JsonParser.NumberType.INT)
+                return parser.getIntValue();
+            return Integer.valueOf(currentText());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public double currentDouble() {
+        try {
+            if (parser.getCurrentToken().isNumeric())
+                return parser.getDoubleValue();
+            return Double.valueOf(currentText());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public int nesting() { return nesting; }
+
+    @Override
+    public String toString() {
+        return "[nesting: " + nesting + ", current: (" + currentToken() + ", \"" + currentName() + "\")]";
+    }
+
+}
@@ -15,7 +15,7 @@ import com.google.common.base.Preconditions;
  *
  * @author <a href="mailto:steinar@yahoo-inc.com">Steinar Knutsen</a>
  */
-public class TokenBuffer {
+public class TokenBuffer implements TokenSource {
     public static final class Token {
         public final JsonToken token;
         public final String name;
@@ -42,6 +42,7 @@ public class TokenBuffer {
         }
     }
 
+    @Override
     public JsonToken next() {
         buffer.removeFirst();
         Token t = buffer.peekFirst();
@@ -52,18 +53,31 @@ public class TokenBuffer {
         return t.token;
     }
 
+    @Override
     public JsonToken currentToken() {
         return buffer.peekFirst().token;
     }
 
+    @Override
     public String currentName() {
         return buffer.peekFirst().name;
     }
 
+    @Override
     public String currentText() {
         return buffer.peekFirst().text;
     }
 
+    @Override
+    public int currentInt() {
+        return Integer.valueOf(currentText());
+    }
+
+    @Override
+    public double currentDouble() {
+        return Double.valueOf(currentText());
+    }
+
     public int size() {
         return buffer.size();
     }
@@ -101,7 +115,7 @@ public class TokenBuffer {
         return nesting + nestingOffset(t);
     }
 
-    private int nestingOffset(JsonToken t) {
+    static int nestingOffset(JsonToken t) {
         if (t.isStructStart()) {
             return 1;
         } else if (t.isStructEnd()) {
@@ -133,6 +147,7 @@ public class TokenBuffer {
         nesting += nestingOffset(t);
     }
 
+    @Override
     public int nesting() {
         return nesting;
     }
@@ -0,0 +1,32 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.document.json;
+
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * A sequence of JSON tokens which is read forwards, one token at a time, without lookahead.
+ */
+public interface TokenSource {
+
+    /** Advances to the next token and returns it, or returns null if there are no more tokens */
+    JsonToken next();
+
+    /** Returns the current token, or null if there are no more tokens */
+    JsonToken currentToken();
+
+    /** Returns the name of the field the current token is the value of, or of the current field name token */
+    String currentName();
+
+    /** Returns the text of the current token, e.g the value of a string or number, or the field name */
+    String currentText();
+
+    /** Returns the current value as an int, which must be a number or a string containing one */
+    int currentInt();
+
+    /** Returns the current value as a double, which must be a number or a string containing one */
+    double currentDouble();
+
+    /** Returns the number of JSON structures which are open at the current token */
+    int nesting();
+
+}
@@ -2,9 +2,16 @@
 package com.yahoo.document.json.document;
 
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonStreamContext;
 import com.fasterxml.jackson.core.JsonToken;
+import com.yahoo.document.Document;
 import com.yahoo.document.DocumentId;
+import com.yahoo.document.DocumentPut;
+import com.yahoo.document.DocumentType;
+import com.yahoo.document.DocumentTypeManager;
+import com.yahoo.document.json.StreamingTokenSource;
 import com.yahoo.document.json.readers.DocumentParseInfo;
+import com.yahoo.document.json.readers.VespaJsonDocumentReader;
 
 import java.io.IOException;
 import java.util.Optional;
@@ -26,20 +33,48 @@ public class DocumentParser {
     public static final String FIELDS = "fields";
     public static final String REMOVE = "remove";
     private final JsonParser parser;
+    private final DocumentTypeManager typeManager;
     private  long indentLevel;
+    private RuntimeException fieldsException;
 
+    /** Creates a parser which buffers the fields of all operations */
     public DocumentParser(JsonParser parser) {
+        this(parser, null);
+    }
+
+    /**
+     * Creates a parser which reads the fields of puts directly into a document of the type given by
+     * the type manager when the document id precedes the fields, and buffers the fields otherwise.
+     */
+    public DocumentParser(JsonParser parser, DocumentTypeManager typeManager) {
         this.parser = parser;
+        this.typeManager = typeManager;
     }
 
     public Optional<DocumentParseInfo> parse(Optional<DocumentId> documentIdArg) throws IOException {
-        indentLevel = 0;
         DocumentParseInfo documentParseInfo = new DocumentParseInfo();
         documentIdArg.ifPresent(documentId -> documentParseInfo.documentId = documentId);
+        return parse(documentParseInfo, documentIdArg.isPresent());
+    }
+
+    /** Parses an operation whose id and type are given rather than read from the input */
+    public DocumentParseInfo parse(DocumentId documentId, SupportedOperation operationType) throws IOException {
+        DocumentParseInfo documentParseInfo = new DocumentParseInfo();
+        documentParseInfo.documentId = documentId;
+        documentParseInfo.operationType = operationType;
+        return parse(documentParseInfo, true).get();
+    }
+
+    private Optional<DocumentParseInfo> parse(DocumentParseInfo documentParseInfo,
+                                              boolean docIdAndOperationIsSetExternally) throws IOException {
+        indentLevel = 0;
+        fieldsException = null;
         do {
-            parseOneItem(documentParseInfo, documentIdArg.isPresent() /* doc id set externally */);
+            parseOneItem(documentParseInfo, docIdAndOperationIsSetExternally);
         } while (indentLevel > 0L);
 
+        if (fieldsException != null) // thrown when the entire operation is consumed, such that parsing may continue
+            throw fieldsException;
         if (documentParseInfo.documentId != null) {
             return Optional.of(documentParseInfo);
         }
@@ -113,7 +148,11 @@ public class DocumentParser {
             JsonToken currentToken = parser.getCurrentToken();
             // "fields" opens a dictionary and is therefore on level two which might be surprising.
             if (currentToken == JsonToken.START_OBJECT && FIELDS.equals(parser.getCurrentName())) {
-                documentParseInfo.fieldsBuffer.bufferObject(currentToken, parser);
+                Optional<DocumentType> documentType = putDocumentType(documentParseInfo);
+                if (documentType.isPresent())
+                    readPutFields(documentType.get(), documentParseInfo);
+                else
+                    documentParseInfo.fieldsBuffer.bufferObject(currentToken, parser);
                 processIndent();
             }
         } catch (IOException e) {
@@ -121,6 +160,30 @@ public class DocumentParser {
         }
     }
 
+    /** Returns the type of the document to read the fields into directly, or empty if the fields must be buffered */
+    private Optional<DocumentType> putDocumentType(DocumentParseInfo documentParseInfo) {
+        if (typeManager == null) return Optional.empty();
+        if (documentParseInfo.operationType != SupportedOperation.PUT) return Optional.empty();
+        if (documentParseInfo.document.isPresent()) return Optional.empty();
+        // Unknown types are reported when the buffered operation is created
+        return Optional.ofNullable(typeManager.getDocumentType(documentParseInfo.documentId.getDocType()));
+    }
+
+    private void readPutFields(DocumentType documentType, DocumentParseInfo documentParseInfo) throws IOException {
+        JsonStreamContext operationContext = parser.getParsingContext().getParent();
+        DocumentPut put = new DocumentPut(new Document(documentType, documentParseInfo.documentId));
+        try {
+            new VespaJsonDocumentReader().readPutFields(new StreamingTokenSource(parser), put);
+            documentParseInfo.document = Optional.of(put.getDocument());
+        } catch (RuntimeException e) {
+            fieldsException = e;
+            // skip the rest of the fields
+            while (parser.getCurrentToken() != JsonToken.END_OBJECT || parser.getParsingContext() != operationContext) {
+                if (parser.nextToken() == null) throw e;
+            }
+        }
+    }
+
     private static SupportedOperation operationNameToOperationType(String operationName) {
         switch (operationName) {
             case PUT:
@@ -5,6 +5,7 @@ import com.yahoo.document.DataType;
 import com.yahoo.document.datatypes.CollectionFieldValue;
 import com.yahoo.document.datatypes.FieldValue;
 import com.yahoo.document.json.TokenBuffer;
+import com.yahoo.document.json.TokenSource;
 
 import java.util.List;
 
@@ -20,7 +21,7 @@ public class ArrayReader {
     }
 
     @SuppressWarnings({ "unchecked", "rawtypes" })
-    public static void fillArray(TokenBuffer buffer, CollectionFieldValue parent, DataType valueType) {
+    public static void fillArray(TokenSource buffer, CollectionFieldValue parent, DataType valueType) {
         int initNesting = buffer.nesting();
         expectArrayStart(buffer.currentToken());
         buffer.next();
@@ -9,7 +9,7 @@ import com.yahoo.document.datatypes.MapFieldValue;
 import com.yahoo.document.datatypes.StructuredFieldValue;
 import com.yahoo.document.datatypes.TensorFieldValue;
 import com.yahoo.document.datatypes.WeightedSet;
-import com.yahoo.document.json.TokenBuffer;
+import com.yahoo.document.json.TokenSource;
 
 import static com.yahoo.document.json.readers.ArrayReader.fillArray;
 import static com.yahoo.document.json.readers.JsonParserHelpers.expectCompositeEnd;
@@ -20,7 +20,7 @@ public class CompositeReader {
     // TODO createComposite is extremely similar to add/remove, refactor
     // yes, this suppresswarnings ugliness is by intention, the code relies on the contracts in the builders
     @SuppressWarnings({ "cast", "rawtypes" })
-    public static void populateComposite(TokenBuffer buffer, FieldValue fieldValue) {
+    public static void populateComposite(TokenSource buffer, FieldValue fieldValue) {
         JsonToken token = buffer.currentToken();
         if ((token != JsonToken.START_OBJECT) && (token != JsonToken.START_ARRAY)) {
             throw new IllegalArgumentException("Expected '[' or '{'. Got '" + token + "'.");
@@ -1,6 +1,7 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.document.json.readers;
 
+import com.yahoo.document.Document;
 import com.yahoo.document.DocumentId;
 import com.yahoo.document.json.TokenBuffer;
 import com.yahoo.document.json.document.DocumentParser;
@@ -13,4 +14,6 @@ public class DocumentParseInfo {
     public Optional<String> condition = Optional.empty();
     public DocumentParser.SupportedOperation operationType = null;
     public TokenBuffer fieldsBuffer = new TokenBuffer();
+    /** The document of a put, if its fields were read directly instead of buffered */
+    public Optional<Document> document = Optional.empty();
 }
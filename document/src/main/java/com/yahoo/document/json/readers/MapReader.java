@@ -14,6 +14,7 @@ import com.yahoo.document.datatypes.FieldValue;
 import com.yahoo.document.datatypes.IntegerFieldValue;
 import com.yahoo.document.datatypes.MapFieldValue;
 import com.yahoo.document.json.TokenBuffer;
+import com.yahoo.document.json.TokenSource;
 import com.yahoo.document.update.MapValueUpdate;
 import com.yahoo.document.update.ValueUpdate;
 
@@ -30,7 +31,7 @@ public class MapReader {
     public static final String UPDATE_ELEMENT = "element";
     public static final String UPDATE_MATCH = "match";
 
-    public static void fillMap(TokenBuffer buffer, MapFieldValue parent) {
+    public static void fillMap(TokenSource buffer, MapFieldValue parent) {
         if (buffer.currentToken() == JsonToken.START_ARRAY) {
             MapReader.fillMapFromArray(buffer, parent);
         } else {
@@ -39,7 +40,7 @@ public class MapReader {
     }
 
     @SuppressWarnings({ "rawtypes", "cast", "unchecked" })
-    public static void fillMapFromArray(TokenBuffer buffer, MapFieldValue parent) {
+    public static void fillMapFromArray(TokenSource buffer, MapFieldValue parent) {
         JsonToken token = buffer.currentToken();
         int initNesting = buffer.nesting();
         expectArrayStart(token);
@@ -68,7 +69,7 @@ public class MapReader {
     }
 
     @SuppressWarnings({ "rawtypes", "cast", "unchecked" })
-    public static void fillMapFromObject(TokenBuffer buffer, MapFieldValue parent) {
+    public static void fillMapFromObject(TokenSource buffer, MapFieldValue parent) {
         JsonToken token = buffer.currentToken();
         int initNesting = buffer.nesting();
         expectObjectStart(token);
@@ -8,6 +8,7 @@ import com.yahoo.document.PositionDataType;
 import com.yahoo.document.ReferenceDataType;
 import com.yahoo.document.datatypes.FieldValue;
 import com.yahoo.document.json.TokenBuffer;
+import com.yahoo.document.json.TokenSource;
 import com.yahoo.document.update.ValueUpdate;
 import org.apache.commons.codec.binary.Base64;
 
@@ -40,7 +41,7 @@ public class SingleValueReader {
         arithmeticExpressionPattern = Pattern.compile("^\\$\\w+\\s*([" + validSigns + "])\\s*(\\d+(.\\d+)?)$");
     }
 
-    public static FieldValue readSingleValue(TokenBuffer buffer, DataType expectedType) {
+    public static FieldValue readSingleValue(TokenSource buffer, DataType expectedType) {
         if (buffer.currentToken().isScalarValue()) {
             return readAtomic(buffer.currentText(), expectedType);
         } else {
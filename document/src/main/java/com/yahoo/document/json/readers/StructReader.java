@@ -5,12 +5,12 @@ import com.yahoo.document.Field;
 import com.yahoo.document.datatypes.FieldValue;
 import com.yahoo.document.datatypes.StructuredFieldValue;
 import com.yahoo.document.json.JsonReaderException;
-import com.yahoo.document.json.TokenBuffer;
+import com.yahoo.document.json.TokenSource;
 
 import static com.yahoo.document.json.readers.SingleValueReader.readSingleValue;
 
 public class StructReader {
-    public static void fillStruct(TokenBuffer buffer, StructuredFieldValue parent) {
+    public static void fillStruct(TokenSource buffer, StructuredFieldValue parent) {
         // do note the order of initializing initNesting and token is relevant for empty docs
         int initNesting = buffer.nesting();
         buffer.next();
@@ -27,7 +27,7 @@ public class StructReader {
         }
     }
 
-    public static Field getField(TokenBuffer buffer, StructuredFieldValue parent) {
+    public static Field getField(TokenSource buffer, StructuredFieldValue parent) {
         Field f = parent.getField(buffer.currentName());
         if (f == null) {
             throw new NullPointerException("Could not get field \"" + buffer.currentName() +
@@ -18,6 +18,7 @@ import com.yahoo.document.fieldpathupdate.FieldPathUpdate;
 import com.yahoo.document.fieldpathupdate.RemoveFieldPathUpdate;
 import com.yahoo.document.json.JsonReaderException;
 import com.yahoo.document.json.TokenBuffer;
+import com.yahoo.document.json.TokenSource;
 import com.yahoo.document.update.FieldUpdate;
 
 import static com.yahoo.document.json.readers.AddRemoveCreator.createAdds;
@@ -43,9 +44,12 @@ public class VespaJsonDocumentReader {
         try {
             switch (documentParseInfo.operationType) {
                 case PUT:
+                    if (documentParseInfo.document.isPresent()) { // fields are already read by readPutFields
+                        documentOperation = new DocumentPut(documentParseInfo.document.get());
+                        break;
+                    }
                     documentOperation = new DocumentPut(new Document(documentType, documentParseInfo.documentId));
-                    readPut(documentParseInfo.fieldsBuffer, (DocumentPut) documentOperation);
-                    verifyEndState(documentParseInfo.fieldsBuffer, JsonToken.END_OBJECT);
+                    readPutFields(documentParseInfo.fieldsBuffer, (DocumentPut) documentOperation);
                     break;
                 case REMOVE:
                     documentOperation = new DocumentRemove(documentParseInfo.documentId);
@@ -71,8 +75,14 @@ public class VespaJsonDocumentReader {
         return documentOperation;
     }
 
+    /** Reads the fields of a put from a source positioned at their start, and verifies that they are all consumed */
+    public void readPutFields(TokenSource source, DocumentPut put) {
+        readPut(source, put);
+        verifyEndState(source, JsonToken.END_OBJECT);
+    }
+
     // Exposed for unit testing...
-    public void readPut(TokenBuffer buffer, DocumentPut put) {
+    public void readPut(TokenSource buffer, DocumentPut put) {
         try {
             populateComposite(buffer, put.getDocument());
         } catch (JsonReaderException e) {
@@ -190,11 +200,10 @@ public class VespaJsonDocumentReader {
         return field.matches("^.*?[.\\[\\{].*$");
     }
 
-    private static void verifyEndState(TokenBuffer buffer, JsonToken expectedFinalToken) {
+    private static void verifyEndState(TokenSource buffer, JsonToken expectedFinalToken) {
         Preconditions.checkState(buffer.currentToken() == expectedFinalToken,
                 "Expected end of JSON struct (%s), got %s", expectedFinalToken, buffer.currentToken());
         Preconditions.checkState(buffer.nesting() == 0, "Nesting not zero at end of operation");
         Preconditions.checkState(buffer.next() == null, "Dangling data at end of operation");
-        Preconditions.checkState(buffer.size() == 0, "Dangling data at end of operation");
     }
 }
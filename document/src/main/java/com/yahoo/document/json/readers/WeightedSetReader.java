@@ -5,12 +5,13 @@ import com.yahoo.document.DataType;
 import com.yahoo.document.datatypes.FieldValue;
 import com.yahoo.document.datatypes.WeightedSet;
 import com.yahoo.document.json.TokenBuffer;
+import com.yahoo.document.json.TokenSource;
 
 import static com.yahoo.document.json.readers.JsonParserHelpers.expectObjectStart;
 
 
 public class WeightedSetReader {
-    public static void fillWeightedSet(TokenBuffer buffer, DataType valueType, @SuppressWarnings("rawtypes") WeightedSet weightedSet) {
+    public static void fillWeightedSet(TokenSource buffer, DataType valueType, @SuppressWarnings("rawtypes") WeightedSet weightedSet) {
         int initNesting = buffer.nesting();
         expectObjectStart(buffer.currentToken());
         buffer.next();
@@ -21,11 +22,11 @@ public class WeightedSetReader {
     }
 
     @SuppressWarnings({ "rawtypes", "unchecked" })
-    private static void iterateThroughWeightedSet(TokenBuffer buffer, int initNesting, DataType valueType, WeightedSet weightedSet) {
+    private static void iterateThroughWeightedSet(TokenSource buffer, int initNesting, DataType valueType, WeightedSet weightedSet) {
         while (buffer.nesting() >= initNesting) {
             // XXX the keys are defined in the spec to always be represented as strings
             FieldValue v = valueType.createFieldValue(buffer.currentName());
-            weightedSet.put(v, Integer.valueOf(buffer.currentText()));
+            weightedSet.put(v, buffer.currentInt());
             buffer.next();
         }
     }
@@ -0,0 +1,122 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.document.serialization;
+
+import com.yahoo.document.Document;
+import com.yahoo.document.DocumentTypeManager;
+import com.yahoo.document.Field;
+import com.yahoo.document.datatypes.FieldValue;
+import com.yahoo.io.GrowableByteBuffer;
+
+/**
+ * The fields of a struct which are still in the serialized form they were read in.
+ * A field is deserialized when it is first accessed, and fields which are never accessed are
+ * written back as-is when the struct is serialized in the same format again.
+ * <p>
+ * This is owned by a single struct, which is responsible for synchronizing access to it.
+ */
+public final class SerializedFields implements Cloneable {
+
+    private final DocumentTypeManager manager;
+    private final short version;
+
+    /** The uncompressed field data of the struct. Never modified. */
+    private final byte[] buffer;
+
+    /** The fields, their offsets in the buffer and their serialized lengths, in serialized order */
+    private Field[] fields;
+    private int[] offsets;
+    private int[] lengths;
+
+    /** The number of fields in this which are not yet removed */
+    private int size;
+
+    SerializedFields(DocumentTypeManager manager, short version, byte[] buffer, int capacity) {
+        this.manager = manager;
+        this.version = version;
+        this.buffer = buffer;
+        this.fields = new Field[capacity];
+        this.offsets = new int[capacity];
+        this.lengths = new int[capacity];
+    }
+
+    void add(Field field, int offset, int length) {
+        fields[size] = field;
+        offsets[size] = offset;
+        lengths[size] = length;
+        size++;
+    }
+
+    /** Returns the number of fields in this */
+    public int size() { return size; }
+
+    /** Returns the field at the given index, where index is less than size() */
+    public Field field(int index) { return fields[index]; }
+
+    /** Returns whether this contains the given field */
+    public boolean contains(Field field) {
+        return indexOf(field) >= 0;
+    }
+
+    /**
+     * Deserializes the given field and removes it from this.
+     *
+     * @return the deserialized value, or null if this does not contain the field
+     */
+    public FieldValue remove(Field field) {
+        int index = indexOf(field);
+        if (index < 0) return null;
+
+        VespaDocumentDeserializer42 deserializer =
+                new VespaDocumentDeserializer42(manager, GrowableByteBuffer.wrap(buffer), null, version);
+        deserializer.position(offsets[index]);
+        FieldValue value = fields[index].getDataType().createFieldValue();
+        value.deserialize(fields[index], deserializer);
+        discard(index);
+        return value;
+    }
+
+    /** Removes the given field from this without deserializing it */
+    public void discard(Field field) {
+        int index = indexOf(field);
+        if (index >= 0)
+            discard(index);
+    }
+
+    private void discard(int index) {
+        size--;
+        System.arraycopy(fields, index + 1, fields, index, size - index);
+        System.arraycopy(offsets, index + 1, offsets, index, size - index);
+        System.arraycopy(lengths, index + 1, lengths, index, size - index);
+        fields[size] = null;
+    }
+
+    private int indexOf(Field field) {
+        for (int i = 0; i < size; i++)
+            if (fields[i].getId() == field.getId()) return i;
+        return -1;
+    }
+
+    /** Returns whether the fields of this can be written as-is by the current serializer */
+    boolean isCurrentVersion() { return version == Document.SERIALIZED_VERSION; }
+
+    /** Writes the serialized form of the given field, which must be contained in this, to the given buffer */
+    void write(Field field, GrowableByteBuffer destination) {
+        int index = indexOf(field);
+        destination.put(buffer, offsets[index], lengths[index]);
+    }
+
+    @Override
+    public SerializedFields clone() {
+        try {
+            SerializedFields clone = (SerializedFields)super.clone();
+            clone.fields = fields.clone();
+            clone.offsets = offsets.clone();
+            clone.lengths = lengths.clone();
+            return clone;
+        }
+        catch (CloneNotSupportedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+}
@@ -358,20 +358,15 @@ public class VespaDocumentDeserializer42 extends VespaDocumentSerializer42 imple
 
         s.clear();
         StructDataType type = s.getDataType();
+        // the fields are deserialized from the uncompressed buffer when they are accessed
+        SerializedFields fields = new SerializedFields(manager, version, destination, numberOfFields);
         for (int i=0; i<numberOfFields; ++i) {
             Field structField = type.getField(fieldIdsAndLengths.get(i).first, version);
-            if (structField == null) {
-                //ignoring unknown field:
-                position(position() + fieldIdsAndLengths.get(i).second.intValue());
-            } else {
-                int posBefore = position();
-                FieldValue value = structField.getDataType().createFieldValue();
-                value.deserialize(structField, this);
-                s.setFieldValue(structField, value);
-                //jump to beginning of next field:
-                position(posBefore + fieldIdsAndLengths.get(i).second.intValue());
-            }
+            if (structField != null) // ignoring unknown fields
+                fields.add(structField, position(), fieldIdsAndLengths.get(i).second.intValue());
+            position(position() + fieldIdsAndLengths.get(i).second.intValue());
         }
+        s.setSerializedFields(fields);
 
         // restore the original buffer
         buf = bigBuf;
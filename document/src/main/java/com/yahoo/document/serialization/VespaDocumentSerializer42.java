@@ -310,10 +310,16 @@ public class VespaDocumentSerializer42 extends BufferSerializer implements Docum
         List<Integer> fieldIds = new LinkedList<>();
         List<java.lang.Integer> fieldLengths = new LinkedList<>();
 
+        SerializedFields serializedFields = s.getSerializedFields();
+        if (serializedFields != null && ! serializedFields.isCurrentVersion())
+            serializedFields = null; // must be deserialized and serialized again in this version
         for (Map.Entry<Field, FieldValue> value : s.getFields()) {
 
             int startPos = buffer.position();
-            value.getValue().serialize(value.getKey(), this);
+            if (serializedFields != null && serializedFields.contains(value.getKey()))
+                serializedFields.write(value.getKey(), buffer); // not accessed since it was read
+            else
+                value.getValue().serialize(value.getKey(), this);
 
             fieldLengths.add(buffer.position() - startPos);
             fieldIds.add(value.getKey().getId(s.getVersion()));
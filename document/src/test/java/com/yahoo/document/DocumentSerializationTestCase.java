@@ -25,6 +25,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotSame;
@@ -224,4 +225,41 @@ public class DocumentSerializationTestCase extends AbstractTypesTest {
         assertEquals(doc, doc2);
         assertNotSame(doc, doc2);
     }
+
+    @Test
+    public void testFieldsAreDeserializedWhenAccessed() {
+        Document doc = new Document(docType, "doc:foo:bar");
+        doc.setFieldValue("age", (byte)123);
+        doc.setFieldValue("story", getAnnotatedString());
+        doc.setFieldValue("date", 13829297);
+        doc.setFieldValue("friend", 2384L);
+        byte[] serialized = serialize(doc);
+
+        Document read = deserialize(serialized);
+        assertArrayEquals(serialized, serialize(read));
+        assertEquals(new IntegerFieldValue(13829297), read.getFieldValue("date"));
+        read.setFieldValue("friend", 42L);
+
+        Document reread = deserialize(serialize(read));
+        assertEquals(new ByteFieldValue((byte)123), reread.getFieldValue("age"));
+        assertEquals(new IntegerFieldValue(13829297), reread.getFieldValue("date"));
+        assertEquals(new LongFieldValue(42L), reread.getFieldValue("friend"));
+        assertEquals(doc.getFieldValue("story"), reread.getFieldValue("story"));
+
+        doc.setFieldValue("friend", 42L);
+        assertEquals(doc, read);
+        assertEquals(doc, read.clone());
+    }
+
+    private static byte[] serialize(Document doc) {
+        GrowableByteBuffer buffer = new GrowableByteBuffer(1024);
+        DocumentSerializerFactory.create42(buffer).write(doc);
+        buffer.flip();
+        return Arrays.copyOf(buffer.array(), buffer.limit());
+    }
+
+    private Document deserialize(byte[] serialized) {
+        return new Document(DocumentDeserializerFactory.create42(man, GrowableByteBuffer.wrap(serialized)));
+    }
+
 }
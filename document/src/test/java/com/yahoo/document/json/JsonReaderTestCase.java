@@ -1094,6 +1094,38 @@ public class JsonReaderTestCase {
         new JsonReader(types, jsonToInputStream(jsonData), parserFactory).next();
     }
 
+    @Test
+    public void testReadingContinuesAfterInvalidFieldsOfPut() {
+        final String jsonData = inputJson(
+                "[",
+                "      {",
+                "          'put': 'id:unittest:smoke::bad',",
+                "          'fields': {",
+                "              'int1': 'not a number',",
+                "              'something': { 'nested': [ 1, 2 ] }",
+                "          },",
+                "          'condition': 'smoke.nalle == \\'bamse\\''",
+                "      },",
+                "      {",
+                "          'put': 'id:unittest:smoke::whee',",
+                "          'fields': {",
+                "              'something': 'smoketest',",
+                "              'nalle': 'bamse'",
+                "          }",
+                "      }",
+                "]");
+
+        JsonReader r = new JsonReader(types, jsonToInputStream(jsonData), parserFactory);
+        try {
+            r.next();
+            fail("Expected exception");
+        } catch (JsonReaderException e) {
+            assertEquals(new DocumentId("id:unittest:smoke::bad"), e.docId);
+        }
+        smokeTestDoc(((DocumentPut) r.next()).getDocument());
+        assertNull(r.next());
+    }
+
     static ByteArrayInputStream jsonToInputStream(String json) {
         return new ByteArrayInputStream(Utf8.toBytes(json));
     }
@@ -17,6 +17,11 @@ import com.yahoo.vespa.objects.Selectable;
  */
 public abstract class Expression extends Selectable {
 
+    /** Whether the input and output types of this are resolved once, rather than computed on each execution */
+    private boolean typesResolved = false;
+    private DataType resolvedInputType;
+    private DataType resolvedOutputType;
+
     public final FieldValue execute(FieldValue val) {
         return execute(new ExecutionContext().setValue(val));
     }
@@ -58,7 +63,7 @@ public abstract class Expression extends Selectable {
     }
 
     public final FieldValue execute(ExecutionContext context) {
-        DataType inputType = requiredInputType();
+        DataType inputType = typesResolved ? resolvedInputType : requiredInputType();
         if (inputType != null) {
             FieldValue input = context.getValue();
             if (input == null) {
@@ -70,7 +75,7 @@ public abstract class Expression extends Selectable {
             }
         }
         doExecute(context);
-        DataType outputType = createdOutputType();
+        DataType outputType = typesResolved ? resolvedOutputType : createdOutputType();
         if (outputType != null) {
             FieldValue output = context.getValue();
             if (output != null && !outputType.isValueCompatible(output)) {
@@ -83,6 +88,33 @@ public abstract class Expression extends Selectable {
 
     protected abstract void doExecute(ExecutionContext ctx);
 
+    /**
+     * Computes the required input and created output types of this and all the expressions it contains once,
+     * such that they are not computed again on every execution. Composite expressions otherwise compute
+     * their types from all their inner expressions each time they are executed.
+     * This must only be called on expressions which are not modified afterwards.
+     */
+    public final void resolveTypes() {
+        new ExpressionVisitor() {
+
+            @Override
+            protected void doVisit(Expression exp) {
+                exp.resolveOwnTypes();
+            }
+
+        }.visit(this);
+    }
+
+    private void resolveOwnTypes() {
+        try {
+            resolvedInputType = requiredInputType();
+            resolvedOutputType = createdOutputType();
+            typesResolved = true;
+        } catch (VerificationException e) {
+            // leave it to execution to report
+        }
+    }
+
     public final DataType verify() {
         return verify(new VerificationContext());
     }
@@ -5,9 +5,9 @@ import com.yahoo.document.DocumentType;
 import com.yahoo.vespa.objects.ObjectOperation;
 import com.yahoo.vespa.objects.ObjectPredicate;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 
 /**
@@ -15,7 +15,7 @@ import java.util.List;
  */
 public abstract class ExpressionList<T extends Expression> extends CompositeExpression implements Iterable<T> {
 
-    private final List<T> expressions = new LinkedList<T>();
+    private final List<T> expressions = new ArrayList<T>();
 
     protected ExpressionList() {
         // empty
@@ -19,23 +19,28 @@ import java.util.Iterator;
  */
 public class ScriptExpression extends ExpressionList<StatementExpression> {
 
+    /** The statements of this, as an array to avoid iterating the list on each execution */
+    private final StatementExpression[] statements;
+
     public ScriptExpression() {
         super();
+        statements = new StatementExpression[0];
     }
 
     public ScriptExpression(StatementExpression... lst) {
-        super(Arrays.asList(lst));
+        this(Arrays.asList(lst));
     }
 
     public ScriptExpression(Collection<? extends StatementExpression> lst) {
         super(lst);
+        statements = asList().toArray(new StatementExpression[size()]);
     }
 
     @Override
     protected void doExecute(ExecutionContext ctx) {
         FieldValue input = ctx.getValue();
-        for (Expression exp : this) {
-            ctx.setValue(input).execute(exp);
+        for (StatementExpression statement : statements) {
+            ctx.setValue(input).execute(statement);
         }
         ctx.setValue(input);
     }
@@ -52,8 +57,8 @@ public class ScriptExpression extends ExpressionList<StatementExpression> {
     @Override
     public DataType requiredInputType() {
         DataType prev = null;
-        for (Expression exp : this) {
-            DataType next = exp.requiredInputType();
+        for (StatementExpression statement : statements) {
+            DataType next = statement.requiredInputType();
             if (prev == null) {
                 prev = next;
             } else if (next != null && !prev.isAssignableFrom(next)) {
@@ -19,18 +19,22 @@ import java.util.List;
  */
 public class StatementExpression extends ExpressionList<Expression> {
 
+    /** The expressions of this in execution order, as an array to avoid iterating the list on each execution */
+    private final Expression[] steps;
+
     public StatementExpression(Expression... lst) {
         this(Arrays.asList(lst));
     }
 
     public StatementExpression(Iterable<Expression> lst) {
         super(filterList(lst));
+        steps = asList().toArray(new Expression[size()]);
     }
 
     @Override
     protected void doExecute(ExecutionContext ctx) {
-        for (Expression exp : this) {
-            ctx.execute(exp);
+        for (Expression step : steps) {
+            ctx.execute(step);
         }
     }
 
@@ -43,12 +47,12 @@ public class StatementExpression extends ExpressionList<Expression> {
 
     @Override
     public DataType requiredInputType() {
-        for (Expression exp : this) {
-            DataType type = exp.requiredInputType();
+        for (Expression step : steps) {
+            DataType type = step.requiredInputType();
             if (type != null) {
                 return type;
             }
-            type = exp.createdOutputType();
+            type = step.createdOutputType();
             if (type != null) {
                 return null;
             }
@@ -58,8 +62,8 @@ public class StatementExpression extends ExpressionList<Expression> {
 
     @Override
     public DataType createdOutputType() {
-        for (int i = size(); --i >= 0; ) {
-            DataType type = get(i).createdOutputType();
+        for (int i = steps.length; --i >= 0; ) {
+            DataType type = steps[i].createdOutputType();
             if (type != null) {
                 return type;
             }
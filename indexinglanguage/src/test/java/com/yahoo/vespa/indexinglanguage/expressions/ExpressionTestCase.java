@@ -52,6 +52,17 @@ public class ExpressionTestCase {
                            "Expected int output, got string.");
     }
 
+    @Test
+    public void requireThatResolvedTypesAreUsedOnExecute() {
+        SimpleExpression inner = new SimpleExpression().setRequiredInput(DataType.INT);
+        Expression exp = new StatementExpression(inner);
+        exp.resolveTypes();
+        inner.setRequiredInput(DataType.STRING);
+        assertExecute(exp, new IntegerFieldValue(69));
+        assertExecuteThrows(exp, new StringFieldValue("foo"),
+                            new IllegalArgumentException("expected int input, got string"));
+    }
+
     @Test
     public void requireThatEqualsMethodWorks() {
         assertTrue(Expression.equals(null, null));
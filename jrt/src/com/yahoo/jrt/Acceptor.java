@@ -100,7 +100,7 @@ public class Acceptor {
     private void run() {
         while (serverChannel.isOpen()) {
             try {
-                parent.addConnection(new Connection(parent, owner, serverChannel.accept()));
+                parent.addConnection(new Connection(parent.selectThread(), owner, serverChannel.accept()));
                 parent.sync();
             } catch (ClosedChannelException ignore) {
             } catch (Exception e) {
@@ -0,0 +1,122 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.jrt;
+
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * A pool of direct byte buffers, shared by the connections of a
+ * {@link Transport} using direct buffers. Buffer sizes are rounded
+ * up to the nearest power of two, and released buffers are kept for
+ * reuse as long as the total size of the pooled buffers stays below
+ * a limit. Buffers larger than {@link #MAX_POOLED} are allocated on
+ * the heap, to avoid tying up large amounts of direct memory for
+ * the occasional big packet. This class is thread-safe.
+ **/
+class BufferPool {
+
+    static final int MIN_POOLED = 4 * 1024;
+    static final int MAX_POOLED = 1024 * 1024;
+
+    private static final int MIN_SHIFT = Integer.numberOfTrailingZeros(MIN_POOLED);
+    private static final int MAX_SHIFT = Integer.numberOfTrailingZeros(MAX_POOLED);
+
+    private final List<ArrayDeque<ByteBuffer>> free = new ArrayList<>();
+    private final long maxPooledBytes;
+    private long       pooledBytes = 0;
+    private long       allocated   = 0;
+    private long       reused      = 0;
+
+    private static int sizeClass(int size) {
+        int shift = 32 - Integer.numberOfLeadingZeros(Math.max(size, MIN_POOLED) - 1);
+        return shift - MIN_SHIFT;
+    }
+
+    /**
+     * Create a buffer pool keeping at most the given number of bytes
+     * in released buffers.
+     *
+     * @param maxPooledBytes the max total size of the pooled buffers
+     **/
+    BufferPool(long maxPooledBytes) {
+        this.maxPooledBytes = maxPooledBytes;
+        for (int i = MIN_SHIFT; i <= MAX_SHIFT; i++) {
+            free.add(new ArrayDeque<>());
+        }
+    }
+
+    /**
+     * Obtain a cleared, big endian buffer with room for at least the
+     * given number of bytes.
+     *
+     * @return a buffer with a capacity of at least size bytes
+     * @param size the number of bytes needed
+     **/
+    ByteBuffer allocate(int size) {
+        if (size > MAX_POOLED) {
+            return ByteBuffer.allocate(size);
+        }
+        int sizeClass = sizeClass(size);
+        ByteBuffer buf;
+        synchronized (this) {
+            buf = free.get(sizeClass).pollFirst();
+            if (buf != null) {
+                pooledBytes -= buf.capacity();
+                reused++;
+            } else {
+                allocated++;
+            }
+        }
+        if (buf == null) {
+            return ByteBuffer.allocateDirect(MIN_POOLED << sizeClass);
+        }
+        buf.clear();
+        buf.order(ByteOrder.BIG_ENDIAN);
+        return buf;
+    }
+
+    /**
+     * Return a buffer obtained from {@link #allocate} to this
+     * pool. The buffer must not be used by the caller afterwards.
+     *
+     * @param buf the buffer to release
+     **/
+    void release(ByteBuffer buf) {
+        if (!buf.isDirect()) {
+            return;
+        }
+        synchronized (this) {
+            if (pooledBytes + buf.capacity() > maxPooledBytes) {
+                return;
+            }
+            pooledBytes += buf.capacity();
+            free.get(sizeClass(buf.capacity())).addFirst(buf);
+        }
+    }
+
+    /**
+     * @return the number of bytes in buffers held by this pool for reuse
+     **/
+    synchronized long pooledBytes() {
+        return pooledBytes;
+    }
+
+    /**
+     * @return the number of direct buffers allocated by this pool
+     **/
+    synchronized long allocatedCount() {
+        return allocated;
+    }
+
+    /**
+     * @return the number of buffers handed out again after release
+     **/
+    synchronized long reusedCount() {
+        return reused;
+    }
+}
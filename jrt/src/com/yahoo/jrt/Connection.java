@@ -34,11 +34,13 @@ class Connection extends Target {
     private Buffer        output     = new Buffer(WRITE_SIZE * 2);
     private int           maxInputSize  = 64*1024;
     private int           maxOutputSize = 64*1024;
+    private BufferPool    bufferPool = null;
+    private GatherWrite   gatherWrite = null;
     private Map<Integer, ReplyHandler> replyMap = new HashMap<>();
     private Map<TargetWatcher, TargetWatcher> watchers = new IdentityHashMap<>();
     private int           activeReqs = 0;
     private int           writeWork  = 0;
-    private Transport     parent;
+    private TransportThread parent;
     private Supervisor    owner;
     private Spec          spec;
     private SocketChannel channel;
@@ -81,7 +83,7 @@ class Connection extends Target {
         }
     }
 
-    public Connection(Transport parent, Supervisor owner,
+    public Connection(TransportThread parent, Supervisor owner,
                       SocketChannel channel) {
 
         this.parent = parent;
@@ -91,7 +93,7 @@ class Connection extends Target {
         owner.sessionInit(this);
     }
 
-    public Connection(Transport parent, Supervisor owner, Spec spec, Object context) {
+    public Connection(TransportThread parent, Supervisor owner, Spec spec, Object context) {
         super(context);
         this.parent = parent;
         this.owner = owner;
@@ -108,7 +110,17 @@ class Connection extends Target {
         maxOutputSize = bytes;
     }
 
+    public void useDirectBuffers(BufferPool pool) {
+        bufferPool = pool;
+        input = new Buffer(READ_SIZE * 2, pool);
+        output = new Buffer(WRITE_SIZE * 2, pool);
+    }
+
     public Transport transport() {
+        return parent.transport();
+    }
+
+    public TransportThread transportThread() {
         return parent;
     }
 
@@ -243,22 +255,34 @@ class Connection extends Target {
             queue.flush(myQueue);
         }
         for (int i = 0; i < WRITE_REDO; i++) {
-            while (output.bytes() < WRITE_SIZE) {
+            while (gatherWrite == null && output.bytes() < WRITE_SIZE) {
                 Packet packet = (Packet) myQueue.dequeue();
                 if (packet == null) {
                     break;
                 }
                 PacketInfo info = packet.getPacketInfo();
-                ByteBuffer wb = output.getWritable(info.packetLength());
                 owner.writePacket(info);
-                info.encodePacket(packet, wb);
+                if (bufferPool != null && packet.gatherBytes() > 0) {
+                    // written after what is in the output buffer, and
+                    // before any further packets are encoded
+                    gatherWrite = new GatherWrite(packet, info, bufferPool);
+                } else {
+                    ByteBuffer wb = output.getWritable(info.packetLength());
+                    info.encodePacket(packet, wb);
+                }
             }
             ByteBuffer rb = output.getChannelReadable();
-            if (rb.remaining() == 0) {
-                break;
-            }
-            channel.write(rb);
             if (rb.remaining() > 0) {
+                channel.write(rb);
+                if (rb.remaining() > 0) {
+                    break;
+                }
+            } else if (gatherWrite == null) {
+                break;
+            } else if (gatherWrite.writeTo(channel)) {
+                gatherWrite.release();
+                gatherWrite = null;
+            } else {
                 break;
             }
         }
@@ -266,7 +290,8 @@ class Connection extends Target {
         synchronized (this) {
             writeWork = queue.size()
                 + myQueue.size()
-                + ((output.bytes() > 0) ? 1 : 0);
+                + ((output.bytes() > 0) ? 1 : 0)
+                + ((gatherWrite != null) ? 1 : 0);
             disableWrite = (writeWork == 0);
         }
         if (disableWrite) {
@@ -282,6 +307,14 @@ class Connection extends Target {
         if (selectionKey != null) {
             selectionKey.cancel();
         }
+        if (bufferPool != null) {
+            input.release();
+            output.release();
+            if (gatherWrite != null) {
+                gatherWrite.release();
+                gatherWrite = null;
+            }
+        }
     }
 
     public boolean isClosed() {
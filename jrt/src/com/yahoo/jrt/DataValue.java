@@ -42,6 +42,21 @@ public class DataValue extends Value
         dst.put(value);
     }
 
+    @Override
+    void encode(ByteBuffer dst, GatherWrite gather) {
+        if (gatherBytes() == 0) {
+            encode(dst);
+            return;
+        }
+        dst.putInt(value.length);
+        gather.addPayload(dst, value);
+    }
+
+    @Override
+    int gatherBytes() {
+        return (value.length >= GatherWrite.MIN_PAYLOAD) ? value.length : 0;
+    }
+
     public byte[] asData() { return value; }
 
     @Override
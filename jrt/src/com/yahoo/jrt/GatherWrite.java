@@ -0,0 +1,110 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.jrt;
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * A packet with large data payloads, written to a channel with
+ * gathering writes. The packet header and all small values are
+ * encoded into a buffer from a {@link BufferPool}, while the payloads
+ * of data values of at least {@link #MIN_PAYLOAD} bytes are written
+ * straight from their byte arrays, without first being copied into
+ * the output buffer of the connection.
+ **/
+class GatherWrite {
+
+    static final int MIN_PAYLOAD = 16 * 1024;
+
+    private BufferPool       pool;
+    private ByteBuffer       frame;
+    private List<ByteBuffer> segments = new ArrayList<>();
+    private ByteBuffer[]     pending;
+    private int              next = 0;
+    private int              split = 0;
+
+    /**
+     * Encode the given packet for gathering writes.
+     *
+     * @param packet the packet to write
+     * @param info packet info for the packet
+     * @param pool the pool to allocate the frame buffer from
+     **/
+    GatherWrite(Packet packet, PacketInfo info, BufferPool pool) {
+        this.pool = pool;
+        frame = pool.allocate(info.packetLength() - packet.gatherBytes());
+        info.encodePacket(packet, frame, this);
+        addFrame(frame.position());
+        pending = segments.toArray(new ByteBuffer[segments.size()]);
+        segments = null;
+    }
+
+    private void addFrame(int end) {
+        if (end > split) {
+            ByteBuffer segment = frame.duplicate();
+            segment.limit(end);
+            segment.position(split);
+            segments.add(segment);
+        }
+        split = end;
+    }
+
+    /**
+     * Invoked when encoding a data value with a large payload, right
+     * after its length has been encoded into the given buffer.
+     *
+     * @param dst the frame buffer being encoded into
+     * @param payload the payload to write after what is encoded so far
+     **/
+    void addPayload(ByteBuffer dst, byte[] payload) {
+        addFrame(dst.position());
+        segments.add(ByteBuffer.wrap(payload));
+    }
+
+    /**
+     * Write as much as possible of the rest of the packet, at most
+     * {@link Buffer#MAX_IO} bytes, to the given channel.
+     *
+     * @return true if the entire packet has been written
+     * @param channel the channel to write to
+     **/
+    boolean writeTo(GatheringByteChannel channel) throws IOException {
+        int end = next;
+        int bytes = 0;
+        while (end < pending.length && bytes < Buffer.MAX_IO) {
+            bytes += pending[end++].remaining();
+        }
+        if (end > next) {
+            ByteBuffer last = pending[end - 1];
+            int limit = last.limit();
+            if (bytes > Buffer.MAX_IO) {
+                last.limit(limit - (bytes - Buffer.MAX_IO));
+            }
+            try {
+                channel.write(pending, next, end - next);
+            } finally {
+                last.limit(limit);
+            }
+        }
+        while (next < pending.length && !pending[next].hasRemaining()) {
+            next++;
+        }
+        return (next == pending.length);
+    }
+
+    /**
+     * Return the frame buffer to the pool. This must be done when
+     * the packet has been written or the connection is closed.
+     **/
+    void release() {
+        if (frame != null) {
+            pool.release(frame);
+            frame = null;
+        }
+    }
+}
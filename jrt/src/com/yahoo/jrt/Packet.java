@@ -44,6 +44,14 @@ abstract class Packet
     public abstract int packetCode();
     public abstract void encode(ByteBuffer dst);
 
+    public int gatherBytes() {
+        return 0;
+    }
+
+    public void encode(ByteBuffer dst, GatherWrite gather) {
+        encode(dst);
+    }
+
     public PacketInfo getPacketInfo() {
         return new PacketInfo(bytes(), flags, packetCode(), requestId);
     }
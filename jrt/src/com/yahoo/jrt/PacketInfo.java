@@ -85,8 +85,12 @@ class PacketInfo
     }
 
     public void encodePacket(Packet packet, ByteBuffer dst) {
+        encodePacket(packet, dst, null);
+    }
+
+    public void encodePacket(Packet packet, ByteBuffer dst, GatherWrite gather) {
         int pos = dst.position();
-        int end = pos + packetLength;
+        int end = pos + packetLength - ((gather != null) ? packet.gatherBytes() : 0);
         int limit = dst.limit();
         try {
             dst.limit(end);
@@ -97,7 +101,11 @@ class PacketInfo
             if (reverseByteOrder()) {
                 dst.order(ByteOrder.LITTLE_ENDIAN);
             }
-            packet.encode(dst);
+            if (gather != null) {
+                packet.encode(dst, gather);
+            } else {
+                packet.encode(dst);
+            }
         } catch (RuntimeException e) {
             dst.position(pos);
             throw e;
@@ -36,6 +36,16 @@ class ReplyPacket extends Packet
         returnValues.encode(dst);
     }
 
+    @Override
+    public int gatherBytes() {
+        return returnValues.gatherBytes();
+    }
+
+    @Override
+    public void encode(ByteBuffer dst, GatherWrite gather) {
+        returnValues.encode(dst, gather);
+    }
+
     public Values returnValues() {
         return returnValues;
     }
@@ -42,6 +42,17 @@ class RequestPacket extends Packet
         parameters.encode(dst);
     }
 
+    @Override
+    public int gatherBytes() {
+        return parameters.gatherBytes();
+    }
+
+    @Override
+    public void encode(ByteBuffer dst, GatherWrite gather) {
+        methodName.encode(dst);
+        parameters.encode(dst, gather);
+    }
+
     public String methodName() {
         return methodName.asString();
     }
@@ -2,7 +2,8 @@
 package com.yahoo.jrt;
 
 
-import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 /**
@@ -46,9 +47,10 @@ public class Supervisor {
 
     private Transport               transport;
     private SessionHandler          sessionHandler = null;
-    private HashMap<String, Method> methodMap      = new HashMap<>();
+    private Map<String, Method>     methodMap      = new ConcurrentHashMap<>();
     private int                     maxInputBufferSize  = 0;
     private int                     maxOutputBufferSize = 0;
+    private boolean                 directBuffers       = false;
 
     /**
      * Create a new Supervisor based on the given {@link Transport}
@@ -89,12 +91,27 @@ public class Supervisor {
         maxOutputBufferSize = bytes;
     }
 
+    /**
+     * Set whether connections should use direct buffers from a pool
+     * shared by all connections of the underlying {@link Transport}
+     * for their input and output. Direct buffers save a copy for each
+     * socket read and write, and the payloads of large data values are
+     * then written straight from the values instead of being copied
+     * into the output buffer first. This value only affects
+     * connections created after it is set.
+     *
+     * @param enable true to use pooled direct buffers
+     **/
+    public void setUseDirectBuffers(boolean enable) {
+        directBuffers = enable;
+    }
+
     /**
      * Obtain the method map for this Supervisor
      *
      * @return the method map
      **/
-    HashMap<String, Method> methodMap() {
+    Map<String, Method> methodMap() {
         return methodMap;
     }
 
@@ -235,6 +252,9 @@ public class Supervisor {
     void sessionInit(Target target) {
         if (target instanceof Connection) {
             Connection conn = (Connection) target;
+            if (directBuffers) {
+                conn.useDirectBuffers(transport.bufferPool());
+            }
             conn.setMaxInputSize(maxInputBufferSize);
             conn.setMaxOutputSize(maxOutputBufferSize);
         }
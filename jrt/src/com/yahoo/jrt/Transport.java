@@ -2,10 +2,7 @@
 package com.yahoo.jrt;
 
 
-import java.io.IOException;
-import java.nio.channels.SelectionKey;
-import java.nio.channels.Selector;
-import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -16,166 +13,66 @@ import java.util.logging.Logger;
  * multiplexed network IO, handles scheduled tasks and keeps track of
  * some additional helper threads. A single Transport object can back
  * multiple {@link Supervisor} objects.
+ * <p>
+ * A Transport may run several transport threads, each with its own
+ * selector. Each connection is assigned to one of them, round robin,
+ * and all IO for that connection is performed by that thread.
+ * Scheduled tasks and commands performed by {@link #perform} are run
+ * by the first transport thread.
  **/
 public class Transport {
 
-    private static final int OPEN    = 1;
-    private static final int CLOSING = 2;
-    private static final int CLOSED  = 3;
-
-    private class Run implements Runnable {
-        public void run() {
-            try {
-                Transport.this.run();
-            } catch (Throwable problem) {
-                handleFailure(problem, Transport.this);
-            }
-        }
-    }
-
-    private class AddConnectionCmd implements Runnable {
-        private Connection conn;
-        AddConnectionCmd(Connection conn) { this.conn = conn; }
-        public void run() { handleAddConnection(conn); }
-    }
-
-    private class CloseConnectionCmd implements Runnable {
-        private Connection conn;
-        CloseConnectionCmd(Connection conn) { this.conn = conn; }
-        public void run() { handleCloseConnection(conn); }
-    }
-
-    private class EnableWriteCmd implements Runnable {
-        private Connection conn;
-        EnableWriteCmd(Connection conn) { this.conn = conn; }
-        public void run() { handleEnableWrite(conn); }
-    }
-
-    private class SyncCmd implements Runnable {
-        boolean done = false;
-        public synchronized void waitDone() {
-            while (!done) {
-                try { wait(); } catch (InterruptedException e) {}
-            }
-        }
-        public synchronized void run() {
-            done = true;
-            notify();
-        }
-    }
-
     private static Logger log = Logger.getLogger(Transport.class.getName());
 
     private FatalErrorHandler fatalHandler; // NB: this must be set first
-    private Thread            thread;
-    private Queue             queue;
-    private Queue             myQueue;
+    private TransportThread[] threads;
+    private AtomicInteger     nextThread = new AtomicInteger(0);
+    private AtomicInteger     runningThreads;
     private Connector         connector;
     private Closer            closer;
-    private Scheduler         scheduler;
-    private int               state;
-    private Selector          selector;
-
-    private void handleAddConnection(Connection conn) {
-        if (conn.isClosed()) {
-            if (conn.hasSocket()) {
-                closer.closeLater(conn);
-            }
-            return;
-        }
-        if (!conn.init(selector)) {
-            handleCloseConnection(conn);
-        }
-    }
-
-    private void handleCloseConnection(Connection conn) {
-        if (conn.isClosed()) {
-            return;
-        }
-        conn.fini();
-        if (conn.hasSocket()) {
-            closer.closeLater(conn);
-        }
-    }
+    private BufferPool        bufferPool = new BufferPool(32 * 1024 * 1024);
 
-    private void handleEnableWrite(Connection conn) {
-        if (conn.isClosed()) {
-            return;
-        }
-        conn.enableWrite();
-    }
-
-    private boolean postCommand(Runnable cmd) {
-        boolean wakeup;
-        synchronized (this) {
-            if (state == CLOSED) {
-                return false;
-            }
-            wakeup = queue.isEmpty();
-            queue.enqueue(cmd);
-        }
-        if (wakeup) {
-            selector.wakeup();
+    /**
+     * Create a new Transport object with the given fatal error
+     * handler and number of transport threads.
+     *
+     * @param fatalHandler fatal error handler
+     * @param numThreads the number of transport threads, at least 1
+     **/
+    public Transport(FatalErrorHandler fatalHandler, int numThreads) {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("A transport must have at least 1 thread, got " + numThreads);
         }
-        return true;
-    }
-
-    private void handleEvents() {
         synchronized (this) {
-            queue.flush(myQueue);
-        }
-        while (!myQueue.isEmpty()) {
-            ((Runnable)myQueue.dequeue()).run();
-        }
-    }
-
-    private boolean handleIOEvents(Connection conn,
-                                   SelectionKey key) {
-        if (conn.isClosed()) {
-            return true;
-        }
-        if (key.isReadable()) {
-            try {
-                conn.read();
-            } catch (IOException e) {
-                conn.setLostReason(e);
-                return false;
-            }
+            this.fatalHandler = fatalHandler; // NB: this must be set first
         }
-        if (key.isWritable()) {
-            try {
-                conn.write();
-            } catch (IOException e) {
-                conn.setLostReason(e);
-                return false;
-            }
+        connector      = new Connector(this);
+        closer         = new Closer(this);
+        runningThreads = new AtomicInteger(numThreads);
+        threads        = new TransportThread[numThreads];
+        for (int i = 0; i < numThreads; i++) {
+            threads[i] = new TransportThread(this, numThreads == 1 ? "<transport>" : "<transport-" + i + ">");
         }
-        return true;
     }
 
     /**
-     * Create a new Transport object with the given fatal error handler.
+     * Create a new Transport object with the given fatal error
+     * handler and a single transport thread.
      *
      * @param fatalHandler fatal error handler
      **/
     public Transport(FatalErrorHandler fatalHandler) {
-        synchronized (this) {
-            this.fatalHandler = fatalHandler; // NB: this must be set first
-        }
-        thread    = new Thread(new Run(), "<transport>");
-        queue     = new Queue();
-        myQueue   = new Queue();
-        connector = new Connector(this);
-        closer    = new Closer(this);
-        scheduler = new Scheduler(System.currentTimeMillis());
-        state     = OPEN;
-        try {
-            selector = Selector.open();
-        } catch (Exception e) {
-            throw new Error("Could not open transport selector", e);
-        }
-        thread.setDaemon(true);
-        thread.start();
+        this(fatalHandler, 1);
+    }
+
+    /**
+     * Create a Transport object with no fatal error handler and the
+     * given number of transport threads.
+     *
+     * @param numThreads the number of transport threads, at least 1
+     **/
+    public Transport(int numThreads) {
+        this(null, numThreads);
     }
 
     /**
@@ -188,6 +85,15 @@ public class Transport {
         this(null);
     }
 
+    /**
+     * Obtain the number of transport threads of this Transport.
+     *
+     * @return the number of transport threads
+     **/
+    public int getNumThreads() {
+        return threads.length;
+    }
+
     /**
      * Proxy method used to dispatch fatal errors to the fatal error
      * handler. If no handler is registered, the default action is to
@@ -207,6 +113,28 @@ public class Transport {
         Runtime.getRuntime().halt(1);
     }
 
+    /**
+     * Obtain the pool of direct buffers shared by the connections of
+     * this Transport using direct buffers.
+     *
+     * @return the direct buffer pool
+     **/
+    BufferPool bufferPool() {
+        return bufferPool;
+    }
+
+    /**
+     * Select the transport thread to handle a new connection.
+     *
+     * @return the transport thread to assign a new connection to
+     **/
+    TransportThread selectThread() {
+        if (threads.length == 1) {
+            return threads[0];
+        }
+        return threads[Math.floorMod(nextThread.getAndIncrement(), threads.length)];
+    }
+
     /**
      * Listen to the given address. This method is called by a {@link
      * Supervisor} object.
@@ -231,7 +159,7 @@ public class Transport {
      *             if this flag is set
      */
     Connection connect(Supervisor owner, Spec spec, Object context, boolean sync) {
-        Connection conn = new Connection(this, owner, spec, context);
+        Connection conn = new Connection(selectThread(), owner, spec, context);
         if (sync) {
             addConnection(conn.connect());
         } else {
@@ -241,160 +169,105 @@ public class Transport {
     }
 
     /**
-     * Add a connection to the set of connections handled by this
-     * Transport. Invoked by the {@link Connector} class.
+     * Add a connection to the set of connections handled by the
+     * transport thread it is assigned to. Invoked by the {@link
+     * Connector} and {@link Acceptor} classes.
      *
      * @param conn the connection to add
      **/
     void addConnection(Connection conn) {
-        if (!postCommand(new AddConnectionCmd(conn))) {
-            perform(new CloseConnectionCmd(conn));
-        }
+        conn.transportThread().addConnection(conn);
     }
 
     /**
-     * Request an asynchronous close of a connection.
+     * Close the socket of a connection in the closer thread.
      *
-     * @param conn the connection to close
+     * @param conn the connection to close the socket of
      **/
-    void closeConnection(Connection conn) {
-        postCommand(new CloseConnectionCmd(conn));
-    }
-
-    /**
-     * Request an asynchronous enabling of write events for a
-     * connection.
-     *
-     * @param conn the connection to enable write events for
-     **/
-    void enableWrite(Connection conn) {
-        if (Thread.currentThread() == thread) {
-            handleEnableWrite(conn);
-        } else {
-            postCommand(new EnableWriteCmd(conn));
-        }
+    void closeLater(Connection conn) {
+        closer.closeLater(conn);
     }
 
     /**
      * Create a {@link Task} that can be scheduled for execution in
-     * the transport thread.
+     * the (first) transport thread.
      *
      * @return the newly created Task
      * @param cmd what to run when the task is executed
      **/
     public Task createTask(Runnable cmd) {
-        return new Task(scheduler, cmd);
+        return threads[0].createTask(cmd);
     }
 
     /**
      * Perform the given command in such a way that it does not run
-     * concurrently with the transport thread or other commands
-     * performed by invoking this method. This method will continue to
-     * work even after the transport thread has been shut down.
+     * concurrently with the (first) transport thread or other
+     * commands performed by invoking this method. This method will
+     * continue to work even after the transport thread has been shut
+     * down.
      *
      * @param cmd the command to perform
      **/
     public void perform(Runnable cmd) {
-        if (Thread.currentThread() == thread) {
-            cmd.run();
-            return;
-        }
-        if (!postCommand(cmd)) {
-            join();
-            synchronized (thread) {
-                cmd.run();
-            }
-        }
+        threads[0].perform(cmd);
     }
 
     /**
-     * Synchronize with the transport thread. This method will block
+     * Synchronize with the transport threads. This method will block
      * until all commands issued before this method was invoked has
-     * completed. If the transport thread has been shut down (or is in
-     * the progress of being shut down) this method will instead wait
-     * for the transport thread to complete, since no more commands
-     * will be performed, and waiting would be forever. Invoking this
-     * method from the transport thread is not a good idea.
+     * completed. If the transport threads have been shut down (or
+     * are in the progress of being shut down) this method will
+     * instead wait for the transport threads to complete, since no
+     * more commands will be performed, and waiting would be
+     * forever. Invoking this method from a transport thread is not a
+     * good idea.
      *
      * @return this object, to enable chaining
      **/
     public Transport sync() {
-        SyncCmd cmd = new SyncCmd();
-        if (postCommand(cmd)) {
-            cmd.waitDone();
-        } else {
-            join();
+        for (TransportThread thread : threads) {
+            thread.sync();
         }
         return this;
     }
 
-    private void run() {
-        while (state == OPEN) {
-
-            // perform I/O selection
-            try {
-                selector.select(100);
-            } catch (IOException e) {
-                log.log(Level.WARNING, "error during select", e);
-            }
-
-            // handle internal events
-            handleEvents();
-
-            // handle I/O events
-            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
-            while (keys.hasNext()) {
-                SelectionKey key = keys.next();
-                Connection conn = (Connection) key.attachment();
-                keys.remove();
-                if (!handleIOEvents(conn, key)) {
-                    handleCloseConnection(conn);
-                }
-            }
-
-            // check scheduled tasks
-            scheduler.checkTasks(System.currentTimeMillis());
-        }
+    /**
+     * Called by each transport thread when it is shutting down, to
+     * wait until no more connections will be added by the connector.
+     **/
+    void awaitConnectorDone() {
         connector.shutdown().waitDone();
-        synchronized (this) {
-            state = CLOSED;
-        }
-        handleEvents();
-        Iterator<SelectionKey> keys = selector.keys().iterator();
-        while (keys.hasNext()) {
-            SelectionKey key = keys.next();
-            Connection conn = (Connection) key.attachment();
-            handleCloseConnection(conn);
+    }
+
+    /**
+     * Called by each transport thread when it has completed. The last
+     * thread to complete shuts down the helper threads.
+     **/
+    void threadDone() {
+        if (runningThreads.decrementAndGet() == 0) {
+            closer.shutdown().join();
+            connector.exit().join();
         }
-        try { selector.close(); } catch (Exception e) {}
-        closer.shutdown().join();
-        connector.exit().join();
     }
 
     /**
-     * Initiate controlled shutdown of the transport thread.
+     * Initiate controlled shutdown of the transport threads.
      *
      * @return this object, to enable chaining with join
      **/
     public Transport shutdown() {
-        synchronized (this) {
-            if (state == OPEN) {
-                state = CLOSING;
-                selector.wakeup();
-            }
+        for (TransportThread thread : threads) {
+            thread.shutdown();
         }
         return this;
     }
 
     /**
-     * Wait for the transport thread to finish.
+     * Wait for the transport threads to finish.
      **/
     public void join() {
-        while (true) {
-            try {
-                thread.join();
-                return;
-            } catch (InterruptedException e) {}
+        for (TransportThread thread : threads) {
+            thread.join();
         }
     }
 }
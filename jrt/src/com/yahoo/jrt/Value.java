@@ -100,6 +100,29 @@ public abstract class Value
      **/
     abstract void encode(ByteBuffer dst);
 
+    /**
+     * Encode this value into the given buffer, leaving large payloads
+     * to be written from their own storage by the given gather
+     * write. Only data values have such payloads.
+     *
+     * @param dst where to encode this value
+     * @param gather the gather write to add large payloads to
+     **/
+    void encode(ByteBuffer dst, GatherWrite gather) {
+        encode(dst);
+    }
+
+    /**
+     * Determine the number of bytes of this value which will be
+     * written from its own storage by a gather write rather than
+     * encoded into a buffer
+     *
+     * @return number of payload bytes left to a gather write
+     **/
+    int gatherBytes() {
+        return 0;
+    }
+
     /**
      * Decode a value from the given buffer. This method also acts as
      * a factory for value objects
@@ -93,12 +93,32 @@ public class Values
         return bytes;
     }
 
+    /** Returns the number of bytes of this value sequence which are left to a gather write when encoding **/
+    int gatherBytes() {
+        int bytes = 0;
+        for (int i = 0; i < values.size(); i++) {
+            bytes += get(i).gatherBytes();
+        }
+        return bytes;
+    }
+
     /**
      * Encode this value sequence into the given buffer
      *
      * @param dst where to encode this value sequence
      **/
     void encode(ByteBuffer dst) {
+        encode(dst, null);
+    }
+
+    /**
+     * Encode this value sequence into the given buffer, leaving large
+     * payloads to the given gather write
+     *
+     * @param dst where to encode this value sequence
+     * @param gather the gather write to add large payloads to, or null to encode everything into dst
+     **/
+    void encode(ByteBuffer dst, GatherWrite gather) {
         byte[] types = new byte[values.size()];
         for (int i = 0; i < types.length; i++) {
             types[i] = get(i).type();
@@ -106,7 +126,11 @@ public class Values
         dst.putInt(types.length);
         dst.put(types);
         for (int i = 0; i < types.length; i++) {
-            get(i).encode(dst);
+            if (gather != null) {
+                get(i).encode(dst, gather);
+            } else {
+                get(i).encode(dst);
+            }
         }
     }
 
@@ -262,4 +262,54 @@ public class BufferTest extends junit.framework.TestCase {
             assertEquals(50, b.get());
         }
     }
+
+    public void testPooledBuffer() {
+        BufferPool pool = new BufferPool(1024 * 1024);
+        Buffer     buf  = new Buffer(1024, pool);
+        ByteBuffer b    = buf.getWritable(16);
+
+        assertTrue(b.isDirect());
+        assertEquals(BufferPool.MIN_POOLED, b.capacity());
+        assertEquals(1, pool.allocatedCount());
+        b.putInt(42);
+
+        b = buf.getWritable(10000);
+        assertTrue(b.isDirect());
+        assertEquals(16384, b.capacity());
+        assertEquals(4, buf.bytes());
+        assertEquals(BufferPool.MIN_POOLED, pool.pooledBytes());
+
+        b = buf.getReadable();
+        assertTrue(buf.shrink(4096));
+        assertEquals(1, pool.reusedCount());
+        assertEquals(16384, pool.pooledBytes());
+        b = buf.getReadable();
+        assertEquals(4096, b.capacity());
+        assertEquals(42, b.getInt());
+
+        b = buf.getWritable(BufferPool.MAX_POOLED + 1);
+        assertFalse(b.isDirect());
+        buf.release();
+        assertEquals(0, buf.bytes());
+        assertEquals(16384 + 4096, pool.pooledBytes());
+        b = buf.getWritable(100);
+        assertTrue(b.remaining() >= 100);
+    }
+
+    public void testPoolRetainsLimitedBytes() {
+        BufferPool pool = new BufferPool(8192);
+        ByteBuffer a = pool.allocate(4096);
+        ByteBuffer b = pool.allocate(4096);
+        ByteBuffer c = pool.allocate(4096);
+        pool.release(a);
+        pool.release(b);
+        pool.release(c);
+        assertEquals(8192, pool.pooledBytes());
+        a = pool.allocate(1);
+        a.put((byte)1);
+        pool.release(a);
+        a = pool.allocate(1);
+        assertEquals(0, a.position());
+        assertEquals(4096, a.limit());
+    }
 }
@@ -0,0 +1,103 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.jrt;
+
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+
+public class DirectBufferTest extends junit.framework.TestCase {
+
+    Supervisor server;
+    Acceptor   acceptor;
+    Supervisor client;
+    Target     target;
+
+    public DirectBufferTest(String name) {
+        super(name);
+    }
+
+    public void setUp() throws ListenFailedException {
+        server   = new Supervisor(new Transport());
+        client   = new Supervisor(new Transport());
+        server.setUseDirectBuffers(true);
+        client.setUseDirectBuffers(true);
+        acceptor = server.listen(new Spec(Test.PORT));
+        target   = client.connect(new Spec("localhost", Test.PORT));
+        server.addMethod(new Method("echo", "*", "*", this, "rpc_echo"));
+    }
+
+    public void tearDown() {
+        target.close();
+        acceptor.shutdown().join();
+        client.transport().shutdown().join();
+        server.transport().shutdown().join();
+    }
+
+    public void rpc_echo(Request req) {
+        Values p = req.parameters();
+        Values r = req.returnValues();
+        for (int i = 0; i < p.size(); i++) {
+            r.add(p.get(i));
+        }
+    }
+
+    private static byte[] data(int size, int seed) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte)(i * 31 + seed);
+        }
+        return data;
+    }
+
+    public void testEchoSmallValues() {
+        Request req = new Request("echo");
+        req.parameters().add(new StringValue("small"));
+        req.parameters().add(new DataValue(data(100, 1)));
+        target.invokeSync(req, 60.0);
+        assertFalse(req.isError());
+        assertTrue(req.checkReturnTypes("sx"));
+        assertEquals("small", req.returnValues().get(0).asString());
+        assertTrue(Arrays.equals(data(100, 1), req.returnValues().get(1).asData()));
+    }
+
+    public void testEchoLargeDataValues() {
+        for (int round = 0; round < 3; round++) {
+            Request req = new Request("echo");
+            req.parameters().add(new Int32Value(round));
+            req.parameters().add(new DataValue(data(GatherWrite.MIN_PAYLOAD, 2)));
+            req.parameters().add(new StringValue("between"));
+            req.parameters().add(new DataValue(data(3 * Buffer.MAX_IO + 17, 3)));
+            req.parameters().add(new DataValue(data(10, 4)));
+            target.invokeSync(req, 60.0);
+            assertFalse(req.isError());
+            assertTrue(req.checkReturnTypes("ixsxx"));
+            assertEquals(round, req.returnValues().get(0).asInt32());
+            assertTrue(Arrays.equals(data(GatherWrite.MIN_PAYLOAD, 2), req.returnValues().get(1).asData()));
+            assertEquals("between", req.returnValues().get(2).asString());
+            assertTrue(Arrays.equals(data(3 * Buffer.MAX_IO + 17, 3), req.returnValues().get(3).asData()));
+            assertTrue(Arrays.equals(data(10, 4), req.returnValues().get(4).asData()));
+        }
+    }
+
+    public void testLargeAndSmallPacketsKeepOrder() throws InterruptedException {
+        Request[] reqs = new Request[20];
+        CountDownLatch done = new CountDownLatch(reqs.length);
+        RequestWaiter waiter = new RequestWaiter() {
+            public void handleRequestDone(Request req) {
+                done.countDown();
+            }
+        };
+        for (int i = 0; i < reqs.length; i++) {
+            reqs[i] = new Request("echo");
+            reqs[i].parameters().add(new DataValue(data((i % 2 == 0) ? 100000 : 10, i)));
+            target.invokeAsync(reqs[i], 60.0, waiter);
+        }
+        assertTrue(done.await(60, TimeUnit.SECONDS));
+        for (int i = 0; i < reqs.length; i++) {
+            assertFalse(reqs[i].isError());
+            assertTrue(Arrays.equals(data((i % 2 == 0) ? 100000 : 10, i), reqs[i].returnValues().get(0).asData()));
+        }
+    }
+}
@@ -0,0 +1,98 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.jrt;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+public class MultiThreadedTransportTest extends junit.framework.TestCase {
+
+    Supervisor   server;
+    Acceptor     acceptor;
+    Supervisor   client;
+    List<Target> targets = new ArrayList<>();
+
+    public MultiThreadedTransportTest(String name) {
+        super(name);
+    }
+
+    public void setUp() throws ListenFailedException {
+        server   = new Supervisor(new Transport(4));
+        client   = new Supervisor(new Transport(3));
+        acceptor = server.listen(new Spec(Test.PORT));
+        server.addMethod(new Method("concat", "ss", "s", this, "rpc_concat"));
+        for (int i = 0; i < 7; i++) {
+            targets.add(client.connect(new Spec("localhost", Test.PORT)));
+        }
+    }
+
+    public void tearDown() {
+        for (Target target : targets) {
+            target.close();
+        }
+        acceptor.shutdown().join();
+        client.transport().shutdown().join();
+        server.transport().shutdown().join();
+    }
+
+    public void rpc_concat(Request req) {
+        req.returnValues().add(new StringValue(req.parameters()
+                                               .get(0).asString() +
+                                               req.parameters()
+                                               .get(1).asString()));
+    }
+
+    public void testThreadCount() {
+        assertEquals(4, server.transport().getNumThreads());
+        assertEquals(3, client.transport().getNumThreads());
+        assertEquals(1, new Transport().shutdown().getNumThreads());
+        try {
+            new Transport(0);
+            fail("Expected exception");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testConcurrentInvocationsOnManyConnections() throws InterruptedException {
+        AtomicInteger failures = new AtomicInteger(0);
+        List<Thread> threads = new ArrayList<>();
+        for (Target target : targets) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 100; i++) {
+                    Request req = new Request("concat");
+                    req.parameters().add(new StringValue("abc"));
+                    req.parameters().add(new StringValue(String.valueOf(i)));
+                    target.invokeSync(req, 60.0);
+                    if (req.isError() || ! req.returnValues().get(0).asString().equals("abc" + i)) {
+                        failures.incrementAndGet();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, failures.get());
+    }
+
+    public void testMethodsAddedAfterConnectingAreVisibleOnAllThreads() {
+        server.addMethod(new Method("echo", "s", "s", this, "rpc_echo"));
+        for (Target target : targets) {
+            Request req = new Request("echo");
+            req.parameters().add(new StringValue("hello"));
+            target.invokeSync(req, 60.0);
+            assertFalse(req.isError());
+            assertEquals("hello", req.returnValues().get(0).asString());
+        }
+    }
+
+    public void rpc_echo(Request req) {
+        req.returnValues().add(req.parameters().get(0));
+    }
+
+}
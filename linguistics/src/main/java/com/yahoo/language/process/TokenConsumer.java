@@ -0,0 +1,20 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.language.process;
+
+/**
+ * Receives the tokens of an input string, in order, as they are produced by a {@link Tokenizer}.
+ */
+@FunctionalInterface
+public interface TokenConsumer {
+
+    /**
+     * Receives a token of the input string.
+     *
+     * @param type the type of the token
+     * @param offset the offset of the token in the input string
+     * @param length the length of the token in the input string
+     * @param tokenString the token string, as returned by {@link Token#getTokenString}
+     */
+    void accept(TokenType type, int offset, int length, String tokenString);
+
+}
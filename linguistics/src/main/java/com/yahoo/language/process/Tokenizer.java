@@ -22,6 +22,27 @@ public interface Tokenizer {
      */
     Iterable<Token> tokenize(String input, Language language, StemMode stemMode, boolean removeAccents);
 
+    /**
+     * Produces the same tokens as {@link #tokenize(String, Language, StemMode, boolean)}, but passes each one
+     * to the given consumer as offsets into the input and a token string instead of returning token instances.
+     * Token components and stems are not passed to the consumer.
+     * <p>
+     * This default implementation passes the tokens returned by tokenize. Implementations should override
+     * it to avoid creating the tokens.
+     *
+     * @param input the string to tokenize. May be arbitrarily large.
+     * @param language the language of the input string.
+     * @param stemMode the stem mode applied on the produced tokens
+     * @param removeAccents if true accents and similar are removed from the produced tokens
+     * @param consumer the receiver of the tokens of the input string
+     * @throws ProcessingException If the underlying library throws an Exception.
+     */
+    default void tokenize(String input, Language language, StemMode stemMode, boolean removeAccents,
+                          TokenConsumer consumer) {
+        for (Token token : tokenize(input, language, stemMode, removeAccents))
+            consumer.accept(token.getType(), (int)token.getOffset(), token.getOrig().length(), token.getTokenString());
+    }
+
     /**
      * Return a replacement for an input token string.
      * This accepts strings returned by Token.getTokenString
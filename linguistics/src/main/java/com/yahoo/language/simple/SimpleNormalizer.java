@@ -8,9 +8,11 @@ import com.yahoo.language.process.Normalizer;
  */
 public class SimpleNormalizer implements Normalizer {
 
+    private final TermCache cache = new TermCache(100000);
+
     @Override
     public String normalize(String input) {
-        return java.text.Normalizer.normalize(input, java.text.Normalizer.Form.NFKC);
+        return cache.get(input, term -> java.text.Normalizer.normalize(term, java.text.Normalizer.Form.NFKC));
     }
 
 }
@@ -16,6 +16,9 @@ import java.util.List;
  *
  * <p>This is not multithread safe.</p>
  *
+ * <p>The normalized, accent dropped and stemmed forms of tokens are cached by the default normalizer,
+ * the default transformer and the stemmer.</p>
+ *
  * @author Mathias Mølster Lidal
  * @author bratseth
  */
@@ -44,6 +47,24 @@ public class SimpleTokenizer implements Tokenizer {
         if (input.isEmpty()) return Collections.emptyList();
 
         List<Token> tokens = new ArrayList<>();
+        produceTokens(input, language, stemMode, removeAccents,
+                      (original, type, offset, token) -> tokens.add(new SimpleToken(original).setOffset(offset)
+                                                                                          .setType(type)
+                                                                                          .setTokenString(token)));
+        return tokens;
+    }
+
+    @Override
+    public void tokenize(String input, Language language, StemMode stemMode, boolean removeAccents,
+                         TokenConsumer consumer) {
+        produceTokens(input, language, stemMode, removeAccents,
+                      (original, type, offset, token) -> consumer.accept(type, offset, original.length(), token));
+    }
+
+    private void produceTokens(String input, Language language, StemMode stemMode, boolean removeAccents,
+                               TokenHandler handler) {
+        if (input.isEmpty()) return;
+
         int nextCode = input.codePointAt(0);
         TokenType prevType = SimpleTokenType.valueOf(nextCode);
         for (int prev = 0, next = Character.charCount(nextCode); next <= input.length(); ) {
@@ -52,15 +73,12 @@ public class SimpleTokenizer implements Tokenizer {
             if (!prevType.isIndexable() || !nextType.isIndexable()) {
                 String original = input.substring(prev, next);
                 String token = processToken(original, language, stemMode, removeAccents);
-                tokens.add(new SimpleToken(original).setOffset(prev)
-                                                .setType(prevType)
-                                                .setTokenString(token));
+                handler.handle(original, prevType, prev, token);
                 prev = next;
                 prevType = nextType;
             }
             next += Character.charCount(nextCode);
         }
-        return tokens;
     }
 
     private String processToken(String token, Language language, StemMode stemMode, boolean removeAccents) {
@@ -73,4 +91,11 @@ public class SimpleTokenizer implements Tokenizer {
         return token;
     }
 
+    @FunctionalInterface
+    private interface TokenHandler {
+
+        void handle(String original, TokenType type, int offset, String token);
+
+    }
+
 }
@@ -17,9 +17,11 @@ public class SimpleTransformer implements Transformer {
 
     private final static Pattern pattern = Pattern.compile("\\p{InCombiningDiacriticalMarks}+");
 
+    private final TermCache cache = new TermCache(100000);
+
     @Override
     public String accentDrop(String input, Language language) {
-        return pattern.matcher(Normalizer.normalize(input, Normalizer.Form.NFD)).replaceAll("");
+        return cache.get(input, term -> pattern.matcher(Normalizer.normalize(term, Normalizer.Form.NFD)).replaceAll(""));
     }
 
 }
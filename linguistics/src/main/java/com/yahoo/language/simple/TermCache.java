@@ -0,0 +1,47 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.language.simple;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * A bounded cache of the processed forms of terms, such as their normalized or stemmed forms,
+ * which may be shared between threads.
+ * Only short strings are cached, as longer ones are unlikely to be repeated.
+ * When the cache is full it is cleared, such that it will come to contain the terms currently in use.
+ */
+public final class TermCache {
+
+    /** The max length of a term to cache */
+    private static final int maxTermLength = 64;
+
+    private final int maxSize;
+    private final Map<String, String> terms = new ConcurrentHashMap<>();
+
+    /** Creates a cache which holds at most the given number of terms */
+    public TermCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the processed form of the given term, which is either cached or computed by the given processor
+     * and cached. The processor must always return the same output for the same input.
+     */
+    public String get(String term, Function<String, String> processor) {
+        if (term.length() > maxTermLength) return processor.apply(term);
+
+        String processed = terms.get(term);
+        if (processed != null) return processed;
+
+        processed = processor.apply(term);
+        if (terms.size() >= maxSize)
+            terms.clear();
+        terms.put(term, processed);
+        return processed;
+    }
+
+    /** Returns the number of terms currently cached */
+    public int size() { return terms.size(); }
+
+}
@@ -7,6 +7,8 @@
  */
 package com.yahoo.language.simple.kstem;
 
+import com.yahoo.language.simple.TermCache;
+
 /**
  * A stemmer implementing the Kstem algorithm by Bob Krovetz.
  */
@@ -1272,9 +1274,16 @@ public class KStemmer {
     return;
   }
   
+  /** The stems of recently stemmed terms, shared by all instances */
+  static private final TermCache stems = new TermCache(100000);
+
   public KStemmer() {}
   
   public String stem(String term) {
+    return stems.get(term, this::stemUncached);
+  }
+
+  private String stemUncached(String term) {
     boolean changed = stem(term.toCharArray(), term.length());
     if (!changed) return term;
     return asString();
@@ -1,10 +1,17 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.language.simple;
 
+import com.yahoo.language.Language;
 import com.yahoo.language.process.AbstractTokenizerTestCase;
 import com.yahoo.language.process.StemMode;
+import com.yahoo.language.process.Token;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
 /**
  * @author <a href="mailto:steinar@yahoo-inc.com">Steinar Knutsen</a>
  * @author bratseth
@@ -33,4 +40,21 @@ public class SimpleTokenizerTestCase extends AbstractTokenizerTestCase {
                             " ", "gods", ".", "running", ")");
     }
 
+    @Test
+    public void testStreamingTokenizingProducesTheSameTokens() {
+        String input = "a\u030a tralalala n4lle. \uD800\uDFC8 (old Persian sign Auramazda, gods.Running)";
+        SimpleTokenizer tokenizer = new SimpleTokenizer();
+
+        List<String> expected = new ArrayList<>();
+        for (Token token : tokenizer.tokenize(input, Language.ENGLISH, StemMode.ALL, true))
+            expected.add(token.getType() + " " + token.getOffset() + " " + token.getOrig() + " " + token.getTokenString());
+
+        List<String> streamed = new ArrayList<>();
+        tokenizer.tokenize(input, Language.ENGLISH, StemMode.ALL, true,
+                           (type, offset, length, tokenString) ->
+                                   streamed.add(type + " " + offset + " " + input.substring(offset, offset + length) +
+                                                " " + tokenString));
+        assertEquals(expected, streamed);
+    }
+
 }
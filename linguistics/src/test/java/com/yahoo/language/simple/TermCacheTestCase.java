@@ -0,0 +1,45 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.language.simple;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+
+public class TermCacheTestCase {
+
+    private final AtomicInteger invocations = new AtomicInteger();
+    private final Function<String, String> upperCase = term -> {
+        invocations.incrementAndGet();
+        return term.toUpperCase();
+    };
+
+    @Test
+    public void requireThatTermsAreProcessedOnce() {
+        TermCache cache = new TermCache(10);
+        assertEquals("FOO", cache.get("foo", upperCase));
+        assertEquals("FOO", cache.get("foo", upperCase));
+        assertEquals("BAR", cache.get("bar", upperCase));
+        assertEquals(2, invocations.get());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void requireThatCacheIsBounded() {
+        TermCache cache = new TermCache(3);
+        for (int i = 0; i < 10; i++)
+            assertEquals("TERM" + i, cache.get("term" + i, upperCase));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void requireThatLongTermsAreNotCached() {
+        TermCache cache = new TermCache(10);
+        String term = new String(new char[100]).replace('\0', 'a');
+        assertEquals(term.toUpperCase(), cache.get(term, upperCase));
+        assertEquals(0, cache.size());
+    }
+
+}
@@ -2,39 +2,92 @@
 package com.yahoo.messagebus;
 
 import com.yahoo.log.LogLevel;
+import com.yahoo.messagebus.metrics.MessengerMetricSet;
+import com.yahoo.messagebus.metrics.PerThreadCountMetric;
 
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Logger;
 
 /**
- * <p>This class implements a single thread that is able to process arbitrary
- * tasks. Tasks are enqueued using the synchronized {@link #enqueue(Task)}
- * method, and are run in the order they were enqueued.</p>
+ * <p>This class implements one or more threads that are able to process
+ * arbitrary tasks. Tasks are enqueued using the thread-safe {@link
+ * #enqueue(Task)} method, and are run in the order they were enqueued.</p>
+ *
+ * <p>When running more than one thread, each thread has its own queue. Plain
+ * tasks and recurrent tasks are run by the first thread, while messages and
+ * replies are spread over all threads by their partition; messages with a
+ * sequence id by that id, other messages and replies by their handler. Tasks
+ * of the same partition are run by the same thread, in the order they were
+ * enqueued, so messages to a session keep their order unless they have
+ * different sequence ids. Handlers must be thread-safe when more than one
+ * thread is used.</p>
  *
  * @author <a href="mailto:simon@yahoo-inc.com">Simon Thoresen</a>
  */
-public class Messenger implements Runnable {
+public class Messenger {
 
     private static final Logger log = Logger.getLogger(Messenger.class.getName());
     private final AtomicBoolean destroyed = new AtomicBoolean(false);
     private final List<Task> children = new ArrayList<>();
-    private final Queue<Task> queue = new ArrayDeque<>();
-    private final Thread thread = new Thread(this, "Messenger");
+    private final Worker[] workers;
+    private final MessengerMetricSet metrics;
 
+    /**
+     * <p>Constructs a messenger running a single thread.</p>
+     */
     public Messenger() {
-        thread.setDaemon(true);
+        this(1, new MessengerMetricSet());
+    }
+
+    /**
+     * <p>Constructs a messenger running the given number of threads, which
+     * updates the given metrics.</p>
+     *
+     * @param numThreads The number of threads to run, at least 1.
+     * @param metrics    The metrics to update.
+     */
+    public Messenger(int numThreads, MessengerMetricSet metrics) {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("A messenger must have at least 1 thread, got " + numThreads);
+        }
+        this.metrics = metrics;
+        workers = new Worker[numThreads];
+        for (int i = 0; i < numThreads; ++i) {
+            workers[i] = new Worker(numThreads == 1 ? "Messenger" : "Messenger-" + i, i == 0);
+        }
+    }
+
+    /**
+     * <p>Returns the number of threads of this messenger.</p>
+     *
+     * @return The number of threads.
+     */
+    public int getNumThreads() {
+        return workers.length;
+    }
+
+    /**
+     * <p>Returns the metrics updated by this messenger.</p>
+     *
+     * @return The metric set.
+     */
+    public MessengerMetricSet getMetrics() {
+        return metrics;
     }
 
     /**
      * <p>Adds a recurrent task to this that is to be run for every iteration of
-     * the main loop. This task must be very light-weight as to not block the
-     * messenger. Note that this method is NOT thread-safe, so it should NOT be
-     * used after calling {@link #start()}.</p>
+     * the main loop of the first thread. This task must be very light-weight as
+     * to not block the messenger. Note that this method is NOT thread-safe, so
+     * it should NOT be used after calling {@link #start()}.</p>
      *
      * @param task The task to add.
      */
@@ -43,13 +96,15 @@ public class Messenger implements Runnable {
     }
 
     /**
-     * <p>Starts the internal thread. This must be done AFTER all recurrent
+     * <p>Starts the internal threads. This must be done AFTER all recurrent
      * tasks have been added.</p>
      *
      * @see #addRecurrentTask(Task)
      */
     public void start() {
-        thread.start();
+        for (final Worker worker : workers) {
+            worker.thread.start();
+        }
     }
 
     /**
@@ -61,7 +116,8 @@ public class Messenger implements Runnable {
      * @param handler The handler to send to.
      */
     public void deliverMessage(final Message msg, final MessageHandler handler) {
-        enqueue(new MessageTask(msg, handler));
+        final long partition = msg.hasSequenceId() ? msg.getSequenceId() : System.identityHashCode(handler);
+        enqueue(new MessageTask(msg, handler), workerOf(partition));
     }
 
     /**
@@ -73,40 +129,80 @@ public class Messenger implements Runnable {
      * @param handler The handler to return to.
      */
     public void deliverReply(final Reply reply, final ReplyHandler handler) {
-        enqueue(new ReplyTask(reply, handler));
+        enqueue(new ReplyTask(reply, handler), workerOf(System.identityHashCode(handler)));
     }
 
     /**
-     * <p>Enqueues the given task in the list of tasks that this worker is to
-     * process. If this thread has been destroyed previously, this method
+     * <p>Enqueues the given task in the list of tasks that the first thread is
+     * to process. If this messenger has been destroyed previously, this method
      * invokes {@link Messenger.Task#destroy()}.</p>
      *
      * @param task The task to enqueue.
      */
     public void enqueue(final Task task) {
+        enqueue(task, workers[0]);
+    }
+
+    private Worker workerOf(final long partition) {
+        if (workers.length == 1) {
+            return workers[0];
+        }
+        final long hash = partition * 0x9E3779B97F4A7C15L;
+        return workers[(int)((hash >>> 32) % workers.length)];
+    }
+
+    private void enqueue(final Task task, final Worker worker) {
         if (destroyed.get()) {
             task.destroy();
             return;
         }
-        synchronized (this) {
-            queue.offer(task);
-            if (queue.size() == 1) {
-                notify();
+        final boolean contended = !worker.lock.tryLock();
+        if (contended) {
+            worker.lock.lock();
+        }
+        final boolean accepted;
+        try {
+            if (contended) {
+                worker.contendedEnqueues.inc(1);
             }
+            accepted = !worker.done;
+            if (accepted) {
+                worker.queue.offer(task);
+                if (worker.queue.size() == 1) {
+                    worker.notEmpty.signal();
+                } else {
+                    worker.queuedTasks.inc(1);
+                }
+            }
+        } finally {
+            worker.lock.unlock();
+        }
+        if (!accepted) {
+            task.destroy();
         }
     }
 
     /**
-     * <p>Handshakes with the internal thread. If this method is called using
-     * the messenger thread, this will deadlock.</p>
+     * <p>Handshakes with the internal threads. If this method is called using
+     * a messenger thread, it returns immediately, since waiting for the other
+     * threads could deadlock.</p>
      */
     public void sync() {
-        if (Thread.currentThread() == thread) {
-            return; // no need to wait for self
+        final Thread current = Thread.currentThread();
+        for (final Worker worker : workers) {
+            if (current == worker.thread) {
+                return; // no need to wait for self
+            }
+        }
+        final List<SyncTask> tasks = new ArrayList<>(workers.length);
+        for (final Worker worker : workers) {
+            final SyncTask task = new SyncTask();
+            enqueue(task, worker);
+            tasks.add(task);
+        }
+        for (final SyncTask task : tasks) {
+            task.await();
         }
-        final SyncTask task = new SyncTask();
-        enqueue(task);
-        task.await();
     }
 
     /**
@@ -119,15 +215,18 @@ public class Messenger implements Runnable {
      */
     public boolean destroy() {
         boolean done = false;
-        enqueue(Terminate.INSTANCE);
+        for (final Worker worker : workers) {
+            enqueue(Terminate.INSTANCE, worker);
+        }
         if (!destroyed.getAndSet(true)) {
             try {
-                synchronized (this) {
-                    while (!queue.isEmpty()) {
-                        wait();
+                for (final Worker worker : workers) {
+                    if (worker.thread.isAlive()) {
+                        worker.thread.join();
+                    } else {
+                        worker.drain();
                     }
                 }
-                thread.join();
             } catch (final InterruptedException e) {
                 // ignore
             }
@@ -137,62 +236,101 @@ public class Messenger implements Runnable {
     }
 
     @Override
-    public void run() {
-        while (true) {
-            Task task = null;
-            synchronized (this) {
-                if (queue.isEmpty()) {
-                    try {
-                        wait(100);
-                    } catch (final InterruptedException e) {
-                        continue;
+    protected void finalize() throws Throwable {
+        try {
+            if (destroy()) {
+                log.log(LogLevel.WARNING, "Messenger destroyed by finalizer, please review application shutdown logic.");
+            }
+        } finally {
+            super.finalize();
+        }
+    }
+
+    /**
+     * <p>A single thread of this messenger, with its own queue of tasks.</p>
+     */
+    private class Worker implements Runnable {
+
+        final ReentrantLock lock = new ReentrantLock();
+        final Condition notEmpty = lock.newCondition();
+        final Queue<Task> queue = new ArrayDeque<>();
+        final Thread thread;
+        final boolean runsChildren;
+        final PerThreadCountMetric.Counter tasksRun = metrics.tasks.newCounter();
+        // incremented by enqueuing threads while holding the lock
+        final PerThreadCountMetric.Counter queuedTasks = metrics.queuedTasks.newCounter();
+        final PerThreadCountMetric.Counter contendedEnqueues = metrics.contendedEnqueues.newCounter();
+        boolean done = false;
+
+        Worker(final String name, final boolean runsChildren) {
+            this.runsChildren = runsChildren;
+            thread = new Thread(this, name);
+            thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Task task = null;
+                lock.lock();
+                try {
+                    if (queue.isEmpty()) {
+                        try {
+                            notEmpty.await(100, TimeUnit.MILLISECONDS);
+                        } catch (final InterruptedException e) {
+                            continue;
+                        }
                     }
-                }
-                if (queue.size() > 0) {
                     task = queue.poll();
+                } finally {
+                    lock.unlock();
                 }
-            }
-            if (task == Terminate.INSTANCE) {
-                break;
-            }
-            if (task != null) {
-                try {
-                    task.run();
-                } catch (final Exception e) {
-                    log.log(LogLevel.ERROR, "An exception was thrown while running " + task.getClass().getName(), e);
+                if (task == Terminate.INSTANCE) {
+                    break;
                 }
-                try {
-                    task.destroy();
-                } catch (final Exception e) {
-                    log.warning("An exception was thrown while destroying " + task.getClass().getName() + ": " +
-                                e.toString());
-                    log.warning("Someone, somewhere might have to wait indefinetly for something.");
+                if (task != null) {
+                    tasksRun.inc(1);
+                    try {
+                        task.run();
+                    } catch (final Exception e) {
+                        log.log(LogLevel.ERROR, "An exception was thrown while running " + task.getClass().getName(), e);
+                    }
+                    try {
+                        task.destroy();
+                    } catch (final Exception e) {
+                        log.warning("An exception was thrown while destroying " + task.getClass().getName() + ": " +
+                                    e.toString());
+                        log.warning("Someone, somewhere might have to wait indefinetly for something.");
+                    }
+                }
+                if (runsChildren) {
+                    for (final Task child : children) {
+                        child.run();
+                    }
                 }
             }
-            for (final Task child : children) {
-                child.run();
-            }
-        }
-        for (final Task child : children) {
-            child.destroy();
-        }
-        synchronized (this) {
-            while (!queue.isEmpty()) {
-                final Task task = queue.poll();
-                task.destroy();
+            if (runsChildren) {
+                for (final Task child : children) {
+                    child.destroy();
+                }
             }
-            notify();
+            drain();
         }
-    }
 
-    @Override
-    protected void finalize() throws Throwable {
-        try {
-            if (destroy()) {
-                log.log(LogLevel.WARNING, "Messenger destroyed by finalizer, please review application shutdown logic.");
+        /**
+         * <p>Stops accepting tasks, and destroys all tasks not yet run.</p>
+         */
+        void drain() {
+            lock.lock();
+            try {
+                done = true;
+            } finally {
+                lock.unlock();
+            }
+            // no more tasks are added once done is set
+            while (!queue.isEmpty()) {
+                queue.poll().destroy();
             }
-        } finally {
-            super.finalize();
         }
     }
 
@@ -0,0 +1,21 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.messagebus.metrics;
+
+/**
+ * Metrics of the threads running the tasks of a {@link com.yahoo.messagebus.Messenger}.
+ */
+public class MessengerMetricSet extends MetricSet {
+
+    /** The number of tasks run, counted by each thread separately */
+    public PerThreadCountMetric tasks = new PerThreadCountMetric("tasks", this);
+
+    /** The number of tasks which were enqueued behind other tasks of the same thread, counted by each queue */
+    public PerThreadCountMetric queuedTasks = new PerThreadCountMetric("queued", this);
+
+    /** The number of tasks which had to wait for the queue lock of their thread to be enqueued, counted by each queue */
+    public PerThreadCountMetric contendedEnqueues = new PerThreadCountMetric("contended", this);
+
+    public MessengerMetricSet() {
+        super("messenger");
+    }
+}
@@ -5,15 +5,15 @@ import com.yahoo.text.XMLWriter;
 
 import java.io.StringWriter;
 import java.io.Writer;
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * @author thomasg
  */
 public class MetricSet extends Metric {
-    private List<Metric> metrics = new ArrayList<Metric>();
+    private List<Metric> metrics = new CopyOnWriteArrayList<>();
 
     public MetricSet(String name) {
         super(name);
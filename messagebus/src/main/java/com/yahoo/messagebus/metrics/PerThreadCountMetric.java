@@ -0,0 +1,72 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.messagebus.metrics;
+
+import com.yahoo.text.Utf8String;
+import com.yahoo.text.XMLWriter;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A count metric which is incremented through counters each owned by a single thread, or by whichever
+ * thread holds a given lock, such that threads counting at the same time do not contend.
+ * The value is the sum of the counters when read.
+ */
+public class PerThreadCountMetric extends Metric {
+
+    private final List<AtomicLong> counters = new CopyOnWriteArrayList<>();
+
+    public PerThreadCountMetric(String name, MetricSet owner) {
+        super(name);
+        owner.addMetric(this);
+    }
+
+    /** Returns a new counter of this, which must only be incremented by a single thread at a time */
+    public Counter newCounter() {
+        AtomicLong counter = new AtomicLong(0);
+        counters.add(counter);
+        return new Counter(counter);
+    }
+
+    /** Returns the sum of the counters of this */
+    public long get() {
+        long sum = 0;
+        for (AtomicLong counter : counters) {
+            sum += counter.get();
+        }
+        return sum;
+    }
+
+    public String toString() {
+        return String.valueOf(get());
+    }
+
+    static private final Utf8String attrValue = new Utf8String("value");
+
+    public void toXML(XMLWriter writer) {
+        renderXmlName(writer);
+        writer.attribute(attrValue, get());
+        writer.closeTag();
+    }
+
+    /** A counter of this metric, owned by a single thread */
+    public static class Counter {
+
+        private final AtomicLong value;
+
+        private Counter(AtomicLong value) {
+            this.value = value;
+        }
+
+        /**
+         * Increments this. This must only be called by the thread owning this counter,
+         * or while holding the lock which guards it.
+         */
+        public void inc(long increment) {
+            value.lazySet(value.get() + increment); // single writer: no need for an atomic update
+        }
+
+    }
+
+}
@@ -23,7 +23,7 @@ public class RouteMetricSet extends MetricSet {
         addMetric(failures);
     }
 
-    public void addError(com.yahoo.messagebus.Error e) {
+    public synchronized void addError(com.yahoo.messagebus.Error e) {
         CountMetric metric = errorMap.get(e.getCode());
         if (metric == null) {
             metric = new CountMetric(ErrorCode.getName(e.getCode()), allErrors);
@@ -33,7 +33,7 @@ public class RouteMetricSet extends MetricSet {
         metric.inc(1);
     }
 
-    public void addFailure(com.yahoo.messagebus.Error e) {
+    public synchronized void addFailure(com.yahoo.messagebus.Error e) {
         CountMetric metric = errorMap.get(e.getCode());
         if (metric == null) {
             metric = new CountMetric(ErrorCode.getName(e.getCode()), failures);
@@ -20,6 +20,7 @@ public class RPCNetworkParams {
     private int maxInputBufferSize = 256 * 1024;
     private int maxOutputBufferSize = 256 * 1024;
     private double connectionExpireSecs = 30;
+    private int numNetworkThreads = 1;
 
     /**
      * Constructs a new instance of this class with reasonable default values.
@@ -42,6 +43,7 @@ public class RPCNetworkParams {
         connectionExpireSecs = params.connectionExpireSecs;
         maxInputBufferSize = params.maxInputBufferSize;
         maxOutputBufferSize = params.maxOutputBufferSize;
+        numNetworkThreads = params.numNetworkThreads;
     }
 
     /**
@@ -164,6 +166,27 @@ public class RPCNetworkParams {
         return this;
     }
 
+    /**
+     * Returns the number of network threads performing the IO of the network connections.
+     *
+     * @return The number of threads.
+     */
+    public int getNumNetworkThreads() {
+        return numNetworkThreads;
+    }
+
+    /**
+     * Sets the number of network threads performing the IO of the network connections. Each connection is handled by
+     * one of these threads, so using more than one allows the network to use more than one core.
+     *
+     * @param numNetworkThreads The number of threads, at least 1.
+     * @return This, to allow chaining.
+     */
+    public RPCNetworkParams setNumNetworkThreads(int numNetworkThreads) {
+        this.numNetworkThreads = numNetworkThreads;
+        return this;
+    }
+
     /**
      * Returns the maximum input buffer size allowed for the underlying FNET connection.
      *
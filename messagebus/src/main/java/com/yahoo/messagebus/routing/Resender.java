@@ -61,7 +61,7 @@ public class Resender {
 
     /**
      * Schedules the given node for resending, if enabled. This will invoke {@link com.yahoo.messagebus.routing.RoutingNode#prepareForRetry()}
-     * if the node was queued. This method is NOT thread-safe, and should only be called by the messenger thread.
+     * if the node was queued. This method is thread-safe, as replies may be handled by several messenger threads.
      *
      * @param node  The node to resend.
      * @return True if the node was queued.
@@ -84,7 +84,9 @@ public class Resender {
         node.getTrace().trace(TraceLevel.COMPONENT,
                               "Message scheduled for retry " + retry + " in " + delay + " seconds.");
         msg.setRetry(retry);
-        queue.add(new Entry(node, SystemTimer.INSTANCE.milliTime() + (long)(delay * 1000)));
+        synchronized (queue) {
+            queue.add(new Entry(node, SystemTimer.INSTANCE.milliTime() + (long)(delay * 1000)));
+        }
         return true;
     }
 
@@ -92,12 +94,14 @@ public class Resender {
      * Invokes {@link RoutingNode#send()} on all routing nodes that are applicable for sending at the current time.
      */
     public void resendScheduled() {
-        if (queue.isEmpty()) return;
-
         List<RoutingNode> sendList = new LinkedList<RoutingNode>();
-        long now = SystemTimer.INSTANCE.milliTime();
-        while (!queue.isEmpty() && queue.peek().time <= now) {
-            sendList.add(queue.poll().node);
+        synchronized (queue) {
+            if (queue.isEmpty()) return;
+
+            long now = SystemTimer.INSTANCE.milliTime();
+            while (!queue.isEmpty() && queue.peek().time <= now) {
+                sendList.add(queue.poll().node);
+            }
         }
 
         for (RoutingNode node : sendList) {
@@ -110,8 +114,14 @@ public class Resender {
      * Discards all the routing nodes currently scheduled for resending.
      */
     public void destroy() {
-        while (!queue.isEmpty()) {
-            queue.poll().node.discard();
+        List<RoutingNode> discardList = new LinkedList<RoutingNode>();
+        synchronized (queue) {
+            while (!queue.isEmpty()) {
+                discardList.add(queue.poll().node);
+            }
+        }
+        for (RoutingNode node : discardList) {
+            node.discard();
         }
     }
 
@@ -1,11 +1,22 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.messagebus;
 
+import com.yahoo.messagebus.metrics.MessengerMetricSet;
+import com.yahoo.messagebus.test.SimpleMessage;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -95,6 +106,96 @@ public class MessengerTestCase {
         assertTrue(tryMessenger(msn));
     }
 
+    @Test
+    public void requireThatMessagesWithSameSequenceIdKeepOrder() throws InterruptedException {
+        Messenger msn = new Messenger(4, new MessengerMetricSet());
+        msn.start();
+        final int numSequences = 16;
+        final int numMessages = 1000;
+        final List<List<Integer>> received = new ArrayList<>();
+        for (int i = 0; i < numSequences; ++i) {
+            received.add(Collections.synchronizedList(new ArrayList<>()));
+        }
+        final CountDownLatch latch = new CountDownLatch(numMessages);
+        final Set<Thread> threads = Collections.newSetFromMap(new ConcurrentHashMap<>());
+        MessageHandler handler = msg -> {
+            SequencedMessage seq = (SequencedMessage)msg;
+            received.get((int)seq.getSequenceId()).add(Integer.valueOf(seq.getValue()));
+            threads.add(Thread.currentThread());
+            latch.countDown();
+        };
+        for (int i = 0; i < numMessages; ++i) {
+            msn.deliverMessage(new SequencedMessage(i % numSequences, String.valueOf(i)), handler);
+        }
+        assertTrue(latch.await(60, TimeUnit.SECONDS));
+        for (int i = 0; i < numSequences; ++i) {
+            List<Integer> values = received.get(i);
+            assertEquals(numMessages / numSequences + (i < numMessages % numSequences ? 1 : 0), values.size());
+            for (int j = 1; j < values.size(); ++j) {
+                assertTrue(values.get(j - 1) < values.get(j));
+            }
+        }
+        assertTrue(threads.size() > 1);
+        assertTrue(msn.destroy());
+    }
+
+    @Test
+    public void requireThatSyncWaitsForAllThreads() throws InterruptedException {
+        MessengerMetricSet metrics = new MessengerMetricSet();
+        Messenger msn = new Messenger(3, metrics);
+        assertEquals(3, msn.getNumThreads());
+        assertSame(metrics, msn.getMetrics());
+        msn.start();
+        final AtomicInteger count = new AtomicInteger(0);
+        ReplyHandler handler = reply -> {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                // ignore
+            }
+            count.incrementAndGet();
+        };
+        for (int i = 0; i < 100; ++i) {
+            msn.deliverReply(new EmptyReply(), reply -> handler.handleReply(reply));
+        }
+        msn.sync();
+        assertEquals(100, count.get());
+        assertTrue(metrics.tasks.get() >= 100);
+        assertTrue(msn.destroy());
+        assertFalse(msn.destroy());
+    }
+
+    @Test
+    public void requireThatQueuedTasksAreCounted() {
+        MessengerMetricSet metrics = new MessengerMetricSet();
+        Messenger msn = new Messenger(1, metrics);
+        for (int i = 0; i < 3; ++i) {
+            msn.deliverReply(new EmptyReply(), reply -> { });
+        }
+        assertEquals(2, metrics.queuedTasks.get());
+        assertEquals(0, metrics.contendedEnqueues.get());
+        msn.start();
+        msn.sync();
+        assertEquals(4, metrics.tasks.get()); // including the sync task
+        assertTrue(msn.destroy());
+    }
+
+    @Test
+    public void requireThatTasksAreDestroyedAfterDestroy() throws InterruptedException {
+        Messenger msn = new Messenger(2, new MessengerMetricSet());
+        msn.start();
+        assertTrue(msn.destroy());
+        MyTask task = new MyTask();
+        msn.enqueue(task);
+        assertTrue(task.destroyLatch.await(60, TimeUnit.SECONDS));
+        assertEquals(1, task.runLatch.getCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void requireThatAtLeastOneThreadIsRequired() {
+        new Messenger(0, new MessengerMetricSet());
+    }
+
     private static boolean tryMessenger(Messenger msn) {
         MyTask task = new MyTask();
         msn.enqueue(task);
@@ -121,4 +222,24 @@ public class MessengerTestCase {
             destroyLatch.countDown();
         }
     }
+
+    private static class SequencedMessage extends SimpleMessage {
+
+        final long sequenceId;
+
+        SequencedMessage(long sequenceId, String value) {
+            super(value);
+            this.sequenceId = sequenceId;
+        }
+
+        @Override
+        public boolean hasSequenceId() {
+            return true;
+        }
+
+        @Override
+        public long getSequenceId() {
+            return sequenceId;
+        }
+    }
 }
@@ -2,6 +2,9 @@
 package com.yahoo.search.predicate;
 
 import com.google.common.annotations.Beta;
+import com.google.common.primitives.Bytes;
+import com.google.common.primitives.Ints;
+import com.google.common.primitives.Shorts;
 import com.yahoo.document.predicate.Predicate;
 import com.yahoo.search.predicate.index.*;
 import com.yahoo.search.predicate.index.conjunction.ConjunctionHit;
@@ -12,6 +15,8 @@ import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Stream;
@@ -95,6 +100,47 @@ public class PredicateIndex {
         return new Searcher();
     }
 
+    Config getConfig() {
+        return config;
+    }
+
+    /**
+     * @return The external id of every internal document id, in internal id order
+     */
+    int[] getInternalToExternalIdMapping() {
+        return internalToExternalIdMapping;
+    }
+
+    /**
+     * Creates an index with the documents of this, except the removed ones, followed by the documents of
+     * the given index. Internal ids of the documents of this index are kept, so the removed documents
+     * leave holes in the merged index that will never match.
+     * Posting lists that are not changed by the merge are shared with this index.
+     *
+     * @param other The index with the documents to append, built with the same config
+     * @param removedDocuments Internal ids of the documents in this index to remove
+     * @return The merged index
+     */
+    PredicateIndex merge(PredicateIndex other, BitSet removedDocuments) {
+        int docIdOffset = internalToExternalIdMapping.length;
+        int dataRefOffset = intervalStore.size();
+        return new PredicateIndex(
+                config,
+                Ints.concat(internalToExternalIdMapping, other.internalToExternalIdMapping),
+                Bytes.concat(minFeatureIndex, other.minFeatureIndex),
+                Shorts.concat(intervalEnds, other.intervalEnds),
+                Math.max(highestIntervalEnd, other.highestIntervalEnd),
+                intervalIndex.merge(other.intervalIndex, removedDocuments, docIdOffset, dataRefOffset),
+                boundsIndex.merge(other.boundsIndex, removedDocuments, docIdOffset, dataRefOffset),
+                conjunctionIntervalIndex.merge(other.conjunctionIntervalIndex, removedDocuments, docIdOffset, dataRefOffset),
+                intervalStore.append(other.intervalStore),
+                conjunctionIndex.merge(other.conjunctionIndex),
+                Ints.concat(
+                        Arrays.stream(zeroConstraintDocuments).filter(docId -> !removedDocuments.get(docId)).toArray(),
+                        Arrays.stream(other.zeroConstraintDocuments).map(docId -> docId + docIdOffset).toArray())
+        );
+    }
+
     public void writeToOutputStream(DataOutputStream out) throws IOException {
         out.writeInt(SERIALIZATION_FORMAT_VERSION);
         config.writeToOutputStream(out);
@@ -159,6 +205,17 @@ public class PredicateIndex {
          * @return A stream of hits.
          */
         public Stream<Hit> search(PredicateQuery query) {
+            return search(query, null);
+        }
+
+        /**
+         * Retrieves a stream of hits for the given query, leaving out the given documents.
+         *
+         * @param query Specifies the boolean variables that are true.
+         * @param removedDocuments Internal ids of documents to leave out, or null to return all hits.
+         * @return A stream of hits.
+         */
+        Stream<Hit> search(PredicateQuery query, BitSet removedDocuments) {
             ArrayList<PostingList> postingLists = new ArrayList<>();
             for (PredicateQuery.Feature feature : query.getFeatures()) {
                 addIntervalPostingList(feature.featureHash, feature.subqueryBitmap, postingLists);
@@ -177,10 +234,13 @@ public class PredicateIndex {
             CachedPostingListCounter counter = postingListCounter.get();
             counter.registerUsage(postingLists);
             counter.countPostingListsPerDocument(postingLists, nPostingListsForDocument);
-            return new PredicateSearch(
-                    postingLists, nPostingListsForDocument, minFeatureIndex, intervalEnds, highestIntervalEnd).stream()
-                    // Map to external id. Note that internal id for first document is 1.
-                    .map(hit -> new Hit(internalToExternalIdMapping[hit.getDocId()], hit.getSubquery()));
+            Stream<Hit> hits = new PredicateSearch(
+                    postingLists, nPostingListsForDocument, minFeatureIndex, intervalEnds, highestIntervalEnd).stream();
+            if (removedDocuments != null && !removedDocuments.isEmpty()) {
+                hits = hits.filter(hit -> !removedDocuments.get(hit.getDocId()));
+            }
+            // Map to external id. Note that internal id for first document is 1.
+            return hits.map(hit -> new Hit(internalToExternalIdMapping[hit.getDocId()], hit.getSubquery()));
         }
 
         private void addCompressedZStarPostingList(List<PostingList> postingLists) {
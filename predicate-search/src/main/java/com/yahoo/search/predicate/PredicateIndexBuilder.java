@@ -21,7 +21,7 @@ import com.yahoo.search.predicate.index.conjunction.ConjunctionIndexBuilder;
 import com.yahoo.search.predicate.index.conjunction.IndexableFeatureConjunction;
 
 import java.util.ArrayList;
-import java.util.LinkedHashSet;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -51,8 +51,9 @@ import static java.util.stream.Collectors.toList;
 @Beta
 public class PredicateIndexBuilder {
 
-    // Unique ids / mapping from internal to external id. LinkedHashSet as the insertion order is crucial.
-    private final Set<Integer> seenIds = new LinkedHashSet<>();
+    private final Set<Integer> seenIds = new HashSet<>();
+    // Mapping from internal to external id.
+    private final List<Integer> internalToExternalIds = new ArrayList<>();
     private final List<Short> intervalEndsBuilder = new ArrayList<>();
     private final List<Byte> minFeatureIndexBuilder = new ArrayList<>();
     private final List<Integer> zeroConstraintDocuments = new ArrayList<>();
@@ -110,21 +111,39 @@ public class PredicateIndexBuilder {
      * @param predicate The predicate to index.
      */
     public void indexDocument(int docId, Predicate predicate) {
+        if (seenIds.contains(docId)) {
+            throw new IllegalArgumentException("Document id is already in use: " + docId);
+        }
+        indexDocumentVersion(docId, predicate);
+    }
+
+    /**
+     * Indexes a predicate with the given id, also if the id is already in use. Hiding the previous
+     * version of the document from searches is then up to the caller, see {@link UpdatablePredicateIndex}.
+     *
+     * @return The internal id of the document, or -1 if the predicate never matches and was not indexed.
+     */
+    int indexDocumentVersion(int docId, Predicate predicate) {
         if (documentIdCounter == Integer.MAX_VALUE) {
             throw new IllegalStateException("Index is full, max number of documents is: " + Integer.MAX_VALUE);
-        } else if (seenIds.contains(docId)) {
-            throw new IllegalArgumentException("Document id is already in use: " + docId);
         } else if (isNeverMatchingDocument(predicate)) {
-            return;
+            return -1;
         }
-        seenIds.add(docId);
         predicate = optimizer.optimizePredicate(predicate);
+        PredicateTreeAnnotations annotations = null;
+        if (!isAlwaysMatchingDocument(predicate)) {
+            annotations = PredicateTreeAnnotator.createPredicateTreeAnnotations(predicate);
+            checkComplexity(annotations);
+        }
+        seenIds.add(docId);
+        internalToExternalIds.add(docId);
         int internalId = documentIdCounter++;
-        if (isAlwaysMatchingDocument(predicate)) {
+        if (annotations == null) {
             indexZeroConstraintDocument(internalId);
         } else {
-            indexDocument(internalId, PredicateTreeAnnotator.createPredicateTreeAnnotations(predicate));
+            indexDocument(internalId, annotations);
         }
+        return internalId;
     }
 
     private static boolean isAlwaysMatchingDocument(Predicate p) {
@@ -141,7 +160,7 @@ public class PredicateIndexBuilder {
         zeroConstraintDocuments.add(docId);
     }
 
-    private void indexDocument(int docId, PredicateTreeAnnotations annotations) {
+    private static void checkComplexity(PredicateTreeAnnotations annotations) {
         int minFeature = annotations.minFeature;
         Preconditions.checkState(minFeature <= 0xFF,
                 "Predicate is too complex. Expected min-feature less than %d, was %d.", 0xFF, minFeature);
@@ -149,6 +168,11 @@ public class PredicateIndexBuilder {
         Preconditions.checkState(intervalEnd <= Interval.MAX_INTERVAL_END,
                 "Predicate is too complex. Expected min-feature less than %d, was %d.",
                 Interval.MAX_INTERVAL_END, intervalEnd);
+    }
+
+    private void indexDocument(int docId, PredicateTreeAnnotations annotations) {
+        int minFeature = annotations.minFeature;
+        int intervalEnd = annotations.intervalEnd;
         highestIntervalEnd = Math.max(highestIntervalEnd, intervalEnd);
         intervalEndsBuilder.add((short) intervalEnd);
         minFeatureIndexBuilder.add((byte) minFeature);
@@ -195,7 +219,7 @@ public class PredicateIndexBuilder {
     public PredicateIndex build() {
         return new PredicateIndex(
                 config,
-                Ints.toArray(seenIds),
+                Ints.toArray(internalToExternalIds),
                 Bytes.toArray(minFeatureIndexBuilder),
                 Shorts.toArray(intervalEndsBuilder),
                 highestIntervalEnd,
@@ -208,6 +232,13 @@ public class PredicateIndexBuilder {
         );
     }
 
+    /**
+     * @return The number of documents indexed, including previous versions of documents.
+     */
+    int getDocumentCount() {
+        return documentIdCounter;
+    }
+
     public int getZeroConstraintDocCount() {
         return zeroConstraintDocuments.size();
     }
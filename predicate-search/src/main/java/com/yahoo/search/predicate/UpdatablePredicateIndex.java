@@ -0,0 +1,286 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.predicate;
+
+import com.google.common.annotations.Beta;
+import com.gs.collections.impl.map.mutable.primitive.IntIntHashMap;
+import com.yahoo.document.predicate.Predicate;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * A {@link PredicateIndex} that can be updated while it is being searched.
+ * <p>
+ * New documents are indexed into a small delta on top of a frozen base index, and removed documents
+ * are hidden from searches until they are dropped from the base index. Updates become visible to
+ * searches when {@link #refresh()} is called, which only rebuilds the delta.
+ * {@link #compact()} merges the delta into the frozen arrays of the base index without re-indexing
+ * the base documents. Posting lists that are not changed by the merge are shared with the previous
+ * base index, and searches and updates may continue while compacting.
+ * </p><p>
+ * The internal ids of removed documents are not reused, so an index with a lot of churn
+ * should eventually be rebuilt with a {@link PredicateIndexBuilder}.
+ * </p><p>
+ * Call {@link #maintain()} regularly, e.g. a few times per second from a background thread,
+ * to make updates visible and to compact the delta when it grows large.
+ * Note that the {@link UpdatablePredicateIndex} is thread-safe, but a {@link Searcher} is not.
+ * Each thread <strong>must</strong> use its own searcher.
+ * </p>
+ */
+@Beta
+public class UpdatablePredicateIndex {
+
+    private final Config config;
+    private final int maxDeltaDocuments;
+    private final Object compactionMonitor = new Object();
+
+    // Guarded by this
+    private Segment base;
+    private Segment compacting = null;
+    private Segment delta;
+    private PredicateIndexBuilder deltaBuilder;
+    private boolean modified = false;
+
+    private volatile Snapshot snapshot;
+
+    /**
+     * Creates an empty updatable index.
+     *
+     * @param config Configuration for the index.
+     * @param maxDeltaDocuments The number of documents in the delta which triggers compaction in {@link #maintain()}.
+     */
+    public UpdatablePredicateIndex(Config config, int maxDeltaDocuments) {
+        this(new PredicateIndexBuilder(config).build(), maxDeltaDocuments);
+    }
+
+    /**
+     * Creates an updatable index with the documents of the given index.
+     *
+     * @param index The initial base index.
+     * @param maxDeltaDocuments The number of documents in the delta which triggers compaction in {@link #maintain()}.
+     */
+    public UpdatablePredicateIndex(PredicateIndex index, int maxDeltaDocuments) {
+        this.config = index.getConfig();
+        this.maxDeltaDocuments = maxDeltaDocuments;
+        int[] externalIds = index.getInternalToExternalIdMapping();
+        IntIntHashMap internalIds = new IntIntHashMap(externalIds.length);
+        for (int i = 0; i < externalIds.length; i++) {
+            internalIds.put(externalIds[i], i);
+        }
+        synchronized (this) {
+            this.base = new Segment(index, internalIds, new BitSet());
+            startNewDelta();
+            publish();
+        }
+    }
+
+    /**
+     * Indexes a predicate with the given id, replacing any predicate already indexed with that id.
+     * The change is visible to searches after the next {@link #refresh()}.
+     *
+     * @param docId     A 32-bit document id, returned in the Hit objects when the predicate matches.
+     * @param predicate The predicate to index.
+     */
+    public synchronized void indexDocument(int docId, Predicate predicate) {
+        int internalId = deltaBuilder.indexDocumentVersion(docId, predicate);
+        removeDocument(docId);
+        if (internalId >= 0) {
+            delta.internalIds.put(docId, internalId);
+        }
+        modified = true;
+    }
+
+    /**
+     * Removes the predicate with the given id.
+     * The change is visible to searches after the next {@link #refresh()}.
+     *
+     * @param docId The id of the document to remove.
+     * @return Whether a document with the given id was indexed.
+     */
+    public synchronized boolean removeDocument(int docId) {
+        boolean removed = delta.remove(docId)
+                || (compacting != null && compacting.remove(docId))
+                || base.remove(docId);
+        modified |= removed;
+        return removed;
+    }
+
+    /**
+     * Makes all updates done so far visible to searches.
+     */
+    public synchronized void refresh() {
+        if (!modified) {
+            return;
+        }
+        delta.index = deltaBuilder.build();
+        publish();
+    }
+
+    /**
+     * Merges the documents of the delta into the base index, and drops the documents removed from the base index.
+     * Also makes all updates done so far visible to searches.
+     */
+    public void compact() {
+        synchronized (compactionMonitor) {
+            PredicateIndex baseIndex;
+            BitSet removedFromBase;
+            Segment merging;
+            synchronized (this) {
+                delta.index = deltaBuilder.build();
+                compacting = delta;
+                startNewDelta();
+                publish();
+                baseIndex = base.index;
+                removedFromBase = (BitSet) base.removed.clone();
+                merging = compacting;
+            }
+            PredicateIndex merged = baseIndex.merge(merging.index, removedFromBase);
+            synchronized (this) {
+                int docIdOffset = baseIndex.getInternalToExternalIdMapping().length;
+                IntIntHashMap internalIds = base.internalIds;
+                merging.internalIds.forEachKeyValue((docId, internalId) -> internalIds.put(docId, internalId + docIdOffset));
+                // The documents removed before merging are no longer in the index
+                BitSet removed = base.removed;
+                removed.andNot(removedFromBase);
+                for (int i = merging.removed.nextSetBit(0); i >= 0; i = merging.removed.nextSetBit(i + 1)) {
+                    removed.set(i + docIdOffset);
+                }
+                base = new Segment(merged, internalIds, removed);
+                compacting = null;
+                delta.index = deltaBuilder.build();
+                publish();
+            }
+        }
+    }
+
+    /**
+     * Compacts the index if the delta has grown large, and otherwise refreshes it.
+     */
+    public void maintain() {
+        int deltaDocuments;
+        synchronized (this) {
+            deltaDocuments = deltaBuilder.getDocumentCount();
+        }
+        if (deltaDocuments >= maxDeltaDocuments) {
+            compact();
+        } else {
+            refresh();
+        }
+    }
+
+    public void rebuildPostingListCache() {
+        snapshot.indexes[0].rebuildPostingListCache();
+    }
+
+    /**
+     * Create a new searcher.
+     */
+    public Searcher searcher() {
+        return new Searcher();
+    }
+
+    private void startNewDelta() {
+        deltaBuilder = new PredicateIndexBuilder(config);
+        delta = new Segment(deltaBuilder.build(), new IntIntHashMap(), new BitSet());
+    }
+
+    private void publish() {
+        List<Segment> segments = new ArrayList<>(3);
+        segments.add(base);
+        if (compacting != null) {
+            segments.add(compacting);
+        }
+        segments.add(delta);
+        snapshot = new Snapshot(segments);
+        modified = false;
+    }
+
+    /** An index, and the documents removed from it since it was built */
+    private static class Segment {
+        private PredicateIndex index;
+        // Maps external to internal id, for the documents in the index that are not removed
+        private final IntIntHashMap internalIds;
+        private final BitSet removed;
+
+        private Segment(PredicateIndex index, IntIntHashMap internalIds, BitSet removed) {
+            this.index = index;
+            this.internalIds = internalIds;
+            this.removed = removed;
+        }
+
+        private boolean remove(int docId) {
+            int internalId = internalIds.removeKeyIfAbsent(docId, -1);
+            if (internalId < 0) {
+                return false;
+            }
+            removed.set(internalId);
+            return true;
+        }
+    }
+
+    /** The indexes and removed documents visible to searches */
+    private static class Snapshot {
+        private final PredicateIndex[] indexes;
+        private final BitSet[] removed;
+
+        private Snapshot(List<Segment> segments) {
+            int size = segments.size();
+            this.indexes = new PredicateIndex[size];
+            this.removed = new BitSet[size];
+            for (int i = 0; i < size; i++) {
+                this.indexes[i] = segments.get(i).index;
+                this.removed[i] = (BitSet) segments.get(i).removed.clone();
+            }
+        }
+    }
+
+    @Beta
+    public class Searcher {
+        private Snapshot snapshot;
+        private PredicateIndex.Searcher[] searchers;
+
+        private Searcher() {
+        }
+
+        /**
+         * Retrieves a stream of hits for the given query, from the updates made visible so far.
+         *
+         * @param query Specifies the boolean variables that are true.
+         * @return A stream of hits.
+         */
+        public Stream<Hit> search(PredicateQuery query) {
+            Snapshot current = UpdatablePredicateIndex.this.snapshot;
+            if (current != snapshot) {
+                updateSearchers(current);
+            }
+            Stream<Hit> hits = Stream.empty();
+            for (int i = 0; i < searchers.length; i++) {
+                hits = Stream.concat(hits, searchers[i].search(query, current.removed[i]));
+            }
+            return hits;
+        }
+
+        private void updateSearchers(Snapshot current) {
+            PredicateIndex.Searcher[] updated = new PredicateIndex.Searcher[current.indexes.length];
+            for (int i = 0; i < updated.length; i++) {
+                updated[i] = findSearcher(current.indexes[i]);
+            }
+            snapshot = current;
+            searchers = updated;
+        }
+
+        // Reuses the searcher of an index that was also visible in the previous snapshot
+        private PredicateIndex.Searcher findSearcher(PredicateIndex index) {
+            if (snapshot != null) {
+                for (int i = 0; i < snapshot.indexes.length; i++) {
+                    if (snapshot.indexes[i] == index) {
+                        return searchers[i];
+                    }
+                }
+            }
+            return index.searcher();
+        }
+    }
+}
@@ -29,6 +29,24 @@ public class PredicateIntervalStore {
         return intervalsList[intervalRef];
     }
 
+    /**
+     * @return The number of interval lists in this store, which is also the reference of the first interval list
+     * of a store appended to this
+     */
+    public int size() {
+        return intervalsList.length;
+    }
+
+    /**
+     * Creates a store with the interval lists of this followed by those of the given store.
+     * The interval lists are shared, not copied.
+     */
+    public PredicateIntervalStore append(PredicateIntervalStore other) {
+        int[][] appended = Arrays.copyOf(intervalsList, intervalsList.length + other.intervalsList.length);
+        System.arraycopy(other.intervalsList, 0, appended, intervalsList.length, other.intervalsList.length);
+        return new PredicateIntervalStore(appended);
+    }
+
     public void writeToOutputStream(DataOutputStream out) throws IOException {
         out.writeInt(intervalsList.length);
         for (int[] intervals : intervalsList) {
@@ -10,6 +10,8 @@ import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -37,6 +39,38 @@ public class SimpleIndex {
         return dictionary.get(key);
     }
 
+    /**
+     * Creates an index with the postings of this, except those of the removed documents, and the postings
+     * of the given index, with document ids and data references offset by the given amounts.
+     * Posting lists that are not changed by the merge are shared with this index.
+     *
+     * @param other Index with postings to append, all with document ids above those of this index after offsetting
+     * @param removedDocIds Ids of documents in this index whose postings should be dropped
+     * @param docIdOffset Offset for the document ids of the other index
+     * @param dataRefOffset Offset for the data references of the other index
+     * @return The merged index
+     */
+    public SimpleIndex merge(SimpleIndex other, BitSet removedDocIds, int docIdOffset, int dataRefOffset) {
+        LongObjectHashMap<Entry> merged = new LongObjectHashMap<>(dictionary.size());
+        for (LongObjectPair<Entry> pair : dictionary.keyValuesView()) {
+            Entry entry = pair.getTwo().withoutDocuments(removedDocIds);
+            Entry otherEntry = other.dictionary.get(pair.getOne());
+            if (otherEntry != null) {
+                entry = entry.append(otherEntry, docIdOffset, dataRefOffset);
+            }
+            if (entry.docIds.length > 0) {
+                merged.put(pair.getOne(), entry);
+            }
+        }
+        for (LongObjectPair<Entry> pair : other.dictionary.keyValuesView()) {
+            if (!dictionary.containsKey(pair.getOne())) {
+                merged.put(pair.getOne(), Entry.EMPTY.append(pair.getTwo(), docIdOffset, dataRefOffset));
+            }
+        }
+        merged.compact();
+        return new SimpleIndex(merged);
+    }
+
     public void writeToOutputStream(DataOutputStream out) throws IOException {
         out.writeInt(dictionary.size());
         for (LongObjectPair<Entry> pair : dictionary.keyValuesView()) {
@@ -61,6 +95,8 @@ public class SimpleIndex {
     }
 
     public static class Entry {
+        private static final Entry EMPTY = new Entry(new int[0], new int[0]);
+
         public final int[] docIds;
         public final int[] dataRefs;
 
@@ -68,6 +104,44 @@ public class SimpleIndex {
             this.docIds = docIds;
             this.dataRefs = dataRefs;
         }
+
+        private Entry withoutDocuments(BitSet removedDocIds) {
+            if (removedDocIds.isEmpty()) {
+                return this;
+            }
+            int removed = 0;
+            for (int docId : docIds) {
+                if (removedDocIds.get(docId)) {
+                    ++removed;
+                }
+            }
+            if (removed == 0) {
+                return this;
+            }
+            int size = docIds.length - removed;
+            int[] newDocIds = new int[size];
+            int[] newDataRefs = new int[size];
+            int j = 0;
+            for (int i = 0; i < docIds.length; i++) {
+                if (!removedDocIds.get(docIds[i])) {
+                    newDocIds[j] = docIds[i];
+                    newDataRefs[j] = dataRefs[i];
+                    ++j;
+                }
+            }
+            return new Entry(newDocIds, newDataRefs);
+        }
+
+        private Entry append(Entry other, int docIdOffset, int dataRefOffset) {
+            int size = docIds.length;
+            int[] newDocIds = Arrays.copyOf(docIds, size + other.docIds.length);
+            int[] newDataRefs = Arrays.copyOf(dataRefs, size + other.dataRefs.length);
+            for (int i = 0; i < other.docIds.length; i++) {
+                newDocIds[size + i] = other.docIds[i] + docIdOffset;
+                newDataRefs[size + i] = other.dataRefs[i] + dataRefOffset;
+            }
+            return new Entry(newDocIds, newDataRefs);
+        }
     }
 
     public static class Builder {
@@ -6,6 +6,7 @@ import com.gs.collections.api.map.primitive.LongObjectMap;
 import com.gs.collections.api.tuple.primitive.IntObjectPair;
 import com.gs.collections.api.tuple.primitive.LongObjectPair;
 import com.gs.collections.impl.map.mutable.primitive.IntObjectHashMap;
+import com.gs.collections.impl.map.mutable.primitive.LongIntHashMap;
 import com.gs.collections.impl.map.mutable.primitive.LongObjectHashMap;
 import com.yahoo.document.predicate.FeatureConjunction;
 import com.yahoo.search.predicate.PredicateQuery;
@@ -44,6 +45,69 @@ public class ConjunctionIndex {
         return new Searcher();
     }
 
+    /**
+     * Creates an index with the conjunctions of this and the given index. Conjunctions present in both
+     * keep their internal id from this index, while conjunctions only in the other index are given new ids.
+     * Conjunction id lists that are not changed by the merge are shared with this index.
+     *
+     * @param other The index to merge into this
+     * @return The merged index
+     */
+    public ConjunctionIndex merge(ConjunctionIndex other) {
+        LongIntHashMap internalIds = new LongIntHashMap(idMapping.length);
+        for (int i = 0; i < idMapping.length; i++) {
+            internalIds.put(idMapping[i], i);
+        }
+        long[] mergedIdMapping = Arrays.copyOf(idMapping, idMapping.length + other.idMapping.length);
+        int nConjunctions = idMapping.length;
+        int[] remapping = new int[other.idMapping.length];
+        for (int i = 0; i < other.idMapping.length; i++) {
+            int index = internalIds.getIfAbsent(other.idMapping[i], -1);
+            if (index < 0) {
+                index = nConjunctions++;
+                mergedIdMapping[index] = other.idMapping[i];
+            }
+            remapping[i] = index;
+        }
+
+        IntObjectHashMap<FeatureIndex> mergedKIndex = new IntObjectHashMap<>(kIndex.size());
+        for (IntObjectPair<FeatureIndex> p : kIndex.keyValuesView()) {
+            FeatureIndex otherFeatureIndex = other.kIndex.get(p.getOne());
+            mergedKIndex.put(p.getOne(), otherFeatureIndex == null ? p.getTwo() : p.getTwo().merge(otherFeatureIndex, remapping));
+        }
+        for (IntObjectPair<FeatureIndex> p : other.kIndex.keyValuesView()) {
+            if (!kIndex.containsKey(p.getOne())) {
+                mergedKIndex.put(p.getOne(), FeatureIndex.EMPTY.merge(p.getTwo(), remapping));
+            }
+        }
+        mergedKIndex.compact();
+        return new ConjunctionIndex(
+                mergedKIndex, mergeConjunctionIds(zList, other.zList, remapping), Arrays.copyOf(mergedIdMapping, nConjunctions));
+    }
+
+    /**
+     * Merges a sorted list of conjunction ids with a list of conjunction ids from another index,
+     * mapped to the internal ids of the merged index.
+     */
+    private static int[] mergeConjunctionIds(int[] conjunctionIds, int[] otherConjunctionIds, int[] remapping) {
+        if (otherConjunctionIds.length == 0) {
+            return conjunctionIds;
+        }
+        int[] merged = Arrays.copyOf(conjunctionIds, conjunctionIds.length + otherConjunctionIds.length);
+        for (int i = 0; i < otherConjunctionIds.length; i++) {
+            int id = otherConjunctionIds[i];
+            merged[conjunctionIds.length + i] = (remapping[id >>> 1] << 1) | (id & 1);
+        }
+        Arrays.sort(merged);
+        int size = 0;
+        for (int i = 0; i < merged.length; i++) {
+            if (size == 0 || merged[size - 1] != merged[i]) {
+                merged[size++] = merged[i];
+            }
+        }
+        return size == merged.length ? merged : Arrays.copyOf(merged, size);
+    }
+
     public void writeToOutputStream(DataOutputStream out) throws IOException {
         SerializationHelper.writeIntArray(zList, out);
         SerializationHelper.writeLongArray(idMapping, out);
@@ -68,6 +132,8 @@ public class ConjunctionIndex {
     }
 
     public static class FeatureIndex {
+        private static final FeatureIndex EMPTY = new FeatureIndex(new LongObjectHashMap<>());
+
         // Maps a feature id to conjunction id
         private final LongObjectMap<int[]> map;
 
@@ -75,6 +141,23 @@ public class ConjunctionIndex {
             this.map = map;
         }
 
+        private FeatureIndex merge(FeatureIndex other, int[] remapping) {
+            LongObjectHashMap<int[]> merged = new LongObjectHashMap<>(map.size());
+            for (LongObjectPair<int[]> p : map.keyValuesView()) {
+                int[] otherConjunctionIds = other.map.get(p.getOne());
+                merged.put(p.getOne(), otherConjunctionIds == null
+                        ? p.getTwo()
+                        : mergeConjunctionIds(p.getTwo(), otherConjunctionIds, remapping));
+            }
+            for (LongObjectPair<int[]> p : other.map.keyValuesView()) {
+                if (!map.containsKey(p.getOne())) {
+                    merged.put(p.getOne(), mergeConjunctionIds(new int[0], p.getTwo(), remapping));
+                }
+            }
+            merged.compact();
+            return new FeatureIndex(merged);
+        }
+
         public Optional<int[]> getConjunctionIdsForFeature(long featureId) {
             return Optional.ofNullable(map.get(featureId));
         }
@@ -0,0 +1,126 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.predicate;
+
+import com.yahoo.document.predicate.Predicate;
+import org.junit.Test;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class UpdatablePredicateIndexTest {
+
+    private static final Config CONFIG = new Config.Builder().setArity(10).build();
+
+    @Test
+    public void requireThatUpdatesAreVisibleAfterRefresh() {
+        UpdatablePredicateIndex index = new UpdatablePredicateIndex(CONFIG, 100);
+        UpdatablePredicateIndex.Searcher searcher = index.searcher();
+        index.indexDocument(1, Predicate.fromString("country in ['no', 'se'] and gender in ['male']"));
+        index.indexDocument(2, Predicate.fromString("country in ['no'] and gender in ['female']"));
+        assertEquals("[]", search(searcher, "no", "male"));
+        index.refresh();
+        assertEquals("[1]", search(searcher, "no", "male"));
+        assertEquals("[2]", search(searcher, "no", "female"));
+
+        assertTrue(index.removeDocument(1));
+        assertFalse(index.removeDocument(3));
+        assertEquals("[1]", search(searcher, "no", "male"));
+        index.refresh();
+        assertEquals("[]", search(searcher, "no", "male"));
+    }
+
+    @Test
+    public void requireThatDocumentsCanBeReplaced() {
+        PredicateIndexBuilder builder = new PredicateIndexBuilder(CONFIG);
+        builder.indexDocument(1, Predicate.fromString("country in ['no']"));
+        builder.indexDocument(2, Predicate.fromString("country in ['se']"));
+        UpdatablePredicateIndex index = new UpdatablePredicateIndex(builder.build(), 100);
+        UpdatablePredicateIndex.Searcher searcher = index.searcher();
+        assertEquals("[1]", search(searcher, "no", "male"));
+
+        index.indexDocument(1, Predicate.fromString("country in ['se']"));
+        index.indexDocument(2, Predicate.fromString("country in ['no']"));
+        index.indexDocument(2, Predicate.fromString("country in ['dk']"));
+        index.refresh();
+        assertEquals("[]", search(searcher, "no", "male"));
+        assertEquals("[1]", search(searcher, "se", "male"));
+        assertEquals("[2]", search(searcher, "dk", "male"));
+    }
+
+    @Test
+    public void requireThatCompactionRetainsSearchResults() {
+        PredicateIndexBuilder builder = new PredicateIndexBuilder(CONFIG);
+        builder.indexDocument(1, Predicate.fromString("country in ['no'] and gender in ['male']"));
+        builder.indexDocument(2, Predicate.fromString("country in ['no']"));
+        builder.indexDocument(3, Predicate.fromString("true"));
+        builder.indexDocument(4, Predicate.fromString("country not in ['se'] and gender in ['female']"));
+        UpdatablePredicateIndex index = new UpdatablePredicateIndex(builder.build(), 100);
+        UpdatablePredicateIndex.Searcher searcher = index.searcher();
+
+        index.removeDocument(2);
+        index.removeDocument(3);
+        index.indexDocument(5, Predicate.fromString("country in ['no'] and gender in ['male']"));
+        index.indexDocument(6, Predicate.fromString("true"));
+        index.indexDocument(7, Predicate.fromString("country not in ['se'] and gender in ['female']"));
+        index.indexDocument(8, Predicate.fromString("country in ['dk']"));
+        index.removeDocument(8);
+        index.refresh();
+        assertEquals("[1, 5, 6]", search(searcher, "no", "male"));
+        assertEquals("[4, 6, 7]", search(searcher, "no", "female"));
+
+        index.compact();
+        assertEquals("[1, 5, 6]", search(searcher, "no", "male"));
+        assertEquals("[4, 6, 7]", search(searcher, "no", "female"));
+        assertEquals("[6]", search(searcher, "dk", "male"));
+
+        index.removeDocument(5);
+        index.indexDocument(2, Predicate.fromString("gender in ['male']"));
+        index.compact();
+        assertEquals("[1, 6, 2]", search(searcher, "no", "male"));
+        assertEquals("[6, 2]", search(searcher, "se", "male"));
+        assertEquals("[6]", search(searcher, "se", "female"));
+    }
+
+    @Test
+    public void requireThatCompactionRetainsConjunctions() {
+        Config config = new Config.Builder().setArity(10).setUseConjunctionAlgorithm(true).build();
+        PredicateIndexBuilder builder = new PredicateIndexBuilder(config);
+        builder.indexDocument(1, Predicate.fromString("country in ['no'] and gender in ['male']"));
+        builder.indexDocument(2, Predicate.fromString("country in ['se'] and gender not in ['male']"));
+        UpdatablePredicateIndex index = new UpdatablePredicateIndex(builder.build(), 100);
+        UpdatablePredicateIndex.Searcher searcher = index.searcher();
+
+        index.indexDocument(3, Predicate.fromString("country in ['no'] and gender in ['male']"));
+        index.indexDocument(4, Predicate.fromString("country in ['no'] and gender not in ['male']"));
+        index.removeDocument(1);
+        index.compact();
+        assertEquals("[3]", search(searcher, "no", "male"));
+        assertEquals("[4]", search(searcher, "no", "female"));
+        assertEquals("[2]", search(searcher, "se", "female"));
+    }
+
+    @Test
+    public void requireThatMaintainCompactsLargeDelta() {
+        UpdatablePredicateIndex index = new UpdatablePredicateIndex(CONFIG, 2);
+        UpdatablePredicateIndex.Searcher searcher = index.searcher();
+        index.indexDocument(1, Predicate.fromString("country in ['no']"));
+        index.maintain();
+        assertEquals("[1]", search(searcher, "no", "male"));
+        index.indexDocument(2, Predicate.fromString("country in ['no']"));
+        index.maintain();
+        assertEquals("[1, 2]", search(searcher, "no", "male"));
+        index.indexDocument(3, Predicate.fromString("country in ['no']"));
+        index.maintain();
+        assertEquals("[1, 2, 3]", search(searcher, "no", "male"));
+    }
+
+    private static String search(UpdatablePredicateIndex.Searcher searcher, String country, String gender) {
+        PredicateQuery query = new PredicateQuery();
+        query.addFeature("country", country);
+        query.addFeature("gender", gender);
+        return searcher.search(query).collect(toList()).toString();
+    }
+
+}
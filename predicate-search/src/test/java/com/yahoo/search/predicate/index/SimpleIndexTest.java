@@ -4,10 +4,14 @@ package com.yahoo.search.predicate.index;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.BitSet;
 
 import static com.yahoo.search.predicate.serialization.SerializationTestHelper.assertSerializationDeserializationMatches;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 /**
  * @author <a href="mailto:magnarn@yahoo-inc.com">Magnar Nedland</a>
@@ -62,4 +66,30 @@ public class SimpleIndexTest {
         SimpleIndex index = builder.build();
         assertSerializationDeserializationMatches(index, SimpleIndex::writeToOutputStream, SimpleIndex::fromInputStream);
     }
+
+    @Test
+    public void requireThatMergeAppendsPostingsAndDropsRemovedDocuments() {
+        SimpleIndex.Builder builder = new SimpleIndex.Builder();
+        builder.insert(KEY, new Posting(DOC_ID, 10));
+        builder.insert(KEY, new Posting(DOC_ID + 1, 20));
+        builder.insert(KEY + 1, new Posting(DOC_ID + 1, 30));
+        builder.insert(KEY + 2, new Posting(DOC_ID, 40));
+        SimpleIndex index = builder.build();
+        builder = new SimpleIndex.Builder();
+        builder.insert(KEY, new Posting(0, 0));
+        builder.insert(KEY + 3, new Posting(1, 1));
+        SimpleIndex other = builder.build();
+        BitSet removed = new BitSet();
+        removed.set(DOC_ID + 1);
+
+        SimpleIndex merged = index.merge(other, removed, 100, 1000);
+        SimpleIndex.Entry e = merged.getPostingList(KEY);
+        assertArrayEquals(new int[]{DOC_ID, 100}, e.docIds);
+        assertArrayEquals(new int[]{10, 1000}, e.dataRefs);
+        assertNull(merged.getPostingList(KEY + 1));
+        assertSame(index.getPostingList(KEY + 2), merged.getPostingList(KEY + 2));
+        e = merged.getPostingList(KEY + 3);
+        assertArrayEquals(new int[]{101}, e.docIds);
+        assertArrayEquals(new int[]{1001}, e.dataRefs);
+    }
 }
@@ -344,6 +344,34 @@ public class ConjunctionIndexTest {
                 index, ConjunctionIndex::writeToOutputStream, ConjunctionIndex::fromInputStream);
     }
 
+    @Test
+    public void require_that_merged_index_finds_conjunctions_of_both_indexes() {
+        IndexableFeatureConjunction c1 = indexableConj(conj(feature("a").inSet("1"), feature("b").inSet("2")));
+        IndexableFeatureConjunction c2 = indexableConj(conj(feature("a").inSet("1"), not(feature("c").inSet("3"))));
+        IndexableFeatureConjunction c3 = indexableConj(conj(not(feature("a").inSet("1")), not(feature("b").inSet("2"))));
+        IndexableFeatureConjunction c4 = indexableConj(conj(feature("b").inSet("2"), feature("c").inSet("3")));
+
+        ConjunctionIndexBuilder builder = new ConjunctionIndexBuilder();
+        builder.indexConjunction(c1);
+        builder.indexConjunction(c2);
+        ConjunctionIndex index = builder.build();
+        builder = new ConjunctionIndexBuilder();
+        builder.indexConjunction(c3);
+        builder.indexConjunction(c4);
+        builder.indexConjunction(c1); // Also in the first index
+        ConjunctionIndex merged = index.merge(builder.build());
+        ConjunctionIndex.Searcher searcher = merged.searcher();
+
+        PredicateQuery query = new PredicateQuery();
+        assertHitsEquals(searcher.search(query), c3);
+        query.addFeature("a", "1");
+        assertHitsEquals(searcher.search(query), c2);
+        query.addFeature("b", "2");
+        assertHitsEquals(searcher.search(query), c1, c2);
+        query.addFeature("c", "3");
+        assertHitsEquals(searcher.search(query), c1, c4);
+    }
+
     private static List<ConjunctionHit> matchingConjunctionList(ConjunctionHit... conjunctionHits) {
         return Arrays.asList(conjunctionHits);
     }
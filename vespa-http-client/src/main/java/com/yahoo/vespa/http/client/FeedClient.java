@@ -5,6 +5,7 @@ import com.yahoo.vespa.http.client.core.JsonReader;
 import com.yahoo.vespa.http.client.core.XmlFeedReader;
 
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -41,6 +42,21 @@ public interface FeedClient extends AutoCloseable {
      */
     void stream(String documentId, CharSequence documentData, Object context);
 
+    /**
+     * Streams a document to cluster(s). If the pipeline and buffers are full, this call will be blocking.
+     * Documents might time out before they are sent. Failed documents are not retried.
+     * Don't call stream() after close is called.
+     * The document data is owned by the feed client after this is called, and must not be modified.
+     * 
+     * @param documentId Document id of the document.
+     * @param documentData The document data as UTF-8 encoded JSON or XML (as specified when using the factory to
+     *                     create the API)
+     * @param context Any context, will be accessible in the result of the callback.
+     */
+    default void stream(String documentId, byte[] documentData, Object context) {
+        stream(documentId, new String(documentData, StandardCharsets.UTF_8), context);
+    }
+
 
     /**
      * This callback is executed when new results are arriving. Don't do any heavy lifting in this thread (no IO, disk,
@@ -33,5 +33,7 @@ public final class Headers {
     public static final String OUTSTANDING_REQUESTS = "X-Yahoo-Outstanding-Requests";
     public static final String HOSTNAME = "X-Yahoo-Hostname";
     public static final String SILENTUPGRADE = "X-Yahoo-Silent-Upgrade";
+    // Set to true to have replies written to the client while the request is still being fed
+    public static final String STREAM_REPLIES = "X-Yahoo-Feed-Stream-Replies";
 
 }
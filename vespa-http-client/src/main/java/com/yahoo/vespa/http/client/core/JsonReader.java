@@ -1,18 +1,19 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.vespa.http.client.core;
 
-import com.fasterxml.jackson.core.JsonFactory;
-import com.fasterxml.jackson.core.JsonParser;
 import com.yahoo.vespa.http.client.FeedClient;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Reads a stream of json documents and sends them to feedClient.
+ * The documents are found by scanning the UTF-8 bytes of the stream for their boundaries and ids, and
+ * are sent as the bytes they were read as, without being parsed or decoded.
+ *
  * @author dybis
  */
 public class JsonReader {
@@ -21,7 +22,9 @@ public class JsonReader {
      * Max size of documents. As we stream docs in for finding doc id, we buffer the data and later stream them to
      * feedclient after doc id has been revealed.
      */
-    private final static int maxDocumentSizeChars = 50 * 1024 * 1024;
+    private final static int maxDocumentSizeBytes = 50 * 1024 * 1024;
+
+    private final static int initialBufferSizeBytes = 64 * 1024;
 
     // Intended to be used as static.
     private JsonReader() {}
@@ -34,22 +37,15 @@ public class JsonReader {
      */
     public static void read(InputStream inputStream, FeedClient feedClient, AtomicInteger numSent) {
         try {
-            final InputStreamJsonElementBuffer jsonElementBuffer = new InputStreamJsonElementBuffer(inputStream);
-            final JsonFactory jfactory = new JsonFactory().disable(JsonFactory.Feature.CANONICALIZE_FIELD_NAMES);
-            final JsonParser jParser = jfactory.createParser(jsonElementBuffer);
-            while (true) {
-                String docId = parseOneDocument(jParser);
-                if (docId == null) {
+            final DocumentScanner scanner = new DocumentScanner(inputStream);
+            while (scanner.nextDocument()) {
+                if (scanner.documentId() == null) {
                     break;
                 }
-                CharSequence data = jsonElementBuffer.getJsonAsArray(jParser.getCurrentLocation().getCharOffset());
-                if (data == null) {
-                    continue;
-                }
-                feedClient.stream(docId, data);
+                feedClient.stream(scanner.documentId(), scanner.documentData(), null);
                 numSent.incrementAndGet();
             }
-            jsonElementBuffer.close();
+            inputStream.close();
         } catch (IOException ioe) {
             System.err.println(ioe.getMessage());
             throw new RuntimeException(ioe);
@@ -57,172 +53,211 @@ public class JsonReader {
     }
 
     /**
-     * This class is intended to be used with a json parser. The data is sent through this intermediate stream
-     * and to the parser. When the parser is done with a document, it calls postJsonAsArray which will
-     * stream the document up to the current position of the parser.
+     * Finds the json objects of an array in a stream of UTF-8 bytes, and the document id of each.
+     * The bytes are only scanned for string and object boundaries, not parsed, so this does not validate
+     * the json of the documents themselves.
      */
-    private static class InputStreamJsonElementBuffer extends InputStreamReader {
+    private static class DocumentScanner {
 
-        /**
-         * Simple class implementing a circular array with some custom function used for finding start and end
-         * of json object. The reason this is needed is that the json parser reads more than it parses
-         * from the input stream (seems like about 8k). Using a ByteBuffer and manually moving data
-         * is an order of magnitude slower than this implementation.
-         */
-        private class CircularCharBuffer {
+        private final InputStream input;
 
-            int readPointer = 0;
-            int writePointer = 0;
-            final char[] data;
-            final int size;
+        private byte[] buffer = new byte[initialBufferSizeBytes];
+        /** The position of the next byte to read */
+        private int position = 0;
+        /** The end of the data read into the buffer */
+        private int limit = 0;
+        /** The start of the document currently being scanned, or -1 if none. Data from here is kept in the buffer */
+        private int mark = -1;
 
-            public CircularCharBuffer(int chars) {
-                data = new char[chars];
-                size = chars;
-            }
+        /** The total number of bytes discarded from the start of the buffer, used for error messages */
+        private long discarded = 0;
+        private boolean inArray = false;
 
-            /**
-             * This is for throwing away [ and spaces in front of a json object, and find the position of {.
-             * Not for parsing much text.
-             * @return posisiton for {
-             */
-            public int findNextObjectStart() {
-                int readerPos = 0;
-                while (get(readerPos) != '{') {
-                    readerPos++;
-                    assert(readerPos<=size);
-                }
-                return readerPos;
-            }
+        private String documentId;
+        private byte[] documentData;
 
-            /**
-             * This is for throwing away comma and or ], and for finding the position of the last }.
-             * @param fromPos where to start searching
-             * @return position for }
-             */
-            public int findLastObjectEnd(int fromPos) {
-                while (get(fromPos-1) != '}') {
-                    fromPos--;
-                    assert(fromPos >=0);
-                }
-                return fromPos;
-            }
+        DocumentScanner(InputStream input) {
+            this.input = input;
+        }
 
-            public void put(char dataByte) {
-                data[writePointer] = dataByte;
-                writePointer++;
-                if (writePointer >= size) writePointer = 0;
-                assert(writePointer != readPointer);
-            }
+        /** Returns the id of the last document found, or null if it has none */
+        String documentId() { return documentId; }
 
-            public char get(int pos) {
-                int readPos = readPointer + pos;
-                if (readPos >= size) readPos -= size;
-                assert(readPos != writePointer);
-                return data[readPos];
-            }
+        /** Returns the data of the last document found */
+        byte[] documentData() { return documentData; }
 
-            public void advance(int end) {
-                readPointer += end;
-                if (readPointer >= size) readPointer -= size;
+        /**
+         * Advances to the next document of the array in the stream.
+         *
+         * @return whether a document was found, or false if the array (or stream, if empty) has ended
+         * @throws IllegalArgumentException if the stream does not contain an array of json objects
+         */
+        boolean nextDocument() throws IOException {
+            int c = nextNonWhitespace();
+            if ( ! inArray) {
+                if (c < 0) return false; // No array, no documents
+                if (c != '[') throw unexpected(c, "'['");
+                inArray = true;
+                c = nextNonWhitespace();
+                if (c == ']') return false;
             }
+            else {
+                if (c == ']') return false;
+                if (c != ',') throw unexpected(c, "',' or ']'");
+                c = nextNonWhitespace();
+            }
+            if (c != '{') throw unexpected(c, "'{'");
+            scanDocument();
+            return true;
         }
 
-        private final CircularCharBuffer circular = new CircularCharBuffer(maxDocumentSizeChars);
-        private int processedChars = 0;
+        /** Scans a document from the '{' just read to its matching '}' */
+        private void scanDocument() throws IOException {
+            mark = position - 1;
+            documentId = null;
+            int depth = 1;
+            boolean atKey = true;
+            boolean valueIsDocumentId = false;
+            while (depth > 0) {
+                int c = next();
+                switch (c) {
+                    case -1:
+                        throw unexpected(c, "'}'");
+                    case '"':
+                        int start = position - mark; // relative to the mark, as the buffer may be compacted
+                        boolean escaped = skipString();
+                        if (depth != 1) break;
+                        String value = string(mark + start, position - 1, escaped);
+                        if (atKey) {
+                            valueIsDocumentId = isDocumentIdKey(value);
+                        }
+                        else if (valueIsDocumentId) {
+                            if (documentId != null) {
+                                throw new RuntimeException("Several document ids");
+                            }
+                            documentId = value;
+                            valueIsDocumentId = false;
+                        }
+                        break;
+                    case '{':
+                    case '[':
+                        depth++;
+                        break;
+                    case '}':
+                    case ']':
+                        depth--;
+                        break;
+                    case ':':
+                        if (depth == 1) atKey = false;
+                        break;
+                    case ',':
+                        if (depth == 1) {
+                            atKey = true;
+                            valueIsDocumentId = false;
+                        }
+                        break;
+                    default: // No operation on all other bytes.
+                }
+            }
+            documentData = Arrays.copyOfRange(buffer, mark, position);
+            mark = -1;
+        }
 
-        public InputStreamJsonElementBuffer(InputStream inputStream) {
-            super(inputStream, StandardCharsets.UTF_8);
+        private static boolean isDocumentIdKey(String key) {
+            return key.equals("put") || key.endsWith("id") || key.endsWith("update") || key.equals("remove");
         }
 
         /**
-         * Removes comma, start/end array tag (last element), spaces etc that might be surrounding a json element.
-         * Then sends the element to the outputstream.
-         * @param parserPosition how far the parser has come. Please note that the parser might have processed
-         *                       more data from the input source as it is reading chunks of data.
-         * @throws IOException on errors
+         * Skips past the end of the string whose opening quote was just read.
+         *
+         * @return whether the string contains escape sequences
          */
-        public CharSequence getJsonAsArray(long parserPosition) throws IOException {
-            final int charSize = (int)parserPosition - processedChars;
-            if (charSize<2) {
-                return null;
-            }
-            final int endPosOfJson = circular.findLastObjectEnd(charSize);
-            final int startPosOfJson = circular.findNextObjectStart();
-            processedChars += charSize;
-            // This can be optimized since we rarely wrap the circular buffer.
-            StringBuilder dataBuffer = new StringBuilder(endPosOfJson - startPosOfJson);
-            for (int x = startPosOfJson; x < endPosOfJson; x++) {
-                dataBuffer.append(circular.get(x));
+        private boolean skipString() throws IOException {
+            boolean escaped = false;
+            while (true) {
+                int c = next();
+                if (c == '"') return escaped;
+                if (c == '\\') {
+                    escaped = true;
+                    c = next();
+                }
+                if (c < 0) throw unexpected(c, "'\"'");
             }
-            circular.advance(charSize);
-            return dataBuffer.toString();
         }
 
-        @Override
-        public int read(char[] b, int off, int len) throws IOException {
-            int length = 0;
-            int value = 0;
-            while (length < len && value != -1) {
-                value = read();
-                if (value == -1) {
-                    return length == 0 ? -1 : length;
+        /** Returns the string content between the given buffer positions, with any escape sequences resolved */
+        private String string(int start, int end, boolean escaped) {
+            String raw = new String(buffer, start, end - start, StandardCharsets.UTF_8);
+            if ( ! escaped) return raw;
+
+            StringBuilder b = new StringBuilder(raw.length());
+            for (int i = 0; i < raw.length(); i++) {
+                char c = raw.charAt(i);
+                if (c != '\\') {
+                    b.append(c);
+                    continue;
+                }
+                c = raw.charAt(++i);
+                switch (c) {
+                    case 'b': b.append('\b'); break;
+                    case 'f': b.append('\f'); break;
+                    case 'n': b.append('\n'); break;
+                    case 'r': b.append('\r'); break;
+                    case 't': b.append('\t'); break;
+                    case 'u':
+                        if (i + 4 >= raw.length())
+                            throw new IllegalArgumentException("Invalid unicode escape in '" + raw + "'");
+                        b.append((char)Integer.parseInt(raw.substring(i + 1, i + 5), 16));
+                        i += 4;
+                        break;
+                    default: b.append(c); // '"', '\\' and '/'
                 }
-                b[off + length] = (char) value;
-                length++;
             }
-            return length;
+            return b.toString();
         }
 
-        @Override
-        public int read() throws IOException {
-            int value = super.read();
-            if (value >= 0) circular.put((char)value);
-            return value;
+        private int nextNonWhitespace() throws IOException {
+            while (true) {
+                int c = next();
+                if (c != ' ' && c != '\n' && c != '\r' && c != '\t') return c;
+            }
         }
-    }
 
-    /**
-     * Parse one document from the stream and return doc id.
-     * @param jParser parser with stream.
-     * @return doc id of document or null if no more docs.
-     * @throws IOException on problems
-     */
-    private static String parseOneDocument(JsonParser jParser) throws IOException {
-        int objectLevel = 0;
-        String documentId = null;
-        boolean valueIsDocumentId = false;
-        while (jParser.nextToken() != null) {
-            final String tokenAsText = jParser.getText();
-            if (valueIsDocumentId) {
-                if (documentId != null) {
-                    throw new RuntimeException("Several document ids");
-                }
-                documentId = tokenAsText;
-                valueIsDocumentId = false;
+        /** Returns the next byte as an unsigned value, or -1 at the end of the stream */
+        private int next() throws IOException {
+            if (position == limit && ! fill()) return -1;
+            return buffer[position++] & 0xff;
+        }
+
+        /** Reads more data into the buffer, keeping any marked document. Returns false at the end of the stream */
+        private boolean fill() throws IOException {
+            int keep = mark >= 0 ? mark : position;
+            if (keep > 0) {
+                System.arraycopy(buffer, keep, buffer, 0, limit - keep);
+                limit -= keep;
+                position -= keep;
+                discarded += keep;
+                if (mark >= 0) mark = 0;
             }
-            switch(jParser.getCurrentToken()) {
-                case START_OBJECT:
-                    objectLevel++;
-                    break;
-                case END_OBJECT:
-                    objectLevel--;
-                    if (objectLevel == 0) {
-                        return documentId;
-                    }
-                    break;
-                case FIELD_NAME:
-                    if (objectLevel == 1 &&
-                            (tokenAsText.equals("put")
-                                    || tokenAsText.endsWith("id")
-                                    || tokenAsText.endsWith("update")
-                                    || tokenAsText.equals("remove"))) {
-                        valueIsDocumentId = true;
-                    }
-                    break;
-                default: // No operation on all other tags.
+            if (limit == buffer.length) {
+                if (buffer.length >= maxDocumentSizeBytes) {
+                    throw new IllegalArgumentException("Document at byte " + (discarded + mark) +
+                                                       " is larger than the max size of " + maxDocumentSizeBytes + " bytes");
+                }
+                buffer = Arrays.copyOf(buffer, Math.min(2 * buffer.length, maxDocumentSizeBytes));
             }
+            int read = input.read(buffer, limit, buffer.length - limit);
+            if (read <= 0) return false;
+            limit += read;
+            return true;
+        }
+
+        private IllegalArgumentException unexpected(int c, String expected) {
+            return new IllegalArgumentException("Expected " + expected + " at byte " + (discarded + position - 1) +
+                                                " of the json feed, but got " +
+                                                (c < 0 ? "end of input" : "'" + (char)c + "'"));
         }
-        return null;
+
     }
+
 }
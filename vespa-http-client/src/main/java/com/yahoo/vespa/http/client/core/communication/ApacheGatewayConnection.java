@@ -21,12 +21,9 @@ import org.apache.http.config.RegistryBuilder;
 import org.apache.http.conn.socket.ConnectionSocketFactory;
 import org.apache.http.conn.socket.PlainConnectionSocketFactory;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
-import org.apache.http.entity.InputStreamEntity;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
@@ -40,7 +37,6 @@ import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.zip.GZIPOutputStream;
 
 /**
  * @author Einar M R Rosenvinge
@@ -121,40 +117,13 @@ class ApacheGatewayConnection implements GatewayConnection {
         return httpClient != null;
     }
 
-    // Protected for easier testing only.
-    protected static InputStreamEntity zipAndCreateEntity(final InputStream inputStream) throws IOException {
-        byte[] buffer = new byte[4096];
-        GZIPOutputStream gzos = null;
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        try {
-            gzos = new GZIPOutputStream(baos);
-            while (inputStream.available() > 0) {
-                int length = inputStream.read(buffer);
-                gzos.write(buffer, 0,length);
-            }
-        } finally {
-            if (gzos != null)  {
-                gzos.close();
-            }
-        }
-        byte[] fooGzippedBytes = baos.toByteArray();
-        return new InputStreamEntity(new ByteArrayInputStream(fooGzippedBytes), -1);
-    }
-
     private InputStream write(List<Document> docs, boolean drain, boolean useCompression)
             throws ServerResponseException, IOException {
         HttpPost httpPost = createPost(drain, useCompression, false /* this is not hanshake */);
 
+        // The batch is written (and compressed, if enabled) directly to the connection as it is sent.
         final ByteBuffer[] buffers = getDataWithStartAndEndOfFeed(docs, negotiatedVersion);
-        final InputStream inputStream = new ByteBufferInputStream(buffers);
-        final InputStreamEntity reqEntity;
-        if (useCompression ) {
-            reqEntity = zipAndCreateEntity(inputStream);
-        } else {
-            reqEntity = new InputStreamEntity(inputStream, -1);
-        }
-        reqEntity.setChunked(true);
-        httpPost.setEntity(reqEntity);
+        httpPost.setEntity(new ByteBuffersEntity(buffers, useCompression));
         return executePost(httpPost);
     }
 
@@ -219,6 +188,9 @@ class ApacheGatewayConnection implements GatewayConnection {
             if (negotiatedVersion == 3 && feedParams.getDenyIfBusyV3()) {
                 httpPost.setHeader(Headers.DENY_IF_BUSY, "true");
             }
+            if (negotiatedVersion == 3) {
+                httpPost.setHeader(Headers.STREAM_REPLIES, "true");
+            }
         }
         if (feedParams.getSilentUpgrade()) {
             httpPost.setHeader(Headers.SILENTUPGRADE, "true");
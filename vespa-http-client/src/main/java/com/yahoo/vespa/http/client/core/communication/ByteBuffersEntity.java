@@ -0,0 +1,86 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.http.client.core.communication;
+
+import org.apache.http.entity.AbstractHttpEntity;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A chunked request entity which writes a sequence of byte buffers directly to the connection,
+ * optionally gzipping them as they are written, such that a request is never copied or
+ * compressed into an intermediate buffer before it is sent.
+ * The given buffers are not modified, so the entity may be written any number of times.
+ */
+class ByteBuffersEntity extends AbstractHttpEntity {
+
+    private static final int chunkSize = 4096;
+
+    private final ByteBuffer[] buffers;
+    private final boolean compress;
+
+    ByteBuffersEntity(ByteBuffer[] buffers, boolean compress) {
+        this.buffers = buffers;
+        this.compress = compress;
+        setChunked(true);
+    }
+
+    @Override
+    public boolean isRepeatable() { return true; }
+
+    @Override
+    public boolean isStreaming() { return false; }
+
+    @Override
+    public long getContentLength() { return -1; }
+
+    /**
+     * Returns the content of this as it would be written. When compressing, this gzips the
+     * content into memory, so this should only be used when the content is needed as a stream.
+     */
+    @Override
+    public InputStream getContent() throws IOException {
+        if ( ! compress) return new ByteBufferInputStream(duplicates());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeTo(out);
+        return new ByteArrayInputStream(out.toByteArray());
+    }
+
+    @Override
+    public void writeTo(OutputStream outputStream) throws IOException {
+        if (compress) {
+            GZIPOutputStream gzipStream = new GZIPOutputStream(outputStream, chunkSize);
+            write(gzipStream);
+            gzipStream.finish();
+        } else {
+            write(outputStream);
+        }
+        outputStream.flush();
+    }
+
+    private void write(OutputStream outputStream) throws IOException {
+        byte[] chunk = new byte[chunkSize];
+        for (ByteBuffer buffer : duplicates()) {
+            while (buffer.hasRemaining()) {
+                int length = Math.min(chunk.length, buffer.remaining());
+                buffer.get(chunk, 0, length);
+                outputStream.write(chunk, 0, length);
+            }
+        }
+    }
+
+    /** Returns views of the buffers of this which can be read without changing the positions of the originals */
+    private ByteBuffer[] duplicates() {
+        ByteBuffer[] duplicates = new ByteBuffer[buffers.length];
+        for (int i = 0; i < buffers.length; i++)
+            duplicates[i] = buffers[i].duplicate();
+        return duplicates;
+    }
+
+}
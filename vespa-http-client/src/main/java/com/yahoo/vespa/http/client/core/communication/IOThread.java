@@ -43,6 +43,11 @@ class IOThread implements Runnable, AutoCloseable {
     private final long localQueueTimeOut;
     private final GatewayThrottler gatewayThrottler;
 
+    /** The min and max time to wait for results when max operations are in flight, and the current wait time */
+    private static final long minResultWaitMs = 10;
+    private static final long maxResultWaitMs = 300;
+    private long resultWaitMs = minResultWaitMs;
+
     private enum ThreadState { DISCONNECTED, CONNECTED, SESSION_SYNCED };
     private final AtomicInteger wrongSessionDetectedCounter = new AtomicInteger(0);
     private final AtomicInteger wrongVersionDetectedCounter = new AtomicInteger(0);
@@ -287,12 +292,16 @@ class IOThread implements Runnable, AutoCloseable {
         if (pendingResultQueueSize > maxInFlightRequests && processResponse.processResultsCount == 0) {
             try {
                 // Max outstanding document operations, no more results on server side, wait a bit
-                // before asking again.
-                Thread.sleep(300);
+                // before asking again. Wait longer each time this happens in a row.
+                Thread.sleep(resultWaitMs);
+                resultWaitMs = Math.min(maxResultWaitMs, resultWaitMs * 2);
             } catch (InterruptedException e) {
                 // Ignore
             }
         }
+        else if (processResponse.processResultsCount > 0) {
+            resultWaitMs = minResultWaitMs;
+        }
         return processResponse;
     }
 
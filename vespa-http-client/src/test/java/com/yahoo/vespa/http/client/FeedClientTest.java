@@ -12,6 +12,8 @@ import org.junit.Test;
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -50,6 +52,22 @@ public class FeedClientTest {
         assertThat(resultsReceived.get(), is(1));
     }
 
+    @Test
+    public void testStreamBytes() throws Exception {
+        List<Result> results = new CopyOnWriteArrayList<>();
+        FeedClient bytesFeedClient = new FeedClientImpl(sessionParams,
+                                                        (docId, documentResult) -> results.add(documentResult),
+                                                        SessionFactory.createTimeoutExecutor());
+        String data = "{\"put\": \"id:ns:music::naïve\", \"fields\": {\"title\": \"Blåbærsyltetøy\"}}";
+        Object context = new Object();
+        bytesFeedClient.stream(DOCID, data.getBytes(StandardCharsets.UTF_8), context);
+        bytesFeedClient.close();
+        assertThat(results.size(), is(1));
+        assertThat(results.get(0).getDocumentId(), is(DOCID));
+        assertThat(results.get(0).getDocumentDataAsCharSequence().toString(), is(data));
+        assertSame(context, results.get(0).getContext());
+    }
+
     @Test
     public void testGetStatsAsJson() throws Exception {
         feedClient.stream(DOCID, "blob");
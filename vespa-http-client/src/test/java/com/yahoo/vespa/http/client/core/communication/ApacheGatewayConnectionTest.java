@@ -16,13 +16,14 @@ import org.apache.http.ParseException;
 import org.apache.http.StatusLine;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpPost;
-import org.apache.http.entity.InputStreamEntity;
 import org.junit.Test;
 import org.mockito.stubbing.Answer;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
@@ -179,14 +180,63 @@ public class ApacheGatewayConnectionTest {
     }
 
     @Test
-    public void testZipAndCreateEntity() throws IOException {
+    public void testStreamRepliesHeaderInV3() throws Exception {
+        final Endpoint endpoint = Endpoint.create("hostname", 666, false);
+        final FeedParams feedParams = new FeedParams.Builder().setDataFormat(FeedParams.DataFormat.JSON_UTF8).build();
+        final String clusterSpecificRoute = "";
+        final ConnectionParams connectionParams = new ConnectionParams.Builder()
+                .setEnableV3Protocol(true)
+                .build();
+        final List<Document> documents = new ArrayList<>();
+
+        final CountDownLatch verifyContentSentLatch = new CountDownLatch(1);
+
+        final AtomicInteger requestsReceived = new AtomicInteger(0);
+
+        // This is the fake server, checks that only feed requests ask for replies to be streamed.
+        ApacheGatewayConnection.HttpClientFactory mockFactory = mockHttpClientFactory(post -> {
+            final Header header = post.getFirstHeader(Headers.STREAM_REPLIES);
+            if (requestsReceived.incrementAndGet() == 1) {
+                // This is handshake, it has no replies.
+                assert (header == null);
+                return httpResponse("clientId", "3");
+            }
+            assertNotNull(header);
+            assertThat(header.getValue(), is("true"));
+            // Test is done.
+            verifyContentSentLatch.countDown();
+            return httpResponse("clientId", "3");
+        });
+
+        ApacheGatewayConnection apacheGatewayConnection =
+                new ApacheGatewayConnection(
+                        endpoint,
+                        feedParams,
+                        clusterSpecificRoute,
+                        connectionParams,
+                        mockFactory,
+                        "clientId");
+        apacheGatewayConnection.connect();
+        apacheGatewayConnection.handshake();
+
+        documents.add(createDoc("42", "Hello, I a JSON doc.", true));
+
+        apacheGatewayConnection.writeOperations(documents);
+        assertTrue(verifyContentSentLatch.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testCompressingEntity() throws IOException {
         final String testString = "Hello world";
-        InputStream stream = new ByteArrayInputStream(testString.getBytes(StandardCharsets.UTF_8));
-        // Send in test data to method.
-        InputStreamEntity inputStreamEntity = ApacheGatewayConnection.zipAndCreateEntity(stream);
-        // Verify zipped data by comparing unzipped data with test data.
-        final String rawContent = TestUtils.zipStreamToString(inputStreamEntity.getContent());
-        assert(testString.equals(rawContent));
+        ByteBuffer[] buffers = new ByteBuffer[] { ByteBuffer.wrap("Hello ".getBytes(StandardCharsets.UTF_8)),
+                                                  ByteBuffer.wrap("world".getBytes(StandardCharsets.UTF_8)) };
+        ByteBuffersEntity entity = new ByteBuffersEntity(buffers, true);
+        // Verify zipped data, as written and as read, by comparing unzipped data with test data.
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        entity.writeTo(written);
+        assertEquals(testString, TestUtils.zipStreamToString(new ByteArrayInputStream(written.toByteArray())));
+        assertEquals(testString, TestUtils.zipStreamToString(entity.getContent()));
+        assertEquals("The buffers are not consumed", 6, buffers[0].remaining());
     }
 
     /**
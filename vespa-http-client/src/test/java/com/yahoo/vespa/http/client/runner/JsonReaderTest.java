@@ -7,8 +7,10 @@ import org.junit.Test;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.io.SequenceInputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -97,6 +99,35 @@ public class JsonReaderTest {
         public String getStatsAsJson() { return null; }
     }
 
+    /** A stream of the same byte repeated a number of times, which are not held in memory */
+    private static class RepeatedByteInputStream extends InputStream {
+
+        private final byte value;
+        private long remaining;
+
+        RepeatedByteInputStream(byte value, long length) {
+            this.value = value;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() {
+            if (remaining == 0) return -1;
+            remaining--;
+            return value & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            if (remaining == 0) return -1;
+            int read = (int)Math.min(length, remaining);
+            Arrays.fill(buffer, offset, offset + read, value);
+            remaining -= read;
+            return read;
+        }
+
+    }
+
     final TestFeedClient session = new TestFeedClient();
     final AtomicInteger numSent = new AtomicInteger(0);
 
@@ -147,6 +178,60 @@ public class JsonReaderTest {
         assertThat(session.documentIds.get(0), is(doc5_id));
     }
 
+    @Test
+    public void testDocumentIdsAndDataAreReadFromBytes() throws Exception {
+        String escapedIdDoc = "{\"put\": \"id:unittest:smoke::\\\"quoted\\\" \\u00e6\", " +
+                              "\"fields\": { \"text\": \"} ] { [ \\\" , \\\\\", \"id\": \"not the id\" }}";
+        InputStream inputStream = new ByteArrayInputStream(
+                ("[" + escapedIdDoc + "," + doc3 + "]").getBytes(StandardCharsets.UTF_8));
+        JsonReader.read(inputStream, session, numSent);
+        assertThat(session.documentIds.size(), is(2));
+        assertThat(session.documentIds.get(0), is("id:unittest:smoke::\"quoted\" \u00e6"));
+        assertThat(session.datas.get(0).toString(), is(escapedIdDoc));
+        assertThat(session.documentIds.get(1), is("id:unittest:testarray::whee"));
+        assertThat(session.datas.get(1).toString(), is(doc3));
+    }
+
+    @Test
+    public void testDocumentLargerThanTheInitialBuffer() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 50000; i++)
+            text.append("naïve ");
+        String largeDoc = inputJson(
+                "{",
+                "    'put': '" + doc2_id + "',",
+                "    'fields': {",
+                "        'something': '" + text + "'",
+                "    }",
+                "}");
+        InputStream inputStream = new ByteArrayInputStream(
+                ("[" + doc1 + ", " + largeDoc + ", " + doc3 + "]").getBytes(StandardCharsets.UTF_8));
+        JsonReader.read(inputStream, session, numSent);
+        assertThat(session.documentIds.size(), is(3));
+        assertThat(session.documentIds.get(1), is(doc2_id));
+        assertThat(session.datas.get(0).toString(), is(doc1));
+        assertThat(session.datas.get(1).toString(), is(largeDoc));
+        assertThat(session.datas.get(2).toString(), is(doc3));
+    }
+
+    @Test
+    public void testDocumentLargerThanTheMaxSize() throws Exception {
+        InputStream inputStream = new SequenceInputStream(
+                new ByteArrayInputStream(("[" + doc1 + ", {\"put\": \"" + doc2_id + "\", \"fields\": {\"something\": \"")
+                                                 .getBytes(StandardCharsets.UTF_8)),
+                new SequenceInputStream(new RepeatedByteInputStream((byte)'x', 51 * 1024 * 1024),
+                                        new ByteArrayInputStream("\"}}]".getBytes(StandardCharsets.UTF_8))));
+        try {
+            JsonReader.read(inputStream, session, numSent);
+            fail("Expected an exception");
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), is("Document at byte " + (doc1.length() + 3) +
+                                          " is larger than the max size of 52428800 bytes"));
+        }
+        assertThat(session.documentIds.size(), is(1));
+        assertThat(session.documentIds.get(0), is(doc1_id));
+    }
+
     @Test
     public void simpleMicroBenchmarkTest() throws Exception {
         StringBuilder stream = new StringBuilder();
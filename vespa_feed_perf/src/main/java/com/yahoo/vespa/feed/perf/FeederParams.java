@@ -21,6 +21,7 @@ public class FeederParams {
     private Route route = Route.parse("default");
     private String configId = "client";
     private boolean serialTransferEnabled = false;
+    private int numMessengerThreads = 1;
 
     public InputStream getStdIn() {
         return stdIn;
@@ -76,12 +77,25 @@ public class FeederParams {
         return this;
     }
 
+    public int getNumMessengerThreads() {
+        return numMessengerThreads;
+    }
+
+    public FeederParams setNumMessengerThreads(int numThreads) {
+        this.numMessengerThreads = numThreads;
+        return this;
+    }
+
     public FeederParams parseArgs(String... args) throws ParseException {
         Options opts = new Options();
         opts.addOption("s", "serial", false, "use serial transfer mode, at most 1 pending operation");
+        opts.addOption("n", "numthreads", true, "number of messagebus messenger threads, default 1");
 
         CommandLine cmd = new DefaultParser().parse(opts, args);
         serialTransferEnabled = cmd.hasOption("s");
+        if (cmd.hasOption("n")) {
+            numMessengerThreads = Integer.parseInt(cmd.getOptionValue("n").trim());
+        }
         route = newRoute(cmd.getArgs());
         return this;
     }
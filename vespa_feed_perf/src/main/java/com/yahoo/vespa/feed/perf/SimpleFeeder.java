@@ -55,7 +55,7 @@ public class SimpleFeeder implements ReplyHandler {
         this.out = params.getStdOut();
         this.err = params.getStdErr();
         this.route = params.getRoute();
-        this.mbus = newMessageBus(docTypeMgr, params.getConfigId());
+        this.mbus = newMessageBus(docTypeMgr, params.getConfigId(), params.getNumMessengerThreads());
         this.session = newSession(mbus, this, params.isSerialTransferEnabled());
         this.docTypeMgr.configure(params.getConfigId());
     }
@@ -120,7 +120,7 @@ public class SimpleFeeder implements ReplyHandler {
     }
 
     @Override
-    public void handleReply(Reply reply) {
+    public synchronized void handleReply(Reply reply) {
         if (failure != null) {
             return;
         }
@@ -162,8 +162,9 @@ public class SimpleFeeder implements ReplyHandler {
         return out.toString();
     }
 
-    private static RPCMessageBus newMessageBus(DocumentTypeManager docTypeMgr, String configId) {
-        return new RPCMessageBus(new MessageBusParams().addProtocol(new DocumentProtocol(docTypeMgr)),
+    private static RPCMessageBus newMessageBus(DocumentTypeManager docTypeMgr, String configId, int numMessengerThreads) {
+        return new RPCMessageBus(new MessageBusParams().addProtocol(new DocumentProtocol(docTypeMgr))
+                                                       .setNumMessengerThreads(numMessengerThreads),
                                  new RPCNetworkParams().setSlobrokConfigId(configId),
                                  configId);
     }
@@ -48,6 +48,9 @@ public class FeederParamsTest {
         assertFalse(params.isSerialTransferEnabled());
         params.setSerialTransfer(true);
         assertTrue(params.isSerialTransferEnabled());
+
+        params.setNumMessengerThreads(4);
+        assertEquals(4, params.getNumMessengerThreads());
     }
 
     @Test
@@ -59,6 +62,7 @@ public class FeederParamsTest {
         assertEquals(Route.parse("default"), params.getRoute());
         assertEquals("client", params.getConfigId());
         assertFalse(params.isSerialTransferEnabled());
+        assertEquals(1, params.getNumMessengerThreads());
     }
 
     @Test
@@ -71,6 +75,14 @@ public class FeederParamsTest {
         assertTrue(new FeederParams().parseArgs("--serial", "foo").isSerialTransferEnabled());
     }
 
+    @Test
+    public void requireThatNumThreadsOptionIsParsed() throws ParseException {
+        assertEquals(1, new FeederParams().parseArgs().getNumMessengerThreads());
+        assertEquals(4, new FeederParams().parseArgs("-n", "4").getNumMessengerThreads());
+        assertEquals(4, new FeederParams().parseArgs("--numthreads", "4", "foo").getNumMessengerThreads());
+        assertEquals(Route.parse("foo"), new FeederParams().parseArgs("--numthreads", "4", "foo").getRoute());
+    }
+
     @Test
     public void requireThatArgumentsAreParsedAsRoute() throws ParseException {
         assertEquals(Route.parse("foo bar"), new FeederParams().parseArgs("foo", "bar").getRoute());
@@ -1,6 +1,7 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.vespa.http.server;
 
+import com.yahoo.container.jdisc.AsyncHttpResponse;
 import com.yahoo.container.jdisc.HttpRequest;
 import com.yahoo.container.jdisc.HttpResponse;
 import com.yahoo.document.DocumentTypeManager;
@@ -9,6 +10,8 @@ import com.yahoo.documentapi.messagebus.protocol.DocumentProtocol;
 import com.yahoo.documentapi.metrics.DocumentOperationType;
 import com.yahoo.jdisc.Metric;
 import com.yahoo.jdisc.ReferencedResource;
+import com.yahoo.jdisc.handler.CompletionHandler;
+import com.yahoo.jdisc.handler.ContentChannel;
 import com.yahoo.log.LogLevel;
 import com.yahoo.messagebus.Message;
 import com.yahoo.messagebus.ReplyHandler;
@@ -24,12 +27,21 @@ import com.yahoo.yolean.Exceptions;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.Optional;
+import java.util.Queue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
 import static com.yahoo.messagebus.ErrorCode.SEND_QUEUE_FULL;
@@ -46,6 +58,11 @@ class ClientFeederV3 {
     protected static final Logger log = Logger.getLogger(ClientFeederV3.class.getName());
     // This is for all clients on this gateway, for load balancing from client.
     private final static AtomicInteger outstandingOperations = new AtomicInteger(0);
+    // The source session is shared by all clients on this gateway, so any reply may open its send window.
+    // Each reply wakes the feeder which has waited the longest for it.
+    private final static Queue<Runnable> sendWindowWaiters = new ConcurrentLinkedQueue<>();
+    private final static AtomicLong repliesReceived = new AtomicLong(0);
+    private final static long maxSendWindowWaitMillis = 100;
     private final BlockingQueue<OperationStatus> feedReplies = new LinkedBlockingQueue<>();
     private final ReferencedResource<SharedSourceSession> sourceSession;
     private final String clientId;
@@ -59,6 +76,7 @@ class ClientFeederV3 {
     private final AtomicInteger ongoingRequests = new AtomicInteger(0);
     private String hostName;
     private AtomicInteger threadsAvailableForFeeding;
+    private final Executor feedExecutor;
 
     ClientFeederV3(
             ReferencedResource<SharedSourceSession> sourceSession,
@@ -67,12 +85,17 @@ class ClientFeederV3 {
             String clientId,
             Metric metric,
             ReplyHandler feedReplyHandler,
-            AtomicInteger threadsAvailableForFeeding) {
+            AtomicInteger threadsAvailableForFeeding,
+            Executor feedExecutor) {
         this.sourceSession = sourceSession;
         this.clientId = clientId;
-        this.feedReplyHandler = feedReplyHandler;
+        this.feedReplyHandler = reply -> {
+            feedReplyHandler.handleReply(reply);
+            sendWindowOpened();
+        };
         this.metric = metric;
         this.threadsAvailableForFeeding = threadsAvailableForFeeding;
+        this.feedExecutor = feedExecutor;
         this.streamReaderV3 = new StreamReaderV3(feedReaderFactory, docTypeManager);
         this.hostName = HostName.getLocalhost();
     }
@@ -132,13 +155,17 @@ class ClientFeederV3 {
             }
 
             InputStream inputStream = StreamReaderV3.unzipStreamIfNeeded(request);
+            // Handshake requests do not have DATA_FORMAT, we do not want to give responses to
+            // handshakes as it won't be processed by the client.
+            boolean returnReplies = request.getJDiscRequest().headers().get(Headers.DATA_FORMAT) != null;
+            if (returnReplies && feederSettings.streamReplies) {
+                return new StreamingFeedResponse(feederSettings, inputStream);
+            }
             final BlockingQueue<OperationStatus> replies = new LinkedBlockingQueue<>();
             try {
                 feed(feederSettings, inputStream, replies, threadsAvailableForFeeding);
                 synchronized (monitor) {
-                    // Handshake requests do not have DATA_FORMAT, we do not want to give responses to
-                    // handshakes as it won't be processed by the client.
-                    if (request.getJDiscRequest().headers().get(Headers.DATA_FORMAT) != null) {
+                    if (returnReplies) {
                         transferPreviousRepliesToResponse(replies);
                     }
                 }
@@ -148,11 +175,7 @@ class ClientFeederV3 {
                 log.log(LogLevel.WARNING, "Unhandled exception while feeding: "
                         + Exceptions.toMessageString(e), e);
             } finally {
-                try {
-                    replies.add(createOperationStatus("-", "-", ErrorCode.END_OF_FEED, false, null));
-                } catch (InterruptedException e) {
-                    // NOP, we are already exiting the thread
-                }
+                replies.add(createOperationStatus("-", "-", ErrorCode.END_OF_FEED, false, null));
             }
             return new FeedResponse(200, replies, 3 /* protocol version */, clientId, outstandingOperations.get(), hostName);
         } finally {
@@ -161,6 +184,56 @@ class ClientFeederV3 {
         }
     }
 
+    private static void sendWindowOpened() {
+        repliesReceived.incrementAndGet();
+        wakeLongestWaiter();
+    }
+
+    private static void wakeLongestWaiter() {
+        Runnable waiter = sendWindowWaiters.poll();
+        if (waiter != null) {
+            waiter.run();
+        }
+    }
+
+    /**
+     * Registers the given waiter to be run once, by the first reply received after it is registered, unless a reply
+     * was received since the given count was read. Returns whether the waiter is registered, or has already been run;
+     * if not, the caller should try again at once, as that reply may have made room for another message.
+     */
+    private static boolean awaitReply(Runnable waiter, long repliesBeforeSend) {
+        sendWindowWaiters.add(waiter);
+        if (repliesReceived.get() == repliesBeforeSend) {
+            return true;
+        }
+        // The reply may have found no waiter to wake. If we fail to withdraw, it (or a later one) has woken this.
+        return ! sendWindowWaiters.remove(waiter);
+    }
+
+    /**
+     * Waits until a reply has been received since the given count was read, as that may have made room for
+     * another message in the send window, but no longer than maxSendWindowWaitMillis.
+     */
+    private static void awaitSendWindow(long repliesBeforeSend) throws InterruptedException {
+        Semaphore wakeup = new Semaphore(0);
+        Runnable waiter = wakeup::release;
+        if ( ! awaitReply(waiter, repliesBeforeSend)) {
+            return;
+        }
+        try {
+            if (wakeup.tryAcquire(maxSendWindowWaitMillis, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            if ( ! sendWindowWaiters.remove(waiter)) {
+                wakeLongestWaiter(); // pass on the wakeup this got, as it will not use it
+            }
+            throw e;
+        }
+        // If this fails, a reply woke this just as it timed out, and this uses it by trying again
+        sendWindowWaiters.remove(waiter);
+    }
+
     private int getOverloadReturnCode(HttpRequest request) {
         if (request.getHeader(Headers.SILENTUPGRADE) != null ) {
             return 299;
@@ -204,21 +277,19 @@ class ClientFeederV3 {
             FeederSettings settings,
             DocumentOperationMessageV3 msg,
             AtomicInteger threadsAvailableForFeeding) throws InterruptedException {
-        Result result = null;
-        while (result == null || result.getError().getCode() == SEND_QUEUE_FULL) {
+        while (true) {
             msg.getMessage().pushHandler(feedReplyHandler);
 
             if (settings.denyIfBusy && threadsAvailableForFeeding.get() < 1) {
                 return sourceSession.getResource().sendMessage(msg.getMessage());
-            } else {
-                result = sourceSession.getResource().sendMessageBlocking(msg.getMessage());
             }
-            if (result.isAccepted()) {
+            long repliesBeforeSend = repliesReceived.get();
+            Result result = sourceSession.getResource().sendMessageBlocking(msg.getMessage());
+            if (result.isAccepted() || result.getError().getCode() != SEND_QUEUE_FULL) {
                 return result;
             }
-            Thread.sleep(100);
+            awaitSendWindow(repliesBeforeSend);
         }
-        return result;
     }
 
     private void feed(
@@ -244,28 +315,172 @@ class ClientFeederV3 {
                         ErrorCode.ERROR, false, msg.get().getMessage()));
                 continue;
             }
+            handleResult(msg.get(), result, repliesFromOldMessages);
+        }
+    }
 
-            if (result.isAccepted()) {
-                outstandingOperations.incrementAndGet();
-                updateOpsPerSec();
-                log(LogLevel.DEBUG, "Sent message successfully, document id: ", msg.get().getOperationId());
-            } else if (!result.getError().isFatal()) {
-                repliesFromOldMessages.add(createOperationStatus(msg.get().getOperationId(), result.getError().getMessage(),
-                        ErrorCode.TRANSIENT_ERROR, false, msg.get().getMessage()));
-                continue;
-            } else {
-                // should probably not happen, but everybody knows stuff that
-                // shouldn't happen, happens all the time
-                boolean isConditionNotMet = result.getError().getCode() == DocumentProtocol.ERROR_TEST_AND_SET_CONDITION_FAILED;
-                repliesFromOldMessages.add(createOperationStatus(msg.get().getOperationId(), result.getError().getMessage(),
-                        ErrorCode.ERROR, isConditionNotMet, msg.get().getMessage()));
-                continue;
+    private void handleResult(DocumentOperationMessageV3 msg, Result result, BlockingQueue<OperationStatus> repliesFromOldMessages) {
+        if (result.isAccepted()) {
+            outstandingOperations.incrementAndGet();
+            updateOpsPerSec();
+            log(LogLevel.DEBUG, "Sent message successfully, document id: ", msg.getOperationId());
+        } else if (!result.getError().isFatal()) {
+            repliesFromOldMessages.add(createOperationStatus(msg.getOperationId(), result.getError().getMessage(),
+                    ErrorCode.TRANSIENT_ERROR, false, msg.getMessage()));
+        } else {
+            // should probably not happen, but everybody knows stuff that
+            // shouldn't happen, happens all the time
+            boolean isConditionNotMet = result.getError().getCode() == DocumentProtocol.ERROR_TEST_AND_SET_CONDITION_FAILED;
+            repliesFromOldMessages.add(createOperationStatus(msg.getOperationId(), result.getError().getMessage(),
+                    ErrorCode.ERROR, isConditionNotMet, msg.getMessage()));
+        }
+    }
+
+    /**
+     * A response which feeds the operations of its request while it is rendered, and writes replies to the client
+     * as they are received. No thread is held while the send window is full: The feed is then suspended, and
+     * resumed on the feed executor, where it continues reading the request, when a reply has been received.
+     */
+    private class StreamingFeedResponse extends AsyncHttpResponse implements Runnable {
+
+        private final FeederSettings settings;
+        private final InputStream requestInputStream;
+        /** The statuses of operations which could not be sent */
+        private final BlockingQueue<OperationStatus> failures = new LinkedBlockingQueue<>();
+        private final Runnable resumer = this::resume;
+        /** The operation which did not fit in the send window when this was suspended, if any */
+        private Optional<DocumentOperationMessageV3> unsent = Optional.empty();
+        private OutputStream output;
+        private ContentChannel channel;
+        private CompletionHandler completionHandler;
+
+        StreamingFeedResponse(FeederSettings settings, InputStream requestInputStream) {
+            super(200);
+            this.settings = settings;
+            this.requestInputStream = requestInputStream;
+            headers().add(Headers.SESSION_ID, clientId);
+            headers().add(Headers.VERSION, "3");
+            headers().add(Headers.OUTSTANDING_REQUESTS, Integer.toString(outstandingOperations.get()));
+            headers().add(Headers.HOSTNAME, hostName);
+        }
+
+        @Override
+        public void render(OutputStream output, ContentChannel channel, CompletionHandler completionHandler) {
+            this.output = output;
+            this.channel = channel;
+            this.completionHandler = completionHandler;
+            // The handler does not allow async responses, so the response must be committed before this returns
+            channel.write(ByteBuffer.allocate(0), null);
+            ongoingRequests.incrementAndGet();
+            run();
+        }
+
+        /** Feeds operations until the request is read, or this is suspended */
+        @Override
+        public void run() {
+            threadsAvailableForFeeding.decrementAndGet();
+            try {
+                if (feed()) {
+                    finish();
+                }
+            } catch (Throwable e) {
+                log.log(LogLevel.WARNING, "Unhandled exception while feeding: " + Exceptions.toMessageString(e), e);
+                finish();
+            } finally {
+                threadsAvailableForFeeding.incrementAndGet();
+            }
+        }
+
+        private void resume() {
+            try {
+                feedExecutor.execute(this);
+            } catch (RejectedExecutionException e) {
+                run(); // rather than leaving the feed suspended with no reply to resume it
+            }
+        }
+
+        /** Returns true if all operations in the request were handled, and false if this was suspended first */
+        private boolean feed() throws IOException {
+            while (true) {
+                writeReplies();
+                if ( ! unsent.isPresent()) {
+                    unsent = pullMessageFromRequest(settings, requestInputStream, failures);
+                    if ( ! unsent.isPresent()) {
+                        return true;
+                    }
+                    setMessageParameters(unsent.get(), settings);
+                }
+                DocumentOperationMessageV3 msg = unsent.get();
+                msg.getMessage().pushHandler(feedReplyHandler);
+                long repliesBeforeSend = repliesReceived.get();
+                final Result result;
+                try {
+                    result = sourceSession.getResource().sendMessage(msg.getMessage());
+                } catch (RuntimeException e) {
+                    unsent = Optional.empty();
+                    failures.add(createOperationStatus(msg.getOperationId(), Exceptions.toMessageString(e),
+                            ErrorCode.ERROR, false, msg.getMessage()));
+                    continue;
+                }
+                boolean mayWait = ! (settings.denyIfBusy && threadsAvailableForFeeding.get() < 1);
+                if ( ! result.isAccepted() && result.getError().getCode() == SEND_QUEUE_FULL && mayWait) {
+                    if (awaitReply(resumer, repliesBeforeSend)) {
+                        return false; // this may already be running again on another thread, so touch nothing
+                    }
+                    continue;
+                }
+                unsent = Optional.empty();
+                handleResult(msg, result, failures);
             }
         }
+
+        /** Writes the statuses of operations which could not be sent, and the replies received so far */
+        private void writeReplies() throws IOException {
+            boolean wroteReplies = false;
+            OperationStatus status = failures.poll();
+            while (status != null) {
+                FeedResponse.renderStatus(status, output);
+                wroteReplies = true;
+                status = failures.poll();
+            }
+            synchronized (monitor) {
+                status = feedReplies.poll();
+                while (status != null) {
+                    outstandingOperations.decrementAndGet();
+                    FeedResponse.renderStatus(status, output);
+                    wroteReplies = true;
+                    status = feedReplies.poll();
+                }
+            }
+            if (wroteReplies) {
+                output.flush();
+            }
+        }
+
+        private void finish() {
+            try {
+                writeReplies();
+            } catch (IOException e) {
+                log(LogLevel.DEBUG, "Could not write feed replies: ", Exceptions.toMessageString(e));
+            } finally {
+                channel.close(completionHandler);
+                ongoingRequests.decrementAndGet();
+            }
+        }
+
+        @Override
+        public String getContentType() {
+            return "text/plain";
+        }
+
+        @Override
+        public String getCharacterEncoding() {
+            return StandardCharsets.US_ASCII.name();
+        }
+
     }
 
-    private OperationStatus createOperationStatus(String id, String message, ErrorCode code, boolean isConditionNotMet, Message msg)
-            throws InterruptedException {
+    private OperationStatus createOperationStatus(String id, String message, ErrorCode code, boolean isConditionNotMet, Message msg) {
         String traceMessage = msg != null && msg.getTrace() != null &&  msg.getTrace().getLevel() > 0
                 ? msg.getTrace().toString()
                 : "";
@@ -46,6 +46,7 @@ public class FeedHandlerV3 extends LoggingRequestHandler {
     private final Metric metric;
     private final Object monitor = new Object();
     private final AtomicInteger threadsAvailableForFeeding;
+    private final Executor executor;
     private static final Logger log = Logger.getLogger(FeedHandlerV3.class.getName());
 
     public FeedHandlerV3(
@@ -57,6 +58,7 @@ public class FeedHandlerV3 extends LoggingRequestHandler {
             ThreadpoolConfig threadpoolConfig,
             DocumentApiMetrics metricsHelper) throws Exception {
         super(executor, accessLog);
+        this.executor = executor;
         docTypeManager = new DocumentTypeManager(documentManagerConfig);
         this.sessionCache = sessionCache;
         feedReplyHandler = new FeedReplyReader(metric, metricsHelper);
@@ -94,7 +96,8 @@ public class FeedHandlerV3 extends LoggingRequestHandler {
                                 clientId,
                                 metric,
                                 feedReplyHandler,
-                                threadsAvailableForFeeding));
+                                threadsAvailableForFeeding,
+                                executor));
             }
             clientFeederV3 = clientFeederByClientId.get(clientId);
         }
@@ -67,7 +67,12 @@ public class FeedResponse extends HttpResponse {
         }
     }
 
-    private byte[] toBytes(String s) {
+    /** Renders a single operation status the way {@link #render} does */
+    static void renderStatus(OperationStatus status, OutputStream output) throws IOException {
+        output.write(toBytes(status.render()));
+    }
+
+    private static byte[] toBytes(String s) {
         byte[] b = new byte[s.length()];
         for (int i = 0; i < b.length; ++i) {
             b[i] = (byte) s.charAt(i); // renderSingleStatus ensures ASCII only
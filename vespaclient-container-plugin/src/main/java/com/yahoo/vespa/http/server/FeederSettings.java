@@ -20,6 +20,7 @@ public class FeederSettings {
     public final DataFormat dataFormat;
     public final String priority;
     public final Integer traceLevel;
+    public final boolean streamReplies;
 
     public FeederSettings(HttpRequest request) {
         {
@@ -70,6 +71,14 @@ public class FeederSettings {
                 traceLevel = null;
             }
         }
+        {
+            String tmpStreamReplies = request.getHeader(Headers.STREAM_REPLIES);
+            if (tmpStreamReplies != null) {
+                streamReplies = Boolean.parseBoolean(tmpStreamReplies);
+            } else {
+                streamReplies = false;
+            }
+        }
     }
 
 }
@@ -0,0 +1,244 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.http.server;
+
+import com.yahoo.container.jdisc.AsyncHttpResponse;
+import com.yahoo.container.jdisc.ContentChannelOutputStream;
+import com.yahoo.container.jdisc.HttpRequest;
+import com.yahoo.documentapi.metrics.DocumentApiMetrics;
+import com.yahoo.jdisc.ReferencedResource;
+import com.yahoo.jdisc.References;
+import com.yahoo.jdisc.handler.CompletionHandler;
+import com.yahoo.jdisc.handler.ContentChannel;
+import com.yahoo.messagebus.ErrorCode;
+import com.yahoo.messagebus.Message;
+import com.yahoo.messagebus.MessageBus;
+import com.yahoo.messagebus.MessageBusParams;
+import com.yahoo.messagebus.ReplyHandler;
+import com.yahoo.messagebus.Result;
+import com.yahoo.messagebus.SourceSessionParams;
+import com.yahoo.messagebus.shared.SharedMessageBus;
+import com.yahoo.messagebus.shared.SharedSourceSession;
+import com.yahoo.metrics.simple.MetricReceiver;
+import com.yahoo.text.Utf8;
+import com.yahoo.vespa.http.client.core.Headers;
+import com.yahoo.vespaxmlparser.MockFeedReaderFactory;
+import com.yahoo.vespaxmlparser.VespaXMLFeedReader;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests feeding with replies streamed to the client while the request is read.
+ */
+public class ClientFeederV3Test {
+
+    private final AtomicInteger threadsAvailable = new AtomicInteger(10);
+    private final Queue<Runnable> resumedFeeds = new ArrayDeque<>();
+    private final ReplyChannel channel = new ReplyChannel();
+
+    @Test
+    public void testRepliesReceivedWhileFeedingAreWrittenBeforeReadingOn() throws IOException {
+        MockSession session = new MockSession(10);
+        session.replyAtOnce = true;
+        ClientFeeder feeder = createFeeder(session);
+
+        render((AsyncHttpResponse) feeder.handleRequest(streamingRequest("op1", "op2", "op3")));
+        assertEquals(3, session.sent.get());
+        assertEquals(0, feeder.repliesWrittenBeforeReading.get(0).intValue());
+        assertEquals(1, feeder.repliesWrittenBeforeReading.get(1).intValue());
+        assertEquals(2, feeder.repliesWrittenBeforeReading.get(2).intValue());
+        assertTrue(channel.closed);
+        assertEquals(3, channel.written().split("\n").length);
+        assertTrue(channel.written().startsWith("op1 OK "));
+    }
+
+    @Test
+    public void testFeedHoldsNoThreadWhileTheSendWindowIsFullAndIsResumedByAReply() throws IOException {
+        MockSession session = new MockSession(1);
+        ClientFeeder feeder = createFeeder(session);
+
+        render((AsyncHttpResponse) feeder.handleRequest(streamingRequest("op1", "op2")));
+        assertEquals("The rendering thread returned while op2 waits for the send window", 1, session.sent.get());
+        assertEquals(2, session.attempts.get());
+        assertEquals(2, feeder.repliesWrittenBeforeReading.size());
+        assertFalse(channel.closed);
+        assertTrue(resumedFeeds.isEmpty());
+        assertEquals(10, threadsAvailable.get());
+
+        session.replyToAll();
+        assertEquals("The reply resumes the feed on the executor", 1, resumedFeeds.size());
+        resumedFeeds.remove().run();
+        assertEquals(2, session.sent.get());
+        assertEquals(2, feeder.repliesWrittenBeforeReading.size());
+        assertTrue(channel.closed);
+        assertTrue(channel.written().startsWith("op1 OK "));
+        assertEquals(10, threadsAvailable.get());
+    }
+
+    @Test
+    public void testReplyArrivingBeforeTheFeedIsSuspendedIsNotLost() throws IOException {
+        MockSession session = new MockSession(1);
+        session.replyWhenFull = true;
+        ClientFeeder feeder = createFeeder(session);
+
+        render((AsyncHttpResponse) feeder.handleRequest(streamingRequest("op1", "op2")));
+        assertTrue("The feed tried again at once rather than waiting for a reply which was already received",
+                   channel.closed);
+        assertTrue(resumedFeeds.isEmpty());
+        assertEquals(2, session.sent.get());
+        assertEquals(3, session.attempts.get());
+    }
+
+    private ClientFeeder createFeeder(MockSession session) {
+        return new ClientFeeder(new ReferencedResource<>(session, References.fromResource(session)),
+                                new DummyMetric(),
+                                new FeedReplyReader(new DummyMetric(),
+                                                    new DocumentApiMetrics(MetricReceiver.nullImplementation, "tester")),
+                                threadsAvailable,
+                                resumedFeeds::add);
+    }
+
+    private static HttpRequest streamingRequest(String ... operationIds) {
+        StringBuilder body = new StringBuilder();
+        for (String operationId : operationIds) {
+            body.append(operationId).append(" 0\n");
+        }
+        HttpRequest request = HttpRequest.createTestRequest("http://foo.bar:19020/reserved-for-internal-use/feedapi",
+                                                            com.yahoo.jdisc.http.HttpRequest.Method.POST,
+                                                            new ByteArrayInputStream(Utf8.toBytes(body.toString())));
+        request.getJDiscRequest().headers().add(Headers.VERSION, "3");
+        request.getJDiscRequest().headers().add(Headers.CLIENT_ID, "clientId");
+        request.getJDiscRequest().headers().add(Headers.DATA_FORMAT, "JSON_UTF8");
+        request.getJDiscRequest().headers().add(Headers.STREAM_REPLIES, "true");
+        return request;
+    }
+
+    private void render(AsyncHttpResponse response) throws IOException {
+        response.render(new ContentChannelOutputStream(channel), channel, null);
+        assertTrue("The response is committed before rendering returns", channel.writes > 0);
+    }
+
+    /** A feeder which reads one operation per line, and records how many replies were written before each */
+    private class ClientFeeder extends ClientFeederV3 {
+
+        private final List<Integer> repliesWrittenBeforeReading = new ArrayList<>();
+
+        ClientFeeder(ReferencedResource<SharedSourceSession> session, DummyMetric metric, ReplyHandler replyHandler,
+                     AtomicInteger threadsAvailable, Executor feedExecutor) {
+            super(session, new MockFeedReaderFactory(), null, "clientId", metric, replyHandler, threadsAvailable, feedExecutor);
+        }
+
+        @Override
+        protected DocumentOperationMessageV3 getNextMessage(
+                String operationId, InputStream requestInputStream, FeederSettings settings) throws Exception {
+            while (true) {
+                int data = requestInputStream.read();
+                if (data == -1 || data == (char)'\n') {
+                    break;
+                }
+            }
+            String written = channel.written();
+            repliesWrittenBeforeReading.add(written.isEmpty() ? 0 : written.split("\n").length);
+            return DocumentOperationMessageV3.newRemoveMessage(new VespaXMLFeedReader.Operation(), operationId);
+        }
+
+    }
+
+    /** A session with a send window of the given size, which holds messages until told to reply to them */
+    private static class MockSession extends SharedSourceSession {
+
+        private final int windowSize;
+        private final Queue<Runnable> pendingReplies = new ArrayDeque<>();
+        private final AtomicInteger attempts = new AtomicInteger(0);
+        private final AtomicInteger sent = new AtomicInteger(0);
+        /** Whether to reply to each message as it is sent */
+        boolean replyAtOnce = false;
+        /** Whether to reply to a pending message when the window is found to be full, as if it raced with the sender */
+        boolean replyWhenFull = false;
+
+        MockSession(int windowSize) {
+            super(new SharedMessageBus(new MessageBus(new MockNetwork(), new MessageBusParams())),
+                  new SourceSessionParams());
+            this.windowSize = windowSize;
+        }
+
+        @Override
+        public Result sendMessageBlocking(Message msg) {
+            throw new AssertionError("Streaming feeds must not block on the send window");
+        }
+
+        @Override
+        public Result sendMessage(Message msg) {
+            attempts.incrementAndGet();
+            ReplyHandler handler = msg.popHandler();
+            if (pendingReplies.size() >= windowSize) {
+                if (replyWhenFull) {
+                    replyWhenFull = false;
+                    pendingReplies.remove().run();
+                }
+                return new Result(ErrorCode.SEND_QUEUE_FULL, "queue full");
+            }
+            sent.incrementAndGet();
+            Runnable reply = () -> handler.handleReply(new MockReply(msg.getContext()));
+            if (replyAtOnce) {
+                reply.run();
+            } else {
+                pendingReplies.add(reply);
+            }
+            return Result.ACCEPTED;
+        }
+
+        void replyToAll() {
+            while ( ! pendingReplies.isEmpty()) {
+                pendingReplies.remove().run();
+            }
+        }
+
+    }
+
+    private static class ReplyChannel implements ContentChannel {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private int writes = 0;
+        private boolean closed = false;
+
+        @Override
+        public void write(ByteBuffer buffer, CompletionHandler handler) {
+            writes++;
+            while (buffer.hasRemaining()) {
+                bytes.write(buffer.get());
+            }
+            if (handler != null) {
+                handler.completed();
+            }
+        }
+
+        @Override
+        public void close(CompletionHandler handler) {
+            closed = true;
+            if (handler != null) {
+                handler.completed();
+            }
+        }
+
+        String written() {
+            return Utf8.toString(bytes.toByteArray());
+        }
+
+    }
+
+}
@@ -28,6 +28,7 @@ import java.io.IOException;
 import java.io.InputStream;
 
 
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertTrue;
@@ -42,8 +43,8 @@ public class V3CongestionTestCase {
 
         private final DocumentOperationMessageV3 docOp;
 
-        ClientFeederWithMocks(ReferencedResource<SharedSourceSession> sourceSession, FeedReaderFactory feedReaderFactory, DocumentTypeManager docTypeManager, String clientId, Metric metric, ReplyHandler feedReplyHandler, AtomicInteger threadsAvailableForFeeding) {
-            super(sourceSession, feedReaderFactory, docTypeManager, clientId, metric, feedReplyHandler, threadsAvailableForFeeding);
+        ClientFeederWithMocks(ReferencedResource<SharedSourceSession> sourceSession, FeedReaderFactory feedReaderFactory, DocumentTypeManager docTypeManager, String clientId, Metric metric, ReplyHandler feedReplyHandler, AtomicInteger threadsAvailableForFeeding, Executor feedExecutor) {
+            super(sourceSession, feedReaderFactory, docTypeManager, clientId, metric, feedReplyHandler, threadsAvailableForFeeding, feedExecutor);
             // The operation to return from the client feeder.
             VespaXMLFeedReader.Operation op = new VespaXMLFeedReader.Operation();
             docOp = DocumentOperationMessageV3.newRemoveMessage(op, "operation id");
@@ -89,7 +90,8 @@ public class V3CongestionTestCase {
                 "clientID",
                 null/*metric*/,
                 new FeedReplyReader(null/*metric*/, new DocumentApiMetrics(MetricReceiver.nullImplementation, "tester")),
-                threadsAvail);
+                threadsAvail,
+                Runnable::run);
     }
 
     // A mock for message bus that can simulate blocking requests.
@@ -0,0 +1,90 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.slime;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of binary and JSON encoding and decoding of deep Slime objects.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SlimeBenchmark {
+
+    /** The nesting depth of the objects */
+    @Param({"3", "6"})
+    public int depth;
+
+    /** The number of fields of each kind in each object */
+    @Param({"4"})
+    public int width;
+
+    private Slime slime;
+    private byte[] binary;
+    private byte[] json;
+
+    @Setup
+    public void setup() throws IOException {
+        slime = new Slime();
+        fill(slime.setObject(), depth);
+        binary = BinaryFormat.encode(slime);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new JsonFormat(true).encode(out, slime);
+        json = out.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] binaryEncode() {
+        return BinaryFormat.encode(slime);
+    }
+
+    @Benchmark
+    public Slime binaryDecode() {
+        return BinaryFormat.decode(binary);
+    }
+
+    @Benchmark
+    public byte[] jsonEncode() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length);
+        new JsonFormat(true).encode(out, slime);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public Slime jsonDecode() {
+        return new JsonDecoder().decode(new Slime(), json);
+    }
+
+    private void fill(Cursor object, int remainingDepth) {
+        for (int i = 0; i < width; i++) {
+            object.setLong("long" + i, i * 1000003L);
+            object.setDouble("double" + i, i / 7.0);
+            object.setString("string" + i, "A string value number " + i);
+            object.setBool("bool" + i, i % 2 == 0);
+        }
+        if (remainingDepth == 0) return;
+
+        Cursor array = object.setArray("array");
+        for (int i = 0; i < width; i++)
+            fill(array.addObject(), remainingDepth - 1);
+        fill(object.setObject("child"), remainingDepth - 1);
+    }
+
+}
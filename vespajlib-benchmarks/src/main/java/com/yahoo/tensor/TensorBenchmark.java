@@ -0,0 +1,137 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.tensor;
+
+import com.yahoo.io.GrowableByteBuffer;
+import com.yahoo.tensor.serialization.TypedBinaryFormat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of tensor functions and tensor serialization, over dense vectors and matrices,
+ * sparse vectors and sparse matrices (which is how tensors combining several dimensions are currently represented).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TensorBenchmark {
+
+    /** The number of cells in each dimension of the tensors */
+    @Param({"256", "1024"})
+    public int size;
+
+    private Tensor denseVector1, denseVector2;
+    private Tensor denseMatrix, denseMatrixVector;
+    private Tensor sparseVector1, sparseVector2;
+    private Tensor sparseMatrix;
+
+    private byte[] denseVectorBytes, sparseVectorBytes;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(1);
+        denseVector1 = denseVector("x", size, random);
+        denseVector2 = denseVector("x", size, random);
+        denseMatrix = denseMatrix(size / 16, random);
+        denseMatrixVector = denseVector("y", size / 16, random);
+        sparseVector1 = sparseVector("x", size, random);
+        sparseVector2 = sparseVector("x", size, random);
+        sparseMatrix = sparseMatrix(size / 16, random);
+        denseVectorBytes = TypedBinaryFormat.encode(denseVector1);
+        sparseVectorBytes = TypedBinaryFormat.encode(sparseVector1);
+    }
+
+    @Benchmark
+    public Tensor denseDotProduct() {
+        return denseVector1.multiply(denseVector2).sum(Collections.emptyList());
+    }
+
+    @Benchmark
+    public Tensor denseMap() {
+        return denseVector1.map(value -> value * 2);
+    }
+
+    @Benchmark
+    public Tensor denseMatmul() {
+        return denseMatrix.matmul(denseMatrixVector, "y");
+    }
+
+    @Benchmark
+    public Tensor sparseDotProduct() {
+        return sparseVector1.multiply(sparseVector2).sum(Collections.emptyList());
+    }
+
+    @Benchmark
+    public Tensor sparseMatrixVectorProduct() {
+        return sparseMatrix.multiply(sparseVector1).sum(Collections.singletonList("x"));
+    }
+
+    @Benchmark
+    public byte[] encodeDenseVector() {
+        return TypedBinaryFormat.encode(denseVector1);
+    }
+
+    @Benchmark
+    public Tensor decodeDenseVector() {
+        return TypedBinaryFormat.decode(Optional.empty(), GrowableByteBuffer.wrap(denseVectorBytes));
+    }
+
+    @Benchmark
+    public byte[] encodeSparseVector() {
+        return TypedBinaryFormat.encode(sparseVector1);
+    }
+
+    @Benchmark
+    public Tensor decodeSparseVector() {
+        return TypedBinaryFormat.decode(Optional.empty(), GrowableByteBuffer.wrap(sparseVectorBytes));
+    }
+
+    private static Tensor denseVector(String dimension, int size, Random random) {
+        IndexedTensor.Builder builder = IndexedTensor.Builder.of(new TensorType.Builder().indexed(dimension, size).build());
+        for (int i = 0; i < size; i++)
+            builder.cell(random.nextDouble(), i);
+        return builder.build();
+    }
+
+    private static Tensor denseMatrix(int size, Random random) {
+        IndexedTensor.Builder builder = IndexedTensor.Builder.of(new TensorType.Builder().indexed("x", size)
+                                                                                         .indexed("y", size)
+                                                                                         .build());
+        for (int i = 0; i < size; i++)
+            for (int j = 0; j < size; j++)
+                builder.cell(random.nextDouble(), i, j);
+        return builder.build();
+    }
+
+    private static Tensor sparseVector(String dimension, int size, Random random) {
+        Tensor.Builder builder = Tensor.Builder.of(new TensorType.Builder().mapped(dimension).build());
+        for (int i = 0; i < size; i++)
+            builder.cell().label(dimension, "label" + (i * 2 + random.nextInt(2))).value(random.nextDouble()); // vectors overlap by half
+        return builder.build();
+    }
+
+    private static Tensor sparseMatrix(int size, Random random) {
+        Tensor.Builder builder = Tensor.Builder.of(new TensorType.Builder().mapped("x").mapped("y").build());
+        for (int i = 0; i < size; i++)
+            for (int j = 0; j < size; j++)
+                builder.cell().label("x", "label" + i * 16).label("y", String.valueOf(j)).value(random.nextDouble());
+        return builder.build();
+    }
+
+}
@@ -0,0 +1,77 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.text;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of UTF-8 conversion of large strings, which are either pure ASCII
+ * or a mix of one, two and three byte characters.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Utf8Benchmark {
+
+    /** The length of the string in characters */
+    @Param({"10000", "1000000"})
+    public int length;
+
+    @Param({"true", "false"})
+    public boolean ascii;
+
+    private String string;
+    private byte[] utf8;
+    private byte[] target;
+
+    @Setup
+    public void setup() {
+        String characters = ascii ? "abcdefghij" : "abcæøåäöüこんにちは";
+        StringBuilder b = new StringBuilder(length);
+        for (int i = 0; i < length; i++)
+            b.append(characters.charAt(i % characters.length()));
+        string = b.toString();
+        utf8 = Utf8.toBytes(string);
+        target = new byte[utf8.length];
+    }
+
+    @Benchmark
+    public byte[] toBytes() {
+        return Utf8.toBytes(string);
+    }
+
+    @Benchmark
+    public int toBytesIntoArray() {
+        return Utf8.toBytes(string, 0, string.length(), target, 0);
+    }
+
+    @Benchmark
+    public String toStringFromBytes() {
+        return Utf8.toString(utf8);
+    }
+
+    @Benchmark
+    public int byteCount() {
+        return Utf8.byteCount(string);
+    }
+
+    @Benchmark
+    public int unitCount() {
+        return Utf8.unitCount(utf8);
+    }
+
+}
@@ -3,30 +3,56 @@ package com.yahoo.cache;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * <p>A generic cache which keeps the total memory consumed by its content
  * below a configured maximum.</p>
  *
+ * <p>Lookups do not lock: Accesses are recorded in a lossy buffer and applied to the eviction order
+ * in batches by whichever thread next holds the eviction lock. Entries are evicted in segmented LRU order:
+ * New entries are put in a probation segment, and are promoted to a protected segment holding at most
+ * 80% of the bytes of this when accessed again. Entries are evicted from the probation segment first,
+ * such that a burst of entries which are never accessed again does not flush out frequently used entries.</p>
+ *
+ * <p>Optionally, new entries can be required to have been seen more frequently recently than the entry
+ * they would cause to be evicted to be admitted, which is useful when there are many keys which are
+ * only seen once.</p>
+ *
  * <p>Thread safe.</p>
  *
  * @author vegardh
  */
 public class Cache<K, V> {
-    private Map<CacheKey<K>,CacheValue<K, V>> content=new LinkedHashMap<>(12500, 1.0f, true);
-    private SizeCalculator calc = new SizeCalculator();
-    private long maxSizeBytes;
 
-    private long currentSizeBytes=0;
+    private final Map<K, Entry<K, V>> content = new ConcurrentHashMap<>(12500);
+    private final SizeCalculator calc = new SizeCalculator();
+    private final long maxSizeBytes;
+
+    /** The max size in bytes of the protected segment */
+    private final long maxProtectedSizeBytes;
 
     /** The time an element is allowed to live, negative for indefinite lifespan */
-    private long timeToLiveMillis=-1;
+    private final long timeToLiveMillis;
 
     /** The max allowed size of an entry, negative for no limit */
-    private long maxEntrySizeBytes=10000;
+    private final long maxEntrySizeBytes;
+
+    private final ReadBuffer<Entry<K, V>> readBuffer = new ReadBuffer<>();
+
+    /** Guards the segments, sizes and frequencies below */
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    /** The sentinels of the circular, access ordered probation and protected segments. The first ones are LRU. */
+    private final Entry<K, V> probation = new Entry<>(), protectedSegment = new Entry<>();
+
+    private long currentSizeBytes = 0;
+    private long protectedSizeBytes = 0;
+
+    /** Recent access frequencies used to decide admission, or null to admit all new entries */
+    private final FrequencySketch frequencies;
 
     /**
      * Creates a new cache
@@ -36,48 +62,73 @@ public class Cache<K, V> {
      * @param timeToLiveMillis a negative value means unlimited time
      * @param maxEntrySizeBytes never cache objects bigger than this, negative for no such limit
      */
-    public Cache(long maxSizeBytes,long timeToLiveMillis, long maxEntrySizeBytes) {
-        this.maxSizeBytes=maxSizeBytes;
-        this.timeToLiveMillis=timeToLiveMillis;
-        this.maxEntrySizeBytes=maxEntrySizeBytes;
+    public Cache(long maxSizeBytes, long timeToLiveMillis, long maxEntrySizeBytes) {
+        this(maxSizeBytes, timeToLiveMillis, maxEntrySizeBytes, false);
     }
 
-    private synchronized CacheValue<K, V> synchGet(CacheKey<K> k) {
-        return content.get(k);
+    /**
+     * Creates a new cache
+     *
+     * @param maxSizeBytes the max size in bytes this cache is permitted to consume,
+     *        including Result objects and Query keys
+     * @param timeToLiveMillis a negative value means unlimited time
+     * @param maxEntrySizeBytes never cache objects bigger than this, negative for no such limit
+     * @param admitByFrequency if true, a new entry is only added when this is full if its key has
+     *        recently been seen more often than the key of the entry which would be evicted
+     */
+    public Cache(long maxSizeBytes, long timeToLiveMillis, long maxEntrySizeBytes, boolean admitByFrequency) {
+        this.maxSizeBytes = maxSizeBytes;
+        this.maxProtectedSizeBytes = maxSizeBytes / 10 * 8;
+        this.timeToLiveMillis = timeToLiveMillis;
+        this.maxEntrySizeBytes = maxEntrySizeBytes;
+        this.frequencies = admitByFrequency ? new FrequencySketch(1024) : null;
     }
 
-    private synchronized boolean synchPut(K key,V value, long keySizeBytes, long valueSizeBytes) {
-        // log.info("Put "+key.toString()+ " key size:"+keySizeBytes+" val size:"+valueSizeBytes);
-        if ((valueSizeBytes+keySizeBytes)>maxSizeBytes) {
-            return false;
-        }
-        makeRoomForBytes(valueSizeBytes+keySizeBytes);
-        CacheKey<K> cacheKey = new CacheKey<>(keySizeBytes, key);
-        CacheValue<K, V> cacheValue;
-        if (timeToLiveMillis<0) {
-            cacheValue=new CacheValue<>(valueSizeBytes,value, cacheKey);
-        } else {
-            cacheValue=new AgingCacheValue<>(valueSizeBytes,value, cacheKey);
-        }
-        currentSizeBytes+=(valueSizeBytes+keySizeBytes);
-        content.put(cacheKey, cacheValue);
-        return true;
+    /**
+     * Attempts to add a value to the cache
+     *
+     * @param key the key of the value
+     * @param value the value to add
+     * @return true if the value was added, false if it could not be added
+     */
+    public boolean put(K key, V value) {
+        return put(key, value, calc.sizeOf(key) + calc.sizeOf(value));
     }
 
     /**
-     * Attempts to add a value to the cache
+     * Attempts to add a value of a known size to the cache
      *
      * @param key the key of the value
      * @param value the value to add
+     * @param sizeBytes the size in bytes of the key and value together
      * @return true if the value was added, false if it could not be added
      */
-    public boolean put(K key,V value) {
-        long keySizeBytes=calc.sizeOf(key);
-        long valueSizeBytes=calc.sizeOf(value);
-        if (tooBigToCache(keySizeBytes+valueSizeBytes)) {
+    public boolean put(K key, V value, long sizeBytes) {
+        if (tooBigToCache(sizeBytes)) {
             return false;
         }
-        return synchPut(key, value, keySizeBytes, valueSizeBytes);
+        Entry<K, V> entry = new Entry<>(key, value, sizeBytes, timeToLiveMillis < 0 ? 0 : System.currentTimeMillis());
+        evictionLock.lock();
+        try {
+            drainReadBuffer();
+            boolean replacing = removeEntry(content.get(key));
+            if (frequencies != null) {
+                frequencies.increment(key.hashCode());
+            }
+            if ( ! makeRoomFor(entry, replacing)) {
+                return false;
+            }
+            content.put(key, entry);
+            linkLast(probation, entry);
+            currentSizeBytes += sizeBytes;
+            if (frequencies != null) {
+                frequencies.ensureCapacity(content.size());
+            }
+            return true;
+        }
+        finally {
+            evictionLock.unlock();
+        }
     }
 
     /**
@@ -85,6 +136,9 @@ public class Cache<K, V> {
      * @return true if the argument is too big to cache.
      */
     private boolean tooBigToCache(long totalSize) {
+        if (totalSize > maxSizeBytes) {
+            return true;
+        }
         if (maxEntrySizeBytes<0) {
             return false;
         }
@@ -94,51 +148,69 @@ public class Cache<K, V> {
         return false;
     }
 
-    private void makeRoomForBytes(long bytes) {
-        if ((maxSizeBytes-currentSizeBytes) > bytes) {
-                return;
-        }
-        if (content.isEmpty()) {
-            return;
+    /**
+     * Evicts entries until there is room for the given entry.
+     * Must be called while holding the eviction lock.
+     *
+     * @param replacing whether the entry replaces one with the same key, which is always admitted
+     * @return false if the entry should not be admitted, in which case nothing is evicted
+     */
+    private boolean makeRoomFor(Entry<K, V> entry, boolean replacing) {
+        if ((maxSizeBytes - currentSizeBytes) > entry.sizeBytes) {
+            return true;
         }
-        for (Iterator<Map.Entry<CacheKey<K>, CacheValue<K, V>>> i = content.entrySet().iterator() ; i.hasNext() ; ) {
-                Map.Entry<CacheKey<K>, CacheValue<K, V>> entry = i.next();
-            CacheKey<K> key = entry.getKey();
-            CacheValue<K, V> value = entry.getValue();
-            // Can't call this.remove(), breaks iterator.
-            i.remove();  // Access order: first ones are LRU.
-            currentSizeBytes-=key.sizeBytes();
-            currentSizeBytes-=value.sizeBytes();
-            if ((maxSizeBytes-currentSizeBytes) > bytes) {
-                break;
+        if (frequencies != null && ! replacing) {
+            Entry<K, V> victim = leastRecentlyUsed();
+            if (victim != null && frequencies.frequency(entry.key.hashCode()) <= frequencies.frequency(victim.key.hashCode())) {
+                return false;
             }
         }
+        Entry<K, V> victim;
+        while ((maxSizeBytes - currentSizeBytes) <= entry.sizeBytes && (victim = leastRecentlyUsed()) != null) {
+            removeEntry(victim);
+        }
+        return true;
+    }
+
+    /** Returns the entry to evict next, or null if this is empty */
+    private Entry<K, V> leastRecentlyUsed() {
+        if (probation.next != probation) return probation.next;
+        if (protectedSegment.next != protectedSegment) return protectedSegment.next;
+        return null;
     }
 
     public boolean containsKey(K k) {
-        return content.containsKey(new CacheKey<>(-1, k));
+        return content.containsKey(k);
     }
 
     /** Returns a value, if it is present in the cache */
     public V get(K key) {
-        // Currently it works to make a new CacheKey object without size
-        // because we have changed hashCode() there.
-        CacheKey<K> cacheKey = new CacheKey<>(-1, key);
-        CacheValue<K, V> value=synchGet(cacheKey);
-        if (value==null) {
+        Entry<K, V> entry = content.get(key);
+        if (entry == null) {
             return null;
         }
-        if (timeToLiveMillis<0) {
-            return value.value();
-        }
-
-        if (value.expired(timeToLiveMillis)) {
+        if (entry.expired(timeToLiveMillis)) {
             //  There was a value, which has now expired
-            remove(key);
+            evictionLock.lock();
+            try {
+                if (content.get(key) == entry) {
+                    removeEntry(entry);
+                }
+            }
+            finally {
+                evictionLock.unlock();
+            }
             return null;
-        } else {
-            return value.value();
         }
+        if (readBuffer.record(entry) && evictionLock.tryLock()) {
+            try {
+                drainReadBuffer();
+            }
+            finally {
+                evictionLock.unlock();
+            }
+        }
+        return entry.value;
     }
 
     /**
@@ -146,120 +218,134 @@ public class Cache<K, V> {
      *
      * @return true if the value was removed, false if it was not present
      */
-    public synchronized boolean remove(K key) {
-        CacheValue<K, V> value=content.remove(key);
-        if (value==null) {
+    public boolean remove(K key) {
+        evictionLock.lock();
+        try {
+            return removeEntry(content.get(key));
+        }
+        finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /** Removes the given entry if non-null. Must be called while holding the eviction lock. */
+    private boolean removeEntry(Entry<K, V> entry) {
+        if (entry == null) {
             return false;
         }
-        currentSizeBytes-=value.sizeBytes();
-        currentSizeBytes-=value.getKey().sizeBytes();
+        content.remove(entry.key, entry);
+        unlink(entry);
+        currentSizeBytes -= entry.sizeBytes;
+        if (entry.isProtected) {
+            protectedSizeBytes -= entry.sizeBytes;
+        }
         return true;
     }
 
-    public long getTimeToLiveMillis() {
-        return timeToLiveMillis;
+    /** Applies recorded reads to the eviction order. Must be called while holding the eviction lock. */
+    private void drainReadBuffer() {
+        readBuffer.drainTo(this::onAccess);
     }
 
-    public int size() {
-        return content.size();
-    }
+    private void onAccess(Entry<K, V> entry) {
+        if (entry.next == null) return; // removed since it was read
 
-    private static class CacheKey<K> {
-        private long sizeBytes;
-        private K key;
-        public CacheKey(long sizeBytes,K key) {
-                this.sizeBytes=sizeBytes;
-            this.key=key;
+        if (frequencies != null) {
+            frequencies.increment(entry.key.hashCode());
         }
-
-        public long sizeBytes() {
-            return sizeBytes;
+        unlink(entry);
+        linkLast(protectedSegment, entry);
+        if ( ! entry.isProtected) {
+            entry.isProtected = true;
+            protectedSizeBytes += entry.sizeBytes;
         }
-
-        public K getKey() {
-            return key;
+        while (protectedSizeBytes > maxProtectedSizeBytes && protectedSegment.next != entry) { // demote
+            Entry<K, V> demoted = protectedSegment.next;
+            unlink(demoted);
+            linkLast(probation, demoted);
+            demoted.isProtected = false;
+            protectedSizeBytes -= demoted.sizeBytes;
         }
+    }
 
-        public int hashCode() {
-                return key.hashCode();
-        }
+    private void linkLast(Entry<K, V> segment, Entry<K, V> entry) {
+        entry.previous = segment.previous;
+        entry.next = segment;
+        segment.previous.next = entry;
+        segment.previous = entry;
+    }
 
-        @SuppressWarnings("rawtypes")
-        public boolean equals(Object k) {
-                if (key==null) {
-                return false;
-            }
-            if (k==null) {
-                return false;
-            }
-            if (k instanceof CacheKey) {
-                return key.equals(((CacheKey)k).getKey());
-            }
-            return false;
-        }
+    private void unlink(Entry<K, V> entry) {
+        if (entry.next == null) return;
+        entry.previous.next = entry.next;
+        entry.next.previous = entry.previous;
+        entry.next = null;
+        entry.previous = null;
     }
 
-    private static class CacheValue<K, V> {
-        private long sizeBytes;
-        private V value;
-        private CacheKey<K> key;
-        public CacheValue(long sizeBytes, V value, CacheKey<K> key) {
-            this.sizeBytes=sizeBytes;
-            this.value=value;
-            this.key = key;
-        }
+    public long getTimeToLiveMillis() {
+        return timeToLiveMillis;
+    }
 
-        public boolean expired(long ttl) {
-            return false;
-        }
+    public int size() {
+        return content.size();
+    }
 
-        public V value() {
-            return value;
-        }
+    private static class Entry<K, V> {
 
-        public long sizeBytes() {
-            return sizeBytes;
-        }
+        private final K key;
+        private final V value;
+        private final long sizeBytes;
+        private final long birthTimeMillis;
 
-        public CacheKey<K> getKey() {
-            return key;
-        }
-    }
+        /** The neighbours of this in its segment, guarded by the eviction lock, null when not in a segment */
+        private Entry<K, V> previous, next;
 
-    private static class AgingCacheValue<K, V> extends CacheValue<K, V> {
-        private long birthTimeMillis;
+        /** Whether this is in the protected segment, guarded by the eviction lock */
+        private boolean isProtected = false;
 
-        public AgingCacheValue(long sizeBytes,V value, CacheKey<K> key) {
-            super(sizeBytes,value, key);
-            this.birthTimeMillis=System.currentTimeMillis();
+        /** Creates a segment sentinel */
+        Entry() {
+            this(null, null, 0, 0);
+            previous = this;
+            next = this;
         }
 
-        public long ageMillis() {
-            return System.currentTimeMillis()-birthTimeMillis;
+        Entry(K key, V value, long sizeBytes, long birthTimeMillis) {
+            this.key = key;
+            this.value = value;
+            this.sizeBytes = sizeBytes;
+            this.birthTimeMillis = birthTimeMillis;
         }
 
-        public boolean expired(long ttl) {
-            return (ageMillis() >= ttl);
+        boolean expired(long ttl) {
+            if (ttl < 0) return false;
+            return System.currentTimeMillis() - birthTimeMillis >= ttl;
         }
+
     }
 
     /**
      * Empties the cache
      */
-    public synchronized void clear() {
-        content.clear();
-        currentSizeBytes=0;
+    public void clear() {
+        evictionLock.lock();
+        try {
+            drainReadBuffer();
+            for (Entry<K, V> entry : content.values()) {
+                removeEntry(entry);
+            }
+        }
+        finally {
+            evictionLock.unlock();
+        }
     }
 
     /**
      * Collection of keys.
      */
     public Collection<K> getKeys() {
-        Collection<K> ret = new ArrayList<>();
-        for (Iterator<CacheKey<K>> i = content.keySet().iterator(); i.hasNext();) {
-            ret.add(i.next().getKey());
-        }
-        return ret;
+        return new ArrayList<>(content.keySet());
     }
 
     /**
@@ -267,8 +353,8 @@ public class Cache<K, V> {
      */
     public Collection<V> getValues() {
         Collection<V> ret = new ArrayList<>();
-        for (Iterator<CacheValue<K, V>> i = content.values().iterator(); i.hasNext();) {
-            ret.add(i.next().value());
+        for (Entry<K, V> entry : content.values()) {
+            ret.add(entry.value);
         }
         return ret;
     }
@@ -0,0 +1,79 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.cache;
+
+/**
+ * An approximate, aging count of how often keys have been seen recently, used to decide whether
+ * a new entry is valuable enough to be admitted to a cache at the expense of the entry it would evict
+ * (as in TinyLFU). This is a count-min sketch of counters which saturate at 15, where all counters are
+ * halved after a number of increments proportional to the size of the sketch, such that old popularity fades.
+ *
+ * <p>Not thread safe.</p>
+ */
+class FrequencySketch {
+
+    private static final int maxCount = 15;
+    private static final int[] seeds = { 0x97cb3127, 0x3c6ef372, 0xa54ff53a, 0x510e527f };
+
+    private byte[] counters;
+    private int mask;
+    private int additions = 0;
+    private int resetAt;
+
+    /** Creates a sketch suitable for estimating the frequency of the given number of distinct keys */
+    FrequencySketch(int expectedKeys) {
+        ensureCapacity(expectedKeys);
+    }
+
+    /** Resizes this to fit the given number of keys if it is currently too small. This clears this if resized. */
+    void ensureCapacity(int expectedKeys) {
+        int keys = Math.max(64, Math.min(expectedKeys, 1 << 24));
+        int size = Integer.highestOneBit(keys - 1) << 2; // a power of two, at least twice the number of keys
+        if (counters != null && counters.length >= size) return;
+        counters = new byte[size];
+        mask = size - 1;
+        additions = 0;
+        resetAt = size * 10;
+    }
+
+    /** Records an occurrence of the key having the given hash code */
+    void increment(int hashCode) {
+        int hash = spread(hashCode);
+        boolean incremented = false;
+        for (int seed : seeds) {
+            int index = indexOf(hash, seed);
+            if (counters[index] < maxCount) {
+                counters[index]++;
+                incremented = true;
+            }
+        }
+        if (incremented && ++additions >= resetAt)
+            halve();
+    }
+
+    /** Returns the estimated number of recent occurrences of the key having the given hash code */
+    int frequency(int hashCode) {
+        int hash = spread(hashCode);
+        int frequency = maxCount;
+        for (int seed : seeds)
+            frequency = Math.min(frequency, counters[indexOf(hash, seed)]);
+        return frequency;
+    }
+
+    private void halve() {
+        for (int i = 0; i < counters.length; i++)
+            counters[i] = (byte)(counters[i] >>> 1);
+        additions /= 2;
+    }
+
+    private int indexOf(int hash, int seed) {
+        int h = (hash ^ seed) * 0x9e3779b9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /** Mixes the bits of a hash code which may be of poor quality */
+    private static int spread(int hashCode) {
+        int h = hashCode * 0x85ebca6b;
+        return h ^ (h >>> 13);
+    }
+
+}
@@ -0,0 +1,83 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * A lossy buffer of recent reads, used to record accesses to a cache without taking a lock on each read.
+ * Reads are recorded in one of several ring buffers selected by the reading thread, and are later applied
+ * in bulk by a single thread holding the cache lock. When a ring buffer is full, further reads are dropped
+ * until it is drained, which is fine as the access order is just a heuristic.
+ *
+ * <p>Recording is thread safe. Draining must be done by one thread at the time.</p>
+ */
+class ReadBuffer<T> {
+
+    /** The number of elements in each stripe, a power of two */
+    private static final int stripeSize = 32;
+    private static final int stripeMask = stripeSize - 1;
+
+    private final Stripe<T>[] stripes;
+    private final int stripesMask;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    ReadBuffer() {
+        int stripeCount = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() - 1)) << 1;
+        stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++)
+            stripes[i] = new Stripe<>();
+        stripesMask = stripeCount - 1;
+    }
+
+    /**
+     * Records an element
+     *
+     * @return true if the stripe this was recorded in is now full and should be drained
+     */
+    boolean record(T element) {
+        return stripes[(int)Thread.currentThread().getId() & stripesMask].record(element);
+    }
+
+    /** Passes all recorded elements to the given consumer, and removes them from this */
+    void drainTo(Consumer<T> consumer) {
+        for (Stripe<T> stripe : stripes)
+            stripe.drainTo(consumer);
+    }
+
+    private static final class Stripe<T> {
+
+        private final AtomicReferenceArray<T> elements = new AtomicReferenceArray<>(stripeSize);
+
+        /** The position of the next element to write, incremented by recording threads */
+        private final AtomicLong writeIndex = new AtomicLong();
+
+        /** The position of the next element to read, only incremented by the draining thread */
+        private final AtomicLong readIndex = new AtomicLong();
+
+        boolean record(T element) {
+            long write = writeIndex.get();
+            long pending = write - readIndex.get();
+            if (pending >= stripeSize) return true; // full: drop this
+            if (writeIndex.compareAndSet(write, write + 1))
+                elements.lazySet((int)write & stripeMask, element);
+            return pending + 1 >= stripeSize;
+        }
+
+        void drainTo(Consumer<T> consumer) {
+            long read = readIndex.get();
+            long write = writeIndex.get();
+            for (; read < write; read++) {
+                int index = (int)read & stripeMask;
+                T element = elements.get(index);
+                if (element == null) break; // claimed but not written yet: Continue from here next time
+                elements.lazySet(index, null);
+                consumer.accept(element);
+            }
+            readIndex.lazySet(read);
+        }
+
+    }
+
+}
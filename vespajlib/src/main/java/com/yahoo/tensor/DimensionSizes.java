@@ -38,6 +38,17 @@ public final class DimensionSizes {
         return productSize;
     }
 
+    /**
+     * Returns the product of the sizes of the dimensions after the given index.
+     * This is the distance between consecutive values of that dimension in a dense value array.
+     */
+    public int productOfDimensionsAfter(int dimensionIndex) {
+        int product = 1;
+        for (int i = dimensionIndex + 1; i < sizes.length; i++)
+            product *= sizes[i];
+        return product;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (o == this) return true;
@@ -119,6 +119,13 @@ public class IndexedTensor implements Tensor {
     }
 
     private double get(int valueIndex) { return values[valueIndex]; }
+
+    /**
+     * Returns the value at the given index in the internal layout of this.
+     * This requires knowledge of the internal layout of cells in this implementation, and should therefore
+     * probably not be used (but when it can be used it is fast, as it avoids creating addresses and boxing values).
+     */
+    public double getByDirectIndex(int index) { return values[index]; }
     
     private static int toValueIndex(int[] indexes, DimensionSizes sizes) {
         if (indexes.length == 1) return indexes[0]; // for speed
@@ -3,12 +3,14 @@ package com.yahoo.tensor.functions;
 
 import com.google.common.annotations.Beta;
 import com.google.common.collect.ImmutableList;
+import com.yahoo.tensor.DimensionSizes;
 import com.yahoo.tensor.IndexedTensor;
 import com.yahoo.tensor.Tensor;
 import com.yahoo.tensor.TensorAddress;
 import com.yahoo.tensor.TensorType;
 import com.yahoo.tensor.evaluation.EvaluationContext;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -16,6 +18,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
 
 /**
@@ -98,19 +101,22 @@ public class Reduce extends PrimitiveTensorFunction {
                                                dimensions + ": Not all those dimensions are present in this tensor");
 
         // Special case: Reduce all
-        if (dimensions.isEmpty() || dimensions.size() == argument.type().dimensions().size())
-            if (argument.type().dimensions().size() == 1 && argument instanceof IndexedTensor)
-                return reduceIndexedVector((IndexedTensor)argument);
-            else
-                return reduceAllGeneral(argument);
-        
+        if ( (dimensions.isEmpty() || dimensions.size() == argument.type().dimensions().size())
+             && argument.type().dimensions().size() == 1 && argument instanceof IndexedTensor)
+            return reduceIndexedVector((IndexedTensor)argument);
+
         // Reduce type
         TensorType.Builder builder = new TensorType.Builder();
         for (TensorType.Dimension dimension : argument.type().dimensions())
-            if ( ! dimensions.contains(dimension.name())) // keep
+            if ( ! dimensions.isEmpty() && ! dimensions.contains(dimension.name())) // keep
                 builder.dimension(dimension);
         TensorType reducedType = builder.build();
-        
+
+        if (argument instanceof IndexedTensor && (argument.size() > 0 || ! reducedType.dimensions().isEmpty()))
+            return reduceIndexed((IndexedTensor)argument, reducedType);
+        if (reducedType.dimensions().isEmpty())
+            return reduceAllGeneral(argument);
+
         // Reduce cells
         Map<TensorAddress, ValueAggregator> aggregatingCells = new HashMap<>();
         for (Iterator<Tensor.Cell> i = argument.cellIterator(); i.hasNext(); ) {
@@ -149,10 +155,56 @@ public class Reduce extends PrimitiveTensorFunction {
     private Tensor reduceIndexedVector(IndexedTensor argument) {
         ValueAggregator valueAggregator = ValueAggregator.ofType(aggregator);
         for (int i = 0; i < argument.dimensionSizes().size(0); i++)
-            valueAggregator.aggregate(argument.get(i));
+            valueAggregator.aggregate(argument.getByDirectIndex(i));
         return Tensor.Builder.of(TensorType.empty).cell((valueAggregator.aggregatedValue())).build();
     }
 
+    /**
+     * Reduces a dense tensor by walking its value array in order while keeping track of the position
+     * in the value array of the reduced tensor, aggregating directly into that array.
+     */
+    private Tensor reduceIndexed(IndexedTensor argument, TensorType reducedType) {
+        DimensionSizes argumentSizes = argument.dimensionSizes();
+
+        // Find the reduced sizes, and the step in the reduced value array for each argument dimension
+        DimensionSizes.Builder reducedSizesBuilder = new DimensionSizes.Builder(reducedType.dimensions().size());
+        for (int i = 0; i < reducedSizesBuilder.dimensions(); i++) // an empty argument reduces to an empty tensor
+            reducedSizesBuilder.set(i, argument.size() == 0 ? 0 : argumentSizes.size(argument.type().indexOfDimension(reducedType.dimensions().get(i).name()).get()));
+        DimensionSizes reducedSizes = reducedSizesBuilder.build();
+        int[] reducedSteps = new int[argumentSizes.dimensions()];
+        for (int i = 0; i < reducedSteps.length; i++) {
+            Optional<Integer> reducedIndex = reducedType.indexOfDimension(argument.type().dimensions().get(i).name());
+            if (reducedIndex.isPresent())
+                reducedSteps[i] = reducedSizes.productOfDimensionsAfter(reducedIndex.get());
+        }
+
+        double[] reducedValues = new double[reducedSizes.totalSize()];
+        Arrays.fill(reducedValues, ValueAggregator.initialValue(aggregator));
+        int[] indexes = new int[argumentSizes.dimensions()];
+        int reducedIndex = 0;
+        for (int i = 0; i < argument.size(); i++) {
+            reducedValues[reducedIndex] = ValueAggregator.aggregate(aggregator, reducedValues[reducedIndex],
+                                                                    argument.getByDirectIndex(i));
+
+            // Advance to the next argument cell, last dimension first
+            for (int dimension = indexes.length - 1; dimension >= 0; dimension--) {
+                if (++indexes[dimension] < argumentSizes.size(dimension)) {
+                    reducedIndex += reducedSteps[dimension];
+                    break;
+                }
+                // carry over
+                reducedIndex -= reducedSteps[dimension] * (indexes[dimension] - 1);
+                indexes[dimension] = 0;
+            }
+        }
+
+        int valuesPerReducedCell = reducedValues.length == 0 ? 0 : argument.size() / reducedValues.length;
+        IndexedTensor.BoundBuilder reducedBuilder = (IndexedTensor.BoundBuilder)IndexedTensor.Builder.of(reducedType, reducedSizes);
+        for (int i = 0; i < reducedValues.length; i++)
+            reducedBuilder.cellByDirectIndex(i, ValueAggregator.aggregatedValue(aggregator, reducedValues[i], valuesPerReducedCell));
+        return reducedBuilder.build();
+    }
+
     private static abstract class ValueAggregator {
         
         private static ValueAggregator ofType(Aggregator aggregator) {
@@ -168,6 +220,38 @@ public class Reduce extends PrimitiveTensorFunction {
                 
         }
 
+        /** Returns the value to start aggregating from when aggregating into a primitive value */
+        private static double initialValue(Aggregator aggregator) {
+            switch (aggregator) {
+                case avg : case count : case sum : return 0.0;
+                case prod : return 1.0;
+                case max : return Double.MIN_VALUE;
+                case min : return Double.MAX_VALUE;
+                default: throw new UnsupportedOperationException("Aggregator " + aggregator + " is not implemented");
+            }
+        }
+
+        /** Returns the given aggregated value with the given value added, without allocating an aggregator */
+        private static double aggregate(Aggregator aggregator, double aggregatedValue, double value) {
+            switch (aggregator) {
+                case avg : case sum : return aggregatedValue + value;
+                case count : return aggregatedValue;
+                case prod : return aggregatedValue * value;
+                case max : return value > aggregatedValue ? value : aggregatedValue;
+                case min : return value < aggregatedValue ? value : aggregatedValue;
+                default: throw new UnsupportedOperationException("Aggregator " + aggregator + " is not implemented");
+            }
+        }
+
+        /** Returns the final value of a primitive value aggregated from the given number of values */
+        private static double aggregatedValue(Aggregator aggregator, double aggregatedValue, int valueCount) {
+            switch (aggregator) {
+                case avg : return aggregatedValue / valueCount;
+                case count : return valueCount;
+                default: return aggregatedValue;
+            }
+        }
+
         /** Add a new value to those aggregated by this */
         public abstract void aggregate(double value);
         
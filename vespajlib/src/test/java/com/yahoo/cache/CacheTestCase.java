@@ -5,6 +5,8 @@ import junit.framework.TestCase;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class CacheTestCase extends TestCase {
 
@@ -194,4 +196,63 @@ public class CacheTestCase extends TestCase {
         assertEquals(cache.getValues().size(), 0);
     }
 
+    public void testFrequentlyUsedEntriesSurviveScan() {
+        Cache<String, byte[]> cache = new Cache<>(10*1024*1024, -1, -1); // 10 MB
+        byte[] fourMB = new byte[4*1024*1024];
+        byte[] oneMB = new byte[1024*1024];
+        assertTrue(cache.put("frequent", fourMB));
+        assertEquals(fourMB, cache.get("frequent")); // promotes it to the protected segment
+        for (int i = 0; i < 20; i++)
+            assertTrue(cache.put("scan" + i, oneMB));
+        assertEquals(fourMB, cache.get("frequent"));
+        assertNull(cache.get("scan0"));
+        assertNotNull(cache.get("scan19"));
+    }
+
+    public void testAdmitByFrequency() {
+        Cache<String, byte[]> cache = new Cache<>(10*1024*1024, -1, -1, true); // 10 MB
+        byte[] fourMB = new byte[4*1024*1024];
+        assertTrue(cache.put("a", fourMB));
+        assertTrue(cache.put("b", fourMB));
+        cache.get("a");
+        cache.get("b");
+        assertFalse("Seen less often than the entry to evict", cache.put("c", fourMB));
+        assertNull(cache.get("c"));
+        assertNotNull(cache.get("a"));
+        assertNotNull(cache.get("b"));
+
+        for (int i = 0; i < 5; i++)
+            cache.get("c"); // misses are not counted, but repeated puts are
+        cache.put("c", fourMB);
+        cache.put("c", fourMB);
+        assertTrue("Seen more often than the entry to evict", cache.put("c", fourMB));
+        assertNotNull(cache.get("c"));
+        assertEquals(2, cache.size());
+    }
+
+    public void testConcurrentAccess() throws InterruptedException {
+        Cache<Integer, Integer> cache = new Cache<>(100*1024, -1, -1);
+        AtomicInteger wrongValues = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 20000; i++) {
+                    int key = i % 500;
+                    Integer value = cache.get(key);
+                    if (value == null)
+                        cache.put(key, key);
+                    else if (value != key)
+                        wrongValues.incrementAndGet();
+                }
+            }));
+        }
+        for (Thread thread : threads)
+            thread.start();
+        for (Thread thread : threads)
+            thread.join();
+        assertEquals(0, wrongValues.get());
+        assertTrue(cache.size() > 0);
+        assertEquals(cache.size(), cache.getKeys().size());
+    }
+
 }
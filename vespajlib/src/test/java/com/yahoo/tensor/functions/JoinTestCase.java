@@ -45,5 +45,16 @@ public class JoinTestCase {
                      Tensor.from("tensor(x[],y[]):{ {x:0,y:0}:6, {x:1,y:0}:8, {x:0,y:1}:20, {x:1,y:1}:24 }")
                              .divide(Tensor.from("tensor(y[],z[]):{ {y:0,z:0}:2, {y:1,z:0}:4, {y:2,z:0}:6 }")));
     }
-    
+
+    @Test
+    public void testIndexedJoinOfDifferentSizes() {
+        assertEquals(Tensor.from("tensor(x[]):{ {x:0}:2, {x:1}:6 }"),
+                     Tensor.from("tensor(x[]):{ {x:0}:1, {x:1}:2, {x:2}:3 }")
+                             .multiply(Tensor.from("tensor(x[]):{ {x:0}:2, {x:1}:3 }")));
+
+        assertEquals(Tensor.from("tensor(x[],y[]):{ {x:0,y:0}:2, {x:0,y:1}:4, {x:1,y:0}:6, {x:1,y:1}:8 }"),
+                     Tensor.from("tensor(x[],y[]):{ {x:0,y:0}:1, {x:0,y:1}:2, {x:0,y:2}:9, {x:1,y:0}:3, {x:1,y:1}:4, {x:1,y:2}:9 }")
+                             .multiply(Tensor.from("tensor(y[]):{ {y:0}:2, {y:1}:2 }")));
+    }
+
 }
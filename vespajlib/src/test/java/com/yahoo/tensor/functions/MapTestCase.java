@@ -0,0 +1,47 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.tensor.functions;
+
+import com.yahoo.tensor.DimensionSizes;
+import com.yahoo.tensor.IndexedTensor;
+import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.TensorType;
+import org.junit.Test;
+
+import java.util.function.DoubleUnaryOperator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests mapping of dense tensors against the general implementation used for sparse tensors.
+ */
+public class MapTestCase {
+
+    @Test
+    public void testMapDenseTensor() {
+        assertMapsAsGeneral("(x[],y[])", "(x{},y{})", "{{x:0,y:0}:1.0,{x:0,y:1}:-2.0,{x:1,y:0}:3.5,{x:1,y:1}:0.0}", x -> x * 2 + 1);
+        assertMapsAsGeneral("(x[],y[])", "(x{},y{})", "{{x:0,y:0}:1.0,{x:0,y:1}:-2.0,{x:1,y:0}:3.5,{x:1,y:1}:0.0}", Math::abs);
+        assertMapsAsGeneral("(x[])", "(x{})", "{{x:0}:4.0,{x:1}:9.0,{x:2}:16.0}", Math::sqrt);
+    }
+
+    @Test
+    public void testMapEmptyTensor() {
+        Tensor empty = IndexedTensor.Builder.of(TensorType.fromSpec("tensor(x[],y[])"),
+                                                new DimensionSizes.Builder(2).set(0, 0).set(1, 0).build())
+                                            .build();
+        assertMapsAsGeneral(empty, "(x{},y{})", "{}", x -> x * 2);
+    }
+
+    private void assertMapsAsGeneral(String denseType, String sparseType, String cells, DoubleUnaryOperator mapper) {
+        assertMapsAsGeneral(Tensor.from("tensor" + denseType + ":" + cells), sparseType, cells, mapper);
+    }
+
+    private void assertMapsAsGeneral(Tensor dense, String sparseType, String cells, DoubleUnaryOperator mapper) {
+        Tensor sparse = Tensor.from("tensor" + sparseType + ":" + cells);
+        assertTrue(dense instanceof IndexedTensor);
+        Tensor mapped = dense.map(mapper);
+        assertEquals(sparse.map(mapper).cells(), mapped.cells());
+        assertEquals(dense.type(), mapped.type());
+    }
+
+}
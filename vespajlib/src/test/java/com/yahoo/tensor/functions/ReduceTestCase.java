@@ -0,0 +1,82 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.tensor.functions;
+
+import com.yahoo.tensor.DimensionSizes;
+import com.yahoo.tensor.IndexedTensor;
+import com.yahoo.tensor.MappedTensor;
+import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.TensorType;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests reduction of dense tensors against the general implementation used for sparse tensors.
+ */
+public class ReduceTestCase {
+
+    private static final String denseType = "tensor(x[],y[],z[])";
+    private static final String sparseType = "tensor(x{},y{},z{})";
+    private static final String cells = "{{x:0,y:0,z:0}:1.0,{x:0,y:0,z:1}:2.0,{x:0,y:1,z:0}:3.0,{x:0,y:1,z:1}:4.0," +
+                                        "{x:0,y:2,z:0}:5.0,{x:0,y:2,z:1}:6.0,{x:1,y:0,z:0}:7.0,{x:1,y:0,z:1}:8.0," +
+                                        "{x:1,y:1,z:0}:9.0,{x:1,y:1,z:1}:10.0,{x:1,y:2,z:0}:11.0,{x:1,y:2,z:1}:0.5}";
+
+    @Test
+    public void testReduceAllDimensions() {
+        for (Reduce.Aggregator aggregator : Reduce.Aggregator.values())
+            assertReducesAsGeneral(cells, aggregator);
+    }
+
+    @Test
+    public void testReduceSingleDimension() {
+        for (Reduce.Aggregator aggregator : Reduce.Aggregator.values()) {
+            assertReducesAsGeneral(cells, aggregator, "x");
+            assertReducesAsGeneral(cells, aggregator, "y");
+            assertReducesAsGeneral(cells, aggregator, "z");
+        }
+    }
+
+    @Test
+    public void testReduceSubsetOfDimensions() {
+        for (Reduce.Aggregator aggregator : Reduce.Aggregator.values()) {
+            assertReducesAsGeneral(cells, aggregator, "x", "z");
+            assertReducesAsGeneral(cells, aggregator, "y", "z");
+            assertReducesAsGeneral(cells, aggregator, "x", "y");
+            assertReducesAsGeneral(cells, aggregator, "x", "y", "z");
+        }
+    }
+
+    @Test
+    public void testReduceVector() {
+        for (Reduce.Aggregator aggregator : Reduce.Aggregator.values())
+            assertEquals(Tensor.from("tensor(x{}):{{x:0}:3.0,{x:1}:1.0,{x:2}:2.0}").reduce(aggregator).cells(),
+                         Tensor.from("tensor(x[]):{{x:0}:3.0,{x:1}:1.0,{x:2}:2.0}").reduce(aggregator).cells());
+    }
+
+    @Test
+    public void testReduceEmptyTensor() {
+        Tensor empty = IndexedTensor.Builder.of(TensorType.fromSpec(denseType),
+                                                new DimensionSizes.Builder(3).set(0, 0).set(1, 0).set(2, 0).build())
+                                            .build();
+        for (Reduce.Aggregator aggregator : Reduce.Aggregator.values()) {
+            assertReducesAsGeneral(empty, "{}", aggregator);
+            assertReducesAsGeneral(empty, "{}", aggregator, "x");
+            assertReducesAsGeneral(empty, "{}", aggregator, "x", "z");
+        }
+    }
+
+    private void assertReducesAsGeneral(String cells, Reduce.Aggregator aggregator, String ... dimensions) {
+        assertReducesAsGeneral(Tensor.from(denseType + ":" + cells), cells, aggregator, dimensions);
+    }
+
+    private void assertReducesAsGeneral(Tensor dense, String cells, Reduce.Aggregator aggregator, String ... dimensions) {
+        Tensor sparse = Tensor.from(sparseType + ":" + cells);
+        assertTrue(dense instanceof IndexedTensor);
+        assertTrue(sparse instanceof MappedTensor);
+        assertEquals("Reducing " + cells + " by " + aggregator + " over " + String.join(",", dimensions),
+                     sparse.reduce(aggregator, dimensions).cells(),
+                     dense.reduce(aggregator, dimensions).cells());
+    }
+
+}